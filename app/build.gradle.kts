@@ -34,6 +34,11 @@ android {
     kotlinOptions {
         jvmTarget = "11"
     }
+
+    // JVM 單元測試中 android.util.Log 等框架方法返回默認值，而不是拋出異常
+    testOptions {
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -0,0 +1,130 @@
+package com.example.tonbo_app;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Debug;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * YoloDetector 穩態檢測不分配對象：預熱後每次 detect（結果寫入 DetectionBatch）的線程分配計數為 0
+ * 在設備上執行，使用 assets 中的真實模型
+ */
+@RunWith(AndroidJUnit4.class)
+public class YoloDetectorAllocationTest {
+    private static final int FRAME_WIDTH = 640;
+    private static final int FRAME_HEIGHT = 480;
+    private static final int WARM_UP_CALLS = 5;
+    private static final int MEASURED_CALLS = 20;
+
+    private Context context;
+    private Bitmap bitmap;
+    private ByteBuffer rgb;
+    private final DetectionBatch batch = new DetectionBatch();
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        // 均勻灰色畫面：沒有檢測結果，只測量檢測本身的分配
+        bitmap = Bitmap.createBitmap(FRAME_WIDTH, FRAME_HEIGHT, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.GRAY);
+        rgb = ByteBuffer.allocateDirect(FRAME_WIDTH * FRAME_HEIGHT * 3);
+        for (int i = 0; i < rgb.capacity(); i++) {
+            rgb.put(i, (byte) 0x80);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        bitmap.recycle();
+    }
+
+    @Test
+    public void ssdBitmapDetect_doesNotAllocate() {
+        assertBitmapDetectAllocationFree(YoloDetector.Engine.SSD_MOBILENET);
+    }
+
+    @Test
+    public void yoloBitmapDetect_doesNotAllocate() {
+        // assets 中的 yolov8n.tflite 是佔位文件時跳過
+        assumeTrue(YoloDetector.isEngineAvailable(context, YoloDetector.Engine.YOLOV8));
+        assertBitmapDetectAllocationFree(YoloDetector.Engine.YOLOV8);
+    }
+
+    @Test
+    public void ssdRgbDetect_doesNotAllocate() {
+        assertRgbDetectAllocationFree(YoloDetector.Engine.SSD_MOBILENET);
+    }
+
+    @Test
+    public void yoloRgbDetect_doesNotAllocate() {
+        // assets 中的 yolov8n.tflite 是佔位文件時跳過
+        assumeTrue(YoloDetector.isEngineAvailable(context, YoloDetector.Engine.YOLOV8));
+        assertRgbDetectAllocationFree(YoloDetector.Engine.YOLOV8);
+    }
+
+    private void assertBitmapDetectAllocationFree(YoloDetector.Engine engine) {
+        YoloDetector detector = new YoloDetector(context, engine);
+        try {
+            assertTrue(engine + " 模型未載入", detector.isInitialized());
+            for (int i = 0; i < WARM_UP_CALLS; i++) {
+                detector.detect(bitmap, batch);
+            }
+
+            startCounting();
+            for (int i = 0; i < MEASURED_CALLS; i++) {
+                detector.detect(bitmap, batch);
+            }
+            int allocations = stopCounting();
+
+            assertEquals(engine + " Bitmap 檢測分配了對象", 0, allocations);
+        } finally {
+            detector.close();
+        }
+    }
+
+    private void assertRgbDetectAllocationFree(YoloDetector.Engine engine) {
+        YoloDetector detector = new YoloDetector(context, engine);
+        try {
+            assertTrue(engine + " 模型未載入", detector.isInitialized());
+            for (int i = 0; i < WARM_UP_CALLS; i++) {
+                detector.detect(rgb, FRAME_WIDTH, FRAME_HEIGHT, batch);
+            }
+
+            startCounting();
+            for (int i = 0; i < MEASURED_CALLS; i++) {
+                detector.detect(rgb, FRAME_WIDTH, FRAME_HEIGHT, batch);
+            }
+            int allocations = stopCounting();
+
+            assertEquals(engine + " RGB 檢測分配了對象", 0, allocations);
+        } finally {
+            detector.close();
+        }
+    }
+
+    // 線程分配計數器是唯一只統計當前線程的接口，已標記為過時但在 ART 上仍然有效
+    @SuppressWarnings("deprecation")
+    private static void startCounting() {
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static int stopCounting() {
+        Debug.stopAllocCounting();
+        return Debug.getThreadAllocCount();
+    }
+}
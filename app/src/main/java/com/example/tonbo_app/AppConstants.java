@@ -51,4 +51,8 @@ public final class AppConstants {
     public static final int INPUT_SIZE = 300;
     public static final int NUM_CLASSES = 90;
     public static final int MAX_RESULTS = 25;
+    
+    // 設置存儲
+    public static final String PREFS_NAME = "TonboSettings";
+    public static final String PREF_DETECTION_ENGINE = "detection_engine";
 }
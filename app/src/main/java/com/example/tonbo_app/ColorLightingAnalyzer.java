@@ -4,12 +4,14 @@ import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.util.Log;
 
+import androidx.camera.core.ImageProxy;
+
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * 顏色和光線分析器
@@ -19,16 +21,83 @@ public class ColorLightingAnalyzer {
     private static final String TAG = "ColorLightingAnalyzer";
     
     // 顏色分析參數
-    private static final int SAMPLE_SIZE = 100; // 採樣大小
+    private static final int SAMPLE_SIZE = 4096; // 採樣大小（每個採樣只需一次直方圖計數）
     private static final int COLOR_TOLERANCE = 50; // 顏色容差
     private static final float MIN_COLOR_PERCENTAGE = 5.0f; // 最小顏色百分比
+    private static final int PALETTE_SIZE = 6; // 中位切分調色板最多顏色數
     
     // 光線分析參數
-    private static final int BRIGHTNESS_THRESHOLD_LOW = 85; // 低亮度閾值
-    private static final int BRIGHTNESS_THRESHOLD_HIGH = 170; // 高亮度閾值
+    static final int BRIGHTNESS_THRESHOLD_LOW = 85; // 低亮度閾值
+    static final int BRIGHTNESS_THRESHOLD_HIGH = 170; // 高亮度閾值
     private static final int CONTRAST_THRESHOLD_LOW = 30; // 低對比度閾值
     private static final int CONTRAST_THRESHOLD_HIGH = 80; // 高對比度閾值
     
+    // 亮度等級，LightingTracker 按滯後區間維護同一套等級
+    static final int BRIGHTNESS_DARK = -1;
+    static final int BRIGHTNESS_NORMAL = 0;
+    static final int BRIGHTNESS_BRIGHT = 1;
+    
+    // 單次遍歷分析參數
+    private static final int MAX_FUSED_SAMPLES = 16384; // 單次遍歷最多採樣像素數
+    private static final float CONTRAST_PERCENTILE = 0.02f; // 對比度取亮度 2%-98% 分位，排除孤立極值
+    private static final float LIGHT_DIRECTION_DIFFERENCE = 2.0f; // 左右/上下平均亮度差（舊版為10個採樣總和差20）
+    
+    // 光線分佈圖參數（由亮度積分圖得到，每個區域的平均亮度只需四次讀取）
+    static final int LIGHTING_GRID = 8; // 光線分佈圖為 8x8 區域
+    private static final int GLARE_BRIGHTNESS = 235; // 區域平均亮度達到此值視為接近過曝
+    private static final float GLARE_MAX_FRACTION = 0.25f; // 過曝區域超過此比例時是整體明亮，不算眩光
+    private static final float SHADOW_RATIO = 0.6f; // 物體平均亮度低於整幀的此比例且低於低亮度閾值時視為在陰影中
+    
+    // 顏色類別，categorizeColorIndex 返回的索引
+    private static final String[] COLOR_NAMES = {
+        "紅色", "橙色", "黃色", "綠色", "青色", "藍色", "紫色", "黑色", "白色", "灰色"
+    };
+    private static final int COLOR_RED = 0;
+    private static final int COLOR_ORANGE = 1;
+    private static final int COLOR_YELLOW = 2;
+    private static final int COLOR_GREEN = 3;
+    private static final int COLOR_CYAN = 4;
+    private static final int COLOR_BLUE = 5;
+    private static final int COLOR_PURPLE = 6;
+    private static final int COLOR_BLACK = 7;
+    private static final int COLOR_WHITE = 8;
+    private static final int COLOR_GRAY = 9;
+    
+    // RGB → 顏色類別查找表：每通道量化為5位（32x32x32，共32KB），類加載時按格子中心的HSV分類建立
+    private static final int LUT_BITS = 5;
+    private static final byte[] COLOR_LUT = buildColorLut();
+    
+    // 單次遍歷的工作緩衝區，每次調用重用
+    private final int[] brightnessHistogram = new int[256];
+    private final MedianCutPalette palette = new MedianCutPalette(PALETTE_SIZE);
+    // 每個顏色類別的採樣數和顏色和（逐個採樣查表計數，百分比由此得到）
+    private final int[] categoryCounts = new int[COLOR_NAMES.length];
+    private final long[] categorySums = new long[COLOR_NAMES.length * 3];
+    // 每個顏色類別中最大的中位切分盒子的顏色和採樣數，作為該類別的代表顏色
+    private final int[] representativeColors = new int[COLOR_NAMES.length];
+    private final int[] representativeCounts = new int[COLOR_NAMES.length];
+    private long totalBrightness;
+    private final LumaIntegralImage lumaIntegral = new LumaIntegralImage();
+    private int brightnessSampleCount;
+    // analyzeColors(Bitmap) 讀取像素的緩衝區
+    private int[] bitmapPixels = new int[0];
+    
+    /**
+     * 單次遍歷的分析結果
+     */
+    public static class AnalysisResult {
+        private final ColorAnalysisResult colorResult;
+        private final LightingAnalysisResult lightingResult;
+        
+        public AnalysisResult(ColorAnalysisResult colorResult, LightingAnalysisResult lightingResult) {
+            this.colorResult = colorResult;
+            this.lightingResult = lightingResult;
+        }
+        
+        public ColorAnalysisResult getColorResult() { return colorResult; }
+        public LightingAnalysisResult getLightingResult() { return lightingResult; }
+    }
+    
     /**
      * 顏色分析結果
      */
@@ -69,6 +138,8 @@ public class ColorLightingAnalyzer {
         private float averageBrightness;
         private float contrastRatio;
         private String lightDirection;
+        private float[] lightingMap;
+        private boolean glare;
         
         // Getters and setters
         public String getBrightnessLevel() { return brightnessLevel; }
@@ -88,6 +159,13 @@ public class ColorLightingAnalyzer {
         
         public String getLightDirection() { return lightDirection; }
         public void setLightDirection(String lightDirection) { this.lightDirection = lightDirection; }
+        
+        /** LIGHTING_GRID x LIGHTING_GRID 個區域的平均亮度，按行主序 */
+        public float[] getLightingMap() { return lightingMap; }
+        public void setLightingMap(float[] lightingMap) { this.lightingMap = lightingMap; }
+        
+        public boolean hasGlare() { return glare; }
+        public void setGlare(boolean glare) { this.glare = glare; }
     }
     
     /**
@@ -110,10 +188,204 @@ public class ColorLightingAnalyzer {
         public float getPercentage() { return percentage; }
     }
     
+    /**
+     * 單次遍歷同時分析顏色和光線
+     * 一次掃描同時填充亮度直方圖、象限亮度和調色板直方圖（全部為基本類型數組），
+     * 然後得到顏色調色板、平均亮度、對比度和光線方向；
+     * 每個顏色採樣查一次 COLOR_LUT 計入所屬類別，同時計入5位量化直方圖，掃描後中位切分得到代表顏色
+     * @param pixels ARGB 像素，按行存放，長度至少為 width * height
+     */
+    public synchronized AnalysisResult analyze(int[] pixels, int width, int height) {
+        if (pixels == null || width <= 0 || height <= 0 || pixels.length < width * height) {
+            Log.w(TAG, "無效的像素數據");
+            return emptyResult();
+        }
+        
+        try {
+            int step = sampleStep(width, height);
+            beginSampling(width, height, step);
+            for (int y = step / 2; y < height; y += step) {
+                int row = y * width;
+                for (int x = step / 2; x < width; x += step) {
+                    int pixel = pixels[row + x];
+                    int r = (pixel >> 16) & 0xFF;
+                    int g = (pixel >> 8) & 0xFF;
+                    int b = pixel & 0xFF;
+                    // 定點亮度公式（0.299, 0.587, 0.114）
+                    addBrightnessSample((77 * r + 150 * g + 29 * b) >> 8);
+                    addColorSample(r, g, b);
+                }
+            }
+            return buildResult();
+        } catch (Exception e) {
+            Log.e(TAG, "顏色光線分析失敗: " + e.getMessage());
+            return emptyResult();
+        }
+    }
+    
+    /**
+     * 直接從相機幀（YUV_420_888）分析顏色和光線，不需要Bitmap
+     * 調用期間相機幀不能關閉
+     */
+    public AnalysisResult analyze(ImageProxy image) {
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        return analyze(planes[0].getBuffer(), planes[0].getRowStride(), planes[0].getPixelStride(),
+                planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[1].getRowStride(), planes[1].getPixelStride(),
+                image.getWidth(), image.getHeight());
+    }
+    
+    /**
+     * 直接從 YUV 平面分析顏色和光線
+     * 亮度、對比度和光線方向只讀 Y 平面；顏色在每隔一個亮度採樣點讀取 U/V（水平和垂直各隔一個），
+     * 與該點的亮度一起轉換為 RGB 後計入顏色直方圖
+     * @param uvRowStride U/V 平面的行跨度（兩個平面相同）
+     * @param uvPixelStride U/V 平面的像素跨度（兩個平面相同）
+     */
+    public synchronized AnalysisResult analyze(ByteBuffer yBuffer, int yRowStride, int yPixelStride,
+                                               ByteBuffer uBuffer, ByteBuffer vBuffer,
+                                               int uvRowStride, int uvPixelStride,
+                                               int width, int height) {
+        if (yBuffer == null || uBuffer == null || vBuffer == null || width <= 0 || height <= 0) {
+            Log.w(TAG, "無效的YUV數據");
+            return emptyResult();
+        }
+        
+        try {
+            int step = sampleStep(width, height);
+            beginSampling(width, height, step);
+            boolean colorRow = true;
+            for (int y = step / 2; y < height; y += step) {
+                int yRow = y * yRowStride;
+                int uvRow = (y >> 1) * uvRowStride;
+                boolean colorColumn = true;
+                for (int x = step / 2; x < width; x += step) {
+                    int luma = yBuffer.get(yRow + x * yPixelStride) & 0xFF;
+                    addBrightnessSample(luma);
+                    
+                    if (colorRow && colorColumn) {
+                        int uvIndex = uvRow + (x >> 1) * uvPixelStride;
+                        int pixel = YuvToTensorConverter.yuvToArgb(luma,
+                                (uBuffer.get(uvIndex) & 0xFF) - 128,
+                                (vBuffer.get(uvIndex) & 0xFF) - 128);
+                        addColorSample((pixel >> 16) & 0xFF, (pixel >> 8) & 0xFF, pixel & 0xFF);
+                    }
+                    colorColumn = !colorColumn;
+                }
+                colorRow = !colorRow;
+            }
+            return buildResult();
+        } catch (Exception e) {
+            Log.e(TAG, "YUV顏色光線分析失敗: " + e.getMessage());
+            return emptyResult();
+        }
+    }
+    
+    /**
+     * 大圖按網格跳步採樣，採樣數不超過上限
+     */
+    private static int sampleStep(int width, int height) {
+        int step = 1;
+        while ((long) ((width + step - 1) / step) * ((height + step - 1) / step) > MAX_FUSED_SAMPLES) {
+            step++;
+        }
+        return step;
+    }
+    
+    /**
+     * 開始一次網格採樣（x、y 從 step / 2 起每隔 step 取一點，按行主序）
+     */
+    private void beginSampling(int width, int height, int step) {
+        Arrays.fill(brightnessHistogram, 0);
+        clearColorSamples();
+        lumaIntegral.begin(gridCount(width, step), gridCount(height, step));
+        totalBrightness = 0;
+        brightnessSampleCount = 0;
+    }
+    
+    private static int gridCount(int length, int step) {
+        return (length - step / 2 + step - 1) / step;
+    }
+    
+    private void addBrightnessSample(int brightness) {
+        brightnessHistogram[brightness]++;
+        totalBrightness += brightness;
+        lumaIntegral.add(brightness);
+        brightnessSampleCount++;
+    }
+    
+    private void clearColorSamples() {
+        palette.clear();
+        Arrays.fill(categoryCounts, 0);
+        Arrays.fill(categorySums, 0);
+    }
+    
+    private void addColorSample(int r, int g, int b) {
+        palette.add(r, g, b);
+        int category = COLOR_LUT[lutIndex(r, g, b)];
+        categoryCounts[category]++;
+        categorySums[category * 3] += r;
+        categorySums[category * 3 + 1] += g;
+        categorySums[category * 3 + 2] += b;
+    }
+    
+    /**
+     * 從採樣累計值得到顏色和光線結果
+     */
+    private AnalysisResult buildResult() {
+        ColorAnalysisResult colorResult = new ColorAnalysisResult();
+        LightingAnalysisResult lightingResult = new LightingAnalysisResult();
+        if (brightnessSampleCount == 0) {
+            return new AnalysisResult(colorResult, lightingResult);
+        }
+        
+        // 光線：平均亮度、分位對比度，以及由積分圖得到的光線分佈圖、方向和眩光
+        int sampleCount = brightnessSampleCount;
+        float averageBrightness = (float) totalBrightness / sampleCount;
+        lightingResult.setAverageBrightness(averageBrightness);
+        lightingResult.setBrightnessLevel(analyzeBrightnessLevel(averageBrightness));
+        
+        float contrastRatio = histogramPercentile(sampleCount, 1f - CONTRAST_PERCENTILE)
+                - histogramPercentile(sampleCount, CONTRAST_PERCENTILE);
+        lightingResult.setContrastRatio(contrastRatio);
+        lightingResult.setContrastLevel(analyzeContrastLevel(contrastRatio));
+        
+        applyLightingMap(lightingResult);
+        lightingResult.setLightingCondition(determineLightingCondition(averageBrightness, contrastRatio));
+        
+        // 顏色：按類別計數得到百分比，中位切分得到代表顏色
+        generateColorPalette(colorResult);
+        determinePrimarySecondaryColors(colorResult);
+        determineDominantTone(colorResult);
+        
+        Log.d(TAG, "單次遍歷分析完成: " + colorResult.getPrimaryColor() + " + "
+                + colorResult.getSecondaryColor() + ", " + lightingResult.getLightingCondition());
+        return new AnalysisResult(colorResult, lightingResult);
+    }
+    
+    private static AnalysisResult emptyResult() {
+        return new AnalysisResult(new ColorAnalysisResult(), new LightingAnalysisResult());
+    }
+    
+    /**
+     * 亮度直方圖的分位數
+     */
+    private int histogramPercentile(int total, float fraction) {
+        int target = (int) (total * fraction);
+        int cumulative = 0;
+        for (int level = 0; level < 256; level++) {
+            cumulative += brightnessHistogram[level];
+            if (cumulative > target) {
+                return level;
+            }
+        }
+        return 255;
+    }
+    
     /**
      * 分析圖像的顏色
      */
-    public ColorAnalysisResult analyzeColors(Bitmap bitmap) {
+    public synchronized ColorAnalysisResult analyzeColors(Bitmap bitmap) {
         Log.d(TAG, "開始顏色分析");
         ColorAnalysisResult result = new ColorAnalysisResult();
         
@@ -123,14 +395,11 @@ public class ColorLightingAnalyzer {
         }
         
         try {
-            // 採樣像素
-            List<Integer> pixelSamples = samplePixels(bitmap);
-            
-            // 分析主要顏色
-            Map<String, Integer> colorCount = countColors(pixelSamples);
+            // 採樣像素計入直方圖
+            countColors(bitmap);
             
             // 生成顏色調色板
-            generateColorPalette(colorCount, result);
+            generateColorPalette(result);
             
             // 確定主要和次要顏色
             determinePrimarySecondaryColors(result);
@@ -150,7 +419,7 @@ public class ColorLightingAnalyzer {
     /**
      * 分析圖像的光線條件
      */
-    public LightingAnalysisResult analyzeLighting(Bitmap bitmap) {
+    public synchronized LightingAnalysisResult analyzeLighting(Bitmap bitmap) {
         Log.d(TAG, "開始光線分析");
         LightingAnalysisResult result = new LightingAnalysisResult();
         
@@ -190,86 +459,149 @@ public class ColorLightingAnalyzer {
     }
     
     /**
-     * 採樣像素
+     * 一次讀取全部像素，按網格採樣約 SAMPLE_SIZE 個點計入顏色類別計數和調色板直方圖
      */
-    private List<Integer> samplePixels(Bitmap bitmap) {
-        List<Integer> samples = new ArrayList<>();
+    private void countColors(Bitmap bitmap) {
         int width = bitmap.getWidth();
         int height = bitmap.getHeight();
-        
-        // 隨機採樣
-        for (int i = 0; i < SAMPLE_SIZE; i++) {
-            int x = (int) (Math.random() * width);
-            int y = (int) (Math.random() * height);
-            samples.add(bitmap.getPixel(x, y));
+        if (bitmapPixels.length < width * height) {
+            bitmapPixels = new int[width * height];
+        }
+        bitmap.getPixels(bitmapPixels, 0, width, 0, 0, width, height);
+        
+        int step = Math.max(1, (int) Math.sqrt((double) width * height / SAMPLE_SIZE));
+        clearColorSamples();
+        for (int y = step / 2; y < height; y += step) {
+            int row = y * width;
+            for (int x = step / 2; x < width; x += step) {
+                int pixel = bitmapPixels[row + x];
+                addColorSample((pixel >> 16) & 0xFF, (pixel >> 8) & 0xFF, pixel & 0xFF);
+            }
         }
-        
-        return samples;
     }
     
     /**
-     * 統計顏色
+     * 查表得到顏色類別索引（COLOR_NAMES）
      */
-    private Map<String, Integer> countColors(List<Integer> pixels) {
-        Map<String, Integer> colorCount = new HashMap<>();
-        
-        for (int pixel : pixels) {
-            String colorCategory = categorizeColor(pixel);
-            Integer currentCount = colorCount.get(colorCategory);
-            colorCount.put(colorCategory, (currentCount != null ? currentCount : 0) + 1);
+    static int colorCategoryOf(int r, int g, int b) {
+        return COLOR_LUT[lutIndex(r, g, b)];
+    }
+    
+    /**
+     * 顏色類別的名稱
+     */
+    static String colorNameOf(int category) {
+        return COLOR_NAMES[category];
+    }
+    
+    /**
+     * 查找表索引（每通道取高5位）
+     */
+    private static int lutIndex(int r, int g, int b) {
+        int shift = 8 - LUT_BITS;
+        return ((r >> shift) << (LUT_BITS * 2)) | ((g >> shift) << LUT_BITS) | (b >> shift);
+    }
+    
+    /**
+     * 建立顏色類別查找表：每個格子按中心顏色分類一次
+     */
+    private static byte[] buildColorLut() {
+        int levels = 1 << LUT_BITS;
+        int half = 1 << (7 - LUT_BITS);
+        byte[] lut = new byte[levels * levels * levels];
+        for (int r = 0; r < levels; r++) {
+            for (int g = 0; g < levels; g++) {
+                for (int b = 0; b < levels; b++) {
+                    lut[(r << (LUT_BITS * 2)) | (g << LUT_BITS) | b] = (byte) categorizeColorIndex(
+                            (r << (8 - LUT_BITS)) + half,
+                            (g << (8 - LUT_BITS)) + half,
+                            (b << (8 - LUT_BITS)) + half);
+                }
+            }
         }
-        
-        return colorCount;
+        return lut;
     }
     
     /**
-     * 將像素分類為顏色類別
+     * 將顏色分類為顏色類別索引（COLOR_NAMES）
+     * 按HSV分類，只在建立查找表時調用（單元測試用來驗證查找表）
      */
-    private String categorizeColor(int pixel) {
-        int r = Color.red(pixel);
-        int g = Color.green(pixel);
-        int b = Color.blue(pixel);
-        
-        // 轉換為HSV進行更好的顏色分類
-        float[] hsv = new float[3];
-        Color.RGBToHSV(r, g, b, hsv);
-        
-        float hue = hsv[0];
-        float saturation = hsv[1];
-        float value = hsv[2];
+    static int categorizeColorIndex(int r, int g, int b) {
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        float value = max / 255f;
+        float saturation = max == 0 ? 0f : (float) (max - min) / max;
         
         // 低飽和度 = 灰階
         if (saturation < 0.2f) {
-            if (value < 0.3f) return "黑色";
-            if (value > 0.7f) return "白色";
-            return "灰色";
+            if (value < 0.3f) return COLOR_BLACK;
+            if (value > 0.7f) return COLOR_WHITE;
+            return COLOR_GRAY;
+        }
+        
+        float delta = max - min;
+        float hue;
+        if (max == r) {
+            hue = 60f * (g - b) / delta;
+            if (hue < 0) hue += 360f;
+        } else if (max == g) {
+            hue = 60f * (b - r) / delta + 120f;
+        } else {
+            hue = 60f * (r - g) / delta + 240f;
         }
         
         // 基於色相分類顏色
-        if (hue < 15 || hue > 345) return "紅色";
-        if (hue < 45) return "橙色";
-        if (hue < 75) return "黃色";
-        if (hue < 165) return "綠色";
-        if (hue < 210) return "青色";
-        if (hue < 270) return "藍色";
-        if (hue < 315) return "紫色";
-        return "紅色";
+        if (hue < 15 || hue > 345) return COLOR_RED;
+        if (hue < 45) return COLOR_ORANGE;
+        if (hue < 75) return COLOR_YELLOW;
+        if (hue < 165) return COLOR_GREEN;
+        if (hue < 210) return COLOR_CYAN;
+        if (hue < 270) return COLOR_BLUE;
+        if (hue < 315) return COLOR_PURPLE;
+        return COLOR_RED;
     }
     
     /**
-     * 生成顏色調色板
+     * 生成顏色調色板：每個類別的百分比為逐個採樣查表計數的真實佔比；
+     * 顏色值取該類別中最大的中位切分盒子的平均顏色（真實存在的一簇顏色，而不是深灰和淺灰混合出的中灰），
+     * 類別中的採樣被併入其他類別的盒子時取該類別採樣的平均顏色
+     * 按類別而不是按盒子報告，主要/次要顏色不會因為同一種顏色在兩幀間被切成一個或兩個盒子而跳動
      */
-    private void generateColorPalette(Map<String, Integer> colorCount, ColorAnalysisResult result) {
-        int totalSamples = SAMPLE_SIZE;
+    private void generateColorPalette(ColorAnalysisResult result) {
+        int count = palette.extract();
+        int total = palette.getTotal();
+        Arrays.fill(representativeCounts, 0);
+        for (int i = 0; i < count; i++) {
+            int color = palette.getColor(i);
+            int pixels = palette.getCount(i);
+            int category = colorCategoryOf((color >> 16) & 0xFF, (color >> 8) & 0xFF, color & 0xFF);
+            if (pixels > representativeCounts[category]) {
+                representativeCounts[category] = pixels;
+                representativeColors[category] = color;
+            }
+        }
         
-        for (Map.Entry<String, Integer> entry : colorCount.entrySet()) {
-            float percentage = (float) entry.getValue() / totalSamples * 100;
-            if (percentage >= MIN_COLOR_PERCENTAGE) {
-                result.addColorInfo(new ColorInfo(entry.getKey(), 0, percentage));
+        for (int category = 0; category < COLOR_NAMES.length && total > 0; category++) {
+            int samples = categoryCounts[category];
+            float percentage = (float) samples / total * 100;
+            if (samples > 0 && percentage >= MIN_COLOR_PERCENTAGE) {
+                int color = representativeCounts[category] > 0
+                        ? representativeColors[category]
+                        : 0xFF000000
+                                | (int) (categorySums[category * 3] / samples) << 16
+                                | (int) (categorySums[category * 3 + 1] / samples) << 8
+                                | (int) (categorySums[category * 3 + 2] / samples);
+                result.addColorInfo(new ColorInfo(COLOR_NAMES[category], color, percentage));
             }
         }
         
-        // 按百分比排序
+        sortPalette(result);
+    }
+    
+    /**
+     * 調色板按百分比降序排序
+     */
+    private void sortPalette(ColorAnalysisResult result) {
         Collections.sort(result.getColorPalette(), new Comparator<ColorInfo>() {
             @Override
             public int compare(ColorInfo a, ColorInfo b) {
@@ -366,9 +698,29 @@ public class ColorLightingAnalyzer {
      * 分析亮度等級
      */
     private String analyzeBrightnessLevel(float averageBrightness) {
+        return brightnessLevelName(brightnessLevelOf(averageBrightness));
+    }
+    
+    /**
+     * 亮度對應的等級（不帶滯後）
+     */
+    static int brightnessLevelOf(float averageBrightness) {
         if (averageBrightness < BRIGHTNESS_THRESHOLD_LOW) {
-            return "較暗";
+            return BRIGHTNESS_DARK;
         } else if (averageBrightness > BRIGHTNESS_THRESHOLD_HIGH) {
+            return BRIGHTNESS_BRIGHT;
+        } else {
+            return BRIGHTNESS_NORMAL;
+        }
+    }
+    
+    /**
+     * 亮度等級名稱
+     */
+    static String brightnessLevelName(int level) {
+        if (level == BRIGHTNESS_DARK) {
+            return "較暗";
+        } else if (level == BRIGHTNESS_BRIGHT) {
             return "較亮";
         } else {
             return "適中";
@@ -406,7 +758,7 @@ public class ColorLightingAnalyzer {
     /**
      * 分析對比度等級
      */
-    private String analyzeContrastLevel(float contrastRatio) {
+    static String analyzeContrastLevel(float contrastRatio) {
         if (contrastRatio < CONTRAST_THRESHOLD_LOW) {
             return "低對比";
         } else if (contrastRatio > CONTRAST_THRESHOLD_HIGH) {
@@ -420,74 +772,117 @@ public class ColorLightingAnalyzer {
      * 分析光線方向（簡化版）
      */
     private String analyzeLightDirection(Bitmap bitmap) {
-        // 簡化實現：分析圖像邊緣的亮度差異
+        // 一次讀取全部像素，網格採樣建立亮度積分圖，再按光線分佈圖判斷
         int width = bitmap.getWidth();
         int height = bitmap.getHeight();
-        
-        float leftBrightness = 0;
-        float rightBrightness = 0;
-        float topBrightness = 0;
-        float bottomBrightness = 0;
-        
-        int sampleSize = 10;
-        
-        // 左側亮度
-        for (int j = 0; j < height; j += height / sampleSize) {
-            int pixel = bitmap.getPixel(width / 8, j);
-            leftBrightness += getPixelBrightness(pixel);
+        if (bitmapPixels.length < width * height) {
+            bitmapPixels = new int[width * height];
         }
-        
-        // 右側亮度
-        for (int j = 0; j < height; j += height / sampleSize) {
-            int pixel = bitmap.getPixel(width * 7 / 8, j);
-            rightBrightness += getPixelBrightness(pixel);
+        bitmap.getPixels(bitmapPixels, 0, width, 0, 0, width, height);
+        
+        int step = sampleStep(width, height);
+        lumaIntegral.begin(gridCount(width, step), gridCount(height, step));
+        for (int y = step / 2; y < height; y += step) {
+            int row = y * width;
+            for (int x = step / 2; x < width; x += step) {
+                int pixel = bitmapPixels[row + x];
+                lumaIntegral.add((77 * ((pixel >> 16) & 0xFF) + 150 * ((pixel >> 8) & 0xFF) + 29 * (pixel & 0xFF)) >> 8);
+            }
         }
         
-        // 頂部亮度
-        for (int i = 0; i < width; i += width / sampleSize) {
-            int pixel = bitmap.getPixel(i, height / 8);
-            topBrightness += getPixelBrightness(pixel);
+        LightingAnalysisResult mapResult = new LightingAnalysisResult();
+        applyLightingMap(mapResult);
+        return mapResult.getLightDirection();
+    }
+    
+    /**
+     * 從亮度積分圖得到 LIGHTING_GRID x LIGHTING_GRID 光線分佈圖，並據此判斷光線方向和眩光
+     * 光線方向比較左右、上下兩半的平均亮度；眩光為少數區域接近過曝而畫面其餘部分不是
+     */
+    private void applyLightingMap(LightingAnalysisResult result) {
+        float[] map = new float[LIGHTING_GRID * LIGHTING_GRID];
+        lumaIntegral.fillGridMeans(LIGHTING_GRID, map);
+        result.setLightingMap(map);
+        
+        int half = LIGHTING_GRID / 2;
+        float left = 0f, right = 0f, top = 0f, bottom = 0f, total = 0f;
+        int glareCells = 0;
+        for (int gy = 0; gy < LIGHTING_GRID; gy++) {
+            for (int gx = 0; gx < LIGHTING_GRID; gx++) {
+                float brightness = map[gy * LIGHTING_GRID + gx];
+                total += brightness;
+                if (gx < half) {
+                    left += brightness;
+                } else {
+                    right += brightness;
+                }
+                if (gy < half) {
+                    top += brightness;
+                } else {
+                    bottom += brightness;
+                }
+                if (brightness >= GLARE_BRIGHTNESS) {
+                    glareCells++;
+                }
+            }
         }
-        
-        // 底部亮度
-        for (int i = 0; i < width; i += width / sampleSize) {
-            int pixel = bitmap.getPixel(i, height * 7 / 8);
-            bottomBrightness += getPixelBrightness(pixel);
+        float halfCells = LIGHTING_GRID * half;
+        result.setLightDirection(determineLightDirection(left / halfCells, right / halfCells,
+                top / halfCells, bottom / halfCells, LIGHT_DIRECTION_DIFFERENCE));
+        result.setGlare(glareCells > 0 && glareCells <= map.length * GLARE_MAX_FRACTION
+                && total / map.length < BRIGHTNESS_THRESHOLD_HIGH);
+    }
+    
+    /**
+     * 標記處在陰影中的物體：檢測框平均亮度明顯低於整幀且本身偏暗
+     * 每個框只需在積分圖上讀取四次
+     * @param luma 與檢測結果同一幀的亮度積分圖
+     */
+    static void markShadowedObjects(DetectionBatch detections, LumaIntegralImage luma) {
+        if (!luma.isReady()) {
+            return;
         }
-        
-        // 分析光線方向
-        if (leftBrightness > rightBrightness + 20) {
-            return "左側光線";
-        } else if (rightBrightness > leftBrightness + 20) {
-            return "右側光線";
-        } else if (topBrightness > bottomBrightness + 20) {
-            return "頂部光線";
-        } else if (bottomBrightness > topBrightness + 20) {
-            return "底部光線";
-        } else {
-            return "均勻光線";
+        float frameBrightness = luma.mean();
+        for (int i = 0; i < detections.size(); i++) {
+            float boxBrightness = luma.mean(detections.getLeft(i), detections.getTop(i),
+                    detections.getRight(i), detections.getBottom(i));
+            detections.setInShadow(i, boxBrightness < frameBrightness * SHADOW_RATIO
+                    && boxBrightness < BRIGHTNESS_THRESHOLD_LOW);
         }
     }
     
     /**
-     * 獲取像素亮度
+     * 按兩側亮度差判斷光線方向
      */
-    private float getPixelBrightness(int pixel) {
-        int r = Color.red(pixel);
-        int g = Color.green(pixel);
-        int b = Color.blue(pixel);
-        return 0.299f * r + 0.587f * g + 0.114f * b;
+    private String determineLightDirection(float left, float right, float top, float bottom, float difference) {
+        // 取差異較大的方向，而不是固定先比較左右
+        float horizontal = right - left;
+        float vertical = bottom - top;
+        if (Math.max(Math.abs(horizontal), Math.abs(vertical)) <= difference) {
+            return "均勻光線";
+        } else if (Math.abs(horizontal) >= Math.abs(vertical)) {
+            return horizontal < 0 ? "左側光線" : "右側光線";
+        } else {
+            return vertical < 0 ? "頂部光線" : "底部光線";
+        }
     }
     
     /**
      * 綜合判斷光線條件
      */
     private String determineLightingCondition(float brightness, float contrast) {
-        if (brightness < BRIGHTNESS_THRESHOLD_LOW && contrast < CONTRAST_THRESHOLD_LOW) {
+        return lightingCondition(brightnessLevelOf(brightness), contrast);
+    }
+    
+    /**
+     * 按亮度等級和對比度判斷光線條件
+     */
+    static String lightingCondition(int brightnessLevel, float contrast) {
+        if (brightnessLevel == BRIGHTNESS_DARK && contrast < CONTRAST_THRESHOLD_LOW) {
             return "昏暗環境";
-        } else if (brightness > BRIGHTNESS_THRESHOLD_HIGH && contrast > CONTRAST_THRESHOLD_HIGH) {
+        } else if (brightnessLevel == BRIGHTNESS_BRIGHT && contrast > CONTRAST_THRESHOLD_HIGH) {
             return "明亮高對比";
-        } else if (brightness > BRIGHTNESS_THRESHOLD_HIGH) {
+        } else if (brightnessLevel == BRIGHTNESS_BRIGHT) {
             return "明亮環境";
         } else if (contrast > CONTRAST_THRESHOLD_HIGH) {
             return "高對比環境";
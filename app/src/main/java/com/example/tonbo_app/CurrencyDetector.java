@@ -8,8 +8,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * 貨幣識別助手類
@@ -20,6 +18,9 @@ public class CurrencyDetector {
     
     // 港幣面額特徵
     private static final Map<String, CurrencyInfo> CURRENCY_FEATURES = new HashMap<>();
+    // 貨幣關鍵詞 -> 貨幣代碼（不區分大小寫，忽略空白）；加入其他貨幣時在這裡加入關鍵詞
+    private static final Map<String, String> CURRENCY_KEYWORDS = new HashMap<>();
+    private static final CurrencyTextMatcher CURRENCY_MATCHER;
     
     static {
         // 港幣紙幣特徵
@@ -34,39 +35,47 @@ public class CurrencyDetector {
         CURRENCY_FEATURES.put("1", new CurrencyInfo("一元港幣", "銀色", "紫荊花", "硬幣"));
         CURRENCY_FEATURES.put("2", new CurrencyInfo("二元港幣", "銀色", "紫荊花", "硬幣"));
         CURRENCY_FEATURES.put("5", new CurrencyInfo("五元港幣", "銀色", "紫荊花", "硬幣"));
+
+        CURRENCY_KEYWORDS.put("港幣", "HKD");
+        CURRENCY_KEYWORDS.put("hk$", "HKD");
+        CURRENCY_KEYWORDS.put("hkd", "HKD");
+        CURRENCY_KEYWORDS.put("hongkong", "HKD");
+        CURRENCY_MATCHER = new CurrencyTextMatcher(CURRENCY_KEYWORDS);
     }
     
     private Context context;
-    private OCRHelper ocrHelper;
     
     public CurrencyDetector(Context context) {
         this.context = context;
-        this.ocrHelper = new OCRHelper(context);
     }
     
     /**
      * 檢測圖片中的貨幣
+     * 文字由調用方的 OCR 結果提供（同一次拍攝不再重複識別），沒有找到面額時按圖片特徵推測
+     * @param document 這張圖片的 OCR 結果
      * @param bitmap 要檢測的圖片
      * @return 貨幣檢測結果列表
      */
-    public List<CurrencyResult> detectCurrency(Bitmap bitmap) {
+    public List<CurrencyResult> detectCurrency(OCRDocument document, Bitmap bitmap) {
         List<CurrencyResult> results = new ArrayList<>();
         
         try {
-            // 使用OCR識別文字
-            List<OCRHelper.OCRResult> ocrResults = ocrHelper.recognizeText(bitmap);
-            
-            // 分析OCR結果尋找貨幣信息
-            for (OCRHelper.OCRResult ocrResult : ocrResults) {
-                CurrencyResult currencyResult = analyzeTextForCurrency(ocrResult.getText());
+            // 逐個文字塊尋找貨幣信息，每個字符只分析一次
+            for (OCRDocument.Block block : document.getBlocks()) {
+                CurrencyResult currencyResult = analyzeTextForCurrency(block.getText());
                 if (currencyResult != null) {
                     results.add(currencyResult);
                 }
             }
             
-            // 如果沒有通過文字識別到貨幣，嘗試圖像分析
+            // 如果沒有通過文字識別到貨幣，嘗試圖像分析；
+            // OCR 沒有完成（超時或失敗）時面額可能只是沒識別出來，不按圖片比例猜測
             if (results.isEmpty()) {
-                results.addAll(analyzeImageForCurrency(bitmap));
+                if (document.isComplete()) {
+                    results.addAll(analyzeImageForCurrency(bitmap));
+                } else {
+                    Log.w(TAG, "OCR未完成，跳過圖像推測");
+                }
             }
             
         } catch (Exception e) {
@@ -78,57 +87,27 @@ public class CurrencyDetector {
     
     /**
      * 分析文字內容尋找貨幣信息
+     * 一次掃描找出貨幣關鍵詞和所有數字：有關鍵詞時第一個已知面額的置信度為 0.8（文字識別），
+     * 只有數字時為 0.9（貨幣符號識別）
      */
     private CurrencyResult analyzeTextForCurrency(String text) {
         if (text == null || text.trim().isEmpty()) {
             return null;
         }
         
-        String cleanText = text.replaceAll("\\s+", "").toLowerCase();
-        
-        // 檢查港幣相關關鍵詞
-        if (cleanText.contains("港幣") || cleanText.contains("hk$") || 
-            cleanText.contains("hongkong") || cleanText.contains("hkd")) {
-            
-            // 尋找數字
-            Pattern numberPattern = Pattern.compile("\\d+");
-            Matcher matcher = numberPattern.matcher(text);
-            
-            while (matcher.find()) {
-                String number = matcher.group();
-                CurrencyInfo info = CURRENCY_FEATURES.get(number);
-                
-                if (info != null) {
-                    return new CurrencyResult(
-                        info.getName(),
-                        number,
-                        info.getColor(),
-                        info.getDesign(),
-                        info.getType(),
-                        0.8f, // 基於文字識別的置信度
-                        "文字識別"
-                    );
-                }
-            }
-        }
-        
-        // 檢查數字模式（如：$100, HK$50等）
-        Pattern currencyPattern = Pattern.compile("(?:hk\\$|\\$|港幣)?\\s*(\\d+)\\s*(?:港幣|hkd)?", Pattern.CASE_INSENSITIVE);
-        Matcher currencyMatcher = currencyPattern.matcher(text);
-        
-        while (currencyMatcher.find()) {
-            String amount = currencyMatcher.group(1);
-            CurrencyInfo info = CURRENCY_FEATURES.get(amount);
-            
+        CurrencyTextMatcher.Match match = CURRENCY_MATCHER.scan(text);
+        for (String number : match.getNumbers()) {
+            CurrencyInfo info = CURRENCY_FEATURES.get(number);
             if (info != null) {
+                boolean keyword = match.hasKeyword();
                 return new CurrencyResult(
                     info.getName(),
-                    amount,
+                    number,
                     info.getColor(),
                     info.getDesign(),
                     info.getType(),
-                    0.9f, // 基於貨幣符號的置信度
-                    "貨幣符號識別"
+                    keyword ? 0.8f : 0.9f, // 基於文字識別 / 貨幣符號的置信度
+                    keyword ? "文字識別" : "貨幣符號識別"
                 );
             }
         }
@@ -237,10 +216,7 @@ public class CurrencyDetector {
      * 關閉檢測器
      */
     public void close() {
-        if (ocrHelper != null) {
-            ocrHelper.close();
-            ocrHelper = null;
-        }
+        Log.d(TAG, "貨幣檢測器已關閉");
     }
     
     /**
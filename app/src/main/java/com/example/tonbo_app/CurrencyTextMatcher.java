@@ -0,0 +1,193 @@
+package com.example.tonbo_app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 貨幣文字匹配器
+ * 一次線性掃描同時完成兩件事：
+ * 1. 用 Aho-Corasick 自動機查找貨幣關鍵詞（港幣、HK$ 等），忽略空白和英文大小寫，
+ *    關鍵詞可以跨空白（"Hong Kong" 匹配 "hongkong"）
+ * 2. 切出連續的數字（包括全形數字），空白和其他字符都會結束一段數字
+ * 自動機在構建時展開為完整的轉移表，掃描時每個字符只查一次表，不需要正則表達式，
+ * 也不創建去掉空白或轉為小寫的中間字符串；加入其他貨幣只需要加入關鍵詞
+ * 構建後不再修改，可以跨線程共用
+ */
+public final class CurrencyTextMatcher {
+
+    /**
+     * 一次掃描的結果
+     */
+    public static final class Match {
+        private final String currency;
+        private final List<String> numbers;
+
+        private Match(String currency, List<String> numbers) {
+            this.currency = currency;
+            this.numbers = numbers;
+        }
+
+        /**
+         * 最先出現的關鍵詞對應的貨幣代碼，沒有關鍵詞時為 null
+         */
+        public String getCurrency() {
+            return currency;
+        }
+
+        public boolean hasKeyword() {
+            return currency != null;
+        }
+
+        /**
+         * 文字中的數字（按出現順序，全形數字已轉為 ASCII）
+         */
+        public List<String> getNumbers() {
+            return numbers;
+        }
+    }
+
+    // 關鍵詞中出現的字符（已排序），字符在此數組中的位置即轉移表的列
+    private final char[] alphabet;
+    // transitions[state * alphabet.length + column]：完整展開的轉移表（含失敗轉移）
+    private final int[] transitions;
+    // 到達該狀態時匹配到的關鍵詞對應的貨幣（含經失敗鏈接到達的後綴關鍵詞），沒有時為 null
+    private final String[] outputs;
+
+    /**
+     * @param keywords 關鍵詞 -> 貨幣代碼；關鍵詞不區分英文大小寫，不能包含空白或數字
+     */
+    public CurrencyTextMatcher(Map<String, String> keywords) {
+        StringBuilder chars = new StringBuilder();
+        int maxStates = 1;
+        for (String keyword : keywords.keySet()) {
+            String lower = keyword.toLowerCase();
+            maxStates += lower.length();
+            for (int i = 0; i < lower.length(); i++) {
+                char ch = lower.charAt(i);
+                if (Character.isWhitespace(ch) || digitValue(ch) >= 0) {
+                    throw new IllegalArgumentException("關鍵詞不能包含空白或數字: " + keyword);
+                }
+                if (chars.indexOf(String.valueOf(ch)) < 0) {
+                    chars.append(ch);
+                }
+            }
+        }
+        alphabet = chars.toString().toCharArray();
+        Arrays.sort(alphabet);
+        int width = alphabet.length;
+
+        // 關鍵詞樹：-1 表示沒有這條邊
+        int[] trie = new int[maxStates * width];
+        Arrays.fill(trie, -1);
+        String[] output = new String[maxStates];
+        int states = 1;
+        for (Map.Entry<String, String> entry : keywords.entrySet()) {
+            String lower = entry.getKey().toLowerCase();
+            int state = 0;
+            for (int i = 0; i < lower.length(); i++) {
+                int index = state * width + Arrays.binarySearch(alphabet, lower.charAt(i));
+                if (trie[index] < 0) {
+                    trie[index] = states++;
+                }
+                state = trie[index];
+            }
+            output[state] = entry.getValue();
+        }
+
+        // 按廣度優先計算失敗鏈接，同時把缺少的邊補成失敗轉移，得到完整的轉移表
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int column = 0; column < width; column++) {
+            if (trie[column] < 0) {
+                trie[column] = 0;
+            } else {
+                fail[trie[column]] = 0;
+                queue[tail++] = trie[column];
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            if (output[state] == null) {
+                output[state] = output[fail[state]];
+            }
+            for (int column = 0; column < width; column++) {
+                int index = state * width + column;
+                int next = trie[index];
+                int fallback = trie[fail[state] * width + column];
+                if (next < 0) {
+                    trie[index] = fallback;
+                } else {
+                    fail[next] = fallback;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        transitions = Arrays.copyOf(trie, states * width);
+        outputs = Arrays.copyOf(output, states);
+    }
+
+    /**
+     * 掃描一段文字
+     */
+    public Match scan(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return new Match(null, Collections.emptyList());
+        }
+        int width = alphabet.length;
+        String currency = null;
+        List<String> numbers = null;
+        StringBuilder number = new StringBuilder();
+        int state = 0;
+
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char ch = text.charAt(i);
+            int digit = digitValue(ch);
+            if (digit >= 0) {
+                number.append((char) ('0' + digit));
+            } else if (number.length() > 0) {
+                numbers = addNumber(numbers, number);
+            }
+
+            // 空白不參與關鍵詞匹配（相當於先去掉空白）
+            if (Character.isWhitespace(ch)) {
+                continue;
+            }
+            int column = width > 0 ? Arrays.binarySearch(alphabet, Character.toLowerCase(ch)) : -1;
+            state = column < 0 ? 0 : transitions[state * width + column];
+            if (currency == null && outputs[state] != null) {
+                currency = outputs[state];
+            }
+        }
+        if (number.length() > 0) {
+            numbers = addNumber(numbers, number);
+        }
+        return new Match(currency, numbers != null ? numbers : Collections.<String>emptyList());
+    }
+
+    private static List<String> addNumber(List<String> numbers, StringBuilder number) {
+        if (numbers == null) {
+            numbers = new ArrayList<>(4);
+        }
+        numbers.add(number.toString());
+        number.setLength(0);
+        return numbers;
+    }
+
+    /**
+     * ASCII 和全形數字的值，其他字符返回 -1
+     */
+    private static int digitValue(char ch) {
+        if (ch >= '0' && ch <= '9') {
+            return ch - '0';
+        }
+        if (ch >= '０' && ch <= '９') {
+            return ch - '０';
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.tonbo_app;
+
+import android.graphics.RectF;
+
+/**
+ * 一幀的檢測結果（結構數組）
+ * 類別編號、追蹤編號、分數和正規化邊界框 [left, top, right, bottom]（0-1）存放在基本類型數組中，
+ * 標籤為常量字符串引用，是否在陰影中由 ColorLightingAnalyzer.markShadowedObjects 標記；生產者 clear 後寫入，消費者按索引讀取，穩態下不為每個框分配對象
+ * 非線程安全，跨線程傳遞時應複製到使用者自己的實例（copyFrom 不分配）
+ */
+public class DetectionBatch {
+    private static final int DEFAULT_CAPACITY = 32;
+
+    private int[] classIds;
+    private int[] trackIds;
+    private float[] scores;
+    private float[] boxes;
+    private String[] labels;
+    private String[] labelsZh;
+    private boolean[] inShadow;
+    private int size = 0;
+
+    public DetectionBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public DetectionBatch(int capacity) {
+        classIds = new int[capacity];
+        trackIds = new int[capacity];
+        scores = new float[capacity];
+        boxes = new float[capacity * 4];
+        labels = new String[capacity];
+        labelsZh = new String[capacity];
+        inShadow = new boolean[capacity];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 添加一個檢測結果（邊界框為正規化座標，追蹤編號為 -1）
+     */
+    public void add(int classId, String label, String labelZh, float score,
+                    float left, float top, float right, float bottom) {
+        ensureCapacity(size + 1);
+        classIds[size] = classId;
+        trackIds[size] = -1;
+        labels[size] = label;
+        labelsZh[size] = labelZh;
+        inShadow[size] = false;
+        scores[size] = score;
+        int base = size * 4;
+        boxes[base] = left;
+        boxes[base + 1] = top;
+        boxes[base + 2] = right;
+        boxes[base + 3] = bottom;
+        size++;
+    }
+
+    /**
+     * 從另一個批次添加第 index 個結果
+     */
+    public void addFrom(DetectionBatch other, int index) {
+        int base = index * 4;
+        add(other.classIds[index], other.labels[index], other.labelsZh[index], other.scores[index],
+                other.boxes[base], other.boxes[base + 1], other.boxes[base + 2], other.boxes[base + 3]);
+        trackIds[size - 1] = other.trackIds[index];
+        inShadow[size - 1] = other.inShadow[index];
+    }
+
+    /**
+     * 複製另一個批次的全部內容（容量足夠時不分配）
+     */
+    public void copyFrom(DetectionBatch other) {
+        ensureCapacity(other.size);
+        System.arraycopy(other.classIds, 0, classIds, 0, other.size);
+        System.arraycopy(other.trackIds, 0, trackIds, 0, other.size);
+        System.arraycopy(other.scores, 0, scores, 0, other.size);
+        System.arraycopy(other.boxes, 0, boxes, 0, other.size * 4);
+        System.arraycopy(other.labels, 0, labels, 0, other.size);
+        System.arraycopy(other.labelsZh, 0, labelsZh, 0, other.size);
+        System.arraycopy(other.inShadow, 0, inShadow, 0, other.size);
+        size = other.size;
+    }
+
+    /**
+     * 將第 from 個結果移動到第 to 個位置（用於原地過濾）
+     */
+    public void move(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        classIds[to] = classIds[from];
+        trackIds[to] = trackIds[from];
+        labels[to] = labels[from];
+        labelsZh[to] = labelsZh[from];
+        inShadow[to] = inShadow[from];
+        scores[to] = scores[from];
+        System.arraycopy(boxes, from * 4, boxes, to * 4, 4);
+    }
+
+    /**
+     * 只保留前 count 個結果
+     */
+    public void truncate(int count) {
+        if (count < size) {
+            size = Math.max(0, count);
+        }
+    }
+
+    public int getClassId(int index) {
+        return classIds[index];
+    }
+
+    /**
+     * 追蹤編號（ObjectTracker 輸出時有效，檢測結果為 -1）
+     */
+    public int getTrackId(int index) {
+        return trackIds[index];
+    }
+
+    public void setTrackId(int index, int trackId) {
+        trackIds[index] = trackId;
+    }
+
+    public String getLabel(int index) {
+        return labels[index];
+    }
+
+    public String getLabelZh(int index) {
+        return labelsZh[index];
+    }
+
+    public void setLabelZh(int index, String labelZh) {
+        labelsZh[index] = labelZh;
+    }
+
+    /**
+     * 物體是否處在陰影中（未標記時為 false）
+     */
+    public boolean isInShadow(int index) {
+        return inShadow[index];
+    }
+
+    public void setInShadow(int index, boolean shadowed) {
+        inShadow[index] = shadowed;
+    }
+
+    public float getScore(int index) {
+        return scores[index];
+    }
+
+    public float getLeft(int index) {
+        return boxes[index * 4];
+    }
+
+    public float getTop(int index) {
+        return boxes[index * 4 + 1];
+    }
+
+    public float getRight(int index) {
+        return boxes[index * 4 + 2];
+    }
+
+    public float getBottom(int index) {
+        return boxes[index * 4 + 3];
+    }
+
+    /**
+     * 將第 index 個邊界框寫入 out（正規化座標）
+     */
+    public void getBox(int index, RectF out) {
+        int base = index * 4;
+        out.set(boxes[base], boxes[base + 1], boxes[base + 2], boxes[base + 3]);
+    }
+
+    /**
+     * 底層數組（只讀，供 NonMaxSuppression 等直接處理），有效長度為 size()
+     */
+    float[] getBoxes() {
+        return boxes;
+    }
+
+    float[] getScores() {
+        return scores;
+    }
+
+    int[] getClassIds() {
+        return classIds;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= scores.length) {
+            return;
+        }
+        int capacity = Math.max(required, scores.length * 2);
+        int[] newClassIds = new int[capacity];
+        int[] newTrackIds = new int[capacity];
+        float[] newScores = new float[capacity];
+        float[] newBoxes = new float[capacity * 4];
+        String[] newLabels = new String[capacity];
+        String[] newLabelsZh = new String[capacity];
+        boolean[] newInShadow = new boolean[capacity];
+        System.arraycopy(classIds, 0, newClassIds, 0, size);
+        System.arraycopy(trackIds, 0, newTrackIds, 0, size);
+        System.arraycopy(scores, 0, newScores, 0, size);
+        System.arraycopy(boxes, 0, newBoxes, 0, size * 4);
+        System.arraycopy(labels, 0, newLabels, 0, size);
+        System.arraycopy(labelsZh, 0, newLabelsZh, 0, size);
+        System.arraycopy(inShadow, 0, newInShadow, 0, size);
+        classIds = newClassIds;
+        trackIds = newTrackIds;
+        scores = newScores;
+        boxes = newBoxes;
+        labels = newLabels;
+        labelsZh = newLabelsZh;
+        inShadow = newInShadow;
+    }
+}
@@ -9,9 +9,6 @@ import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -21,8 +18,14 @@ import java.util.List;
 public class DetectionOverlayView extends View {
     private static final String TAG = "DetectionOverlayView";
     
-    private List<ObjectDetectorHelper.DetectionResult> detections = new ArrayList<>();
+    // 檢測結果（正規化座標），更新時複製到自己的批次，繪製時不分配
+    private final DetectionBatch detections = new DetectionBatch();
+    private final DetectionBatch pending = new DetectionBatch();
+    private final RectF boxRect = new RectF();
+    private final RectF textBackground = new RectF();
     private Paint boxPaint;
+    private Paint fillPaint;
+    private Paint markerPaint;
     private Paint textPaint;
     private Paint backgroundPaint;
     private String currentLanguage = "cantonese"; // 當前語言
@@ -59,6 +62,14 @@ public class DetectionOverlayView extends View {
         boxPaint.setStrokeWidth(BOX_THICKNESS);
         boxPaint.setAntiAlias(true);
         
+        // 初始化填充和角落標記畫筆（繪製時只改顏色）
+        fillPaint = new Paint();
+        fillPaint.setStyle(Paint.Style.FILL);
+        
+        markerPaint = new Paint();
+        markerPaint.setStyle(Paint.Style.FILL);
+        markerPaint.setAntiAlias(true);
+        
         // 初始化文字畫筆
         textPaint = new Paint();
         textPaint.setColor(TEXT_COLOR);
@@ -78,42 +89,60 @@ public class DetectionOverlayView extends View {
     
     /**
      * 更新檢測結果
+     * 邊界框可以是相對座標 (0-1) 或縮放座標 (0-1000)，統一轉換為相對座標
      */
     public void updateDetections(List<ObjectDetectorHelper.DetectionResult> newDetections) {
-        Log.d(TAG, "updateDetections called with " + (newDetections != null ? newDetections.size() : 0) + " detections");
-        
-        // 只顯示最多2個檢測結果
-        if (newDetections != null && newDetections.size() > 2) {
-            // 按置信度排序並只取前2個
-            List<ObjectDetectorHelper.DetectionResult> sortedDetections = new ArrayList<>(newDetections);
-            Collections.sort(sortedDetections, new Comparator<ObjectDetectorHelper.DetectionResult>() {
-                @Override
-                public int compare(ObjectDetectorHelper.DetectionResult a, ObjectDetectorHelper.DetectionResult b) {
-                    return Float.compare(b.getConfidence(), a.getConfidence());
-                }
-            });
-            this.detections = new ArrayList<>(sortedDetections.subList(0, 2));
-            Log.d(TAG, "限制檢測結果為2個，按置信度排序");
+        pending.clear();
+        if (newDetections != null) {
+            for (int i = 0; i < newDetections.size(); i++) {
+                ObjectDetectorHelper.DetectionResult detection = newDetections.get(i);
+                RectF box = detection.getBoundingBox();
+                boolean isScaledCoords = box.left > 1.0f || box.top > 1.0f ||
+                        box.right > 1.0f || box.bottom > 1.0f;
+                float scale = isScaledCoords ? 1f / 1000.0f : 1f;
+                pending.add(-1, detection.getLabel(), detection.getLabelZh(), detection.getConfidence(),
+                        box.left * scale, box.top * scale, box.right * scale, box.bottom * scale);
+            }
+        }
+        updateDetections(pending);
+    }
+    
+    /**
+     * 更新檢測結果（正規化座標），只保留置信度最高的2個
+     */
+    public void updateDetections(DetectionBatch newDetections) {
+        int count = newDetections != null ? newDetections.size() : 0;
+        Log.d(TAG, "updateDetections called with " + count + " detections");
+        
+        if (count <= 2) {
+            if (newDetections == null) {
+                detections.clear();
+            } else {
+                detections.copyFrom(newDetections);
+            }
         } else {
-            this.detections = newDetections != null ? new ArrayList<>(newDetections) : new ArrayList<>();
+            // 選出置信度最高的2個，保持降序
+            int first = -1;
+            int second = -1;
+            for (int i = 0; i < count; i++) {
+                float score = newDetections.getScore(i);
+                if (first < 0 || score > newDetections.getScore(first)) {
+                    second = first;
+                    first = i;
+                } else if (second < 0 || score > newDetections.getScore(second)) {
+                    second = i;
+                }
+            }
+            detections.clear();
+            detections.addFrom(newDetections, first);
+            detections.addFrom(newDetections, second);
         }
         
-        Log.d(TAG, "Updated detections list size: " + this.detections.size());
-        
         // 確保視圖可見
         setVisibility(VISIBLE);
         
         // 強制重繪
-        postInvalidate();
         invalidate();
-        
-        Log.d(TAG, "postInvalidate() and invalidate() called");
-        
-        // 打印檢測結果詳情
-        for (int i = 0; i < this.detections.size(); i++) {
-            ObjectDetectorHelper.DetectionResult detection = this.detections.get(i);
-            Log.d(TAG, "Detection " + i + ": " + detection.getLabel() + " (" + detection.getConfidence() + ") at " + detection.getBoundingBox());
-        }
     }
     
     /**
@@ -136,10 +165,7 @@ public class DetectionOverlayView extends View {
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
         
-        Log.d(TAG, "onDraw called, detections size: " + detections.size());
-        
         if (detections.isEmpty()) {
-            Log.d(TAG, "No detections to draw");
             return;
         }
         
@@ -147,59 +173,22 @@ public class DetectionOverlayView extends View {
         int viewWidth = getWidth();
         int viewHeight = getHeight();
         
-        Log.d(TAG, "View size: " + viewWidth + "x" + viewHeight);
-        
         // 繪製每個檢測結果，使用不同顏色
         for (int i = 0; i < detections.size(); i++) {
-            ObjectDetectorHelper.DetectionResult detection = detections.get(i);
             int color = (i % 2 == 0) ? BOX_COLOR : BOX_COLOR_ALT;
-            Log.d(TAG, "Drawing detection " + i + ": " + detection.getLabel() + " at " + detection.getBoundingBox());
-            drawDetection(canvas, detection, viewWidth, viewHeight, color);
+            drawDetection(canvas, i, viewWidth, viewHeight, color);
         }
     }
     
     /**
      * 繪製單個檢測結果
      */
-    private void drawDetection(Canvas canvas, ObjectDetectorHelper.DetectionResult detection, 
-                             int viewWidth, int viewHeight, int boxColor) {
-        
-        // 獲取邊界框
-        RectF boundingBox = detection.getBoundingBox();
-        
-        Log.d(TAG, "原始邊界框座標: " + boundingBox);
-        Log.d(TAG, "視圖尺寸: " + viewWidth + "x" + viewHeight);
-        
-        // 檢查邊界框座標是否已經是像素座標還是相對座標
-        float left, top, right, bottom;
-        
-        // 更精確的座標轉換邏輯
-        boolean isScaledCoords = (boundingBox.left > 1.0f || boundingBox.top > 1.0f ||
-                                boundingBox.right > 1.0f || boundingBox.bottom > 1.0f);
-        
-        if (isScaledCoords) {
-            // 縮放座標 (0-1000)，需要轉換為相對座標再轉為像素座標
-            Log.d(TAG, "檢測到縮放座標，轉換為像素座標");
-            left = (boundingBox.left / 1000.0f) * viewWidth;
-            top = (boundingBox.top / 1000.0f) * viewHeight;
-            right = (boundingBox.right / 1000.0f) * viewWidth;
-            bottom = (boundingBox.bottom / 1000.0f) * viewHeight;
-        } else if (boundingBox.left <= 1.0f && boundingBox.top <= 1.0f &&
-                  boundingBox.right <= 1.0f && boundingBox.bottom <= 1.0f) {
-            // 相對座標 (0-1)，需要轉換為像素座標
-            Log.d(TAG, "檢測到相對座標，轉換為像素座標");
-            left = boundingBox.left * viewWidth;
-            top = boundingBox.top * viewHeight;
-            right = boundingBox.right * viewWidth;
-            bottom = boundingBox.bottom * viewHeight;
-        } else {
-            // 已經是像素座標，直接使用
-            Log.d(TAG, "檢測到像素座標，直接使用");
-            left = boundingBox.left;
-            top = boundingBox.top;
-            right = boundingBox.right;
-            bottom = boundingBox.bottom;
-        }
+    private void drawDetection(Canvas canvas, int index, int viewWidth, int viewHeight, int boxColor) {
+        // 相對座標 (0-1) 轉換為像素座標
+        float left = detections.getLeft(index) * viewWidth;
+        float top = detections.getTop(index) * viewHeight;
+        float right = detections.getRight(index) * viewWidth;
+        float bottom = detections.getBottom(index) * viewHeight;
         
         // 精確的邊界檢查和調整
         left = Math.max(0, Math.min(left, viewWidth - 1));
@@ -207,18 +196,15 @@ public class DetectionOverlayView extends View {
         right = Math.max(left + 1, Math.min(right, viewWidth));
         bottom = Math.max(top + 1, Math.min(bottom, viewHeight));
         
-        // 創建邊界框矩形
-        RectF rect = new RectF(left, top, right, bottom);
+        // 邊界框矩形（重用）
+        RectF rect = boxRect;
+        rect.set(left, top, right, bottom);
         
         // 設置邊界框顏色
         boxPaint.setColor(boxColor);
         
-        Log.d(TAG, "繪製邊界框: " + rect + ", 顏色: " + Integer.toHexString(boxColor));
-        
         // 繪製邊界框 - 先繪製填充，再繪製邊框
-        Paint fillPaint = new Paint();
         fillPaint.setColor(boxColor);
-        fillPaint.setStyle(Paint.Style.FILL);
         fillPaint.setAlpha(50); // 半透明填充
         
         // 繪製填充
@@ -231,10 +217,10 @@ public class DetectionOverlayView extends View {
         drawCornerMarkers(canvas, rect, boxColor);
         
         // 準備標籤文字（根據當前語言選擇對應的標籤）
-        String displayLabel = getDisplayLabel(detection);
+        String displayLabel = getDisplayLabel(detections.getLabel(index), detections.getLabelZh(index));
         String label = String.format("%s %.2f", 
             displayLabel, 
-            detection.getConfidence());
+            detections.getScore(index));
         
         // 計算文字尺寸
         Paint.FontMetrics fontMetrics = textPaint.getFontMetrics();
@@ -254,7 +240,7 @@ public class DetectionOverlayView extends View {
         }
         
         // 繪製文字背景
-        RectF textBackground = new RectF(textLeft, textTop, textRight, textBottom);
+        textBackground.set(textLeft, textTop, textRight, textBottom);
         canvas.drawRect(textBackground, backgroundPaint);
         
         // 繪製文字
@@ -267,22 +253,14 @@ public class DetectionOverlayView extends View {
      * 繪製邊界框角落標記
      */
     private void drawCornerMarkers(Canvas canvas, RectF rect, int color) {
-        Paint markerPaint = new Paint();
         markerPaint.setColor(color);
-        markerPaint.setStyle(Paint.Style.FILL);
-        markerPaint.setAntiAlias(true);
         
         float radius = BOX_THICKNESS * 2;
-        float[] corners = {
-            rect.left, rect.top,      // 左上
-            rect.right - radius * 2, rect.top,  // 右上
-            rect.left, rect.bottom - radius * 2,  // 左下
-            rect.right - radius * 2, rect.bottom - radius * 2  // 右下
-        };
-        
-        for (int i = 0; i < corners.length; i += 2) {
-            canvas.drawCircle(corners[i], corners[i + 1], radius, markerPaint);
-        }
+        // 左上、右上、左下、右下
+        canvas.drawCircle(rect.left, rect.top, radius, markerPaint);
+        canvas.drawCircle(rect.right - radius * 2, rect.top, radius, markerPaint);
+        canvas.drawCircle(rect.left, rect.bottom - radius * 2, radius, markerPaint);
+        canvas.drawCircle(rect.right - radius * 2, rect.bottom - radius * 2, radius, markerPaint);
     }
     
     /**
@@ -319,15 +297,15 @@ public class DetectionOverlayView extends View {
     /**
      * 根據當前語言獲取顯示標籤
      */
-    private String getDisplayLabel(ObjectDetectorHelper.DetectionResult detection) {
+    private String getDisplayLabel(String label, String labelZh) {
         switch (currentLanguage) {
             case "english":
-                return detection.getLabel() != null ? detection.getLabel() : detection.getLabelZh();
+                return label != null ? label : labelZh;
             case "mandarin":
-                return detection.getLabelZh() != null ? detection.getLabelZh() : detection.getLabel();
+                return labelZh != null ? labelZh : label;
             case "cantonese":
             default:
-                return detection.getLabelZh() != null ? detection.getLabelZh() : detection.getLabel();
+                return labelZh != null ? labelZh : label;
         }
     }
 }
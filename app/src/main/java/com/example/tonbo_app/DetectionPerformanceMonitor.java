@@ -1,8 +1,6 @@
 package com.example.tonbo_app;
 
 import android.util.Log;
-import java.util.ArrayDeque;
-import java.util.Deque;
 import java.util.List;
 
 /**
@@ -12,9 +10,13 @@ import java.util.List;
 public class DetectionPerformanceMonitor {
     private static final String TAG = "DetectionPerformance";
     
-    // 使用Deque替代ArrayList，提供更好的性能
-    private final Deque<Long> detectionTimes = new ArrayDeque<>();
-    private final Deque<Float> confidenceScores = new ArrayDeque<>();
+    // 使用基本類型環形緩衝區，記錄時不裝箱、不分配
+    private final long[] detectionTimes = new long[AppConstants.MAX_DETECTION_TIME_RECORDS];
+    private final float[] confidenceScores = new float[AppConstants.MAX_CONFIDENCE_RECORDS];
+    private int detectionTimeCount = 0;
+    private int detectionTimeHead = 0;
+    private int confidenceCount = 0;
+    private int confidenceHead = 0;
     
     private int totalDetections = 0;
     private int successfulDetections = 0;
@@ -25,19 +27,16 @@ public class DetectionPerformanceMonitor {
      * 記錄檢測時間 - 優化版本
      */
     public void recordDetectionTime(long detectionTimeMs) {
-        detectionTimes.offerLast(detectionTimeMs);
+        // 保持最近N次檢測的記錄，覆蓋最舊的
+        if (detectionTimeCount == detectionTimes.length) {
+            totalDetectionTime -= detectionTimes[detectionTimeHead];
+        } else {
+            detectionTimeCount++;
+        }
+        detectionTimes[detectionTimeHead] = detectionTimeMs;
+        detectionTimeHead = (detectionTimeHead + 1) % detectionTimes.length;
         totalDetectionTime += detectionTimeMs;
         totalDetections++;
-        
-        // 保持最近N次檢測的記錄，移除最舊的
-        if (detectionTimes.size() > AppConstants.MAX_DETECTION_TIME_RECORDS) {
-            Long removed = detectionTimes.pollFirst();
-            if (removed != null) {
-                totalDetectionTime -= removed;
-            }
-        }
-        
-        Log.d(TAG, "檢測時間: " + detectionTimeMs + "ms");
     }
     
     /**
@@ -49,28 +48,42 @@ public class DetectionPerformanceMonitor {
             
             // 記錄置信度分數
             for (YoloDetector.DetectionResult result : results) {
-                float confidence = result.getConfidence();
-                confidenceScores.offerLast(confidence);
-                totalConfidence += confidence;
-                
-                // 保持最近N個置信度記錄
-                if (confidenceScores.size() > AppConstants.MAX_CONFIDENCE_RECORDS) {
-                    Float removed = confidenceScores.pollFirst();
-                    if (removed != null) {
-                        totalConfidence -= removed;
-                    }
-                }
+                recordConfidence(result.getConfidence());
             }
             
             Log.d(TAG, "檢測到 " + results.size() + " 個物體");
         }
     }
     
+    /**
+     * 記錄檢測結果（結構數組，不分配）
+     */
+    public void recordDetectionResult(DetectionBatch batch) {
+        if (batch != null && !batch.isEmpty()) {
+            successfulDetections++;
+            for (int i = 0; i < batch.size(); i++) {
+                recordConfidence(batch.getScore(i));
+            }
+        }
+    }
+    
+    private void recordConfidence(float confidence) {
+        // 保持最近N個置信度記錄
+        if (confidenceCount == confidenceScores.length) {
+            totalConfidence -= confidenceScores[confidenceHead];
+        } else {
+            confidenceCount++;
+        }
+        confidenceScores[confidenceHead] = confidence;
+        confidenceHead = (confidenceHead + 1) % confidenceScores.length;
+        totalConfidence += confidence;
+    }
+    
     /**
      * 獲取平均檢測時間 - 優化版本
      */
     public float getAverageDetectionTime() {
-        return detectionTimes.isEmpty() ? 0f : (float) totalDetectionTime / detectionTimes.size();
+        return detectionTimeCount == 0 ? 0f : (float) totalDetectionTime / detectionTimeCount;
     }
     
     /**
@@ -84,7 +97,7 @@ public class DetectionPerformanceMonitor {
      * 獲取平均置信度 - 優化版本
      */
     public float getAverageConfidence() {
-        return confidenceScores.isEmpty() ? 0f : totalConfidence / confidenceScores.size();
+        return confidenceCount == 0 ? 0f : totalConfidence / confidenceCount;
     }
     
     /**
@@ -119,8 +132,10 @@ public class DetectionPerformanceMonitor {
      * 重置統計數據
      */
     public void reset() {
-        detectionTimes.clear();
-        confidenceScores.clear();
+        detectionTimeCount = 0;
+        detectionTimeHead = 0;
+        confidenceCount = 0;
+        confidenceHead = 0;
         totalDetections = 0;
         successfulDetections = 0;
         totalDetectionTime = 0;
@@ -18,10 +18,11 @@ import android.widget.ScrollView;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import androidx.annotation.NonNull;
 import androidx.camera.core.Camera;
@@ -38,6 +39,11 @@ public class DocumentCurrencyActivity extends BaseAccessibleActivity {
     private static final String TAG = "DocumentCurrencyAct";
     private static final int REQUEST_CODE_PERMISSIONS = 10;
     private static final String[] REQUIRED_PERMISSIONS = {Manifest.permission.CAMERA};
+    // 拍攝分析的OCR期限，到期時使用已完成的識別器結果
+    private static final long OCR_DEADLINE_MS = 8000;
+    // 連續朗讀：文字需要連續一致的識別次數，以及每次識別的期限
+    private static final int LIVE_STABLE_OBSERVATIONS = 3;
+    private static final long LIVE_OCR_DEADLINE_MS = 3000;
 
     private PreviewView cameraPreview;
     private Button backButton;
@@ -50,9 +56,24 @@ public class DocumentCurrencyActivity extends BaseAccessibleActivity {
     private TextView pageTitle;
 
     private ExecutorService cameraExecutor;
+    // 分析執行器：OCR之後的貨幣檢測和基準測試按順序在此執行，不再為每次拍攝創建線程
+    private ExecutorService analysisExecutor;
     private ProcessCameraProvider cameraProvider;
     private boolean isFlashOn = false;
-    private boolean isAnalyzing = false;
+    // 相機線程也會讀取（拍攝分析期間暫停連續朗讀的識別）
+    private volatile boolean isAnalyzing = false;
+    private volatile boolean isBenchmarking = false;
+    // 正在進行的OCR請求（主線程訪問），新的拍攝會取消它
+    private OCRHelper.RecognitionRequest ocrRequest;
+    // 每次取消遞增，過期的分析結果不再更新界面
+    private volatile int analysisGeneration = 0;
+
+    // 連續朗讀模式：相機線程按追蹤器建議的間隔識別當前幀，同一時間只有一個識別請求
+    private volatile boolean liveReading = false;
+    private final TextLineTracker liveTextTracker = new TextLineTracker(LIVE_STABLE_OBSERVATIONS);
+    private final AtomicBoolean liveOcrInFlight = new AtomicBoolean(false);
+    private volatile long nextLiveOcrTime = 0;
+    private volatile OCRHelper.RecognitionRequest liveOcrRequest;
     
     // 分析模式：true=文字分析，false=錢幣分析
     private boolean isTextMode = true;
@@ -60,10 +81,18 @@ public class DocumentCurrencyActivity extends BaseAccessibleActivity {
     // OCR和貨幣檢測相關變量
     private OCRHelper ocrHelper;
     private CurrencyDetector currencyDetector;
-    private Bitmap currentBitmap;
+    // 最新的相機幀（持有一個引用），通過 replaceCurrentFrame 替換
+    private FrameBufferPool.Frame currentFrame;
+    private final Object currentFrameLock = new Object();
     private String lastRecognitionResult = "";
-    private List<OCRHelper.OCRResult> lastOCRResults;
+    private OCRDocument lastOCRDocument;
     private List<CurrencyDetector.CurrencyResult> lastCurrencyResults;
+    
+    // 相機幀直接轉換（跳過JPEG往返，保持全解析度供OCR使用）
+    private final YuvToTensorConverter frameConverter = new YuvToTensorConverter();
+    // 全解析度幀池：當前幀、正在分析的幀、被取代但識別器仍在讀取的幀、連續朗讀正在識別的幀
+    // 和正在轉換的幀各一個
+    private final FrameBufferPool framePool = new FrameBufferPool(5);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -72,6 +101,7 @@ public class DocumentCurrencyActivity extends BaseAccessibleActivity {
 
         initViews();
         cameraExecutor = Executors.newSingleThreadExecutor();
+        analysisExecutor = Executors.newSingleThreadExecutor();
 
         // 初始化OCR和貨幣檢測器
         ocrHelper = new OCRHelper(this);
@@ -140,6 +170,12 @@ public class DocumentCurrencyActivity extends BaseAccessibleActivity {
             vibrationManager.vibrateClick();
             speakRecognitionResults();
         });
+        // 長按朗讀按鈕：開始 / 停止連續朗讀
+        readButton.setOnLongClickListener(v -> {
+            vibrationManager.vibrateClick();
+            toggleLiveReading();
+            return true;
+        });
 
         // 清除按鈕
         clearButton.setOnClickListener(v -> {
@@ -147,6 +183,14 @@ public class DocumentCurrencyActivity extends BaseAccessibleActivity {
             clearResults();
         });
         
+        // 可調試版本：長按標題比較順序和同時 OCR 的延遲
+        if ((getApplicationInfo().flags & android.content.pm.ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            pageTitle.setOnLongClickListener(v -> {
+                runOcrBenchmark();
+                return true;
+            });
+        }
+        
         // 根據當前語言更新界面文字
         updateLanguageUI();
     }
@@ -300,8 +344,14 @@ public class DocumentCurrencyActivity extends BaseAccessibleActivity {
 
     private void analyzeImage(ImageProxy image) {
         try {
-            // 保存當前幀供拍照使用
-            currentBitmap = imageProxyToBitmap(image);
+            // 保存當前幀供拍照使用；分析佔用幀時幀池可能已空，沿用上一幀
+            FrameBufferPool.Frame frame = framePool.obtain(image, frameConverter, 0);
+            if (frame != null) {
+                replaceCurrentFrame(frame);
+            }
+            if (liveReading) {
+                maybeStartLiveRecognition(System.currentTimeMillis());
+            }
             
         } catch (Exception e) {
             Log.e(TAG, "圖像分析失敗: " + e.getMessage());
@@ -310,100 +360,293 @@ public class DocumentCurrencyActivity extends BaseAccessibleActivity {
         }
     }
 
-    private Bitmap imageProxyToBitmap(ImageProxy image) {
-        try {
-            ImageProxy.PlaneProxy[] planes = image.getPlanes();
-            ByteBuffer yBuffer = planes[0].getBuffer();
-            ByteBuffer uBuffer = planes[1].getBuffer();
-            ByteBuffer vBuffer = planes[2].getBuffer();
-
-            int ySize = yBuffer.remaining();
-            int uSize = uBuffer.remaining();
-            int vSize = vBuffer.remaining();
-
-            byte[] nv21 = new byte[ySize + uSize + vSize];
-            yBuffer.get(nv21, 0, ySize);
-            vBuffer.get(nv21, ySize, vSize);
-            uBuffer.get(nv21, ySize + vSize, uSize);
-
-            android.graphics.YuvImage yuvImage = new android.graphics.YuvImage(
-                    nv21, android.graphics.ImageFormat.NV21,
-                    image.getWidth(), image.getHeight(), null);
-            java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
-            yuvImage.compressToJpeg(
-                    new android.graphics.Rect(0, 0, image.getWidth(), image.getHeight()),
-                    100, out);
-            byte[] imageBytes = out.toByteArray();
-            return android.graphics.BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-        } catch (Exception e) {
-            Log.e(TAG, "圖像轉換失敗: " + e.getMessage());
-            return null;
+    /**
+     * 替換當前幀並釋放舊幀的引用（舊幀正在分析時由分析線程持有，不會被回收）
+     */
+    private void replaceCurrentFrame(FrameBufferPool.Frame frame) {
+        FrameBufferPool.Frame previous;
+        synchronized (currentFrameLock) {
+            previous = currentFrame;
+            currentFrame = frame;
+        }
+        if (previous != null) {
+            previous.release();
+        }
+    }
+
+    /**
+     * 取得當前幀的一個引用，沒有可用幀時返回 null
+     */
+    private FrameBufferPool.Frame acquireCurrentFrame() {
+        synchronized (currentFrameLock) {
+            return currentFrame != null ? currentFrame.retain() : null;
         }
     }
 
     private void captureAndAnalyze() {
-        if (isAnalyzing) {
+        if (isBenchmarking) {
             announceInfo("正在分析中，請稍候");
             return;
         }
 
+        FrameBufferPool.Frame frame = acquireCurrentFrame();
+        if (frame == null) {
+            announceInfo("請等待相機準備就緒");
+            updateStatus("相機未就緒");
+            return;
+        }
+
+        // 新的拍攝取代正在進行的分析：取消其OCR請求，其後續結果不再更新界面
+        if (isAnalyzing) {
+            Log.d(TAG, "新的拍攝取代了正在進行的分析");
+            cancelAnalysis();
+        }
+
         announceInfo(getString(R.string.capturing_analyzing));
         updateStatus("正在分析圖像...");
 
-        if (currentBitmap != null) {
-            isAnalyzing = true;
-            
-            new Thread(() -> {
+        isAnalyzing = true;
+        int generation = analysisGeneration;
+        // 持有幀引用期間相機線程不會重用這張Bitmap；識別器讀取期間另外持有一個引用，
+        // 被取消的請求在識別器真正結束後才釋放
+        Bitmap bitmap = frame.getBitmap();
+        frame.retain();
+        ocrRequest = ocrHelper.recognizeTextAsync(bitmap, OCR_DEADLINE_MS, new OCRHelper.RecognitionCallback() {
+            @Override
+            public void onResult(OCRDocument document) {
                 try {
-                    // 同時進行OCR和貨幣檢測
-                    List<OCRHelper.OCRResult> ocrResults = ocrHelper.recognizeText(currentBitmap);
-                    List<CurrencyDetector.CurrencyResult> currencyResults = currencyDetector.detectCurrency(currentBitmap);
-
-                    // 保存結果
-                    lastOCRResults = ocrResults;
-                    lastCurrencyResults = currencyResults;
-
-                    // 格式化結果
-                    String combinedResult = formatCombinedResults(ocrResults, currencyResults);
-                    lastRecognitionResult = combinedResult;
-
-                    runOnUiThread(() -> {
-                        updateResults(combinedResult);
-                        updateStatus("分析完成");
-                        announceInfo("分析完成，共識別到" + 
-                            String.format(getString(R.string.items_detected), (ocrResults.size() + currencyResults.size())));
-                        isAnalyzing = false;
-                        
-                        // 顯示結果彈窗
-                        showResultDialog(ocrResults, currencyResults);
-                    });
+                    analysisExecutor.execute(() -> finishAnalysis(frame, document, generation));
+                } catch (RejectedExecutionException e) {
+                    // 頁面已銷毀
+                    frame.release();
+                }
+            }
 
-                } catch (Exception e) {
-                    Log.e(TAG, "分析失敗: " + e.getMessage());
-                    runOnUiThread(() -> {
-                        updateResults("分析失敗：" + e.getMessage());
-                        updateStatus("分析失敗");
-                        announceError("分析失敗，請重試");
-                        isAnalyzing = false;
-                        
-                        // 顯示錯誤彈窗
-                        showErrorDialog("分析失敗：" + e.getMessage());
-                    });
+            @Override
+            public void onCancelled() {
+                frame.release();
+            }
+
+            @Override
+            public void onInputReleased() {
+                frame.release();
+            }
+        });
+    }
+
+    /**
+     * OCR完成後在分析執行器上進行貨幣檢測並更新界面
+     * 已被新的拍攝取代（generation 過期）的分析直接丟棄
+     */
+    private void finishAnalysis(FrameBufferPool.Frame frame, OCRDocument document, int generation) {
+        try {
+            if (generation != analysisGeneration) {
+                return;
+            }
+            List<CurrencyDetector.CurrencyResult> currencyResults = currencyDetector.detectCurrency(document, frame.getBitmap());
+            String combinedResult = formatCombinedResults(document, currencyResults);
+
+            runOnUiThread(() -> {
+                if (generation != analysisGeneration) {
+                    return;
+                }
+                // 保存結果
+                lastOCRDocument = document;
+                lastCurrencyResults = currencyResults;
+                lastRecognitionResult = combinedResult;
+
+                updateResults(combinedResult);
+                updateStatus(document.isComplete() ? "分析完成" : "分析完成（文字識別未完成，結果可能不完整）");
+                announceInfo("分析完成，共識別到" + 
+                    String.format(getString(R.string.items_detected), (document.getBlockCount() + currencyResults.size())));
+                isAnalyzing = false;
+                
+                // 顯示結果彈窗
+                showResultDialog(document, currencyResults);
+            });
+
+        } catch (Exception e) {
+            Log.e(TAG, "分析失敗: " + e.getMessage());
+            runOnUiThread(() -> {
+                if (generation != analysisGeneration) {
+                    return;
                 }
-            }).start();
+                updateResults("分析失敗：" + e.getMessage());
+                updateStatus("分析失敗");
+                announceError("分析失敗，請重試");
+                isAnalyzing = false;
+                
+                // 顯示錯誤彈窗
+                showErrorDialog("分析失敗：" + e.getMessage());
+            });
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * 取消正在進行的分析（在主線程調用）
+     */
+    private void cancelAnalysis() {
+        analysisGeneration++;
+        if (ocrRequest != null) {
+            ocrRequest.cancel();
+            ocrRequest = null;
+        }
+        isAnalyzing = false;
+    }
+
+    private void toggleLiveReading() {
+        if (liveReading) {
+            stopLiveReading();
+            announceInfo("已停止連續朗讀");
         } else {
-            announceInfo("請等待相機準備就緒");
-            updateStatus("相機未就緒");
+            liveTextTracker.reset();
+            nextLiveOcrTime = 0;
+            liveReading = true;
+            announceInfo("開始連續朗讀");
+        }
+    }
+
+    /**
+     * 停止連續朗讀並取消正在進行的識別
+     */
+    private void stopLiveReading() {
+        liveReading = false;
+        OCRHelper.RecognitionRequest request = liveOcrRequest;
+        if (request != null) {
+            request.cancel();
+        }
+    }
+
+    /**
+     * 連續朗讀（相機線程）：到了建議時間且沒有識別在進行時識別當前幀
+     * 拍攝分析期間暫停，讓識別器優先處理拍攝的幀
+     */
+    private void maybeStartLiveRecognition(long now) {
+        if (now < nextLiveOcrTime || isAnalyzing || isBenchmarking) {
+            return;
+        }
+        if (!liveOcrInFlight.compareAndSet(false, true)) {
+            return;
+        }
+        FrameBufferPool.Frame frame = acquireCurrentFrame();
+        if (frame == null) {
+            liveOcrInFlight.set(false);
+            return;
+        }
+        Bitmap bitmap = frame.getBitmap();
+        int frameWidth = bitmap.getWidth();
+        int frameHeight = bitmap.getHeight();
+        // 與拍攝分析相同：一個引用到識別結束，另一個到識別器不再讀取輸入
+        frame.retain();
+        // 不使用結果緩存：穩定判斷需要每次真正重新識別，緩存命中會讓同一個結果被計為多次一致的識別
+        liveOcrRequest = ocrHelper.recognizeTextAsync(bitmap, LIVE_OCR_DEADLINE_MS, false, new OCRHelper.RecognitionCallback() {
+            @Override
+            public void onResult(OCRDocument document) {
+                try {
+                    if (!liveReading) {
+                        return;
+                    }
+                    long finishedAt = System.currentTimeMillis();
+                    if (!document.isComplete()) {
+                        // 超時或失敗的結果缺少部分文字行，計入追蹤會把它們當作已消失
+                        nextLiveOcrTime = finishedAt + liveTextTracker.getSuggestedIntervalMs();
+                        return;
+                    }
+                    List<String> lines = liveTextTracker.update(document, frameWidth, frameHeight, finishedAt);
+                    nextLiveOcrTime = finishedAt + liveTextTracker.getSuggestedIntervalMs();
+                    if (!lines.isEmpty()) {
+                        runOnUiThread(() -> announceLiveText(lines));
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "連續朗讀識別失敗: " + e.getMessage());
+                } finally {
+                    finishLiveRecognition(frame);
+                }
+            }
+
+            @Override
+            public void onCancelled() {
+                finishLiveRecognition(frame);
+            }
+
+            @Override
+            public void onInputReleased() {
+                frame.release();
+            }
+        });
+    }
+
+    private void finishLiveRecognition(FrameBufferPool.Frame frame) {
+        liveOcrRequest = null;
+        frame.release();
+        liveOcrInFlight.set(false);
+    }
+
+    /**
+     * 播報新穩定的文字行（主線程），排在當前語音之後，不打斷
+     */
+    private void announceLiveText(List<String> lines) {
+        if (!liveReading) {
+            return;
+        }
+        for (String line : lines) {
+            ttsManager.speak(line, line, false);
+        }
+    }
+
+    /**
+     * OCR 延遲基準測試：assets/ocr_benchmark 下的本地圖片集加上當前相機幀
+     */
+    private void runOcrBenchmark() {
+        if (isAnalyzing || isBenchmarking) {
+            return;
+        }
+        isBenchmarking = true;
+        announceInfo("開始OCR基準測試");
+        FrameBufferPool.Frame frame = acquireCurrentFrame();
+        
+        try {
+            analysisExecutor.execute(() -> {
+                List<Bitmap> images = PerformanceBenchmark.loadBenchmarkImages(this, "ocr_benchmark", 1280);
+                int localCount = images.size();
+                try {
+                    if (frame != null) {
+                        images.add(frame.getBitmap());
+                    }
+                    // 報告由 PerformanceBenchmark 寫入日誌
+                    PerformanceBenchmark.benchmarkOcr(ocrHelper, images, 3);
+                    PerformanceBenchmark.benchmarkRegionProposal(ocrHelper, images, 3);
+                    PerformanceBenchmark.benchmarkResultCache(ocrHelper, images, 3);
+                    runOnUiThread(() -> announceInfo("OCR基準測試完成，結果已寫入日誌"));
+                } catch (Exception e) {
+                    Log.e(TAG, "OCR基準測試失敗: " + e.getMessage());
+                } finally {
+                    runOnUiThread(() -> isBenchmarking = false);
+                    for (int i = 0; i < localCount; i++) {
+                        images.get(i).recycle();
+                    }
+                    if (frame != null) {
+                        frame.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            isBenchmarking = false;
+            if (frame != null) {
+                frame.release();
+            }
         }
     }
 
-    private String formatCombinedResults(List<OCRHelper.OCRResult> ocrResults, 
+    private String formatCombinedResults(OCRDocument document, 
                                        List<CurrencyDetector.CurrencyResult> currencyResults) {
         StringBuilder sb = new StringBuilder();
         
-        if (!ocrResults.isEmpty()) {
+        if (!document.isEmpty()) {
             sb.append("📄 文字識別結果：\n\n");
-            sb.append(ocrHelper.formatDetailedResults(ocrResults));
+            sb.append(ocrHelper.formatDetailedResults(document));
             sb.append("\n\n");
         }
         
@@ -412,7 +655,7 @@ public class DocumentCurrencyActivity extends BaseAccessibleActivity {
             sb.append(currencyDetector.formatDetailedResults(currencyResults));
         }
         
-        if (ocrResults.isEmpty() && currencyResults.isEmpty()) {
+        if (document.isEmpty() && currencyResults.isEmpty()) {
             sb.append("未識別到任何文字或貨幣");
         }
         
@@ -426,8 +669,8 @@ public class DocumentCurrencyActivity extends BaseAccessibleActivity {
             // 使用語音播報主要結果
             String speechText = "";
             
-            if (lastOCRResults != null && !lastOCRResults.isEmpty()) {
-                speechText += ocrHelper.formatResultsForSpeech(lastOCRResults);
+            if (lastOCRDocument != null && !lastOCRDocument.isEmpty()) {
+                speechText += ocrHelper.formatResultsForSpeech(lastOCRDocument);
             }
             
             if (lastCurrencyResults != null && !lastCurrencyResults.isEmpty()) {
@@ -450,7 +693,7 @@ public class DocumentCurrencyActivity extends BaseAccessibleActivity {
 
     private void clearResults() {
         lastRecognitionResult = "";
-        lastOCRResults = null;
+        lastOCRDocument = null;
         lastCurrencyResults = null;
         announceInfo(getString(R.string.results_cleared));
     }
@@ -529,6 +772,11 @@ public class DocumentCurrencyActivity extends BaseAccessibleActivity {
         if (cameraExecutor != null) {
             cameraExecutor.shutdown();
         }
+        cancelAnalysis();
+        stopLiveReading();
+        if (analysisExecutor != null) {
+            analysisExecutor.shutdown();
+        }
         if (cameraProvider != null) {
             cameraProvider.unbindAll();
         }
@@ -538,11 +786,15 @@ public class DocumentCurrencyActivity extends BaseAccessibleActivity {
         if (currencyDetector != null) {
             currencyDetector.close();
         }
+        // 釋放當前幀並關閉幀池，分析中的幀在分析結束時回收
+        replaceCurrentFrame(null);
+        framePool.close();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
+        stopLiveReading();
         if (cameraProvider != null) {
             cameraProvider.unbindAll();
         }
@@ -712,7 +964,7 @@ public class DocumentCurrencyActivity extends BaseAccessibleActivity {
     /**
      * 顯示識別結果彈窗
      */
-    private void showResultDialog(List<OCRHelper.OCRResult> ocrResults, 
+    private void showResultDialog(OCRDocument document, 
                                  List<CurrencyDetector.CurrencyResult> currencyResults) {
         // 創建對話框
         Dialog dialog = new Dialog(this);
@@ -745,12 +997,12 @@ public class DocumentCurrencyActivity extends BaseAccessibleActivity {
         // 格式化結果文本
         StringBuilder resultBuilder = new StringBuilder();
         
-        if (!ocrResults.isEmpty()) {
+        if (!document.isEmpty()) {
             resultBuilder.append("📄 文字識別結果：\n\n");
-            for (int i = 0; i < ocrResults.size(); i++) {
-                OCRHelper.OCRResult result = ocrResults.get(i);
-                resultBuilder.append(result.getText());
-                if (i < ocrResults.size() - 1) {
+            List<OCRDocument.Block> blocks = document.getBlocks();
+            for (int i = 0; i < blocks.size(); i++) {
+                resultBuilder.append(blocks.get(i).getText());
+                if (i < blocks.size() - 1) {
                     resultBuilder.append("\n\n");
                 }
             }
@@ -2,7 +2,6 @@ package com.example.tonbo_app;
 
 import android.Manifest;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
@@ -10,7 +9,6 @@ import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,6 +24,8 @@ import androidx.core.content.ContextCompat;
 
 import com.google.common.util.concurrent.ListenableFuture;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -49,14 +49,24 @@ public class EnvironmentActivity extends BaseAccessibleActivity {
     private boolean isDetectionActive = false;
 
     // 物體檢測相關變量
-    private ObjectDetectorHelper objectDetectorHelper;
+    private volatile ObjectDetectorHelper objectDetectorHelper;
     private String lastDetectionResult = "";
     private int detectionCount = 0;
-    private Bitmap currentBitmap;
-    private List<ObjectDetectorHelper.DetectionResult> lastDetections;
-    private long lastDetectionTime = 0;
-    private boolean isAnalyzing = false;
-    private int frameSkipCount = 3; // 每3幀檢測一次，平衡性能和精準度
+    // lastDetections 供UI線程讀取，訪問時對其加鎖
+    private final DetectionBatch lastDetections = new DetectionBatch();
+    // 追蹤器在後處理階段更新、在相機線程推算，訪問時對其加鎖
+    private final ObjectTracker objectTracker = new ObjectTracker();
+    // 後處理階段專用
+    private final DetectionBatch trackedDetections = new DetectionBatch();
+    private final DetectionBatch newTracks = new DetectionBatch();
+    // 相機線程專用
+    private final DetectionBatch predictedDetections = new DetectionBatch();
+    private volatile boolean trackerResetRequested = false;
+    // 運動門控：場景沒有變化時跳過檢測器，跳過率記錄到檢測器的性能監控
+    private final MotionGate motionGate = new MotionGate();
+    private volatile long lastDetectionTime = 0;
+    // 按實測延遲、溫度和省電模式決定檢測和顏色分析的時機，中間幀由追蹤器推算
+    private FrameScheduler frameScheduler;
     private long lastStabilityCheck = 0; // 上次穩定性檢查時間
     
     // 語音播報控制
@@ -68,7 +78,28 @@ public class EnvironmentActivity extends BaseAccessibleActivity {
     private ColorLightingAnalyzer.ColorAnalysisResult lastColorAnalysis;
     private ColorLightingAnalyzer.LightingAnalysisResult lastLightingAnalysis;
     private long lastColorAnalysisTime = 0;
-    private int colorAnalysisSkipCount = 45; // 每45幀分析一次顏色和光線，減少頻率
+    // 逐幀更新的光線平滑和轉換事件，相機線程專用
+    private final LightingTracker lightingTracker = new LightingTracker();
+    
+    // 相機幀直接轉換（跳過JPEG往返），只在轉換階段使用
+    private final YuvToTensorConverter frameConverter = new YuvToTensorConverter();
+    
+    // 分階段流水線：取幀（相機線程）→ 轉換 → 推理 → 後處理 → 發佈（UI線程）
+    // 每個階段有自己的線程和最新優先的交接槽，轉換第 N+1 幀時可以同時推理第 N 幀
+    private static final int FRAME_POOL_SIZE = 6; // 三個階段各最多一個處理中、一個等待中
+    private final ArrayBlockingQueue<PipelineFrame> framePool = new ArrayBlockingQueue<>(FRAME_POOL_SIZE);
+    private PipelineStage<PipelineFrame> convertStage;
+    private PipelineStage<PipelineFrame> inferStage;
+    private PipelineStage<PipelineFrame> postProcessStage;
+    private int poolExhaustedCount = 0;
+    // 每個檢測幀建立的亮度積分圖列數，用於標記陰影中的物體
+    private static final int LUMA_GRID_COLUMNS = 64;
+    
+    // 基準測試（可調試版本中長按狀態文字觸發）：相機線程複製下一幀後交給基準測試執行器，
+    // 測試期間暫停檢測流水線，避免與基準測試爭用推理線程
+    private volatile boolean benchmarkRequested = false;
+    private volatile boolean benchmarkRunning = false;
+    private ExecutorService benchmarkExecutor;
     
     // 備用相機實現
     private LegacyCameraHelper legacyCameraHelper;
@@ -107,10 +138,12 @@ public class EnvironmentActivity extends BaseAccessibleActivity {
         
         initViews();
         cameraExecutor = Executors.newSingleThreadExecutor();
+        benchmarkExecutor = Executors.newSingleThreadExecutor();
         
         // 初始化物體檢測器
         objectDetectorHelper = new ObjectDetectorHelper(this);
         colorLightingAnalyzer = new ColorLightingAnalyzer();
+        setupPipeline();
 
         // 檢查相機權限
         Log.d(TAG, "檢查相機權限...");
@@ -194,6 +227,14 @@ public class EnvironmentActivity extends BaseAccessibleActivity {
         
         // 初始化按鈕文字
         updateButtonText();
+        
+        // 可調試版本：長按狀態文字在下一幀執行轉換基準測試
+        if ((getApplicationInfo().flags & android.content.pm.ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            detectionStatus.setOnLongClickListener(v -> {
+                benchmarkRequested = true;
+                return true;
+            });
+        }
 
 
         // 移除了語音播報和清除顯示按鈕，因為已有實時報讀功能
@@ -255,6 +296,7 @@ public class EnvironmentActivity extends BaseAccessibleActivity {
         // 清除之前的檢測結果
         detectionResults.setText(getString(R.string.point_to_objects_instruction));
         lastDetectionResult = "";
+        trackerResetRequested = true;
     }
     
     /**
@@ -473,175 +515,409 @@ public class EnvironmentActivity extends BaseAccessibleActivity {
         }
     }
 
+    /**
+     * 流水線第一階段：取幀（相機分析線程）
+     * 只做門控、統計等輕量工作；需要檢測的幀交給轉換階段，相機幀在轉換完成後才釋放
+     */
     private void analyzeImage(ImageProxy image) {
+        boolean handedOff = false;
         try {
             // 只有在檢測激活時才進行分析
             if (!isDetectionActive) {
-                image.close();
                 return;
             }
             
             detectionCount++;
+            long now = System.currentTimeMillis();
+            
+            // 重新開始檢測時清除舊軌跡
+            if (trackerResetRequested) {
+                trackerResetRequested = false;
+                synchronized (objectTracker) {
+                    objectTracker.reset();
+                }
+                motionGate.reset();
+                lightingTracker.reset();
+            }
             
             // 定期檢查記憶體使用情況
             checkMemoryUsage();
             
             // 定期檢查檢測器穩定性
-            if (System.currentTimeMillis() - lastStabilityCheck > 5000) { // 每5秒檢查一次
+            if (now - lastStabilityCheck > 5000) { // 每5秒檢查一次
                 checkDetectorStability();
-                lastStabilityCheck = System.currentTimeMillis();
+                lastStabilityCheck = now;
             }
             
-            // 跳過幀以提高性能，並且避免同時進行多個檢測
-            if (detectionCount % frameSkipCount == 0 && 
-                objectDetectorHelper != null && 
-                !isAnalyzing) {
-                
-                isAnalyzing = true;
-                
-                // 將ImageProxy轉換為Bitmap（在後台線程）
-                Bitmap bitmap = imageProxyToBitmap(image);
-                
-                if (bitmap != null) {
-                    // 保存當前幀並回收舊的bitmap
-                    if (currentBitmap != null && !currentBitmap.isRecycled()) {
-                        currentBitmap.recycle();
-                    }
-                    currentBitmap = bitmap;
-                    
-                    // 在後台線程執行檢測，避免阻塞相機預覽
-                    cameraExecutor.execute(() -> {
-                        try {
-                            long startTime = System.currentTimeMillis();
-                            
-                            // 執行物體檢測
-                            List<ObjectDetectorHelper.DetectionResult> results = 
-                                    objectDetectorHelper.detect(bitmap);
-                            
-                            long detectionTime = System.currentTimeMillis() - startTime;
-                            lastDetections = results;
-                            lastDetectionTime = detectionTime;
-                            
-                            // 更新UI
-                            if (!results.isEmpty()) {
-                                String resultText = formatDetailedResults(results);
-                                String speechText = objectDetectorHelper.formatResultsForSpeech(results);
-                                
-                                runOnUiThread(() -> {
-                                    Log.d(TAG, "更新UI，檢測結果數量: " + results.size());
-                                    
-                                    // 更新覆蓋層顯示檢測框
-                                    detectionOverlay.updateDetections(results);
-                                    
-                                    // 設置覆蓋層的語言
-                                    detectionOverlay.setCurrentLanguage(currentLanguage);
-                                    
-                                    // 添加測試邊界框（用於調試）
-                                    if (results.isEmpty()) {
-                                        Log.d(TAG, "沒有檢測到物體，添加測試邊界框");
-                                        addTestBoundingBox();
-                                    }
-                                    
-                                    updateDetectionResults(resultText);
-                                    updateDetectionStatus(String.format(
-                                        getString(R.string.detection_status_format), 
-                                        results.size(), 
-                                        (int)detectionTime
-                                    ));
-                                    
-                                    // 實時語音播報檢測結果（優化版本）
-                                    if (!speechText.equals(lastDetectionResult)) {
-                                        lastDetectionResult = speechText;
-                                        Log.d(TAG, "🔊 檢測到新物體，準備播報語音: " + speechText);
-                                        
-                                        // 檢查語音播報間隔，避免過於頻繁
-                                        long currentTime = System.currentTimeMillis();
-                                        if (currentTime - lastSpeechTime >= SPEECH_INTERVAL_MS) {
-                                            lastSpeechTime = currentTime;
-                                            // 立即播報檢測結果
-                                            speakDetectionResultsImmediate(speechText);
-                                        } else {
-                                            Log.d(TAG, "🔊 語音播報間隔太短，跳過此次播報");
-                                        }
-                                    } else {
-                                        Log.d(TAG, "🔊 檢測結果與上次相同，跳過語音播報");
-                                    }
-                                    
-                                    // 定期進行顏色和光線分析
-                                    if (detectionCount % colorAnalysisSkipCount == 0) {
-                                        performColorLightingAnalysis(bitmap);
-                                    }
-                                });
-                            } else {
-                                runOnUiThread(() -> {
-                                    // 清除覆蓋層
-                                    detectionOverlay.clearDetections();
-                                    updateDetectionStatus(getString(R.string.detection_no_objects));
-                                });
-                            }
-                            
-                        } catch (Exception e) {
-                            Log.e(TAG, "檢測失敗: " + e.getMessage());
-                        } finally {
-                            // 回收處理完的bitmap
-                            if (bitmap != null && !bitmap.isRecycled()) {
-                                bitmap.recycle();
-                            }
-                            isAnalyzing = false;
-                        }
-                    });
+            if (benchmarkRequested) {
+                benchmarkRequested = false;
+                startBenchmark(image);
+            }
+            
+            // 光線只在真正轉換時播報（進入昏暗環境、強烈逆光等）
+            LightingTracker.Event lightingEvent = lightingTracker.update(image, now);
+            if (lightingEvent != null) {
+                announceLightingEvent(lightingEvent);
+            }
+            
+            // 由調度器按實測延遲決定是否檢測；下游積壓由各階段的最新優先交接處理
+            boolean runDetection = objectDetectorHelper != null && !benchmarkRunning
+                    && frameScheduler.shouldRunDetection(now);
+            
+            // 場景沒有明顯變化時跳過檢測器，沿用追蹤結果
+            if (runDetection) {
+                runDetection = motionGate.shouldRunInference(image, now);
+            }
+            
+            if (runDetection) {
+                PipelineFrame frame = framePool.poll();
+                if (frame == null) {
+                    // 所有幀都在下游處理中，丟棄本幀
+                    poolExhaustedCount++;
+                    Log.w(TAG, "流水線幀池已空，跳過本幀");
                 } else {
-                    isAnalyzing = false;
+                    frame.image = image;
+                    frame.timestamp = now;
+                    handedOff = true;
+                    convertStage.offer(frame);
+                }
+            } else {
+                // 非檢測幀：追蹤器按勻速模型推算邊界框，覆蓋層保持平滑移動
+                publishPredictedTracks(now);
+                
+                // 檢測流水線空閒的空隙中直接從YUV平面做顏色和光線分析
+                if (frameScheduler.shouldRunColorAnalysis(now)) {
+                    performColorLightingAnalysis(image);
                 }
             }
             
         } catch (Exception e) {
             Log.e(TAG, "圖像分析失敗: " + e.getMessage());
-            isAnalyzing = false;
         } finally {
-            image.close();
+            // 交給轉換階段的幀由轉換階段釋放
+            if (!handedOff) {
+                image.close();
+            }
+        }
+    }
+    
+    /**
+     * 流水線第二階段：YUV 轉換為模型輸入
+     * 轉換完成後立即釋放相機幀，相機準備下一幀的同時推理階段處理本幀
+     */
+    private void convertPipelineFrame(PipelineFrame frame) {
+        try {
+            ObjectDetectorHelper.convertFrame(frameConverter, frame.image, frame.rgbFrame);
+            frame.luma.build(frame.image, LUMA_GRID_COLUMNS);
+        } finally {
+            frame.image.close();
+            frame.image = null;
+        }
+        inferStage.offer(frame);
+    }
+    
+    /**
+     * 流水線第三階段：物體檢測
+     */
+    private void inferPipelineFrame(PipelineFrame frame) {
+        ObjectDetectorHelper helper = objectDetectorHelper;
+        if (helper == null) {
+            recycleFrame(frame);
+            return;
         }
+        long startTime = System.currentTimeMillis();
+        frame.fresh = helper.detect(frame.rgbFrame, frame.detections);
+        frame.inferenceTime = System.currentTimeMillis() - startTime;
+        frameScheduler.recordInference(helper.getLastInferenceMs());
+        postProcessStage.offer(frame);
     }
     
     /**
-     * 執行顏色和光線分析
+     * 流水線第四階段：追蹤器更新和結果格式化，然後發佈到UI線程
      */
-    private void performColorLightingAnalysis(Bitmap bitmap) {
-        if (bitmap == null || bitmap.isRecycled() || colorLightingAnalyzer == null) {
+    private void postProcessPipelineFrame(PipelineFrame frame) {
+        ObjectDetectorHelper helper = objectDetectorHelper;
+        if (helper == null) {
+            recycleFrame(frame);
             return;
         }
         
-        // 在新線程中執行分析
-        cameraExecutor.execute(() -> {
-            try {
-                // 顏色分析
-                ColorLightingAnalyzer.ColorAnalysisResult colorResult = colorLightingAnalyzer.analyzeColors(bitmap);
+        // 本幀檢測結果更新追蹤器，被節流時只推算位置
+        synchronized (objectTracker) {
+            if (frame.fresh) {
+                objectTracker.update(frame.detections, frame.timestamp);
+            } else {
+                objectTracker.predict(frame.timestamp);
+            }
+            objectTracker.getTracks(trackedDetections);
+            objectTracker.collectNewTracks(newTracks);
+        }
+        // 按同一幀的亮度積分圖標記陰影中的物體（每個框四次讀取）
+        ColorLightingAnalyzer.markShadowedObjects(trackedDetections, frame.luma);
+        ColorLightingAnalyzer.markShadowedObjects(newTracks, frame.luma);
+        final int resultCount = trackedDetections.size();
+        final long detectionTime = frame.inferenceTime;
+        synchronized (lastDetections) {
+            lastDetections.copyFrom(trackedDetections);
+        }
+        lastDetectionTime = detectionTime;
+        
+        recycleFrame(frame);
+        
+        // 發佈到UI線程
+        if (resultCount > 0) {
+            String resultText = formatDetailedResults(trackedDetections);
+            String speechText = helper.formatResultsForSpeech(trackedDetections);
+            // 只播報新出現的物體，不重複整個列表
+            String announcement = newTracks.isEmpty()
+                    ? null : helper.formatNewObjectsForSpeech(newTracks);
+            
+            runOnUiThread(() -> {
+                Log.d(TAG, "更新UI，檢測結果數量: " + resultCount);
                 
-                // 光線分析
-                ColorLightingAnalyzer.LightingAnalysisResult lightingResult = colorLightingAnalyzer.analyzeLighting(bitmap);
+                // 更新覆蓋層顯示檢測框（覆蓋層複製到自己的批次）
+                synchronized (lastDetections) {
+                    detectionOverlay.updateDetections(lastDetections);
+                }
                 
-                // 更新UI
-                runOnUiThread(() -> {
-                    lastColorAnalysis = colorResult;
-                    lastLightingAnalysis = lightingResult;
-                    lastColorAnalysisTime = System.currentTimeMillis();
-                    
-                    // 更新檢測結果顯示
-                    updateEnvironmentDescription();
+                // 設置覆蓋層的語言
+                detectionOverlay.setCurrentLanguage(currentLanguage);
+                
+                // 添加測試邊界框（用於調試）
+                if (resultCount == 0) {
+                    Log.d(TAG, "沒有檢測到物體，添加測試邊界框");
+                    addTestBoundingBox();
+                }
+                
+                updateDetectionResults(resultText);
+                updateDetectionStatus(String.format(
+                    getString(R.string.detection_status_format), 
+                    resultCount, 
+                    (int)detectionTime
+                ));
+                
+                // 實時語音播報新出現的物體（軌跡編號穩定，已播報的物體不再重複）
+                if (announcement != null) {
+                    lastDetectionResult = speechText;
+                    Log.d(TAG, "🔊 檢測到新物體，準備播報語音: " + announcement);
                     
-                    Log.d(TAG, String.format("顏色分析: %s + %s (%s), 光線: %s", 
-                        colorResult.getPrimaryColor(),
-                        colorResult.getSecondaryColor(),
-                        colorResult.getDominantTone(),
-                        lightingResult.getLightingCondition()));
-                });
+                    // 檢查語音播報間隔，避免過於頻繁
+                    long currentTime = System.currentTimeMillis();
+                    if (currentTime - lastSpeechTime >= SPEECH_INTERVAL_MS) {
+                        lastSpeechTime = currentTime;
+                        // 立即播報檢測結果
+                        speakDetectionResultsImmediate(announcement);
+                    } else {
+                        Log.d(TAG, "🔊 語音播報間隔太短，跳過此次播報");
+                    }
+                } else {
+                    Log.d(TAG, "🔊 沒有新物體，跳過語音播報");
+                }
+            });
+        } else {
+            runOnUiThread(() -> {
+                // 清除覆蓋層
+                detectionOverlay.clearDetections();
+                updateDetectionStatus(getString(R.string.detection_no_objects));
+            });
+        }
+    }
+    
+    /**
+     * 非檢測幀：推算軌跡位置並更新覆蓋層
+     * 只讀取推算位置，不推進追蹤器狀態：流水線中尚未完成的檢測幀時間戳早於本幀，
+     * 濾波狀態只由後處理階段按幀順序推進
+     */
+    private void publishPredictedTracks(long timestamp) {
+        synchronized (objectTracker) {
+            if (objectTracker.getTrackCount() == 0) {
+                return;
+            }
+            objectTracker.getPredictedTracks(timestamp, predictedDetections);
+        }
+        synchronized (lastDetections) {
+            lastDetections.copyFrom(predictedDetections);
+        }
+        if (!predictedDetections.isEmpty()) {
+            runOnUiThread(() -> {
+                synchronized (lastDetections) {
+                    detectionOverlay.updateDetections(lastDetections);
+                }
+            });
+        }
+    }
+    
+    /**
+     * 建立流水線各階段和幀池
+     */
+    private void setupPipeline() {
+        for (int i = 0; i < FRAME_POOL_SIZE; i++) {
+            framePool.offer(new PipelineFrame());
+        }
+        postProcessStage = new PipelineStage<>("後處理", this::postProcessPipelineFrame, this::recycleFrame);
+        inferStage = new PipelineStage<>("推理", this::inferPipelineFrame, this::recycleFrame);
+        convertStage = new PipelineStage<>("轉換", this::convertPipelineFrame, this::recycleFrame);
+        
+        frameScheduler = new FrameScheduler(this);
+        frameScheduler.addDetectionStage(convertStage);
+        frameScheduler.addInferenceStage(inferStage);
+        frameScheduler.addDetectionStage(postProcessStage);
+        // 檢測頻率由調度器決定，不再使用檢測器內部的固定節流
+        objectDetectorHelper.setMinDetectionInterval(0);
+    }
+    
+    /**
+     * 歸還流水線幀：釋放仍持有的相機幀
+     */
+    private void recycleFrame(PipelineFrame frame) {
+        if (frame.image != null) {
+            frame.image.close();
+            frame.image = null;
+        }
+        frame.detections.clear();
+        framePool.offer(frame);
+    }
+    
+    private void shutdownPipeline() {
+        if (convertStage != null) {
+            convertStage.shutdown();
+            inferStage.shutdown();
+            postProcessStage.shutdown();
+        }
+    }
+    
+    /**
+     * 複製當前幀並在基準測試執行器上執行整套基準測試（相機線程調用）
+     * 相機幀照常關閉，測試期間相機不會停頓
+     */
+    private void startBenchmark(ImageProxy image) {
+        if (benchmarkRunning || benchmarkExecutor == null) {
+            return;
+        }
+        ImageProxy frame = PerformanceBenchmark.copyFrame(image);
+        benchmarkRunning = true;
+        try {
+            benchmarkExecutor.execute(() -> {
+                try {
+                    updateDetectionResults(runBenchmarkSuite(frame));
+                } catch (Exception e) {
+                    Log.e(TAG, "基準測試失敗: " + e.getMessage());
+                } finally {
+                    frame.close();
+                    benchmarkRunning = false;
+                }
+            });
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            // 頁面已銷毀
+            frame.close();
+            benchmarkRunning = false;
+        }
+    }
+
+    /**
+     * 整套基準測試（基準測試執行器線程），返回合併的報告
+     */
+    private String runBenchmarkSuite(ImageProxy frame) {
+        String report = PerformanceBenchmark.benchmarkFrameConversion(frame, AppConstants.INPUT_SIZE, 20);
+        YoloDetector yoloDetector = objectDetectorHelper != null
+                ? objectDetectorHelper.getYoloDetector() : null;
+        if (yoloDetector != null) {
+            report += "\n\n" + PerformanceBenchmark.measureDetectAllocations(yoloDetector, frame, 20);
+        }
+        report += "\n\n" + PerformanceBenchmark.compareEngines(this, frame, 10);
+        report += "\n\n" + PerformanceBenchmark.sweepThreadCounts(
+                this, YoloDetector.getPreferredEngine(this), frame, 10);
+        report += "\n\n" + PerformanceBenchmark.benchmarkNms(8400, 50);
+        report += "\n\n" + PerformanceBenchmark.benchmarkMotionGate(frame, 100);
+        report += "\n\n" + PerformanceBenchmark.benchmarkColorLighting(frame, 50);
+        report += "\n\n" + getPipelineReport();
+        return report;
+    }
+
+    /**
+     * 各階段延遲和隊列深度
+     */
+    private String getPipelineReport() {
+        if (convertStage == null) {
+            return "流水線未啟動";
+        }
+        return "=== 流水線統計 ===\n"
+                + convertStage.getReport() + "\n"
+                + inferStage.getReport() + "\n"
+                + postProcessStage.getReport() + "\n"
+                + frameScheduler.getReport() + "\n"
+                + "幀池空閒: " + framePool.size() + "/" + FRAME_POOL_SIZE + ", 幀池耗盡跳過: " + poolExhaustedCount;
+    }
+    
+    /**
+     * 執行顏色和光線分析（只在有檢測結果時分析）
+     * 直接讀取相機幀的 Y/U/V 平面，不需要Bitmap，在相機線程上耗時不到1毫秒
+     */
+    private void performColorLightingAnalysis(ImageProxy image) {
+        if (colorLightingAnalyzer == null) {
+            return;
+        }
+        synchronized (lastDetections) {
+            if (lastDetections.isEmpty()) {
+                return;
+            }
+        }
+        
+        try {
+            long startTime = System.nanoTime();
+            ColorLightingAnalyzer.AnalysisResult analysis = colorLightingAnalyzer.analyze(image);
+            frameScheduler.recordColorAnalysis((System.nanoTime() - startTime) / 1e6f);
+            ColorLightingAnalyzer.ColorAnalysisResult colorResult = analysis.getColorResult();
+            ColorLightingAnalyzer.LightingAnalysisResult lightingResult = analysis.getLightingResult();
+            // 亮度、對比度和光線條件改用逐幀平滑的值，避免單幀噪聲導致描述跳動
+            lightingTracker.applyTo(lightingResult);
+            
+            // 更新UI
+            runOnUiThread(() -> {
+                lastColorAnalysis = colorResult;
+                lastLightingAnalysis = lightingResult;
+                lastColorAnalysisTime = System.currentTimeMillis();
                 
-            } catch (Exception e) {
-                Log.e(TAG, "顏色光線分析失敗: " + e.getMessage());
+                // 更新檢測結果顯示
+                updateEnvironmentDescription();
+                
+                Log.d(TAG, String.format("顏色分析: %s + %s (%s), 光線: %s", 
+                    colorResult.getPrimaryColor(),
+                    colorResult.getSecondaryColor(),
+                    colorResult.getDominantTone(),
+                    lightingResult.getLightingCondition()));
+            });
+            
+        } catch (Exception e) {
+            Log.e(TAG, "顏色光線分析失敗: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 播報光線轉換事件
+     */
+    private void announceLightingEvent(LightingTracker.Event event) {
+        Log.d(TAG, "光線轉換: " + event.getChineseText());
+        runOnUiThread(() -> {
+            if (ttsManager != null && isDetectionActive) {
+                ttsManager.speak(event.getChineseText(), event.getEnglishText(), false);
             }
         });
     }
     
+    /**
+     * 流水線中傳遞的幀（從幀池重用，穩態下不分配）
+     */
+    private static final class PipelineFrame {
+        final ByteBuffer rgbFrame = ObjectDetectorHelper.allocateFrameBuffer();
+        final DetectionBatch detections = new DetectionBatch();
+        final LumaIntegralImage luma = new LumaIntegralImage();
+        ImageProxy image;
+        long timestamp;
+        boolean fresh;
+        long inferenceTime;
+    }
+    
     /**
      * 更新環境描述
      */
@@ -649,13 +925,15 @@ public class EnvironmentActivity extends BaseAccessibleActivity {
         StringBuilder description = new StringBuilder();
         
         // 物體檢測結果
-        if (lastDetections != null && !lastDetections.isEmpty()) {
-            description.append("檢測到物體: ");
-            for (int i = 0; i < Math.min(lastDetections.size(), 3); i++) {
-                if (i > 0) description.append(", ");
-                description.append(lastDetections.get(i).getLabelZh());
+        synchronized (lastDetections) {
+            if (!lastDetections.isEmpty()) {
+                description.append("檢測到物體: ");
+                for (int i = 0; i < Math.min(lastDetections.size(), 3); i++) {
+                    if (i > 0) description.append(", ");
+                    description.append(lastDetections.getLabelZh(i));
+                }
+                description.append("\n");
             }
-            description.append("\n");
         }
         
         // 顏色分析結果
@@ -679,6 +957,9 @@ public class EnvironmentActivity extends BaseAccessibleActivity {
             if (lastLightingAnalysis.getLightDirection() != null) {
                 description.append(", ").append(lastLightingAnalysis.getLightDirection());
             }
+            if (lastLightingAnalysis.hasGlare()) {
+                description.append(", 有眩光");
+            }
         }
         
         String finalDescription = description.toString().trim();
@@ -690,7 +971,7 @@ public class EnvironmentActivity extends BaseAccessibleActivity {
     /**
      * 格式化詳細檢測結果
      */
-    private String formatDetailedResults(List<ObjectDetectorHelper.DetectionResult> results) {
+    private String formatDetailedResults(DetectionBatch results) {
         if (results.isEmpty()) {
             return getString(R.string.no_objects_detected);
         }
@@ -698,12 +979,12 @@ public class EnvironmentActivity extends BaseAccessibleActivity {
         StringBuilder sb = new StringBuilder();
         
         for (int i = 0; i < Math.min(results.size(), 2); i++) {
-            ObjectDetectorHelper.DetectionResult result = results.get(i);
-            String label = getObjectLabel(result);
-            sb.append(String.format("%d. %s (%.0f%%)\n", 
+            String label = getObjectLabel(results.getLabel(i), results.getLabelZh(i));
+            sb.append(String.format("%d. %s (%.0f%%)%s\n", 
                 i + 1, 
                 label, 
-                result.getConfidence() * 100
+                results.getScore(i) * 100,
+                results.isInShadow(i) ? ("english".equals(currentLanguage) ? " in shadow" : " 陰影中") : ""
             ));
         }
         
@@ -714,62 +995,19 @@ public class EnvironmentActivity extends BaseAccessibleActivity {
         return sb.toString();
     }
     
-    private String getObjectLabel(ObjectDetectorHelper.DetectionResult result) {
+    private String getObjectLabel(String label, String labelZh) {
         // 根據當前語言選擇對應的標籤
         switch (currentLanguage) {
             case "english":
-                return result.getLabel() != null ? result.getLabel() : result.getLabelZh();
+                return label != null ? label : labelZh;
             case "mandarin":
-                return result.getLabelZh() != null ? result.getLabelZh() : result.getLabel();
+                return labelZh != null ? labelZh : label;
             case "cantonese":
             default:
-                return result.getLabelZh() != null ? result.getLabelZh() : result.getLabel();
+                return labelZh != null ? labelZh : label;
         }
     }
     
-    private Bitmap imageProxyToBitmap(ImageProxy image) {
-        java.io.ByteArrayOutputStream out = null;
-        try {
-            ImageProxy.PlaneProxy[] planes = image.getPlanes();
-            ByteBuffer yBuffer = planes[0].getBuffer();
-            ByteBuffer uBuffer = planes[1].getBuffer();
-            ByteBuffer vBuffer = planes[2].getBuffer();
-
-            int ySize = yBuffer.remaining();
-            int uSize = uBuffer.remaining();
-            int vSize = vBuffer.remaining();
-
-            byte[] nv21 = new byte[ySize + uSize + vSize];
-            yBuffer.get(nv21, 0, ySize);
-            vBuffer.get(nv21, ySize, vSize);
-            uBuffer.get(nv21, ySize + vSize, uSize);
-
-            android.graphics.YuvImage yuvImage = new android.graphics.YuvImage(
-                    nv21, android.graphics.ImageFormat.NV21, 
-                    image.getWidth(), image.getHeight(), null);
-            
-            out = new java.io.ByteArrayOutputStream();
-            yuvImage.compressToJpeg(
-                    new android.graphics.Rect(0, 0, image.getWidth(), image.getHeight()), 
-                    85, out); // 降低JPEG質量以節省記憶體
-            byte[] imageBytes = out.toByteArray();
-            return android.graphics.BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-        } catch (Exception e) {
-            Log.e(TAG, "圖像轉換失敗: " + e.getMessage());
-            return null;
-        } finally {
-            // 確保ByteArrayOutputStream被正確關閉
-            if (out != null) {
-                try {
-                    out.close();
-                } catch (Exception e) {
-                    Log.w(TAG, "關閉ByteArrayOutputStream失敗: " + e.getMessage());
-                }
-            }
-        }
-    }
-
-
     private void speakDetectionResults() {
         StringBuilder fullDescription = new StringBuilder();
         
@@ -1007,12 +1245,6 @@ public class EnvironmentActivity extends BaseAccessibleActivity {
             if (usedMemory > MEMORY_WARNING_THRESHOLD) {
                 Log.w(TAG, "記憶體使用過高，觸發垃圾回收");
                 System.gc();
-                
-                // 可以選擇性地清理一些資源
-                if (currentBitmap != null && !currentBitmap.isRecycled()) {
-                    currentBitmap.recycle();
-                    currentBitmap = null;
-                }
             }
         }
     }
@@ -1025,7 +1257,6 @@ public class EnvironmentActivity extends BaseAccessibleActivity {
         
         // 停止檢測
         isDetecting = false;
-        isAnalyzing = false;
         
         // 關閉相機執行器
         if (cameraExecutor != null) {
@@ -1041,6 +1272,15 @@ public class EnvironmentActivity extends BaseAccessibleActivity {
             cameraExecutor = null;
         }
         
+        // 不再接受新的基準測試；正在執行的測試不可中斷，完成後線程結束
+        if (benchmarkExecutor != null) {
+            benchmarkExecutor.shutdown();
+            benchmarkExecutor = null;
+        }
+        
+        // 關閉流水線，等待中的幀歸還幀池
+        shutdownPipeline();
+        
         // 解除相機綁定
         if (cameraProvider != null) {
             try {
@@ -1057,14 +1297,10 @@ public class EnvironmentActivity extends BaseAccessibleActivity {
             objectDetectorHelper = null;
         }
         
-        // 回收bitmap
-        if (currentBitmap != null && !currentBitmap.isRecycled()) {
-            currentBitmap.recycle();
-            currentBitmap = null;
-        }
-        
         // 清理其他引用
-        lastDetections = null;
+        synchronized (lastDetections) {
+            lastDetections.clear();
+        }
         lastDetectionResult = "";
         
         // 清理顏色光線分析器
@@ -1093,12 +1329,6 @@ public class EnvironmentActivity extends BaseAccessibleActivity {
                 Log.e(TAG, "暫停相機失敗: " + e.getMessage());
             }
         }
-        
-        // 回收當前bitmap
-        if (currentBitmap != null && !currentBitmap.isRecycled()) {
-            currentBitmap.recycle();
-            currentBitmap = null;
-        }
     }
 
     @Override
@@ -1130,6 +1360,10 @@ public class EnvironmentActivity extends BaseAccessibleActivity {
             
             Log.d(TAG, "檢測器穩定性檢查: " + (isHealthy ? "健康" : "異常"));
             Log.d(TAG, stats);
+            Log.d(TAG, String.format("運動門控跳過率: %.1f%%, 閾值: 平均 %.1f / 單格 %.1f, 噪聲: %.1f",
+                    motionGate.getSkipRatio(), motionGate.getThreshold(),
+                    motionGate.getCellThreshold(), motionGate.getNoiseLevel()));
+            Log.d(TAG, getPipelineReport());
             
             if (!isHealthy) {
                 Log.w(TAG, "檢測器狀態異常，嘗試重置");
@@ -0,0 +1,221 @@
+package com.example.tonbo_app;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import androidx.camera.core.ImageProxy;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 引用計數的幀緩衝池
+ * 固定數量的幀（ARGB 像素數組 + 可變 Bitmap）循環使用：obtain 取得的幀引用數為 1，
+ * 每個使用者（檢測、顏色分析、OCR 等）跨線程傳遞前 retain，用完 release，
+ * 最後一個使用者釋放時幀才回到池中，不會出現回收後仍被使用的 Bitmap
+ * 尺寸不變時穩態下不分配；池已空時 obtain 返回 null，調用方應跳過該幀
+ * 線程安全
+ */
+public class FrameBufferPool {
+    private static final String TAG = "FrameBufferPool";
+
+    private final int capacity;
+    private final ArrayBlockingQueue<Frame> freeFrames;
+    private final AtomicInteger exhaustedCount = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    public FrameBufferPool(int capacity) {
+        this.capacity = capacity;
+        this.freeFrames = new ArrayBlockingQueue<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            freeFrames.offer(new Frame(this));
+        }
+    }
+
+    /**
+     * 從相機幀轉換得到一個幀（無JPEG往返）
+     * @param maxWidth 輸出最大寬度，<= 0 時保持原始尺寸
+     * @return 引用數為 1 的幀，池已空或已關閉時返回 null
+     */
+    public Frame obtain(ImageProxy image, YuvToTensorConverter converter, int maxWidth) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (maxWidth > 0 && width > maxWidth) {
+            height = Math.max(1, height * maxWidth / width);
+            width = maxWidth;
+        }
+        Frame frame = take(width, height);
+        if (frame == null) {
+            return null;
+        }
+        try {
+            converter.convertToArgb(image, frame.pixels, width, height);
+            frame.bitmap.setPixels(frame.pixels, 0, width, 0, 0, width, height);
+        } catch (RuntimeException e) {
+            frame.release();
+            throw e;
+        }
+        return frame;
+    }
+
+    /**
+     * 複製一張 Bitmap 的內容得到一個幀
+     * @return 引用數為 1 的幀，池已空或已關閉時返回 null
+     */
+    public Frame obtain(Bitmap source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        Frame frame = take(width, height);
+        if (frame == null) {
+            return null;
+        }
+        source.getPixels(frame.pixels, 0, width, 0, 0, width, height);
+        frame.bitmap.setPixels(frame.pixels, 0, width, 0, 0, width, height);
+        return frame;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 當前空閒的幀數量
+     */
+    public int getAvailableCount() {
+        return freeFrames.size();
+    }
+
+    /**
+     * 池已空導致 obtain 失敗的次數
+     */
+    public int getExhaustedCount() {
+        return exhaustedCount.get();
+    }
+
+    /**
+     * 關閉幀池：回收空閒幀的 Bitmap，仍在使用的幀在最後一次 release 時回收
+     */
+    public void close() {
+        closed = true;
+        Frame frame;
+        while ((frame = freeFrames.poll()) != null) {
+            frame.recycleBitmap();
+        }
+        Log.d(TAG, "幀池已關閉");
+    }
+
+    private Frame take(int width, int height) {
+        if (closed) {
+            return null;
+        }
+        Frame frame = freeFrames.poll();
+        if (frame == null) {
+            exhaustedCount.incrementAndGet();
+            return null;
+        }
+        frame.refCount.set(1);
+        try {
+            frame.ensureSize(width, height);
+        } catch (OutOfMemoryError e) {
+            Log.e(TAG, "分配幀緩衝失敗: " + e.getMessage());
+            frame.release();
+            return null;
+        }
+        return frame;
+    }
+
+    private void recycle(Frame frame) {
+        if (closed || !freeFrames.offer(frame)) {
+            frame.recycleBitmap();
+            return;
+        }
+        // 歸還與關閉並發時，確保不留下未回收的 Bitmap
+        if (closed && freeFrames.remove(frame)) {
+            frame.recycleBitmap();
+        }
+    }
+
+    /**
+     * 池中的一個幀
+     * 像素數組和 Bitmap 內容相同，分析器可以直接讀取像素數組
+     */
+    public static final class Frame {
+        private final FrameBufferPool pool;
+        private final AtomicInteger refCount = new AtomicInteger();
+        private Bitmap bitmap;
+        private int[] pixels = new int[0];
+        private int width;
+        private int height;
+
+        private Frame(FrameBufferPool pool) {
+            this.pool = pool;
+        }
+
+        /**
+         * 增加一個引用，交給其他線程使用前調用
+         * @return 本幀，方便鏈式調用
+         */
+        public Frame retain() {
+            int count;
+            do {
+                count = refCount.get();
+                if (count <= 0) {
+                    throw new IllegalStateException("幀已歸還，不能再次引用");
+                }
+            } while (!refCount.compareAndSet(count, count + 1));
+            return this;
+        }
+
+        /**
+         * 釋放一個引用，最後一個引用釋放時幀回到池中
+         */
+        public void release() {
+            int count = refCount.decrementAndGet();
+            if (count == 0) {
+                pool.recycle(this);
+            } else if (count < 0) {
+                refCount.incrementAndGet();
+                Log.w(TAG, "幀重複釋放");
+            }
+        }
+
+        public Bitmap getBitmap() {
+            return bitmap;
+        }
+
+        /**
+         * ARGB 像素，有效長度為 width * height
+         */
+        public int[] getPixels() {
+            return pixels;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        private void ensureSize(int newWidth, int newHeight) {
+            if (bitmap != null && !bitmap.isRecycled() && width == newWidth && height == newHeight) {
+                return;
+            }
+            recycleBitmap();
+            if (pixels.length < newWidth * newHeight) {
+                pixels = new int[newWidth * newHeight];
+            }
+            bitmap = Bitmap.createBitmap(newWidth, newHeight, Bitmap.Config.ARGB_8888);
+            width = newWidth;
+            height = newHeight;
+        }
+
+        private void recycleBitmap() {
+            if (bitmap != null && !bitmap.isRecycled()) {
+                bitmap.recycle();
+            }
+            bitmap = null;
+        }
+    }
+}
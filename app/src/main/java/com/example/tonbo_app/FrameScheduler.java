@@ -0,0 +1,209 @@
+package com.example.tonbo_app;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.PowerManager;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按實測延遲調整的幀調度器
+ * 檢測間隔 = 檢測流水線各階段平均處理時間之和 / 目標佔空比，快的設備檢測更頻繁，慢的設備自動放慢；
+ * 推理階段按單次推理的耗時計算（由推理階段上報），不含檢測器內部重試，空場景不會被放慢；
+ * 顏色和光線分析只安排在檢測流水線空閒、且距下次檢測足夠遠的空隙中
+ * 設備過熱（PowerManager.getCurrentThermalStatus，Android 10+）或省電模式時按比例降低頻率
+ * 應在相機分析線程調用
+ */
+public class FrameScheduler {
+    private static final String TAG = "FrameScheduler";
+
+    // 目標佔空比：檢測流水線的處理時間佔檢測間隔的比例
+    private static final float TARGET_DUTY_CYCLE = 0.5f;
+    private static final long MIN_DETECTION_INTERVAL_MS = 33;
+    private static final long MAX_DETECTION_INTERVAL_MS = 2000;
+    // 還沒有延遲數據時的初始檢測間隔
+    private static final long INITIAL_DETECTION_INTERVAL_MS = 200;
+    // 顏色和光線變化緩慢，正常情況下的最短分析間隔
+    private static final long COLOR_ANALYSIS_INTERVAL_MS = 1500;
+    private static final long POWER_CHECK_INTERVAL_MS = 5000;
+    // 省電模式下的頻率係數
+    private static final float POWER_SAVE_FACTOR = 0.5f;
+    // 顏色分析耗時的平滑係數
+    private static final float SMOOTHING = 0.2f;
+
+    private final PowerManager powerManager;
+    // 所有檢測階段（判斷流水線是否空閒）和按平均處理時間計入延遲的階段
+    private final List<PipelineStage<?>> detectionStages = new ArrayList<>();
+    private final List<PipelineStage<?>> timedStages = new ArrayList<>();
+    private float colorAnalysisMs = 0f;
+    // 單次推理的平滑耗時（推理線程寫入）
+    private volatile float inferenceMs = 0f;
+
+    private long lastDetectionTime = 0;
+    private long lastColorAnalysisTime = 0;
+    private long lastPowerCheck = 0;
+    private volatile int thermalStatus = 0;
+    private volatile boolean powerSaveMode = false;
+    private volatile float throttleFactor = 1.0f;
+
+    public FrameScheduler(Context context) {
+        this.powerManager = (PowerManager) context.getApplicationContext()
+                .getSystemService(Context.POWER_SERVICE);
+    }
+
+    /**
+     * 登記檢測流水線的階段，其平均處理時間之和決定檢測間隔
+     */
+    public void addDetectionStage(PipelineStage<?> stage) {
+        detectionStages.add(stage);
+        timedStages.add(stage);
+    }
+
+    /**
+     * 登記推理階段：只用於判斷流水線是否空閒，延遲由 recordInference 上報
+     * 階段的處理時間包含檢測器的重試，不能代表一次推理的成本
+     */
+    public void addInferenceStage(PipelineStage<?> stage) {
+        detectionStages.add(stage);
+    }
+
+    /**
+     * 記錄一次推理（單次嘗試）的耗時，應在推理線程調用
+     */
+    public void recordInference(float elapsedMs) {
+        if (elapsedMs <= 0f) {
+            return;
+        }
+        float current = inferenceMs;
+        inferenceMs = current == 0f ? elapsedMs : current + SMOOTHING * (elapsedMs - current);
+    }
+
+    /**
+     * 記錄一次顏色分析的耗時，平均耗時決定所需空隙的長度
+     */
+    public void recordColorAnalysis(float elapsedMs) {
+        colorAnalysisMs = colorAnalysisMs == 0f
+                ? elapsedMs : colorAnalysisMs + SMOOTHING * (elapsedMs - colorAnalysisMs);
+    }
+
+    /**
+     * 本幀是否應該檢測，返回 true 時記為一次檢測
+     */
+    public boolean shouldRunDetection(long now) {
+        refreshPowerState(now);
+        if (now - lastDetectionTime < getDetectionIntervalMs()) {
+            return false;
+        }
+        lastDetectionTime = now;
+        return true;
+    }
+
+    /**
+     * 本幀是否應該做顏色和光線分析
+     * 只在檢測流水線空閒、距上次分析足夠久，且分析能在下次檢測前完成時返回 true
+     */
+    public boolean shouldRunColorAnalysis(long now) {
+        if (now - lastColorAnalysisTime < COLOR_ANALYSIS_INTERVAL_MS / throttleFactor) {
+            return false;
+        }
+        for (int i = 0; i < detectionStages.size(); i++) {
+            if (detectionStages.get(i).getQueueDepth() > 0) {
+                return false;
+            }
+        }
+        long untilNextDetection = lastDetectionTime + getDetectionIntervalMs() - now;
+        if (untilNextDetection < colorAnalysisMs) {
+            return false;
+        }
+        lastColorAnalysisTime = now;
+        return true;
+    }
+
+    /**
+     * 當前檢測間隔（毫秒）
+     */
+    public long getDetectionIntervalMs() {
+        float busyMs = getPipelineLatencyMs();
+        if (busyMs <= 0f) {
+            return INITIAL_DETECTION_INTERVAL_MS;
+        }
+        long interval = (long) (busyMs / (TARGET_DUTY_CYCLE * throttleFactor));
+        return Math.max(MIN_DETECTION_INTERVAL_MS, Math.min(MAX_DETECTION_INTERVAL_MS, interval));
+    }
+
+    /**
+     * 檢測流水線各階段平均處理時間與單次推理耗時之和（毫秒）
+     */
+    public float getPipelineLatencyMs() {
+        float total = inferenceMs;
+        for (int i = 0; i < timedStages.size(); i++) {
+            total += timedStages.get(i).getAverageProcessMs();
+        }
+        return total;
+    }
+
+    /**
+     * 頻率係數：1 為正常，過熱或省電時小於 1
+     */
+    public float getThrottleFactor() {
+        return throttleFactor;
+    }
+
+    /**
+     * 調度統計摘要
+     */
+    public String getReport() {
+        return String.format("調度: 檢測間隔 %dms, 流水線延遲 %.1fms, 顏色分析 %.2fms, 頻率係數 %.2f, 溫度狀態 %d, 省電模式 %s",
+                getDetectionIntervalMs(), getPipelineLatencyMs(), colorAnalysisMs, throttleFactor, thermalStatus,
+                powerSaveMode ? "開" : "關");
+    }
+
+    /**
+     * 定期讀取溫度狀態和省電模式，更新頻率係數
+     */
+    private void refreshPowerState(long now) {
+        if (powerManager == null || now - lastPowerCheck < POWER_CHECK_INTERVAL_MS) {
+            return;
+        }
+        lastPowerCheck = now;
+
+        try {
+            int status = 0;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                status = powerManager.getCurrentThermalStatus();
+            }
+            boolean powerSave = powerManager.isPowerSaveMode();
+
+            float factor = thermalFactor(status);
+            if (powerSave) {
+                factor *= POWER_SAVE_FACTOR;
+            }
+            if (factor != throttleFactor) {
+                Log.i(TAG, String.format("頻率係數 %.2f -> %.2f（溫度狀態 %d, 省電模式 %s）",
+                        throttleFactor, factor, status, powerSave));
+            }
+            thermalStatus = status;
+            powerSaveMode = powerSave;
+            throttleFactor = factor;
+        } catch (Exception e) {
+            Log.e(TAG, "讀取電源狀態失敗: " + e.getMessage());
+        }
+    }
+
+    private static float thermalFactor(int status) {
+        switch (status) {
+            case PowerManager.THERMAL_STATUS_NONE:
+            case PowerManager.THERMAL_STATUS_LIGHT:
+                return 1.0f;
+            case PowerManager.THERMAL_STATUS_MODERATE:
+                return 0.5f;
+            case PowerManager.THERMAL_STATUS_SEVERE:
+                return 0.25f;
+            default:
+                // 嚴重過熱以上：只保留最低頻率
+                return 0.1f;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.tonbo_app;
+
+import android.util.Log;
+
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.task.core.BaseOptions;
+import org.tensorflow.lite.task.vision.detector.ObjectDetector;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * 推理選項配置
+ * 統一 TensorFlow Lite Interpreter 和 Task API 的線程數和 XNNPACK 設置，
+ * 線程數默認取大核數量（小核會拖慢多線程推理的同步）
+ */
+public final class InferenceOptions {
+    private static final String TAG = "InferenceOptions";
+
+    private static final int MAX_THREADS = 4;
+    private static final String CPU_DIR = "/sys/devices/system/cpu/";
+
+    private static int recommendedThreads = -1;
+
+    private InferenceOptions() {}
+
+    /**
+     * 獲取推薦的推理線程數（大核數量，限制在 1-4）
+     */
+    public static synchronized int getRecommendedThreadCount() {
+        if (recommendedThreads < 0) {
+            recommendedThreads = Math.max(1, Math.min(MAX_THREADS, countBigCores()));
+            Log.d(TAG, "推薦推理線程數: " + recommendedThreads);
+        }
+        return recommendedThreads;
+    }
+
+    /**
+     * 創建 Interpreter 選項（推薦線程數）
+     */
+    public static Interpreter.Options createInterpreterOptions() {
+        return createInterpreterOptions(getRecommendedThreadCount());
+    }
+
+    /**
+     * 創建 Interpreter 選項
+     * @param numThreads 推理線程數
+     */
+    public static Interpreter.Options createInterpreterOptions(int numThreads) {
+        return new Interpreter.Options()
+                .setNumThreads(numThreads)
+                .setUseXNNPACK(true);
+    }
+
+    /**
+     * 創建 Task API 基礎選項
+     * Task API 內部默認使用 XNNPACK，這裡只需要統一線程數
+     */
+    public static BaseOptions createBaseOptions(int numThreads) {
+        return BaseOptions.builder()
+                .setNumThreads(numThreads)
+                .build();
+    }
+
+    /**
+     * 創建 SSD 物體檢測器選項
+     */
+    public static ObjectDetector.ObjectDetectorOptions createObjectDetectorOptions() {
+        return ObjectDetector.ObjectDetectorOptions.builder()
+                .setBaseOptions(createBaseOptions(getRecommendedThreadCount()))
+                .setScoreThreshold(AppConstants.SCORE_THRESHOLD)
+                .setMaxResults(AppConstants.MAX_RESULTS)
+                .build();
+    }
+
+    /**
+     * 統計大核數量：最高頻率低於全局最高頻率 80% 的核心視為小核
+     * 無法讀取頻率時退回到可用核心數的一半
+     */
+    private static int countBigCores() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long[] maxFreqs = new long[cores];
+        long highest = 0;
+        for (int i = 0; i < cores; i++) {
+            maxFreqs[i] = readMaxFrequency(i);
+            highest = Math.max(highest, maxFreqs[i]);
+        }
+        if (highest <= 0) {
+            return Math.max(1, cores / 2);
+        }
+
+        int bigCores = 0;
+        for (long freq : maxFreqs) {
+            if (freq >= highest * 8 / 10) {
+                bigCores++;
+            }
+        }
+        return bigCores;
+    }
+
+    private static long readMaxFrequency(int cpu) {
+        File file = new File(CPU_DIR + "cpu" + cpu + "/cpufreq/cpuinfo_max_freq");
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            return line != null ? Long.parseLong(line.trim()) : 0;
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+}
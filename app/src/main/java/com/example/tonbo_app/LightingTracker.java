@@ -0,0 +1,239 @@
+package com.example.tonbo_app;
+
+import android.util.Log;
+
+import androidx.camera.core.ImageProxy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 增量光線追蹤器
+ * 每幀在 Y 平面上讀取 16x16 個亮度採樣，更新亮度、對比度和中心/邊緣亮度的指數移動平均，
+ * 亮度等級在 ColorLightingAnalyzer 的高低閾值兩側加滯後區間判斷，
+ * 只在等級或逆光狀態真正轉換時返回一個事件（例如「進入昏暗環境」「前方強烈逆光」），
+ * 不會因為單幀噪聲在「明亮」和「適中」之間反覆播報
+ * 每幀只讀 256 個字節，可以在相機線程逐幀調用；非線程安全
+ */
+public class LightingTracker {
+    private static final String TAG = "LightingTracker";
+
+    // 每幀採樣網格（GRID x GRID），中心區域為中間一半
+    private static final int GRID = 16;
+    private static final int CENTER_START = GRID / 4;
+    private static final int CENTER_END = GRID - GRID / 4;
+    // 指數移動平均的時間常數：約 0.5 秒內的變化被平滑掉
+    private static final float TIME_CONSTANT_MS = 500f;
+    // 亮度等級閾值兩側的滯後區間
+    private static final float BRIGHTNESS_HYSTERESIS = 10f;
+    // 逆光：邊緣明亮且比中心亮出一定幅度；進入和退出使用不同的差值
+    private static final float BACKLIGHT_ENTER_DIFFERENCE = 60f;
+    private static final float BACKLIGHT_EXIT_DIFFERENCE = 35f;
+
+    /**
+     * 光線轉換事件
+     */
+    public enum Event {
+        ENTERED_DARK("進入昏暗環境", "Entered a dark area"),
+        LEFT_DARK("光線已恢復正常", "Lighting is back to normal"),
+        ENTERED_BRIGHT("進入強光環境", "Entered a very bright area"),
+        LEFT_BRIGHT("強光已減弱", "Bright light has faded"),
+        BACKLIGHT_STARTED("前方強烈逆光", "Strong backlight ahead"),
+        BACKLIGHT_ENDED("逆光已消失", "Backlight has cleared");
+
+        private final String chineseText;
+        private final String englishText;
+
+        Event(String chineseText, String englishText) {
+            this.chineseText = chineseText;
+            this.englishText = englishText;
+        }
+
+        public String getChineseText() { return chineseText; }
+        public String getEnglishText() { return englishText; }
+    }
+
+    private boolean initialized = false;
+    private long lastTimestampMs = 0;
+    private float brightness = 0f;
+    private float contrast = 0f;
+    private float centerBrightness = 0f;
+    private float borderBrightness = 0f;
+    private int brightnessLevel = ColorLightingAnalyzer.BRIGHTNESS_NORMAL;
+    private boolean backlit = false;
+
+    /**
+     * 用一個相機幀更新（只讀 Y 平面）
+     * @return 本幀發生的轉換事件，沒有轉換時返回 null
+     */
+    public Event update(ImageProxy image, long timestampMs) {
+        ImageProxy.PlaneProxy plane = image.getPlanes()[0];
+        return update(plane.getBuffer(), plane.getRowStride(), plane.getPixelStride(),
+                image.getWidth(), image.getHeight(), timestampMs);
+    }
+
+    /**
+     * 用一個 Y 平面更新
+     * 對比度取採樣亮度標準差的 4 倍，常見場景下與 ColorLightingAnalyzer 的 2%-98% 分位差相當
+     * @return 本幀發生的轉換事件，沒有轉換時返回 null
+     */
+    public Event update(ByteBuffer yBuffer, int rowStride, int pixelStride,
+                        int width, int height, long timestampMs) {
+        if (yBuffer == null || width <= 0 || height <= 0) {
+            return null;
+        }
+        long sum = 0;
+        long sumSquares = 0;
+        int centerSum = 0;
+        int centerCount = 0;
+        for (int row = 0; row < GRID; row++) {
+            int offset = ((2 * row + 1) * height / (2 * GRID)) * rowStride;
+            boolean centerRow = row >= CENTER_START && row < CENTER_END;
+            for (int column = 0; column < GRID; column++) {
+                int x = (2 * column + 1) * width / (2 * GRID);
+                int luma = yBuffer.get(offset + x * pixelStride) & 0xFF;
+                sum += luma;
+                sumSquares += luma * luma;
+                if (centerRow && column >= CENTER_START && column < CENTER_END) {
+                    centerSum += luma;
+                    centerCount++;
+                }
+            }
+        }
+        int count = GRID * GRID;
+        float mean = (float) sum / count;
+        float variance = Math.max(0f, (float) sumSquares / count - mean * mean);
+        return update(mean, 4f * (float) Math.sqrt(variance),
+                (float) centerSum / centerCount,
+                (float) (sum - centerSum) / (count - centerCount), timestampMs);
+    }
+
+    /**
+     * 用一幀的亮度統計更新
+     * @return 本幀發生的轉換事件，沒有轉換時返回 null；等級和逆光同時轉換時，逆光事件在下一幀返回
+     */
+    public Event update(float frameBrightness, float frameContrast,
+                        float frameCenterBrightness, float frameBorderBrightness, long timestampMs) {
+        if (!initialized) {
+            // 第一幀直接作為初始狀態，不產生事件
+            initialized = true;
+            lastTimestampMs = timestampMs;
+            brightness = frameBrightness;
+            contrast = frameContrast;
+            centerBrightness = frameCenterBrightness;
+            borderBrightness = frameBorderBrightness;
+            brightnessLevel = ColorLightingAnalyzer.brightnessLevelOf(brightness);
+            backlit = borderBrightness > ColorLightingAnalyzer.BRIGHTNESS_THRESHOLD_HIGH
+                    && borderBrightness - centerBrightness > BACKLIGHT_ENTER_DIFFERENCE;
+            return null;
+        }
+        if (timestampMs <= lastTimestampMs) {
+            return null;
+        }
+
+        // 按實際幀間隔計算平滑係數，幀率變化時時間常數不變
+        float alpha = 1f - (float) Math.exp(-(timestampMs - lastTimestampMs) / TIME_CONSTANT_MS);
+        lastTimestampMs = timestampMs;
+        brightness += alpha * (frameBrightness - brightness);
+        contrast += alpha * (frameContrast - contrast);
+        centerBrightness += alpha * (frameCenterBrightness - centerBrightness);
+        borderBrightness += alpha * (frameBorderBrightness - borderBrightness);
+
+        int level = nextBrightnessLevel();
+        if (level != brightnessLevel) {
+            Event event = levelEvent(brightnessLevel, level);
+            brightnessLevel = level;
+            Log.d(TAG, String.format("亮度等級轉換: %s (平均亮度 %.1f)", event, brightness));
+            return event;
+        }
+
+        boolean nextBacklit = backlit
+                ? borderBrightness - centerBrightness > BACKLIGHT_EXIT_DIFFERENCE
+                        && borderBrightness > ColorLightingAnalyzer.BRIGHTNESS_THRESHOLD_HIGH - BRIGHTNESS_HYSTERESIS
+                : borderBrightness - centerBrightness > BACKLIGHT_ENTER_DIFFERENCE
+                        && borderBrightness > ColorLightingAnalyzer.BRIGHTNESS_THRESHOLD_HIGH + BRIGHTNESS_HYSTERESIS;
+        if (nextBacklit != backlit) {
+            backlit = nextBacklit;
+            Event event = backlit ? Event.BACKLIGHT_STARTED : Event.BACKLIGHT_ENDED;
+            Log.d(TAG, String.format("逆光狀態轉換: %s (中心 %.1f, 邊緣 %.1f)", event, centerBrightness, borderBrightness));
+            return event;
+        }
+        return null;
+    }
+
+    /**
+     * 帶滯後的亮度等級：離開當前等級需要越過閾值加滯後區間
+     */
+    private int nextBrightnessLevel() {
+        float low = ColorLightingAnalyzer.BRIGHTNESS_THRESHOLD_LOW;
+        float high = ColorLightingAnalyzer.BRIGHTNESS_THRESHOLD_HIGH;
+        switch (brightnessLevel) {
+            case ColorLightingAnalyzer.BRIGHTNESS_DARK:
+                if (brightness > high + BRIGHTNESS_HYSTERESIS) {
+                    return ColorLightingAnalyzer.BRIGHTNESS_BRIGHT;
+                }
+                return brightness > low + BRIGHTNESS_HYSTERESIS
+                        ? ColorLightingAnalyzer.BRIGHTNESS_NORMAL : ColorLightingAnalyzer.BRIGHTNESS_DARK;
+            case ColorLightingAnalyzer.BRIGHTNESS_BRIGHT:
+                if (brightness < low - BRIGHTNESS_HYSTERESIS) {
+                    return ColorLightingAnalyzer.BRIGHTNESS_DARK;
+                }
+                return brightness < high - BRIGHTNESS_HYSTERESIS
+                        ? ColorLightingAnalyzer.BRIGHTNESS_NORMAL : ColorLightingAnalyzer.BRIGHTNESS_BRIGHT;
+            default:
+                if (brightness < low - BRIGHTNESS_HYSTERESIS) {
+                    return ColorLightingAnalyzer.BRIGHTNESS_DARK;
+                }
+                return brightness > high + BRIGHTNESS_HYSTERESIS
+                        ? ColorLightingAnalyzer.BRIGHTNESS_BRIGHT : ColorLightingAnalyzer.BRIGHTNESS_NORMAL;
+        }
+    }
+
+    private static Event levelEvent(int from, int to) {
+        if (to == ColorLightingAnalyzer.BRIGHTNESS_DARK) {
+            return Event.ENTERED_DARK;
+        }
+        if (to == ColorLightingAnalyzer.BRIGHTNESS_BRIGHT) {
+            return Event.ENTERED_BRIGHT;
+        }
+        return from == ColorLightingAnalyzer.BRIGHTNESS_DARK ? Event.LEFT_DARK : Event.LEFT_BRIGHT;
+    }
+
+    /**
+     * 用平滑後的亮度、對比度和等級覆蓋單次分析的結果，光線方向保持不變
+     */
+    public void applyTo(ColorLightingAnalyzer.LightingAnalysisResult result) {
+        if (!initialized || result == null) {
+            return;
+        }
+        result.setAverageBrightness(brightness);
+        result.setContrastRatio(contrast);
+        result.setBrightnessLevel(ColorLightingAnalyzer.brightnessLevelName(brightnessLevel));
+        result.setContrastLevel(ColorLightingAnalyzer.analyzeContrastLevel(contrast));
+        result.setLightingCondition(ColorLightingAnalyzer.lightingCondition(brightnessLevel, contrast));
+    }
+
+    /**
+     * 清除歷史，下一幀重新作為初始狀態（例如切換相機後）
+     */
+    public void reset() {
+        initialized = false;
+        brightnessLevel = ColorLightingAnalyzer.BRIGHTNESS_NORMAL;
+        backlit = false;
+    }
+
+    public float getBrightness() {
+        return brightness;
+    }
+
+    public float getContrast() {
+        return contrast;
+    }
+
+    public int getBrightnessLevel() {
+        return brightnessLevel;
+    }
+
+    public boolean isBacklit() {
+        return backlit;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.tonbo_app;
+
+import androidx.camera.core.ImageProxy;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 亮度積分圖（summed-area table）
+ * 在一個採樣網格上累計亮度，建立後任意矩形（網格單元或正規化的檢測框）的平均亮度
+ * 只需四次數組讀取，與矩形大小無關；表格在尺寸不變時重用，穩態下不分配
+ * 可以按行主序逐個 add 採樣（與其他統計共用一次掃描），也可以直接從 Y 平面 build
+ * 非線程安全
+ */
+public class LumaIntegralImage {
+
+    private int columns;
+    private int rows;
+    // (columns + 1) x (rows + 1)，第一行和第一列為 0
+    private long[] table = new long[0];
+    // 下一個採樣的位置
+    private int nextColumn;
+    private int nextRow;
+    private long rowSum;
+
+    /**
+     * 開始按行主序填入 columns x rows 個採樣
+     */
+    public void begin(int columns, int rows) {
+        this.columns = Math.max(0, columns);
+        this.rows = Math.max(0, rows);
+        int size = (this.columns + 1) * (this.rows + 1);
+        if (table.length < size) {
+            table = new long[size];
+        }
+        // 第一行為 0，其餘每個位置在 add 時寫入
+        Arrays.fill(table, 0, this.columns + 1, 0L);
+        nextColumn = 0;
+        nextRow = 0;
+        rowSum = 0;
+    }
+
+    /**
+     * 按行主序加入下一個採樣的亮度
+     */
+    public void add(int luma) {
+        int stride = columns + 1;
+        int index = (nextRow + 1) * stride + nextColumn + 1;
+        if (nextColumn == 0) {
+            table[index - 1] = 0;
+            rowSum = 0;
+        }
+        rowSum += luma;
+        table[index] = table[index - stride] + rowSum;
+        if (++nextColumn == columns) {
+            nextColumn = 0;
+            nextRow++;
+        }
+    }
+
+    /**
+     * 直接從相機幀的 Y 平面建立，採樣網格最多 maxColumns 列（行數按寬高比）
+     */
+    public void build(ImageProxy image, int maxColumns) {
+        ImageProxy.PlaneProxy plane = image.getPlanes()[0];
+        build(plane.getBuffer(), plane.getRowStride(), plane.getPixelStride(),
+                image.getWidth(), image.getHeight(), maxColumns);
+    }
+
+    public void build(ByteBuffer yBuffer, int rowStride, int pixelStride,
+                      int width, int height, int maxColumns) {
+        int step = Math.max(1, (width + maxColumns - 1) / maxColumns);
+        begin((width - step / 2 + step - 1) / step, (height - step / 2 + step - 1) / step);
+        for (int y = step / 2; y < height; y += step) {
+            int offset = y * rowStride;
+            for (int x = step / 2; x < width; x += step) {
+                add(yBuffer.get(offset + x * pixelStride) & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * 是否已填滿可供查詢
+     */
+    public boolean isReady() {
+        return columns > 0 && rows > 0 && nextRow == rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * 網格單元 [column0, column1) x [row0, row1) 的平均亮度
+     */
+    public float mean(int column0, int row0, int column1, int row1) {
+        int area = (column1 - column0) * (row1 - row0);
+        if (area <= 0) {
+            return 0f;
+        }
+        int stride = columns + 1;
+        long sum = table[row1 * stride + column1] - table[row0 * stride + column1]
+                - table[row1 * stride + column0] + table[row0 * stride + column0];
+        return (float) sum / area;
+    }
+
+    /**
+     * 正規化矩形（0-1，與 DetectionBatch 的邊界框相同）的平均亮度，至少包含一個網格單元
+     */
+    public float mean(float left, float top, float right, float bottom) {
+        if (columns == 0 || rows == 0) {
+            return 0f;
+        }
+        int column0 = clamp((int) (left * columns), 0, columns - 1);
+        int row0 = clamp((int) (top * rows), 0, rows - 1);
+        int column1 = clamp((int) Math.ceil(right * columns), column0 + 1, columns);
+        int row1 = clamp((int) Math.ceil(bottom * rows), row0 + 1, rows);
+        return mean(column0, row0, column1, row1);
+    }
+
+    /**
+     * 整幀平均亮度
+     */
+    public float mean() {
+        return mean(0, 0, columns, rows);
+    }
+
+    /**
+     * 把畫面均分為 grid x grid 個區域，按行主序寫入各區域平均亮度
+     * @param out 長度至少為 grid * grid
+     */
+    public void fillGridMeans(int grid, float[] out) {
+        for (int gy = 0; gy < grid; gy++) {
+            int row0 = gy * rows / grid;
+            int row1 = Math.max(row0 + 1, (gy + 1) * rows / grid);
+            for (int gx = 0; gx < grid; gx++) {
+                int column0 = gx * columns / grid;
+                int column1 = Math.max(column0 + 1, (gx + 1) * columns / grid);
+                out[gy * grid + gx] = mean(column0, row0, column1, row1);
+            }
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
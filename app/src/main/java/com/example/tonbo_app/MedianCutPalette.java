@@ -0,0 +1,289 @@
+package com.example.tonbo_app;
+
+/**
+ * 中位切分調色板提取
+ * 採樣顏色按每通道5位量化計入直方圖（32x32x32），提取時把非空格子放在一個盒子裡，
+ * 反覆選「像素數 x 最大通道範圍」最大的盒子沿該通道按像素數中位切開，直到達到顏色數上限；
+ * 只按像素數選盒子會把大片相近顏色反覆細分，而較小但明顯不同的顏色被併入別的盒子
+ * 每個盒子的加權平均顏色和像素佔比即為一個調色板顏色
+ * 切分用32級計數和原地劃分代替排序，每次切分 O(格子數)，總耗時有上限；
+ * 所有緩衝區在構造時分配並重用，非線程安全
+ */
+public class MedianCutPalette {
+
+    /** 每通道量化位數，與 ColorLightingAnalyzer 的顏色查找表一致 */
+    public static final int BITS = 5;
+    private static final int LEVELS = 1 << BITS;
+    private static final int BINS = LEVELS * LEVELS * LEVELS;
+    private static final int MASK = LEVELS - 1;
+
+    private final int maxColors;
+    private final int[] histogram = new int[BINS];
+    private final int[] bins = new int[BINS];
+    private final int[] levelCounts = new int[LEVELS];
+    private int binCount = 0;
+    private int total = 0;
+    // 直方圖在 extract 時按格子列表清零；add 之後未 extract 時 clear 需要全部清零
+    private boolean histogramDirty = false;
+
+    // 盒子：bins 中的 [start, end) 範圍、像素數，以及範圍最大的通道（0=R, 1=G, 2=B）和該通道的最小/最大級別
+    private final int[] boxStart;
+    private final int[] boxEnd;
+    private final int[] boxPixels;
+    private final int[] boxChannel;
+    private final int[] boxLow;
+    private final int[] boxHigh;
+    private int boxCount = 0;
+
+    // 提取結果，按像素數降序
+    private final int[] colors;
+    private final int[] counts;
+    private int colorCount = 0;
+
+    public MedianCutPalette(int maxColors) {
+        this.maxColors = maxColors;
+        boxStart = new int[maxColors];
+        boxEnd = new int[maxColors];
+        boxPixels = new int[maxColors];
+        boxChannel = new int[maxColors];
+        boxLow = new int[maxColors];
+        boxHigh = new int[maxColors];
+        colors = new int[maxColors];
+        counts = new int[maxColors];
+    }
+
+    /**
+     * 開始新一輪採樣
+     */
+    public void clear() {
+        if (histogramDirty) {
+            java.util.Arrays.fill(histogram, 0);
+            histogramDirty = false;
+        }
+        total = 0;
+        colorCount = 0;
+    }
+
+    /**
+     * 加入一個採樣顏色
+     */
+    public void add(int r, int g, int b) {
+        histogram[index(r, g, b)]++;
+        total++;
+        histogramDirty = true;
+    }
+
+    /**
+     * 量化後的直方圖索引（每通道取高5位）
+     */
+    public static int index(int r, int g, int b) {
+        int shift = 8 - BITS;
+        return ((r >> shift) << (BITS * 2)) | ((g >> shift) << BITS) | (b >> shift);
+    }
+
+    /**
+     * 執行中位切分，結果通過 getColor / getCount / getShare 讀取
+     * 提取後直方圖被清零，下一輪可直接 add
+     * @return 調色板顏色數
+     */
+    public int extract() {
+        colorCount = 0;
+        binCount = 0;
+        for (int bin = 0; bin < BINS; bin++) {
+            if (histogram[bin] != 0) {
+                bins[binCount++] = bin;
+            }
+        }
+        if (binCount == 0) {
+            histogramDirty = false;
+            return 0;
+        }
+
+        boxCount = 1;
+        boxStart[0] = 0;
+        boxEnd[0] = binCount;
+        boxPixels[0] = total;
+        measureBox(0);
+        while (boxCount < maxColors) {
+            int box = largestSplittableBox();
+            if (box < 0) {
+                break;
+            }
+            splitBox(box);
+        }
+
+        for (int box = 0; box < boxCount; box++) {
+            addResult(box);
+        }
+
+        // 只清零用過的格子
+        for (int i = 0; i < binCount; i++) {
+            histogram[bins[i]] = 0;
+        }
+        histogramDirty = false;
+        return colorCount;
+    }
+
+    public int getColorCount() {
+        return colorCount;
+    }
+
+    /**
+     * 第 i 個顏色（ARGB，盒內加權平均）
+     */
+    public int getColor(int i) {
+        return colors[i];
+    }
+
+    /**
+     * 第 i 個顏色的採樣數
+     */
+    public int getCount(int i) {
+        return counts[i];
+    }
+
+    /**
+     * 第 i 個顏色的像素佔比（0-1）
+     */
+    public float getShare(int i) {
+        return total > 0 ? (float) counts[i] / total : 0f;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * 像素數 x 通道範圍最大的可切分盒子，沒有可切分的盒子時返回 -1
+     */
+    private int largestSplittableBox() {
+        int best = -1;
+        long bestPriority = 0;
+        for (int box = 0; box < boxCount; box++) {
+            long priority = (long) boxPixels[box] * (boxHigh[box] - boxLow[box]);
+            if (priority > bestPriority) {
+                best = box;
+                bestPriority = priority;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 找出盒子範圍最大的通道
+     */
+    private void measureBox(int box) {
+        int minR = MASK, maxR = 0, minG = MASK, maxG = 0, minB = MASK, maxB = 0;
+        for (int i = boxStart[box]; i < boxEnd[box]; i++) {
+            int bin = bins[i];
+            int r = bin >> (BITS * 2);
+            int g = (bin >> BITS) & MASK;
+            int b = bin & MASK;
+            minR = Math.min(minR, r);
+            maxR = Math.max(maxR, r);
+            minG = Math.min(minG, g);
+            maxG = Math.max(maxG, g);
+            minB = Math.min(minB, b);
+            maxB = Math.max(maxB, b);
+        }
+        if (maxR - minR >= maxG - minG && maxR - minR >= maxB - minB) {
+            boxChannel[box] = 0;
+            boxLow[box] = minR;
+            boxHigh[box] = maxR;
+        } else if (maxG - minG >= maxB - minB) {
+            boxChannel[box] = 1;
+            boxLow[box] = minG;
+            boxHigh[box] = maxG;
+        } else {
+            boxChannel[box] = 2;
+            boxLow[box] = minB;
+            boxHigh[box] = maxB;
+        }
+    }
+
+    private void splitBox(int box) {
+        int start = boxStart[box];
+        int end = boxEnd[box];
+        int channel = boxChannel[box];
+        int low = boxLow[box];
+        int high = boxHigh[box];
+
+        // 按像素數找中位級別，切分點保證兩側都不為空
+        java.util.Arrays.fill(levelCounts, 0);
+        for (int i = start; i < end; i++) {
+            levelCounts[level(bins[i], channel)] += histogram[bins[i]];
+        }
+        int half = boxPixels[box] / 2;
+        int cumulative = 0;
+        int split = low;
+        for (int level = low; level < high; level++) {
+            cumulative += levelCounts[level];
+            split = level;
+            if (cumulative >= half) {
+                break;
+            }
+        }
+
+        // 原地劃分：級別 <= split 的格子放在前面
+        int left = start;
+        int right = end - 1;
+        int leftPixels = 0;
+        while (left <= right) {
+            if (level(bins[left], channel) <= split) {
+                leftPixels += histogram[bins[left]];
+                left++;
+            } else {
+                int temp = bins[left];
+                bins[left] = bins[right];
+                bins[right] = temp;
+                right--;
+            }
+        }
+
+        boxStart[boxCount] = left;
+        boxEnd[boxCount] = end;
+        boxPixels[boxCount] = boxPixels[box] - leftPixels;
+        boxEnd[box] = left;
+        boxPixels[box] = leftPixels;
+        measureBox(box);
+        measureBox(boxCount);
+        boxCount++;
+    }
+
+    /**
+     * 盒子的加權平均顏色，按像素數降序插入結果
+     */
+    private void addResult(int box) {
+        long sumR = 0;
+        long sumG = 0;
+        long sumB = 0;
+        int pixels = 0;
+        int half = 1 << (7 - BITS);
+        for (int i = boxStart[box]; i < boxEnd[box]; i++) {
+            int bin = bins[i];
+            int count = histogram[bin];
+            sumR += (long) (((bin >> (BITS * 2)) << (8 - BITS)) + half) * count;
+            sumG += (long) ((((bin >> BITS) & MASK) << (8 - BITS)) + half) * count;
+            sumB += (long) (((bin & MASK) << (8 - BITS)) + half) * count;
+            pixels += count;
+        }
+        if (pixels == 0) {
+            return;
+        }
+        int color = 0xFF000000 | ((int) (sumR / pixels) << 16) | ((int) (sumG / pixels) << 8) | (int) (sumB / pixels);
+
+        int position = colorCount;
+        while (position > 0 && counts[position - 1] < pixels) {
+            colors[position] = colors[position - 1];
+            counts[position] = counts[position - 1];
+            position--;
+        }
+        colors[position] = color;
+        counts[position] = pixels;
+        colorCount++;
+    }
+
+    private static int level(int bin, int channel) {
+        return (bin >> (BITS * (2 - channel))) & MASK;
+    }
+}
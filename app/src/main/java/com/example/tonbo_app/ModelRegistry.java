@@ -0,0 +1,260 @@
+package com.example.tonbo_app;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.support.image.ColorSpaceType;
+import org.tensorflow.lite.support.image.ImageProperties;
+import org.tensorflow.lite.support.image.TensorImage;
+import org.tensorflow.lite.task.vision.detector.ObjectDetector;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * 進程級模型註冊表
+ * 每個模型文件只映射一次並共享 MappedByteBuffer，
+ * 檢測器在後台線程創建並緩存，通過 Future 或主線程回調交給使用者
+ * 共享的檢測器由註冊表持有，使用者不應關閉
+ * 創建失敗的 Future 不緩存，下一次請求會重新創建（例如預熱時暫時內存不足）
+ */
+public final class ModelRegistry {
+    private static final String TAG = "ModelRegistry";
+
+    private static ModelRegistry instance;
+
+    /**
+     * 模型就緒回調（在主線程調用，創建失敗時參數為 null）
+     */
+    public interface Callback<T> {
+        void onReady(T model);
+    }
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // 單線程執行器：創建任務按提交順序執行，回調任務總在對應的創建任務之後
+    private final ExecutorService loaderExecutor = Executors.newSingleThreadExecutor();
+
+    private final Map<String, MappedByteBuffer> modelBuffers = new HashMap<>();
+    private final Map<String, Boolean> modelAvailability = new HashMap<>();
+    private final Map<YoloDetector.Engine, Future<YoloDetector>> detectors =
+            new EnumMap<>(YoloDetector.Engine.class);
+    private Future<ObjectDetector> objectDetector;
+
+    private ModelRegistry(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized ModelRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new ModelRegistry(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 獲取共享的模型緩衝區（首次調用時從 assets 映射）
+     */
+    public synchronized MappedByteBuffer getModelBuffer(String assetName) throws IOException {
+        MappedByteBuffer buffer = modelBuffers.get(assetName);
+        if (buffer == null) {
+            long startTime = System.currentTimeMillis();
+            try (AssetFileDescriptor fileDescriptor = context.getAssets().openFd(assetName);
+                 FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor())) {
+                FileChannel fileChannel = inputStream.getChannel();
+                buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY,
+                        fileDescriptor.getStartOffset(), fileDescriptor.getDeclaredLength());
+            }
+            modelBuffers.put(assetName, buffer);
+            Log.d(TAG, "模型已映射: " + assetName + " (" + (System.currentTimeMillis() - startTime) + "ms)");
+        }
+        return buffer;
+    }
+
+    /**
+     * 模型文件是否存在且為 TensorFlow Lite 格式（第4-7字節為 "TFL3"）
+     * 只讀取文件頭並緩存結果，用於隱藏沒有隨應用提供有效模型的引擎
+     */
+    public synchronized boolean isModelAvailable(String assetName) {
+        Boolean available = modelAvailability.get(assetName);
+        if (available == null) {
+            byte[] header = new byte[8];
+            int read = 0;
+            try (InputStream input = context.getAssets().open(assetName)) {
+                while (read < header.length) {
+                    int count = input.read(header, read, header.length - read);
+                    if (count < 0) {
+                        break;
+                    }
+                    read += count;
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "無法讀取模型文件: " + assetName + ", " + e.getMessage());
+            }
+            available = read == header.length && header[4] == 'T' && header[5] == 'F'
+                    && header[6] == 'L' && header[7] == '3';
+            if (!available) {
+                Log.w(TAG, "模型文件無效或缺失: " + assetName);
+            }
+            modelAvailability.put(assetName, available);
+        }
+        return available;
+    }
+
+    /**
+     * 獲取共享的檢測器，首次請求時在後台線程創建
+     */
+    public synchronized Future<YoloDetector> getDetector(YoloDetector.Engine engine) {
+        Future<YoloDetector> future = detectors.get(engine);
+        if (future == null) {
+            FutureTask<YoloDetector> task = new FutureTask<YoloDetector>(() -> {
+                long startTime = System.currentTimeMillis();
+                YoloDetector detector = new YoloDetector(context, engine);
+                if (!detector.isInitialized()) {
+                    // 構造函數吞掉了初始化異常，不緩存這個不可用的檢測器
+                    detector.close();
+                    throw new IllegalStateException(engine + " 檢測器初始化失敗");
+                }
+                Log.d(TAG, engine + " 檢測器已創建 (" + (System.currentTimeMillis() - startTime) + "ms)");
+                return detector;
+            }) {
+                @Override
+                protected void setException(Throwable t) {
+                    // 先移除再通知等待者，等待者重試時會創建新的任務
+                    forgetDetector(engine, this);
+                    super.setException(t);
+                }
+            };
+            detectors.put(engine, task);
+            loaderExecutor.execute(task);
+            future = task;
+        }
+        return future;
+    }
+
+    /**
+     * 獲取共享的檢測器，就緒後在主線程回調
+     */
+    public void getDetector(YoloDetector.Engine engine, Callback<YoloDetector> callback) {
+        deliver(getDetector(engine), callback);
+    }
+
+    /**
+     * 獲取共享的 SSD Task API 檢測器，首次請求時在後台線程創建
+     * ObjectDetector 非線程安全，使用者需對其加鎖後再調用 detect
+     */
+    public synchronized Future<ObjectDetector> getObjectDetector() {
+        if (objectDetector == null) {
+            Callable<ObjectDetector> create = () -> {
+                long startTime = System.currentTimeMillis();
+                ObjectDetector detector = ObjectDetector.createFromBufferAndOptions(
+                        getModelBuffer(AppConstants.MODEL_FILE),
+                        InferenceOptions.createObjectDetectorOptions());
+                Log.d(TAG, "SSD物體檢測器已創建 (" + (System.currentTimeMillis() - startTime) + "ms)");
+                return detector;
+            };
+            FutureTask<ObjectDetector> task = new FutureTask<ObjectDetector>(create) {
+                @Override
+                protected void setException(Throwable t) {
+                    forgetObjectDetector(this);
+                    super.setException(t);
+                }
+            };
+            objectDetector = task;
+            loaderExecutor.execute(task);
+        }
+        return objectDetector;
+    }
+
+    /**
+     * 獲取共享的 SSD Task API 檢測器，就緒後在主線程回調
+     */
+    public void getObjectDetector(Callback<ObjectDetector> callback) {
+        deliver(getObjectDetector(), callback);
+    }
+
+    /**
+     * 啟動時預熱：創建常用檢測器並各執行一次推理，
+     * 讓首次進入環境識別頁面時不再等待模型映射、解釋器創建和首幀初始化
+     */
+    public void warmUp() {
+        Future<ObjectDetector> ssdFuture = getObjectDetector();
+        Future<YoloDetector> detectorFuture = getDetector(YoloDetector.getPreferredEngine(context));
+
+        loaderExecutor.execute(() -> {
+            long startTime = System.currentTimeMillis();
+            try {
+                ObjectDetector detector = ssdFuture.get();
+                int inputSize = AppConstants.INPUT_SIZE;
+                ImageProperties properties = ImageProperties.builder()
+                        .setWidth(inputSize)
+                        .setHeight(inputSize)
+                        .setColorSpaceType(ColorSpaceType.RGB)
+                        .build();
+                TensorImage blank = new TensorImage(DataType.UINT8);
+                blank.load(ByteBuffer.allocateDirect(inputSize * inputSize * 3), properties);
+                synchronized (detector) {
+                    detector.detect(blank);
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "SSD檢測器預熱失敗: " + e.getMessage());
+            }
+
+            try {
+                detectorFuture.get().warmUp();
+            } catch (Exception e) {
+                Log.w(TAG, "檢測器預熱失敗: " + e.getMessage());
+            }
+            Log.d(TAG, "模型預熱完成 (" + (System.currentTimeMillis() - startTime) + "ms)");
+        });
+    }
+
+    /**
+     * 移除創建失敗的檢測器任務（只在仍是當前任務時移除）
+     */
+    private synchronized void forgetDetector(YoloDetector.Engine engine, Future<YoloDetector> failed) {
+        if (detectors.get(engine) == failed) {
+            detectors.remove(engine);
+            Log.w(TAG, engine + " 檢測器創建失敗，下次請求時重試");
+        }
+    }
+
+    private synchronized void forgetObjectDetector(Future<ObjectDetector> failed) {
+        if (objectDetector == failed) {
+            objectDetector = null;
+            Log.w(TAG, "SSD物體檢測器創建失敗，下次請求時重試");
+        }
+    }
+
+    /**
+     * 等待 Future 完成後在主線程回調
+     */
+    private <T> void deliver(Future<T> future, Callback<T> callback) {
+        loaderExecutor.execute(() -> {
+            T model = null;
+            try {
+                model = future.get();
+            } catch (Exception e) {
+                Log.e(TAG, "模型創建失敗: " + e.getMessage());
+            }
+            T result = model;
+            mainHandler.post(() -> callback.onReady(result));
+        });
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.tonbo_app;
+
+import android.util.Log;
+
+import androidx.camera.core.ImageProxy;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 推理前的運動門控
+ * 從 ImageProxy 的 Y 平面稀疏採樣，得到 32x24 的亮度簽名，與上次推理時的簽名逐格比較；
+ * 變化超過單格閾值的網格比例（局部變化，例如有人走入畫面一側）或平均絕對差（整體變化，例如轉動鏡頭）
+ * 任一超過閾值就運行檢測器，否則跳過並沿用上次結果（追蹤器繼續推算）
+ * 噪聲取相鄰兩幀逐格差的中位數：局部運動不影響中位數，也不會隨參考簽名老化而逐漸抬高閾值；
+ * 每隔一段時間仍強制推理一次，避免漏掉緩慢變化
+ * 每幀只讀取約3000個像素，耗時遠低於1毫秒；非線程安全，應在相機分析線程使用
+ */
+public class MotionGate {
+    private static final String TAG = "MotionGate";
+
+    private static final int GRID_WIDTH = 32;
+    private static final int GRID_HEIGHT = 24;
+    private static final int CELLS = GRID_WIDTH * GRID_HEIGHT;
+
+    // 平均差閾值 = 噪聲估計 × 倍數，限制在 [最小閾值, 最大閾值]，單位為亮度級 (0-255)
+    private static final float MIN_THRESHOLD = 2.0f;
+    private static final float MAX_THRESHOLD = 12.0f;
+    private static final float NOISE_MULTIPLIER = 3.0f;
+    // 單格閾值 = 噪聲估計 × 倍數，限制在 [最小, 最大]
+    private static final float MIN_CELL_DELTA = 6.0f;
+    private static final float MAX_CELL_DELTA = 24.0f;
+    private static final float CELL_NOISE_MULTIPLIER = 5.0f;
+    // 變化網格超過此比例即視為局部運動（約15格，人佔畫面一成時約有80格變化）
+    private static final float CHANGED_CELL_RATIO = 0.02f;
+    private static final float NOISE_SMOOTHING = 0.05f;
+    // 最長跳過時間，超過後強制推理
+    private static final long MAX_SKIP_MS = 2000;
+
+    // 當前幀簽名、上一幀簽名和上次推理時的參考簽名
+    private final float[] signature = new float[CELLS];
+    private final float[] previous = new float[CELLS];
+    private final float[] reference = new float[CELLS];
+    // 相鄰幀逐格差的直方圖（按亮度級取整），用於求中位數
+    private final int[] differenceHistogram = new int[256];
+    private boolean hasPrevious = false;
+    private boolean hasReference = false;
+    private boolean hasNoiseEstimate = false;
+    private float noiseLevel = MIN_THRESHOLD / NOISE_MULTIPLIER;
+    private long lastInferenceTime = 0;
+    private float lastDifference = 0f;
+    private float lastChangedRatio = 0f;
+    // 跳過統計（門控自身計數，不經過共享的檢測器）
+    private int evaluatedFrames = 0;
+    private int skippedFrames = 0;
+
+    /**
+     * 判斷本幀是否需要運行檢測器
+     * 返回 true 時以本幀作為新的參考簽名
+     */
+    public boolean shouldRunInference(ImageProxy image, long timestampMs) {
+        ImageProxy.PlaneProxy yPlane = image.getPlanes()[0];
+        return shouldRunInference(yPlane.getBuffer(), image.getWidth(), image.getHeight(),
+                yPlane.getRowStride(), yPlane.getPixelStride(), timestampMs);
+    }
+
+    /**
+     * 判斷本幀是否需要運行檢測器（直接讀取亮度平面）
+     */
+    public boolean shouldRunInference(ByteBuffer luma, int width, int height,
+                                      int rowStride, int pixelStride, long timestampMs) {
+        computeSignature(luma, width, height, rowStride, pixelStride);
+        updateNoiseLevel();
+
+        boolean run;
+        if (!hasReference || timestampMs - lastInferenceTime >= MAX_SKIP_MS) {
+            run = true;
+        } else {
+            compareWithReference();
+            run = lastChangedRatio >= CHANGED_CELL_RATIO || lastDifference >= getThreshold();
+        }
+
+        evaluatedFrames++;
+        if (run) {
+            System.arraycopy(signature, 0, reference, 0, CELLS);
+            hasReference = true;
+            lastInferenceTime = timestampMs;
+        } else {
+            skippedFrames++;
+        }
+        return run;
+    }
+
+    /**
+     * 當前自適應閾值（平均亮度差）
+     */
+    public float getThreshold() {
+        return Math.max(MIN_THRESHOLD, Math.min(MAX_THRESHOLD, noiseLevel * NOISE_MULTIPLIER));
+    }
+
+    /**
+     * 當前單格變化閾值（亮度差）
+     */
+    public float getCellThreshold() {
+        return Math.max(MIN_CELL_DELTA, Math.min(MAX_CELL_DELTA, noiseLevel * CELL_NOISE_MULTIPLIER));
+    }
+
+    /**
+     * 當前噪聲估計（相鄰幀逐格差的中位數，平滑後）
+     */
+    public float getNoiseLevel() {
+        return noiseLevel;
+    }
+
+    /**
+     * 最近一次比較得到的平均變化量
+     */
+    public float getLastDifference() {
+        return lastDifference;
+    }
+
+    /**
+     * 最近一次比較中變化超過單格閾值的網格比例（0-1）
+     */
+    public float getLastChangedRatio() {
+        return lastChangedRatio;
+    }
+
+    /**
+     * 跳過推理的比例（百分比）
+     */
+    public float getSkipRatio() {
+        return evaluatedFrames == 0 ? 0f : (float) skippedFrames / evaluatedFrames * 100f;
+    }
+
+    /**
+     * 已判斷的幀數
+     */
+    public int getEvaluatedFrames() {
+        return evaluatedFrames;
+    }
+
+    /**
+     * 清除參考簽名，下一幀必定推理
+     */
+    public void reset() {
+        hasReference = false;
+        hasPrevious = false;
+        Log.d(TAG, "運動門控已重置");
+    }
+
+    /**
+     * 每個網格取 2x2 個採樣點的平均亮度
+     */
+    private void computeSignature(ByteBuffer buffer, int width, int height, int rowStride, int pixelStride) {
+        int cell = 0;
+        for (int gy = 0; gy < GRID_HEIGHT; gy++) {
+            int y0 = (gy * 4 + 1) * height / (GRID_HEIGHT * 4);
+            int y1 = (gy * 4 + 3) * height / (GRID_HEIGHT * 4);
+            int row0 = y0 * rowStride;
+            int row1 = y1 * rowStride;
+            for (int gx = 0; gx < GRID_WIDTH; gx++) {
+                int x0 = (gx * 4 + 1) * width / (GRID_WIDTH * 4) * pixelStride;
+                int x1 = (gx * 4 + 3) * width / (GRID_WIDTH * 4) * pixelStride;
+                int sum = (buffer.get(row0 + x0) & 0xFF) + (buffer.get(row0 + x1) & 0xFF)
+                        + (buffer.get(row1 + x0) & 0xFF) + (buffer.get(row1 + x1) & 0xFF);
+                signature[cell++] = sum * 0.25f;
+            }
+        }
+    }
+
+    /**
+     * 用相鄰兩幀逐格差的中位數更新噪聲估計，然後把本幀保存為上一幀
+     * 畫面中少於一半的網格在動時中位數仍反映傳感器噪聲和曝光抖動
+     */
+    private void updateNoiseLevel() {
+        if (hasPrevious) {
+            Arrays.fill(differenceHistogram, 0);
+            for (int i = 0; i < CELLS; i++) {
+                int bin = (int) (Math.abs(signature[i] - previous[i]) + 0.5f);
+                differenceHistogram[Math.min(255, bin)]++;
+            }
+            int median = 0;
+            for (int seen = 0, bin = 0; bin < differenceHistogram.length; bin++) {
+                seen += differenceHistogram[bin];
+                if (seen * 2 >= CELLS) {
+                    median = bin;
+                    break;
+                }
+            }
+            if (hasNoiseEstimate) {
+                noiseLevel += NOISE_SMOOTHING * (median - noiseLevel);
+            } else {
+                // 第一次測量直接採用，避免從默認值慢慢收斂期間誤觸發
+                noiseLevel = median;
+                hasNoiseEstimate = true;
+            }
+        }
+        System.arraycopy(signature, 0, previous, 0, CELLS);
+        hasPrevious = true;
+    }
+
+    private void compareWithReference() {
+        float cellThreshold = getCellThreshold();
+        float total = 0f;
+        int changed = 0;
+        for (int i = 0; i < CELLS; i++) {
+            float difference = Math.abs(signature[i] - reference[i]);
+            total += difference;
+            if (difference > cellThreshold) {
+                changed++;
+            }
+        }
+        lastDifference = total / CELLS;
+        lastChangedRatio = (float) changed / CELLS;
+    }
+}
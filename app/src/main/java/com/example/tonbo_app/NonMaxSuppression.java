@@ -0,0 +1,215 @@
+package com.example.tonbo_app;
+
+/**
+ * 非極大值抑制 (NMS) 引擎
+ * 直接處理基本類型數組：邊界框按 [left, top, right, bottom] 連續存放（任意座標單位），
+ * 候選框按分數建堆後依次彈出（只排序一次），保留數量達到上限即提前結束
+ * SOFT 模式下彈出的候選先按新保留的框衰減分數，仍不低於堆頂才保留，否則帶著衰減後的分數放回堆中；
+ * 分數只會衰減，因此堆頂是剩餘候選分數的上界，保留結果與完整的 Soft-NMS 一致，且按分數降序
+ * 內部緩衝區按最大候選數重用，非線程安全，每個使用者應持有自己的實例
+ */
+public class NonMaxSuppression {
+
+    /**
+     * 抑制模式
+     */
+    public enum Mode {
+        /** 只抑制同類別的重疊框 */
+        CLASS_AWARE,
+        /** 不區分類別，重疊即抑制 */
+        CLASS_AGNOSTIC,
+        /** 同類別重疊框按高斯函數衰減分數，而不是直接丟棄 */
+        SOFT
+    }
+
+    // Soft-NMS 高斯衰減參數
+    private static final float SOFT_NMS_SIGMA = 0.5f;
+
+    private final Mode mode;
+    private final float iouThreshold;
+
+    // 分數位模式和索引打包成 long 的最大堆
+    private long[] heap = new long[0];
+    // SOFT 模式：每個候選當前的衰減分數，以及已經計算過衰減的保留框數量
+    private float[] softScores = new float[0];
+    private int[] softDecayedBy = new int[0];
+    private int[] keptIndices = new int[0];
+    private float[] keptScores = new float[0];
+    private int keptCount = 0;
+
+    public NonMaxSuppression(Mode mode, float iouThreshold) {
+        this.mode = mode;
+        this.iouThreshold = iouThreshold;
+    }
+
+    /**
+     * 執行 NMS
+     * @param boxes 邊界框數組，第 i 個候選框位於 [4i, 4i+4)
+     * @param scores 候選分數（不會被修改）
+     * @param classes 候選類別，CLASS_AGNOSTIC 模式下可為 null
+     * @param count 候選數量
+     * @param scoreThreshold 分數低於此值的候選直接跳過（Soft-NMS 衰減後同樣適用）
+     * @param maxKeep 最多保留數量
+     * @return 保留數量，結果通過 getKeptIndex / getKeptScore 按分數降序讀取
+     */
+    public int run(float[] boxes, float[] scores, int[] classes, int count,
+                   float scoreThreshold, int maxKeep) {
+        ensureCapacity(count, maxKeep);
+        keptCount = 0;
+
+        // 過濾低分候選後建堆，O(n)
+        int heapSize = 0;
+        for (int i = 0; i < count; i++) {
+            float score = scores[i];
+            if (score >= scoreThreshold && score > 0f) {
+                // 正浮點數的位模式與數值同序
+                heap[heapSize++] = ((long) Float.floatToIntBits(score) << 32) | i;
+            }
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i, heapSize);
+        }
+
+        if (mode == Mode.SOFT) {
+            runSoft(boxes, scores, classes, heapSize, scoreThreshold, maxKeep);
+            return keptCount;
+        }
+
+        // 按分數降序彈出，每次 O(log n)，達到上限即停止
+        while (heapSize > 0 && keptCount < maxKeep) {
+            int candidate = (int) heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(0, heapSize);
+
+            boolean suppressed = false;
+            for (int k = 0; k < keptCount; k++) {
+                int kept = keptIndices[k];
+                if (mode == Mode.CLASS_AWARE && classes[candidate] != classes[kept]) {
+                    continue;
+                }
+                if (iou(boxes, candidate * 4, kept * 4) > iouThreshold) {
+                    suppressed = true;
+                    break;
+                }
+            }
+
+            if (!suppressed) {
+                keptIndices[keptCount] = candidate;
+                keptScores[keptCount] = scores[candidate];
+                keptCount++;
+            }
+        }
+
+        return keptCount;
+    }
+
+    /**
+     * Soft-NMS：彈出的候選只按上次計算之後新保留的同類別框衰減（延遲計算），
+     * 衰減後仍不低於堆頂則保留，否則放回堆中重新排序；衰減到閾值以下則丟棄
+     */
+    private void runSoft(float[] boxes, float[] scores, int[] classes, int heapSize,
+                         float scoreThreshold, int maxKeep) {
+        for (int h = 0; h < heapSize; h++) {
+            int i = (int) heap[h];
+            softScores[i] = scores[i];
+            softDecayedBy[i] = 0;
+        }
+
+        while (heapSize > 0 && keptCount < maxKeep) {
+            int candidate = (int) heap[0];
+            float score = softScores[candidate];
+            for (int k = softDecayedBy[candidate]; k < keptCount; k++) {
+                int kept = keptIndices[k];
+                if (classes[candidate] != classes[kept]) {
+                    continue;
+                }
+                float iou = iou(boxes, candidate * 4, kept * 4);
+                score *= (float) Math.exp(-(iou * iou) / SOFT_NMS_SIGMA);
+            }
+            softScores[candidate] = score;
+            softDecayedBy[candidate] = keptCount;
+
+            if (score < scoreThreshold || score <= 0f) {
+                heap[0] = heap[--heapSize];
+                siftDown(0, heapSize);
+                continue;
+            }
+            long entry = ((long) Float.floatToIntBits(score) << 32) | candidate;
+            if (entry != heap[0]) {
+                // 分數已衰減：放回堆中，若仍是最大值下一輪直接保留
+                heap[0] = entry;
+                siftDown(0, heapSize);
+                continue;
+            }
+            heap[0] = heap[--heapSize];
+            siftDown(0, heapSize);
+            keptIndices[keptCount] = candidate;
+            keptScores[keptCount] = score;
+            keptCount++;
+        }
+    }
+
+    /**
+     * 第 k 個保留結果在輸入數組中的索引
+     */
+    public int getKeptIndex(int k) {
+        return keptIndices[k];
+    }
+
+    /**
+     * 第 k 個保留結果的分數（Soft-NMS 模式下為衰減後的分數）
+     */
+    public float getKeptScore(int k) {
+        return keptScores[k];
+    }
+
+    /**
+     * 計算同一數組中兩個邊界框的 IoU
+     */
+    public static float iou(float[] boxes, int a, int b) {
+        float intersectionLeft = Math.max(boxes[a], boxes[b]);
+        float intersectionTop = Math.max(boxes[a + 1], boxes[b + 1]);
+        float intersectionRight = Math.min(boxes[a + 2], boxes[b + 2]);
+        float intersectionBottom = Math.min(boxes[a + 3], boxes[b + 3]);
+        if (intersectionRight <= intersectionLeft || intersectionBottom <= intersectionTop) {
+            return 0f;
+        }
+        float intersection = (intersectionRight - intersectionLeft) * (intersectionBottom - intersectionTop);
+        float areaA = (boxes[a + 2] - boxes[a]) * (boxes[a + 3] - boxes[a + 1]);
+        float areaB = (boxes[b + 2] - boxes[b]) * (boxes[b + 3] - boxes[b + 1]);
+        float union = areaA + areaB - intersection;
+        return union > 0f ? intersection / union : 0f;
+    }
+
+    private void siftDown(int index, int size) {
+        long value = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && heap[right] > heap[child]) {
+                child = right;
+            }
+            if (value >= heap[child]) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = value;
+    }
+
+    private void ensureCapacity(int count, int maxKeep) {
+        if (heap.length < count) {
+            heap = new long[count];
+        }
+        if (mode == Mode.SOFT && softScores.length < count) {
+            softScores = new float[count];
+            softDecayedBy = new int[count];
+        }
+        if (keptIndices.length < maxKeep) {
+            keptIndices = new int[maxKeep];
+            keptScores = new float[maxKeep];
+        }
+    }
+}
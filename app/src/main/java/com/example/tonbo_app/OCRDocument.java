@@ -0,0 +1,430 @@
+package com.example.tonbo_app;
+
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 結構化的OCR識別結果：頁面 → 文字塊 → 文字行 → 單詞（元素）
+ * 每個字符只在所屬的文字行中存儲一次，各層都帶邊界框；
+ * 文字塊和文字行在構建時按閱讀順序（從上到下、從左到右）排列，
+ * 文字塊和整頁的純文字在首次讀取時才拼接並緩存
+ * 由 OCRHelper 構建，構建後不再修改，可以跨線程傳遞
+ */
+public class OCRDocument {
+
+    public static final OCRDocument EMPTY = new OCRDocument(new ArrayList<>());
+    /** 識別沒有完成（超時、取消或失敗）且沒有任何結果 */
+    public static final OCRDocument INCOMPLETE = new OCRDocument(new ArrayList<>(), false);
+
+    private final List<Block> blocks;
+    private final int lineCount;
+    private final boolean complete;
+    // 延遲拼接的整頁文字
+    private volatile String text;
+
+    /**
+     * @param blocks 文字塊（順序任意），空白的行和文字塊會被丟棄，其餘按閱讀順序排列
+     */
+    OCRDocument(List<Block> blocks) {
+        this(blocks, true);
+    }
+
+    /**
+     * @param complete 所有識別任務是否都已成功完成；超時或有識別失敗時為 false
+     */
+    OCRDocument(List<Block> blocks, boolean complete) {
+        List<Block> kept = new ArrayList<>(blocks.size());
+        int lines = 0;
+        for (Block block : blocks) {
+            block.removeBlankLines();
+            if (!block.lines.isEmpty()) {
+                block.sortLines();
+                kept.add(block);
+                lines += block.lines.size();
+            }
+        }
+        Rect[] boxes = new Rect[kept.size()];
+        for (int i = 0; i < boxes.length; i++) {
+            boxes[i] = kept.get(i).box;
+        }
+        sortByReadingOrder(kept, boxes);
+        this.blocks = Collections.unmodifiableList(kept);
+        this.lineCount = lines;
+        this.complete = complete;
+    }
+
+    /**
+     * 按閱讀順序排列的文字塊
+     */
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    public int getBlockCount() {
+        return blocks.size();
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public boolean isEmpty() {
+        return blocks.isEmpty();
+    }
+
+    /**
+     * 識別是否完整：為 false 時（超時、取消或有識別失敗）結果可能缺少部分文字，
+     * 不應緩存，也不應把「沒有文字」當作畫面上確實沒有文字
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * 整頁文字：文字塊之間、文字行之間以換行分隔
+     */
+    public String getText() {
+        String result = text;
+        if (result == null) {
+            StringBuilder sb = new StringBuilder();
+            for (Block block : blocks) {
+                if (sb.length() > 0) {
+                    sb.append('\n');
+                }
+                block.appendText(sb);
+            }
+            result = sb.toString();
+            text = result;
+        }
+        return result;
+    }
+
+    public float getConfidence() {
+        return estimateConfidence(getText());
+    }
+
+    /**
+     * 一個文字區域
+     */
+    public static final class Block {
+        private final Rect box;
+        private final List<Line> lines = new ArrayList<>();
+        private volatile String text;
+
+        Block(Rect box) {
+            this.box = box;
+        }
+
+        void addLine(Line line) {
+            lines.add(line);
+        }
+
+        public Rect getBoundingBox() {
+            return box;
+        }
+
+        /**
+         * 按閱讀順序排列的文字行
+         */
+        public List<Line> getLines() {
+            return Collections.unmodifiableList(lines);
+        }
+
+        public String getText() {
+            String result = text;
+            if (result == null) {
+                StringBuilder sb = new StringBuilder();
+                appendText(sb);
+                result = sb.toString();
+                text = result;
+            }
+            return result;
+        }
+
+        public float getConfidence() {
+            return estimateConfidence(getText());
+        }
+
+        /**
+         * 區域的來源：全部行來自同一識別器時為該識別器，否則為合併識別
+         */
+        public String getSource() {
+            String source = null;
+            for (Line line : lines) {
+                if (source == null) {
+                    source = line.source;
+                } else if (!source.equals(line.source)) {
+                    return "合併識別";
+                }
+            }
+            return source != null ? source : "合併識別";
+        }
+
+        private void appendText(StringBuilder sb) {
+            String cached = text;
+            if (cached != null) {
+                sb.append(cached);
+                return;
+            }
+            for (int i = 0; i < lines.size(); i++) {
+                if (i > 0) {
+                    sb.append('\n');
+                }
+                sb.append(lines.get(i).text);
+            }
+        }
+
+        private void removeBlankLines() {
+            for (int i = lines.size() - 1; i >= 0; i--) {
+                if (lines.get(i).text.trim().isEmpty()) {
+                    lines.remove(i);
+                }
+            }
+        }
+
+        /**
+         * 文字行按閱讀順序排列
+         */
+        private void sortLines() {
+            if (lines.size() < 2) {
+                return;
+            }
+            Rect[] boxes = new Rect[lines.size()];
+            for (int i = 0; i < boxes.length; i++) {
+                boxes[i] = lines.get(i).box;
+            }
+            sortByReadingOrder(lines, boxes);
+        }
+    }
+
+    /**
+     * 一行文字，文字只存儲在這一層
+     */
+    public static final class Line {
+        private final String text;
+        private final Rect box;
+        private final String source;
+        private final List<Element> elements = new ArrayList<>();
+        // 下一個單詞在行文字中開始查找的位置
+        private int elementCursor;
+
+        Line(String text, Rect box, String source) {
+            this.text = text != null ? text : "";
+            this.box = box;
+            this.source = source;
+        }
+
+        /**
+         * 按順序加入行內的單詞，在行文字中定位其範圍
+         */
+        void addElement(String elementText, Rect elementBox) {
+            if (elementText == null || elementText.isEmpty()) {
+                return;
+            }
+            int start = text.indexOf(elementText, elementCursor);
+            if (start < 0) {
+                // 識別器給出的單詞與行文字不一致時單獨保存
+                elements.add(new Element(this, elementText, 0, elementText.length(), elementBox));
+                return;
+            }
+            elementCursor = start + elementText.length();
+            elements.add(new Element(this, null, start, elementCursor, elementBox));
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public Rect getBoundingBox() {
+            return box;
+        }
+
+        /**
+         * 產生這一行的識別器（中文識別 / 英文識別）
+         */
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         * 行內的單詞，按識別器給出的順序
+         */
+        public List<Element> getElements() {
+            return Collections.unmodifiableList(elements);
+        }
+
+        public float getConfidence() {
+            return estimateConfidence(text);
+        }
+    }
+
+    /**
+     * 一個單詞（中文為單字或詞組）；文字是所屬文字行的子串，不另外存儲
+     */
+    public static final class Element {
+        private final Line line;
+        // 只在單詞不是行文字的子串時保存
+        private final String ownText;
+        private final int start;
+        private final int end;
+        private final Rect box;
+
+        private Element(Line line, String ownText, int start, int end, Rect box) {
+            this.line = line;
+            this.ownText = ownText;
+            this.start = start;
+            this.end = end;
+            this.box = box;
+        }
+
+        public String getText() {
+            return ownText != null ? ownText : line.text.substring(start, end);
+        }
+
+        /**
+         * 單詞在所屬文字行中的開始位置，不是子串時為 -1
+         */
+        public int getStart() {
+            return ownText != null ? -1 : start;
+        }
+
+        public Rect getBoundingBox() {
+            return box;
+        }
+    }
+
+    /**
+     * 按閱讀順序重排 items（boxes[i] 為 items 第 i 項的邊界框，沒有邊界框的排在最後）
+     */
+    private static <T> void sortByReadingOrder(List<T> items, Rect[] boxes) {
+        int count = boxes.length;
+        int[] lefts = new int[count];
+        int[] tops = new int[count];
+        int[] bottoms = new int[count];
+        for (int i = 0; i < count; i++) {
+            Rect box = boxes[i];
+            if (box != null) {
+                lefts[i] = box.left;
+                tops[i] = box.top;
+                bottoms[i] = box.bottom;
+            } else {
+                lefts[i] = Integer.MAX_VALUE;
+                tops[i] = Integer.MAX_VALUE;
+                bottoms[i] = Integer.MAX_VALUE;
+            }
+        }
+        int[] order = readingOrder(lefts, tops, bottoms, count);
+        List<T> sorted = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sorted.add(items.get(order[i]));
+        }
+        items.clear();
+        items.addAll(sorted);
+    }
+
+    /**
+     * 閱讀順序：先按上邊界從上到下把框分成行，與行首框垂直重疊超過較矮者一半的框歸入該行，
+     * 然後按（行, 左邊界, 上邊界, 下邊界）排序
+     * 直接兩兩比較「重疊則比左邊界，否則比上邊界」不具傳遞性，三個框可以互相成環，
+     * 框較多時 TimSort 會拋出異常；先分行得到的排序鍵是真正的全序
+     * @return 按閱讀順序排列的下標
+     */
+    static int[] readingOrder(final int[] lefts, final int[] tops, final int[] bottoms, int count) {
+        Integer[] indices = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            indices[i] = i;
+        }
+        Arrays.sort(indices, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                if (tops[a] != tops[b]) {
+                    return Integer.compare(tops[a], tops[b]);
+                }
+                if (lefts[a] != lefts[b]) {
+                    return Integer.compare(lefts[a], lefts[b]);
+                }
+                if (bottoms[a] != bottoms[b]) {
+                    return Integer.compare(bottoms[a], bottoms[b]);
+                }
+                return Integer.compare(a, b);
+            }
+        });
+
+        // 按上邊界順序掃描分行
+        final int[] rows = new int[count];
+        int row = -1;
+        int anchor = -1;
+        for (int k = 0; k < count; k++) {
+            int i = indices[k];
+            if (anchor >= 0) {
+                int overlap = Math.min(bottoms[anchor], bottoms[i]) - Math.max(tops[anchor], tops[i]);
+                int minHeight = Math.min(bottoms[anchor] - tops[anchor], bottoms[i] - tops[i]);
+                if ((long) overlap * 2 > minHeight) {
+                    rows[i] = row;
+                    continue;
+                }
+            }
+            row++;
+            anchor = i;
+            rows[i] = row;
+        }
+
+        Arrays.sort(indices, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                if (rows[a] != rows[b]) {
+                    return Integer.compare(rows[a], rows[b]);
+                }
+                if (lefts[a] != lefts[b]) {
+                    return Integer.compare(lefts[a], lefts[b]);
+                }
+                if (tops[a] != tops[b]) {
+                    return Integer.compare(tops[a], tops[b]);
+                }
+                if (bottoms[a] != bottoms[b]) {
+                    return Integer.compare(bottoms[a], bottoms[b]);
+                }
+                return Integer.compare(a, b);
+            }
+        });
+        int[] order = new int[count];
+        for (int k = 0; k < count; k++) {
+            order[k] = indices[k];
+        }
+        return order;
+    }
+
+    /**
+     * 估計識別置信度（簡單實現）
+     */
+    static float estimateConfidence(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return 0.0f;
+        }
+
+        // 簡單的置信度計算：基於文字長度和字符類型
+        float confidence = 0.5f; // 基礎置信度
+
+        // 文字長度影響
+        if (text.length() > 10) {
+            confidence += 0.2f;
+        }
+
+        // 中文字符加分
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if ((ch >= 0x4E00 && ch <= 0x9FFF) || // 基本中文字符
+                    (ch >= 0x3400 && ch <= 0x4DBF)) { // 擴展A區
+                confidence += 0.3f;
+                break;
+            }
+        }
+
+        return Math.min(confidence, 1.0f);
+    }
+}
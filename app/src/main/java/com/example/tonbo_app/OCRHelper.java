@@ -2,6 +2,8 @@ package com.example.tonbo_app;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.Rect;
 import android.util.Log;
 
 import com.google.mlkit.vision.common.InputImage;
@@ -11,20 +13,60 @@ import com.google.mlkit.vision.text.chinese.ChineseTextRecognizerOptions;
 import com.google.mlkit.vision.text.latin.TextRecognizerOptions;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * OCR文字識別助手類
  * 使用Google ML Kit進行中文和英文文字識別
+ * 兩個識別器同時提交，結果按文字塊邊界框重疊合併，每個區域保留質量較高的文字行
+ * 識別是異步的：recognizeTextAsync 返回可取消的請求句柄，到達期限時使用已完成的結果
+ * 結果為結構化的 OCRDocument（文字塊 → 文字行 → 單詞），每個字符只存儲一次
+ * 完整識別的結果按感知哈希緩存，幾乎相同的幀直接返回緩存的結果
  */
 public class OCRHelper {
     private static final String TAG = "OCRHelper";
-
-    private com.google.mlkit.vision.text.TextRecognizer chineseTextRecognizer;
-    private com.google.mlkit.vision.text.TextRecognizer englishTextRecognizer;
+    
+    // 等待識別完成的最長時間
+    private static final long RECOGNITION_TIMEOUT_MS = 10000;
+    // 同步等待在期限之外額外等待的時間
+    private static final long SYNC_WAIT_MARGIN_MS = 1000;
+    // 兩個邊界框的交集佔較小者面積的比例達到此值時視為同一區域
+    private static final float REGION_OVERLAP_THRESHOLD = 0.5f;
+    // 結果緩存：條目數、視為同一畫面的最大漢明距離（共 256 位）和存活時間
+    private static final int RESULT_CACHE_SIZE = 8;
+    private static final int RESULT_CACHE_MAX_DISTANCE = 8;
+    private static final long RESULT_CACHE_MAX_AGE_MS = 30000;
+
+    private volatile com.google.mlkit.vision.text.TextRecognizer chineseTextRecognizer;
+    private volatile com.google.mlkit.vision.text.TextRecognizer englishTextRecognizer;
     private Context context;
 
+    // OCR 執行器：識別器回調、結果合併和期限計時都在這一個線程上，請求狀態不需要加鎖
+    private final ScheduledExecutorService ocrExecutor = Executors.newSingleThreadScheduledExecutor();
+    // 尚未完成的請求，關閉時取消
+    private final Set<RecognitionRequest> activeRequests =
+            Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // 文字區域候選（只在 OCR 執行器線程使用）：只把含文字的區域裁剪縮放後送入識別器
+    private final TextRegionProposer regionProposer = new TextRegionProposer();
+    private volatile boolean regionProposalEnabled = true;
+    // 最近一次請求送入識別器的像素相對整幀節省的比例
+    private volatile float lastSavedAreaFraction = 0f;
+    // 識別結果緩存：同一頁面反覆對準時不再重新識別
+    private final PerceptualHashCache<OCRDocument> resultCache =
+            new PerceptualHashCache<>(RESULT_CACHE_SIZE, RESULT_CACHE_MAX_DISTANCE, RESULT_CACHE_MAX_AGE_MS);
+    private volatile boolean resultCacheEnabled = true;
+
     public OCRHelper(Context context) {
         this.context = context;
         initializeTextRecognizer();
@@ -48,12 +90,472 @@ public class OCRHelper {
     }
 
     /**
-     * 識別圖片中的文字
+     * 是否先找出文字區域，只識別裁剪出的區域（默認開啟）
+     */
+    public void setRegionProposalEnabled(boolean enabled) {
+        regionProposalEnabled = enabled;
+    }
+
+    public boolean isRegionProposalEnabled() {
+        return regionProposalEnabled;
+    }
+
+    /**
+     * 最近一次識別送入識別器的像素相對整幀節省的比例（0-1），識別整幀時為 0
+     */
+    public float getLastSavedAreaFraction() {
+        return lastSavedAreaFraction;
+    }
+
+    /**
+     * 是否使用結果緩存（默認開啟）；關閉時既不查找也不保存
+     */
+    public void setResultCacheEnabled(boolean enabled) {
+        resultCacheEnabled = enabled;
+    }
+
+    public boolean isResultCacheEnabled() {
+        return resultCacheEnabled;
+    }
+
+    /**
+     * 清除緩存的結果
+     */
+    public void clearResultCache() {
+        resultCache.clear();
+    }
+
+    /**
+     * 結果緩存的命中率（0-1）
+     */
+    public float getCacheHitRate() {
+        return resultCache.getHitRate();
+    }
+
+    /**
+     * 結果緩存命中節省的識別時間（毫秒）
+     */
+    public float getCacheSavedMs() {
+        return resultCache.getSavedMs();
+    }
+
+    public String formatCacheStats() {
+        return resultCache.formatStats();
+    }
+
+    /**
+     * 異步識別回調
+     * onResult 和 onCancelled 只會調用其中一個，且只調用一次；兩者都在 OCR 執行器線程調用
+     */
+    public interface RecognitionCallback {
+        /**
+         * 識別完成；超過期限時為期限前已完成的識別器的結果（可能為空），此時 isComplete() 為 false
+         */
+        void onResult(OCRDocument document);
+
+        /**
+         * 請求在完成前被取消或識別器已關閉
+         */
+        void onCancelled();
+
+        /**
+         * 識別器不再讀取輸入圖片：只識別裁剪區域時在裁剪完成後，否則在兩個識別器都結束後
+         * （完成、失敗，或請求在提交前被取消）；可能晚於 onResult / onCancelled，
+         * 調用方在此之後才可以重用或回收輸入的 Bitmap
+         */
+        default void onInputReleased() {
+        }
+    }
+
+    /**
+     * 一次異步識別請求的句柄
+     */
+    public static final class RecognitionRequest {
+        private final Bitmap bitmap;
+        private final long timeoutMs;
+        // 是否查找和保存結果緩存（還需要 setResultCacheEnabled 開啟）
+        private final boolean useCache;
+        private final RecognitionCallback callback;
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+        private volatile boolean cancelled = false;
+        private volatile ScheduledFuture<?> deadline;
+        private final OCRHelper owner;
+        // 以下字段只在 OCR 執行器線程訪問；每個識別輸入（整幀或一個候選區域）一項
+        private Bitmap[] inputs;
+        // 輸入在原圖中的位置，整幀識別時為 null
+        private CropTransform[] transforms;
+        private Text[] chineseTexts;
+        private Text[] englishTexts;
+        private boolean cropped;
+        private int pendingTasks;
+        private boolean inputReleased;
+        // 輸入圖片的感知哈希，未使用緩存時為 null
+        private PerceptualHashCache.Key cacheKey;
+        // 緩存命中時的結果
+        private OCRDocument cachedDocument;
+        // 識別開始時間，用於記錄緩存條目的識別耗時
+        private long startNanos;
+        // 有識別任務失敗時結果不完整，不保存到緩存
+        private boolean failed;
+
+        private RecognitionRequest(OCRHelper owner, Bitmap bitmap, long timeoutMs, boolean useCache,
+                                   RecognitionCallback callback) {
+            this.owner = owner;
+            this.bitmap = bitmap;
+            this.timeoutMs = timeoutMs;
+            this.useCache = useCache;
+            this.callback = callback;
+        }
+
+        /**
+         * 取消請求：尚未提交給識別器時不再提交，已提交的識別結果被丟棄
+         * ML Kit 的識別任務本身無法中止，已開始的識別會在後台完成後由 onInputReleased 通知
+         * @return 請求因此被取消時返回 true，已完成或已取消時返回 false
+         */
+        public boolean cancel() {
+            if (!finished.compareAndSet(false, true)) {
+                return false;
+            }
+            cancelled = true;
+            ScheduledFuture<?> pendingDeadline = deadline;
+            if (pendingDeadline != null) {
+                pendingDeadline.cancel(false);
+            }
+            owner.activeRequests.remove(this);
+            owner.runOnExecutor(callback::onCancelled);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * 是否已完成或已取消
+         */
+        public boolean isDone() {
+            return finished.get();
+        }
+    }
+
+    /**
+     * 異步識別圖片中的文字，使用默認期限
+     * @see #recognizeTextAsync(Bitmap, long, RecognitionCallback)
+     */
+    public RecognitionRequest recognizeTextAsync(Bitmap bitmap, RecognitionCallback callback) {
+        return recognizeTextAsync(bitmap, RECOGNITION_TIMEOUT_MS, callback);
+    }
+
+    /**
+     * 異步識別圖片中的文字
+     * 先找出文字區域（見 setRegionProposalEnabled），每個區域裁剪縮放後由中文和英文識別器同時識別；
+     * 所有識別都完成或到達期限時合併結果（座標為原圖座標）並回調
+     * 可以在任何線程調用，不阻塞；識別器回調、合併和期限計時都在一個 OCR 執行器線程上進行
+     * @param bitmap 要識別的圖片，在 onInputReleased 之前不能重用或回收
+     * @param timeoutMs 期限（毫秒），從提交時起計算
+     * @return 請求句柄，可用於取消（例如被新的拍攝取代時）
+     */
+    public RecognitionRequest recognizeTextAsync(Bitmap bitmap, long timeoutMs, RecognitionCallback callback) {
+        return recognizeTextAsync(bitmap, timeoutMs, true, callback);
+    }
+
+    /**
+     * 異步識別圖片中的文字，可以讓單個請求不使用結果緩存
+     * 需要每次都真正重新識別的調用方（例如以多次識別結果一致判斷文字穩定的連續朗讀）應傳入 false
+     * @param useCache 是否查找和保存結果緩存；為 true 時還需要 setResultCacheEnabled 開啟
+     * @see #recognizeTextAsync(Bitmap, long, RecognitionCallback)
+     */
+    public RecognitionRequest recognizeTextAsync(Bitmap bitmap, long timeoutMs, boolean useCache,
+                                                 RecognitionCallback callback) {
+        RecognitionRequest request = new RecognitionRequest(this, bitmap, timeoutMs, useCache, callback);
+        activeRequests.add(request);
+        try {
+            ocrExecutor.execute(() -> startRecognition(request));
+        } catch (RejectedExecutionException e) {
+            // 已經關閉
+            Log.w(TAG, "OCR執行器已關閉，取消識別請求");
+            request.cancel();
+            runOnExecutor(callback::onInputReleased);
+        }
+        return request;
+    }
+
+    /**
+     * 識別圖片中的文字（同步）
+     * 等待異步識別完成或到達默認期限；需要在後台線程調用（等待期間阻塞），不能在 OCR 執行器線程調用
      * @param bitmap 要識別的圖片
-     * @return 識別結果列表
+     * @return 識別結果；取消或被中斷時返回 OCRDocument.INCOMPLETE
+     */
+    public OCRDocument recognizeText(Bitmap bitmap) {
+        AtomicReference<OCRDocument> result = new AtomicReference<>(OCRDocument.INCOMPLETE);
+        CountDownLatch latch = new CountDownLatch(1);
+        RecognitionRequest request = recognizeTextAsync(bitmap, new RecognitionCallback() {
+            @Override
+            public void onResult(OCRDocument document) {
+                result.set(document);
+                latch.countDown();
+            }
+
+            @Override
+            public void onCancelled() {
+                latch.countDown();
+            }
+        });
+
+        try {
+            // 期限由異步請求保證，這裡多等一段時間只是防止執行器異常時永久阻塞
+            if (!latch.await(RECOGNITION_TIMEOUT_MS + SYNC_WAIT_MARGIN_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "等待OCR結果超時");
+                request.cancel();
+            }
+        } catch (InterruptedException e) {
+            request.cancel();
+            Thread.currentThread().interrupt();
+        }
+        return result.get();
+    }
+
+    /**
+     * 在 OCR 執行器線程準備識別輸入、提交識別任務並開始計時
+     */
+    private void startRecognition(RecognitionRequest request) {
+        if (request.isDone()) {
+            // 提交前已被取消，識別器從未讀取輸入圖片
+            releaseInput(request);
+            return;
+        }
+        com.google.mlkit.vision.text.TextRecognizer chinese = chineseTextRecognizer;
+        com.google.mlkit.vision.text.TextRecognizer english = englishTextRecognizer;
+        if (chinese == null || english == null) {
+            request.cancel();
+            releaseInput(request);
+            return;
+        }
+
+        try {
+            if (resultCacheEnabled && request.useCache && lookupCachedResult(request)) {
+                return;
+            }
+            request.startNanos = System.nanoTime();
+            prepareInputs(request);
+            // 回調在本線程執行，提交完成前不會遞減
+            for (int i = 0; i < request.inputs.length; i++) {
+                InputImage image = InputImage.fromBitmap(request.inputs[i], 0);
+                submitRecognition(chinese, image, request, i, true);
+                request.pendingTasks++;
+                submitRecognition(english, image, request, i, false);
+                request.pendingTasks++;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "OCR處理異常: " + e.getMessage());
+            request.failed = true;
+            if (request.pendingTasks == 0) {
+                recycleCrops(request);
+                releaseInput(request);
+            }
+            finishRequest(request);
+            return;
+        }
+        if (request.cropped) {
+            // 識別器只讀取裁剪出的圖片，原圖可以交還調用方
+            releaseInput(request);
+        }
+
+        try {
+            request.deadline = ocrExecutor.schedule(() -> {
+                if (!request.isDone()) {
+                    Log.w(TAG, "OCR識別超時，使用已完成的結果");
+                    finishRequest(request);
+                }
+            }, request.timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 執行器正在關閉，close 會取消這個請求
+        }
+    }
+
+    /**
+     * 計算輸入圖片的感知哈希並查找緩存；命中時交還輸入圖片並直接回調緩存的結果
+     * @return 是否命中
+     */
+    private boolean lookupCachedResult(RecognitionRequest request) {
+        request.cacheKey = resultCache.hash(request.bitmap);
+        OCRDocument cached = resultCache.get(request.cacheKey);
+        if (cached == null) {
+            return false;
+        }
+        Log.d(TAG, "OCR結果緩存命中: " + resultCache.formatStats());
+        releaseInput(request);
+        request.cachedDocument = cached;
+        finishRequest(request);
+        return true;
+    }
+
+    /**
+     * 確定識別輸入：啟用文字區域候選且找到候選區域時，把每個區域裁剪並按字符高度縮小；
+     * 否則（或裁剪失敗時）識別整幀
+     */
+    private void prepareInputs(RecognitionRequest request) {
+        Bitmap bitmap = request.bitmap;
+        if (regionProposalEnabled) {
+            TextRegionProposer.Proposal proposal = regionProposer.propose(bitmap);
+            lastSavedAreaFraction = proposal.getSavedFraction();
+            Log.d(TAG, String.format("文字區域候選: %d 個%s, 送入OCR %d / %d 像素 (節省 %.0f%%), 耗時 %.1fms",
+                    proposal.getRegions().size(), proposal.isFullFrame() ? "（整幀）" : "",
+                    proposal.getOcrArea(), proposal.getFrameArea(),
+                    proposal.getSavedFraction() * 100, proposal.getElapsedMs()));
+            if (!proposal.isFullFrame() && cropRegions(request, proposal.getRegions())) {
+                return;
+            }
+        } else {
+            lastSavedAreaFraction = 0f;
+        }
+        request.inputs = new Bitmap[] { bitmap };
+        request.transforms = new CropTransform[1];
+        request.chineseTexts = new Text[1];
+        request.englishTexts = new Text[1];
+        request.cropped = false;
+    }
+
+    private boolean cropRegions(RecognitionRequest request, List<TextRegionProposer.Region> regions) {
+        int count = regions.size();
+        Bitmap[] crops = new Bitmap[count];
+        CropTransform[] transforms = new CropTransform[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                Rect bounds = regions.get(i).getBounds();
+                float scale = regions.get(i).getScale();
+                Matrix matrix = new Matrix();
+                matrix.setScale(scale, scale);
+                crops[i] = Bitmap.createBitmap(request.bitmap, bounds.left, bounds.top,
+                        bounds.width(), bounds.height(), matrix, true);
+                // 按實際輸出尺寸換算，避免取整誤差
+                transforms[i] = new CropTransform(bounds.left, bounds.top,
+                        (float) bounds.width() / crops[i].getWidth());
+            }
+        } catch (RuntimeException | OutOfMemoryError e) {
+            Log.w(TAG, "裁剪文字區域失敗，改為識別整幀: " + e.getMessage());
+            for (Bitmap crop : crops) {
+                if (crop != null && crop != request.bitmap) {
+                    crop.recycle();
+                }
+            }
+            return false;
+        }
+        request.inputs = crops;
+        request.transforms = transforms;
+        request.chineseTexts = new Text[count];
+        request.englishTexts = new Text[count];
+        request.cropped = true;
+        return true;
+    }
+
+    private void submitRecognition(com.google.mlkit.vision.text.TextRecognizer recognizer, InputImage image,
+                                   RecognitionRequest request, int index, boolean chinese) {
+        recognizer.process(image).addOnCompleteListener(this::runOnExecutor, task -> {
+            if (request.isDone()) {
+                // 已取消或已超時，丟棄結果
+            } else if (task.isSuccessful()) {
+                if (chinese) {
+                    request.chineseTexts[index] = task.getResult();
+                } else {
+                    request.englishTexts[index] = task.getResult();
+                }
+            } else {
+                Exception e = task.getException();
+                request.failed = true;
+                Log.e(TAG, (chinese ? "中文" : "英文") + "OCR識別失敗: " + (e != null ? e.getMessage() : "未知錯誤"));
+            }
+            if (--request.pendingTasks == 0) {
+                recycleCrops(request);
+                releaseInput(request);
+                finishRequest(request);
+            }
+        });
+    }
+
+    /**
+     * 通知調用方輸入圖片不再被讀取（每個請求只通知一次，在 OCR 執行器線程調用）
      */
-    public List<OCRResult> recognizeText(Bitmap bitmap) {
-        List<OCRResult> results = new ArrayList<>();
+    private static void releaseInput(RecognitionRequest request) {
+        if (!request.inputReleased) {
+            request.inputReleased = true;
+            request.callback.onInputReleased();
+        }
+    }
+
+    /**
+     * 所有識別任務結束後回收裁剪出的圖片
+     */
+    private static void recycleCrops(RecognitionRequest request) {
+        if (request.cropped) {
+            for (Bitmap crop : request.inputs) {
+                if (crop != null && crop != request.bitmap) {
+                    crop.recycle();
+                }
+            }
+            request.cropped = false;
+        }
+    }
+
+    /**
+     * 合併已完成的結果並回調（在 OCR 執行器線程調用，已完成或已取消的請求忽略）
+     */
+    private void finishRequest(RecognitionRequest request) {
+        if (!request.finished.compareAndSet(false, true)) {
+            return;
+        }
+        ScheduledFuture<?> pendingDeadline = request.deadline;
+        if (pendingDeadline != null) {
+            pendingDeadline.cancel(false);
+        }
+        activeRequests.remove(request);
+
+        // 提交前失敗或合併異常時沒有結果
+        OCRDocument document = OCRDocument.INCOMPLETE;
+        if (request.cachedDocument != null) {
+            document = request.cachedDocument;
+        } else if (request.inputs != null) {
+            try {
+                List<OCRDocument.Block> blocks = new ArrayList<>();
+                for (int i = 0; i < request.inputs.length; i++) {
+                    collectBlocks(request.chineseTexts[i], request.englishTexts[i], request.transforms[i], blocks);
+                }
+                // 超時（仍有任務未完成）或有任務失敗時結果不完整
+                boolean complete = request.pendingTasks == 0 && !request.failed;
+                document = new OCRDocument(blocks, complete);
+                Log.d(TAG, String.format("合併後: %d 個文字塊, %d 行%s", document.getBlockCount(),
+                        document.getLineCount(), complete ? "" : "（不完整）"));
+                // 只緩存完整的結果
+                if (request.cacheKey != null && complete) {
+                    resultCache.put(request.cacheKey, document, (System.nanoTime() - request.startNanos) / 1e6f);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "OCR結果合併異常: " + e.getMessage());
+            }
+            // 結果已交出，不再持有識別器的原始結果
+            request.chineseTexts = null;
+            request.englishTexts = null;
+        }
+        request.callback.onResult(document);
+    }
+
+    /**
+     * 在 OCR 執行器線程執行；執行器已關閉時在當前線程執行，保證回調不會丟失
+     */
+    private void runOnExecutor(Runnable command) {
+        try {
+            ocrExecutor.execute(command);
+        } catch (RejectedExecutionException e) {
+            command.run();
+        }
+    }
+
+    /**
+     * 舊的順序識別流程：中文識別完成後，沒有結果才再做英文識別
+     * 僅保留供 PerformanceBenchmark 比較延遲
+     */
+    OCRDocument recognizeTextSequential(Bitmap bitmap) {
+        AtomicReference<OCRDocument> result = new AtomicReference<>(OCRDocument.INCOMPLETE);
 
         try {
             // 創建輸入圖像
@@ -65,14 +567,13 @@ public class OCRHelper {
             // 先嘗試中文識別器
             chineseTextRecognizer.process(image)
                     .addOnSuccessListener(visionText -> {
-                        // 處理識別結果
-                        processTextRecognitionResult(visionText, results, "中文識別");
+                        OCRDocument document = buildDocument(visionText, "中文識別");
                         
-                        // 如果中文識別結果較少，再嘗試英文識別器
-                        if (results.isEmpty() || results.size() < 2) {
+                        // 如果中文識別沒有結果，再嘗試英文識別器
+                        if (document.isEmpty()) {
                             englishTextRecognizer.process(image)
                                     .addOnSuccessListener(englishText -> {
-                                        processTextRecognitionResult(englishText, results, "英文識別");
+                                        result.set(buildDocument(englishText, "英文識別"));
                                         latch.countDown();
                                     })
                                     .addOnFailureListener(e -> {
@@ -80,6 +581,7 @@ public class OCRHelper {
                                         latch.countDown();
                                     });
                         } else {
+                            result.set(document);
                             latch.countDown();
                         }
                     })
@@ -88,7 +590,7 @@ public class OCRHelper {
                         // 中文識別失敗，嘗試英文識別
                         englishTextRecognizer.process(image)
                                 .addOnSuccessListener(englishText -> {
-                                    processTextRecognitionResult(englishText, results, "英文識別");
+                                    result.set(buildDocument(englishText, "英文識別"));
                                     latch.countDown();
                                 })
                                 .addOnFailureListener(e2 -> {
@@ -97,134 +599,256 @@ public class OCRHelper {
                                 });
                     });
 
-            // 等待識別完成（最多等待10秒）
-            latch.await();
+            // 等待識別完成；識別器沒有回調時不永久阻塞（兩次識別共用同一期限）
+            if (!latch.await(RECOGNITION_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "順序OCR識別超時");
+                return OCRDocument.INCOMPLETE;
+            }
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             Log.e(TAG, "OCR處理異常: " + e.getMessage());
         }
 
-        return results;
+        return result.get();
     }
 
     /**
-     * 處理文字識別結果
+     * 合併兩個識別器對同一輸入的結果
+     * 中文文字塊與重疊的英文文字塊視為同一區域，區域內逐行比較取質量較高的一行；
+     * 沒有重疊的文字塊原樣保留；邊界框換算到原圖座標，閱讀順序由 OCRDocument 排列
+     * @param transform 裁剪區域的座標換算，整幀識別時為 null
      */
-    private void processTextRecognitionResult(Text visionText, List<OCRResult> results, String recognizerType) {
-        String fullText = visionText.getText();
-        Log.d(TAG, "識別到的完整文字: " + fullText);
-
-        if (fullText != null && !fullText.trim().isEmpty()) {
-            // 創建主要識別結果
-            OCRResult mainResult = new OCRResult(
-                    fullText,
-                    recognizerType + "完整文字",
-                    calculateConfidence(fullText)
-            );
-            results.add(mainResult);
-
-            // 處理文字塊
-            for (Text.TextBlock block : visionText.getTextBlocks()) {
-                String blockText = block.getText();
-                if (blockText != null && !blockText.trim().isEmpty()) {
-                    OCRResult blockResult = new OCRResult(
-                            blockText,
-                            recognizerType + "文字塊",
-                            calculateConfidence(blockText)
-                    );
-                    results.add(blockResult);
-                }
+    private void collectBlocks(Text chineseText, Text englishText, CropTransform transform,
+                               List<OCRDocument.Block> blocks) {
+        if (englishText == null) {
+            if (chineseText != null) {
+                addBlocks(chineseText, "中文識別", transform, blocks);
+            }
+            return;
+        }
+        if (chineseText == null) {
+            addBlocks(englishText, "英文識別", transform, blocks);
+            return;
+        }
 
-                // 處理文字行
-                for (Text.Line line : block.getLines()) {
-                    String lineText = line.getText();
-                    if (lineText != null && !lineText.trim().isEmpty()) {
-                        OCRResult lineResult = new OCRResult(
-                                lineText,
-                                recognizerType + "文字行",
-                                calculateConfidence(lineText)
-                        );
-                        results.add(lineResult);
-                    }
-                }
+        List<Text.TextBlock> englishBlocks = englishText.getTextBlocks();
+        List<Rect> englishBlockBoxes = new ArrayList<>();
+        for (Text.TextBlock englishBlock : englishBlocks) {
+            englishBlockBoxes.add(englishBlock.getBoundingBox());
+        }
+        boolean[] englishMatched = new boolean[englishBlocks.size()];
+        for (Text.TextBlock chineseBlock : chineseText.getTextBlocks()) {
+            int match = findOverlapping(chineseBlock.getBoundingBox(), englishBlockBoxes, englishMatched);
+            OCRDocument.Block block = new OCRDocument.Block(CropTransform.map(transform, chineseBlock.getBoundingBox()));
+            if (match < 0) {
+                addLines(block, chineseBlock.getLines(), "中文識別", transform);
+            } else {
+                englishMatched[match] = true;
+                mergeLines(chineseBlock.getLines(), englishBlocks.get(match).getLines(), block, transform);
+            }
+            blocks.add(block);
+        }
+        for (int i = 0; i < englishBlocks.size(); i++) {
+            if (!englishMatched[i]) {
+                Text.TextBlock englishBlock = englishBlocks.get(i);
+                OCRDocument.Block block = new OCRDocument.Block(CropTransform.map(transform, englishBlock.getBoundingBox()));
+                addLines(block, englishBlock.getLines(), "英文識別", transform);
+                blocks.add(block);
             }
         }
     }
 
     /**
-     * 計算識別置信度（簡單實現）
+     * 單個識別器的結果轉換為 OCRDocument
      */
-    private float calculateConfidence(String text) {
-        if (text == null || text.trim().isEmpty()) {
-            return 0.0f;
-        }
+    private static OCRDocument buildDocument(Text visionText, String source) {
+        List<OCRDocument.Block> blocks = new ArrayList<>();
+        addBlocks(visionText, source, null, blocks);
+        return new OCRDocument(blocks);
+    }
 
-        // 簡單的置信度計算：基於文字長度和字符類型
-        float confidence = 0.5f; // 基礎置信度
+    private static void addBlocks(Text visionText, String source, CropTransform transform,
+                                  List<OCRDocument.Block> blocks) {
+        for (Text.TextBlock textBlock : visionText.getTextBlocks()) {
+            OCRDocument.Block block = new OCRDocument.Block(CropTransform.map(transform, textBlock.getBoundingBox()));
+            addLines(block, textBlock.getLines(), source, transform);
+            blocks.add(block);
+        }
+    }
 
-        // 文字長度影響
-        if (text.length() > 10) {
-            confidence += 0.2f;
+    private static void addLines(OCRDocument.Block block, List<Text.Line> lines, String source,
+                                 CropTransform transform) {
+        for (Text.Line line : lines) {
+            block.addLine(toLine(line, source, transform));
         }
+    }
 
-        // 中文字符加分
-        int chineseCount = 0;
-        for (int i = 0; i < text.length(); i++) {
-            char ch = text.charAt(i);
-            if ((ch >= 0x4E00 && ch <= 0x9FFF) || // 基本中文字符
-                    (ch >= 0x3400 && ch <= 0x4DBF) || // 擴展A區
-                    (ch >= 0x20000 && ch <= 0x2A6DF)) {   // 擴展B區
-                chineseCount++;
+    private static OCRDocument.Line toLine(Text.Line textLine, String source, CropTransform transform) {
+        OCRDocument.Line line = new OCRDocument.Line(textLine.getText(),
+                CropTransform.map(transform, textLine.getBoundingBox()), source);
+        List<Text.Element> elements = textLine.getElements();
+        if (elements != null) {
+            for (Text.Element element : elements) {
+                line.addElement(element.getText(), CropTransform.map(transform, element.getBoundingBox()));
             }
         }
+        return line;
+    }
 
-        if (chineseCount > 0) {
-            confidence += 0.3f;
+    /**
+     * 裁剪區域內的座標換算回原圖
+     */
+    private static final class CropTransform {
+        final int left;
+        final int top;
+        final float inverseScale;
+
+        CropTransform(int left, int top, float inverseScale) {
+            this.left = left;
+            this.top = top;
+            this.inverseScale = inverseScale;
         }
 
-        return Math.min(confidence, 1.0f);
+        static Rect map(CropTransform transform, Rect box) {
+            if (transform == null || box == null) {
+                return box;
+            }
+            return new Rect(
+                    transform.left + Math.round(box.left * transform.inverseScale),
+                    transform.top + Math.round(box.top * transform.inverseScale),
+                    transform.left + Math.round(box.right * transform.inverseScale),
+                    transform.top + Math.round(box.bottom * transform.inverseScale));
+        }
     }
 
     /**
-     * 格式化識別結果為語音文本
+     * 同一區域內逐行合併：中文行與重疊的英文行比較，保留質量較高的一行，其餘行原樣保留
      */
-    public String formatResultsForSpeech(List<OCRResult> results) {
-        if (results.isEmpty()) {
-            return "未識別到任何文字";
+    private void mergeLines(List<Text.Line> chineseLines, List<Text.Line> englishLines, OCRDocument.Block block,
+                            CropTransform transform) {
+        List<Rect> englishLineBoxes = new ArrayList<>();
+        for (Text.Line englishLine : englishLines) {
+            englishLineBoxes.add(englishLine.getBoundingBox());
+        }
+        boolean[] englishMatched = new boolean[englishLines.size()];
+        for (Text.Line chineseLine : chineseLines) {
+            int match = findOverlapping(chineseLine.getBoundingBox(), englishLineBoxes, englishMatched);
+            if (match < 0) {
+                block.addLine(toLine(chineseLine, "中文識別", transform));
+                continue;
+            }
+            englishMatched[match] = true;
+            Text.Line englishLine = englishLines.get(match);
+            if (lineQuality(englishLine.getText()) >= lineQuality(chineseLine.getText())) {
+                block.addLine(toLine(englishLine, "英文識別", transform));
+            } else {
+                block.addLine(toLine(chineseLine, "中文識別", transform));
+            }
+        }
+        for (int i = 0; i < englishLines.size(); i++) {
+            if (!englishMatched[i]) {
+                block.addLine(toLine(englishLines.get(i), "英文識別", transform));
+            }
         }
+    }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("識別到以下內容：\n\n");
+    /**
+     * 找出與 box 重疊最多且尚未配對的候選邊界框，沒有時返回 -1
+     */
+    private static int findOverlapping(Rect box, List<Rect> candidates, boolean[] matched) {
+        if (box == null) {
+            return -1;
+        }
+        int best = -1;
+        float bestOverlap = REGION_OVERLAP_THRESHOLD;
+        for (int i = 0; i < candidates.size(); i++) {
+            if (matched[i]) {
+                continue;
+            }
+            float overlap = overlapRatio(box, candidates.get(i));
+            if (overlap >= bestOverlap) {
+                best = i;
+                bestOverlap = overlap;
+            }
+        }
+        return best;
+    }
 
-        // 使用第一個結果（通常是最完整的）
-        OCRResult mainResult = results.get(0);
-        sb.append(mainResult.getText());
+    /**
+     * 交集面積佔較小邊界框面積的比例
+     */
+    private static float overlapRatio(Rect a, Rect b) {
+        if (a == null || b == null) {
+            return 0f;
+        }
+        int width = Math.min(a.right, b.right) - Math.max(a.left, b.left);
+        int height = Math.min(a.bottom, b.bottom) - Math.max(a.top, b.top);
+        if (width <= 0 || height <= 0) {
+            return 0f;
+        }
+        int smaller = Math.min(a.width() * a.height(), b.width() * b.height());
+        return smaller > 0 ? (float) width * height / smaller : 0f;
+    }
 
-        return sb.toString();
+    /**
+     * 文字行質量：只有中文識別器能輸出漢字，含漢字的行優先；
+     * 否則按有效字符（字母、數字）數減去異常符號數比較，英文識別器對拉丁文字更準確，相同時取英文
+     */
+    private static int lineQuality(String text) {
+        if (text == null) {
+            return Integer.MIN_VALUE;
+        }
+        int valid = 0;
+        int invalid = 0;
+        int chinese = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch >= 0x4E00 && ch <= 0x9FFF || ch >= 0x3400 && ch <= 0x4DBF) {
+                chinese++;
+            } else if (Character.isLetterOrDigit(ch)) {
+                valid++;
+            } else if (!Character.isWhitespace(ch) && ".,:;!?'\"()-/$%&+#@".indexOf(ch) < 0) {
+                invalid++;
+            }
+        }
+        return chinese > 0 ? 10000 + chinese : valid - 2 * invalid;
+    }
+
+    /**
+     * 格式化識別結果為語音文本
+     */
+    public String formatResultsForSpeech(OCRDocument document) {
+        if (document.isEmpty()) {
+            return "未識別到任何文字";
+        }
+        return "識別到以下內容：\n\n" + document.getText();
     }
 
     /**
-     * 格式化詳細結果
+     * 格式化詳細結果：按閱讀順序列出文字區域
      */
-    public String formatDetailedResults(List<OCRResult> results) {
-        if (results.isEmpty()) {
+    public String formatDetailedResults(OCRDocument document) {
+        if (document.isEmpty()) {
             return "未識別到任何文字";
         }
 
+        List<OCRDocument.Block> blocks = document.getBlocks();
         StringBuilder sb = new StringBuilder();
-        sb.append(String.format("識別到 %d 個文字區域：\n\n", results.size()));
+        sb.append(String.format("識別到 %d 個文字區域：\n\n", blocks.size()));
 
-        for (int i = 0; i < Math.min(results.size(), 5); i++) {
-            OCRResult result = results.get(i);
+        for (int i = 0; i < Math.min(blocks.size(), 5); i++) {
+            OCRDocument.Block block = blocks.get(i);
             sb.append(String.format("%d. %s (%.0f%%)\n",
                     i + 1,
-                    result.getText(),
-                    result.getConfidence() * 100
+                    block.getText(),
+                    block.getConfidence() * 100
             ));
         }
 
-        if (results.size() > 5) {
-            sb.append(String.format("\n...還有 %d 個文字區域", results.size() - 5));
+        if (blocks.size() > 5) {
+            sb.append(String.format("\n...還有 %d 個文字區域", blocks.size() - 5));
         }
 
         return sb.toString();
@@ -234,6 +858,11 @@ public class OCRHelper {
      * 關閉文字識別器
      */
     public void close() {
+        // 先取消未完成的請求，等待中的調用方收到 onCancelled
+        for (RecognitionRequest request : new ArrayList<>(activeRequests)) {
+            request.cancel();
+        }
+        ocrExecutor.shutdown();
         if (chineseTextRecognizer != null) {
             chineseTextRecognizer.close();
             chineseTextRecognizer = null;
@@ -244,29 +873,7 @@ public class OCRHelper {
             englishTextRecognizer = null;
             Log.d(TAG, "英文OCR文字識別器已關閉");
         }
-    }
-
-    /**
-     * OCR識別結果類
-     */
-    public static class OCRResult {
-        private String text;
-        private String type;
-        private float confidence;
-
-        public OCRResult(String text, String type, float confidence) {
-            this.text = text;
-            this.type = type;
-            this.confidence = confidence;
-        }
-
-        public String getText() { return text; }
-        public String getType() { return type; }
-        public float getConfidence() { return confidence; }
-
-        @Override
-        public String toString() {
-            return String.format("[%s] %s (%.0f%%)", type, text, confidence * 100);
-        }
+        Log.d(TAG, "OCR結果緩存: " + resultCache.formatStats());
+        resultCache.clear();
     }
 }
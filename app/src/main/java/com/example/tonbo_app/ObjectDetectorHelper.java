@@ -2,16 +2,21 @@ package com.example.tonbo_app;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.RectF;
 import android.util.Log;
 
+import androidx.camera.core.ImageProxy;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.support.image.ColorSpaceType;
+import org.tensorflow.lite.support.image.ImageProperties;
 import org.tensorflow.lite.support.image.TensorImage;
 import org.tensorflow.lite.task.vision.detector.Detection;
 import org.tensorflow.lite.task.vision.detector.ObjectDetector;
 
-import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -115,8 +120,9 @@ public class ObjectDetectorHelper {
     private static final int MAX_CONSECUTIVE_FAILURES = 5;  // 最大連續失敗次數
     private static final long DETECTION_TIMEOUT_MS = 5000;  // 檢測超時時間
     
-    private ObjectDetector objectDetector;
-    private YoloDetector yoloDetector;
+    // 共享檢測器由 ModelRegistry 在後台創建，就緒前為 null
+    private volatile ObjectDetector objectDetector;
+    private volatile YoloDetector yoloDetector;
     private Context context;
     private boolean useYolo = false;  // 是否使用YOLO檢測器
     
@@ -125,8 +131,24 @@ public class ObjectDetectorHelper {
     private long lastSuccessfulDetection = 0;
     private int totalDetections = 0;
     private int successfulDetections = 0;
-    private List<DetectionResult> lastSuccessfulResults = new ArrayList<>();
+    // 檢測結果以結構數組保存，每幀重用
+    private final DetectionBatch candidates = new DetectionBatch();
+    private final DetectionBatch lastSuccessfulResults = new DetectionBatch();
+    private final DetectionBatch frameResults = new DetectionBatch();
     private long lastDetectionTime = 0;
+    // 最近一次單次推理嘗試的耗時（毫秒），供幀調度器計算檢測間隔
+    private volatile float lastInferenceMs = 0f;
+    // 兩次檢測的最短間隔，由外部調度器控制頻率時設為 0
+    private volatile long minDetectionIntervalMs = AppConstants.DETECTION_FREQUENCY_LIMIT_MS;
+    
+    // 相機幀直接轉換為SSD輸入（uint8 RGB），跳過Bitmap
+    private final YuvToTensorConverter yuvConverter = new YuvToTensorConverter();
+    private ByteBuffer ssdInputBuffer;
+    private ImageProperties ssdInputProperties;
+    
+    // NMS 引擎（直接處理檢測批次的數組）
+    private final NonMaxSuppression nms =
+            new NonMaxSuppression(NonMaxSuppression.Mode.CLASS_AWARE, AppConstants.NMS_THRESHOLD);
     
     // COCO類別中文映射
     private static final Map<String, String> LABEL_MAP_ZH = new HashMap<>();
@@ -221,57 +243,142 @@ public class ObjectDetectorHelper {
     }
     
     private void setupObjectDetector() {
-        try {
-            ObjectDetector.ObjectDetectorOptions options =
-                    ObjectDetector.ObjectDetectorOptions.builder()
-                            .setScoreThreshold(AppConstants.SCORE_THRESHOLD)
-                            .setMaxResults(AppConstants.MAX_RESULTS)
-                            .build();
-            
-            objectDetector = ObjectDetector.createFromFileAndOptions(
-                    context,
-                    AppConstants.MODEL_FILE,
-                    options
-            );
-            
-            Log.d(TAG, "✅ SSD物體檢測器初始化成功！");
-        } catch (IOException e) {
-            Log.e(TAG, "❌ 初始化SSD物體檢測器失敗: " + e.getMessage());
-        }
+        ModelRegistry.getInstance(context).getObjectDetector(detector -> {
+            if (detector != null) {
+                objectDetector = detector;
+                Log.d(TAG, "✅ SSD物體檢測器初始化成功！");
+            } else {
+                Log.e(TAG, "❌ 初始化SSD物體檢測器失敗");
+            }
+        });
     }
     
     private void setupYoloDetector() {
-        try {
-            yoloDetector = new YoloDetector(context);
-            // 環境識別主要使用SSD，YOLO作為備用
-            useYolo = false; // 默認禁用YOLO，專注於環境識別
-            Log.d(TAG, "✅ YOLO檢測器初始化成功（作為備用）！");
-        } catch (Exception e) {
-            Log.e(TAG, "❌ 初始化YOLO檢測器失敗: " + e.getMessage());
-            useYolo = false;
-        }
+        // 環境識別主要使用SSD，YOLO作為備用
+        useYolo = false; // 默認禁用YOLO，專注於環境識別
+        ModelRegistry.getInstance(context).getDetector(YoloDetector.getPreferredEngine(context), detector -> {
+            if (detector != null) {
+                yoloDetector = detector;
+                Log.d(TAG, "✅ YOLO檢測器初始化成功（作為備用）！");
+            } else {
+                Log.e(TAG, "❌ 初始化YOLO檢測器失敗");
+            }
+        });
     }
     
     /**
      * 檢測圖像中的物體 - 使用雙檢測器融合提高準確率和穩定性
+     * 邊界框為正規化座標 (0-1)
      */
     public List<DetectionResult> detect(Bitmap bitmap) {
-        List<DetectionResult> results = new ArrayList<>();
-        long startTime = System.currentTimeMillis();
-        
         if (bitmap == null || bitmap.isRecycled()) {
             Log.w(TAG, "無效的bitmap");
-            return getLastSuccessfulResults();
+            getLastSuccessfulResults(frameResults);
+        } else {
+            detectFrame(bitmap, null, null, frameResults, true);
         }
+        return toResults(frameResults);
+    }
+    
+    /**
+     * 檢測圖像中的物體，結果寫入 out（不為每個框分配對象）
+     * @return true 表示本幀運行了檢測，out 為本幀結果（可能為空）；
+     *         false 表示被節流或出錯，out 為上次成功的結果
+     */
+    public boolean detect(Bitmap bitmap, DetectionBatch out) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            Log.w(TAG, "無效的bitmap");
+            getLastSuccessfulResults(out);
+            return false;
+        }
+        return detectFrame(bitmap, null, null, out, false);
+    }
+    
+    /**
+     * 直接檢測相機幀 - YUV平面直接轉換為模型輸入，不經過JPEG和Bitmap
+     * 必須在 ImageProxy 關閉前調用
+     */
+    public List<DetectionResult> detect(ImageProxy image) {
+        if (image == null) {
+            Log.w(TAG, "無效的相機幀");
+            getLastSuccessfulResults(frameResults);
+        } else {
+            detectFrame(null, image, null, frameResults, true);
+        }
+        return toResults(frameResults);
+    }
+    
+    /**
+     * 直接檢測相機幀，結果寫入 out（不為每個框分配對象）
+     * 必須在 ImageProxy 關閉前調用
+     * @return true 表示本幀運行了檢測，out 為本幀結果（可能為空，供追蹤器淘汰消失的物體）；
+     *         false 表示被節流或出錯，out 為上次成功的結果
+     */
+    public boolean detect(ImageProxy image, DetectionBatch out) {
+        if (image == null) {
+            Log.w(TAG, "無效的相機幀");
+            getLastSuccessfulResults(out);
+            return false;
+        }
+        return detectFrame(null, image, null, out, false);
+    }
+    
+    /**
+     * 檢測已轉換好的幀（分階段流水線使用）
+     * @param rgbFrame uint8 RGB 幀，尺寸為 INPUT_SIZE x INPUT_SIZE，見 allocateFrameBuffer / convertFrame
+     * @return true 表示本幀運行了檢測，out 為本幀結果（可能為空）；
+     *         false 表示被節流或出錯，out 為上次成功的結果
+     */
+    public boolean detect(ByteBuffer rgbFrame, DetectionBatch out) {
+        if (rgbFrame == null) {
+            Log.w(TAG, "無效的RGB幀");
+            getLastSuccessfulResults(out);
+            return false;
+        }
+        return detectFrame(null, null, rgbFrame, out, false);
+    }
+    
+    /**
+     * 分配 detect(ByteBuffer, ...) 使用的幀緩衝區（uint8 RGB，INPUT_SIZE x INPUT_SIZE）
+     */
+    public static ByteBuffer allocateFrameBuffer() {
+        int inputSize = AppConstants.INPUT_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(inputSize * inputSize * 3);
+        buffer.order(ByteOrder.nativeOrder());
+        return buffer;
+    }
+    
+    /**
+     * 將相機幀轉換到幀緩衝區（拉伸到整幀，正規化座標與原始幀一致）
+     * 轉換器非線程安全，每個調用線程應使用自己的實例
+     */
+    public static void convertFrame(YuvToTensorConverter converter, ImageProxy image, ByteBuffer out) {
+        int inputSize = AppConstants.INPUT_SIZE;
+        out.rewind();
+        converter.convertToTensor(image, out, inputSize, inputSize, false);
+        out.rewind();
+    }
+    
+    /**
+     * 檢測流程（bitmap、image 和 rgbFrame 三選一）
+     * @param fallbackOnEmpty 未檢測到物體時是否重試並返回上次成功的結果（列表接口的舊行為）；
+     *                        為 false 時空場景只推理一次且不計為失敗
+     * @return out 是否為本幀的檢測結果
+     */
+    private boolean detectFrame(Bitmap bitmap, ImageProxy image, ByteBuffer rgbFrame,
+                                DetectionBatch out, boolean fallbackOnEmpty) {
+        long startTime = System.currentTimeMillis();
         
         // 檢查檢測頻率，避免過於頻繁
-        if (System.currentTimeMillis() - lastDetectionTime < 100) {
+        if (System.currentTimeMillis() - lastDetectionTime < minDetectionIntervalMs) {
             Log.d(TAG, "檢測頻率過高，返回上次結果");
-            return getLastSuccessfulResults();
+            getLastSuccessfulResults(out);
+            return false;
         }
         lastDetectionTime = System.currentTimeMillis();
         
         totalDetections++;
+        boolean fresh = false;
         
         try {
             // 檢查連續失敗次數
@@ -280,37 +387,43 @@ public class ObjectDetectorHelper {
                 resetDetectorState();
             }
             
-            // 使用重試機制進行檢測
-            results = detectWithRetry(bitmap);
+            // 使用重試機制進行檢測（空場景只在列表接口下重試）
+            detectWithRetry(bitmap, image, rgbFrame, candidates, fallbackOnEmpty);
             
-            if (!results.isEmpty()) {
+            if (!candidates.isEmpty()) {
                 // 檢測成功
                 consecutiveFailures = 0;
                 successfulDetections++;
                 lastSuccessfulDetection = System.currentTimeMillis();
-                lastSuccessfulResults = new ArrayList<>(results);
                 
                 // 應用後處理
-                results = applyPostProcessing(results);
+                applyPostProcessing(candidates, out);
+                lastSuccessfulResults.copyFrom(out);
+                fresh = true;
                 
                 Log.d(TAG, String.format("檢測成功: %d 個物體 (成功率: %.1f%%)", 
-                    results.size(), (float)successfulDetections / totalDetections * 100));
-            } else {
+                    out.size(), (float)successfulDetections / totalDetections * 100));
+            } else if (fallbackOnEmpty) {
                 // 檢測失敗，返回上次成功結果
                 Log.w(TAG, "檢測失敗，返回上次成功結果");
-                results = getLastSuccessfulResults();
+                getLastSuccessfulResults(out);
                 consecutiveFailures++;
+            } else {
+                // 未檢測到物體也是本幀的有效結果，不計為失敗
+                out.clear();
+                consecutiveFailures = 0;
+                fresh = true;
             }
             
         } catch (OutOfMemoryError e) {
             Log.e(TAG, "記憶體不足，檢測失敗: " + e.getMessage());
             System.gc();
             consecutiveFailures++;
-            results = getLastSuccessfulResults();
+            getLastSuccessfulResults(out);
         } catch (Exception e) {
             Log.e(TAG, "檢測過程中發生錯誤: " + e.getMessage());
             consecutiveFailures++;
-            results = getLastSuccessfulResults();
+            getLastSuccessfulResults(out);
         }
         
         long detectionTime = System.currentTimeMillis() - startTime;
@@ -318,50 +431,65 @@ public class ObjectDetectorHelper {
             Log.w(TAG, "檢測時間過長: " + detectionTime + "ms");
         }
         
-        // 只返回置信度最高的2個物體
-        if (results.size() > 2) {
-            // 按置信度排序
-            Collections.sort(results, new Comparator<DetectionResult>() {
-                @Override
-                public int compare(DetectionResult a, DetectionResult b) {
-                    return Float.compare(b.getConfidence(), a.getConfidence());
-                }
-            });
-            results = results.subList(0, 2);
-            Log.d(TAG, "限制檢測結果為2個物體");
-        }
-        
-        return results;
+        // 只返回置信度最高的2個物體（後處理結果已按置信度降序）
+        out.truncate(2);
+        return fresh;
     }
     
     /**
      * 使用重試機制進行檢測
+     * @param retryOnEmpty 未檢測到物體時是否重試；為 false 時空結果直接返回，只有異常才重試
      */
-    private List<DetectionResult> detectWithRetry(Bitmap bitmap) {
-        List<DetectionResult> results = new ArrayList<>();
+    private void detectWithRetry(Bitmap bitmap, ImageProxy image, ByteBuffer rgbFrame,
+                                 DetectionBatch out, boolean retryOnEmpty) {
+        out.clear();
         
         for (int attempt = 0; attempt < MAX_RETRY_ATTEMPTS; attempt++) {
             try {
+                long attemptStart = System.nanoTime();
+                String source = null;
+                
                 // 環境識別優先使用SSD檢測器（更適合環境描述）
                 if (objectDetector != null) {
-                    results = detectWithSSD(bitmap);
-                    if (!results.isEmpty()) {
-                        Log.d(TAG, String.format("SSD檢測成功 (嘗試 %d/%d): %d 個物體", 
-                            attempt + 1, MAX_RETRY_ATTEMPTS, results.size()));
-                        break;
+                    if (image != null) {
+                        detectWithSSD(image, out);
+                    } else if (rgbFrame != null) {
+                        detectWithSSD(rgbFrame, out);
+                    } else {
+                        detectWithSSD(bitmap, out);
+                    }
+                    if (!out.isEmpty()) {
+                        source = "SSD";
                     }
                 }
                 
                 // SSD失敗時才嘗試YOLO（作為備用）
-                if (useYolo && yoloDetector != null && results.isEmpty()) {
-                    results = detectWithYolo(bitmap);
-                    if (!results.isEmpty()) {
-                        Log.d(TAG, String.format("YOLO檢測成功 (嘗試 %d/%d): %d 個物體", 
-                            attempt + 1, MAX_RETRY_ATTEMPTS, results.size()));
-                        break;
+                if (source == null && useYolo && yoloDetector != null) {
+                    if (image != null) {
+                        detectWithYolo(image, out);
+                    } else if (rgbFrame != null) {
+                        detectWithYolo(rgbFrame, out);
+                    } else {
+                        detectWithYolo(bitmap, out);
+                    }
+                    if (!out.isEmpty()) {
+                        source = "YOLO";
                     }
                 }
                 
+                // 只記錄單次嘗試的推理時間，不含重試和等待
+                lastInferenceMs = (System.nanoTime() - attemptStart) / 1e6f;
+                if (source != null) {
+                    Log.d(TAG, String.format("%s檢測成功 (嘗試 %d/%d): %d 個物體", 
+                        source, attempt + 1, MAX_RETRY_ATTEMPTS, out.size()));
+                    break;
+                }
+                
+                // 空場景是有效結果，不需要重複推理
+                if (!retryOnEmpty) {
+                    break;
+                }
+                
                 // 如果檢測失敗，等待後重試
                 if (attempt < MAX_RETRY_ATTEMPTS - 1) {
                     try {
@@ -376,81 +504,68 @@ public class ObjectDetectorHelper {
             } catch (Exception e) {
                 Log.e(TAG, String.format("檢測嘗試 %d/%d 失敗: %s", 
                     attempt + 1, MAX_RETRY_ATTEMPTS, e.getMessage()));
+                out.clear();
                 if (attempt == MAX_RETRY_ATTEMPTS - 1) {
                     throw e;
                 }
             }
         }
-        
-        return results;
     }
     
     /**
-     * 應用後處理
+     * 應用後處理：過濾環境相關物體，再做 NMS 並限制數量
+     * 過濾在 results 上原地進行，保留的結果按置信度降序寫入 out
      */
-    private List<DetectionResult> applyPostProcessing(List<DetectionResult> results) {
+    private void applyPostProcessing(DetectionBatch results, DetectionBatch out) {
         // 過濾環境相關物體
-        results = filterEnvironmentRelevantObjects(results);
-        
-        // 應用非極大值抑制
-        results = applyNMS(results);
+        filterEnvironmentRelevantObjects(results);
         
-        // 按置信度排序
-        Collections.sort(results, (a, b) -> Float.compare(b.getConfidence(), a.getConfidence()));
-        
-        // 限制結果數量
-        if (results.size() > AppConstants.MAX_RESULTS) {
-            results = results.subList(0, AppConstants.MAX_RESULTS);
+        // 應用非極大值抑制，同時限制結果數量
+        int kept = nms.run(results.getBoxes(), results.getScores(), results.getClassIds(),
+                results.size(), 0f, AppConstants.MAX_RESULTS);
+        out.clear();
+        for (int k = 0; k < kept; k++) {
+            out.addFrom(results, nms.getKeptIndex(k));
         }
-        
-        return results;
     }
     
     /**
      * 過濾環境相關物體 - 增強版本，提高精準度
+     * 原地壓縮批次，不分配
      */
-    private List<DetectionResult> filterEnvironmentRelevantObjects(List<DetectionResult> results) {
-        List<DetectionResult> filtered = new ArrayList<>();
-        
-        for (DetectionResult result : results) {
-            // 檢查是否為環境相關物體
-            if (ENVIRONMENT_RELEVANT_OBJECTS.contains(result.getLabel())) {
-                // 額外檢查置信度，確保檢測質量
-                if (result.getConfidence() >= AppConstants.SCORE_THRESHOLD) {
-                    filtered.add(result);
-                    Log.d(TAG, "保留環境相關物體: " + result.getLabelZh() + " (置信度: " + result.getConfidence() + ")");
-                } else {
-                    Log.d(TAG, "過濾低置信度環境物體: " + result.getLabelZh() + " (置信度: " + result.getConfidence() + ")");
-                }
-            } else {
-                Log.d(TAG, "過濾非環境物體: " + result.getLabelZh());
+    private void filterEnvironmentRelevantObjects(DetectionBatch results) {
+        int count = results.size();
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            // 檢查是否為環境相關物體，並額外檢查置信度，確保檢測質量
+            if (ENVIRONMENT_RELEVANT_OBJECTS.contains(results.getLabel(i))
+                    && results.getScore(i) >= AppConstants.SCORE_THRESHOLD) {
+                results.move(i, kept++);
             }
         }
+        results.truncate(kept);
         
-        // 按置信度排序，優先顯示高置信度結果
-        filtered.sort((a, b) -> Float.compare(b.getConfidence(), a.getConfidence()));
-        
-        Log.d(TAG, String.format("環境物體過濾: %d -> %d", results.size(), filtered.size()));
-        return filtered;
+        Log.d(TAG, String.format("環境物體過濾: %d -> %d", count, kept));
     }
     
     /**
-     * 獲取上次成功的檢測結果
+     * 將上次成功的檢測結果寫入 out（沒有或已過期時為空）
      */
-    private List<DetectionResult> getLastSuccessfulResults() {
+    private void getLastSuccessfulResults(DetectionBatch out) {
+        out.clear();
         if (lastSuccessfulResults.isEmpty()) {
             Log.d(TAG, "沒有可用的歷史檢測結果");
-            return new ArrayList<>();
+            return;
         }
         
         // 檢查歷史結果是否過期
         if (System.currentTimeMillis() - lastSuccessfulDetection > 10000) { // 10秒過期
             Log.d(TAG, "歷史檢測結果已過期");
-            return new ArrayList<>();
+            return;
         }
         
         Log.d(TAG, "返回歷史檢測結果: " + lastSuccessfulResults.size() + " 個物體");
-        return new ArrayList<>(lastSuccessfulResults);
+        out.copyFrom(lastSuccessfulResults);
     }
     
     /**
@@ -465,151 +580,161 @@ public class ObjectDetectorHelper {
     /**
      * 使用SSD檢測器檢測
      */
-    private List<DetectionResult> detectWithSSD(Bitmap bitmap) {
-        List<DetectionResult> results = new ArrayList<>();
-        TensorImage tensorImage = null;
+    private void detectWithSSD(Bitmap bitmap, DetectionBatch out) {
+        TensorImage tensorImage = TensorImage.fromBitmap(bitmap);
+        detectWithSSD(tensorImage, out);
+    }
+    
+    /**
+     * 使用SSD檢測器檢測相機幀
+     * YUV 直接寫入可重用的 uint8 RGB 緩衝區（拉伸到整幀），正規化座標與原始幀一致
+     */
+    private void detectWithSSD(ImageProxy image, DetectionBatch out) {
+        if (ssdInputBuffer == null) {
+            ssdInputBuffer = allocateFrameBuffer();
+        }
+        convertFrame(yuvConverter, image, ssdInputBuffer);
+        detectWithSSD(ssdInputBuffer, out);
+    }
+    
+    /**
+     * 使用SSD檢測器檢測已轉換的 uint8 RGB 幀
+     */
+    private void detectWithSSD(ByteBuffer rgbFrame, DetectionBatch out) {
+        if (ssdInputProperties == null) {
+            int inputSize = AppConstants.INPUT_SIZE;
+            ssdInputProperties = ImageProperties.builder()
+                    .setWidth(inputSize)
+                    .setHeight(inputSize)
+                    .setColorSpaceType(ColorSpaceType.RGB)
+                    .build();
+        }
         
-        try {
-            tensorImage = TensorImage.fromBitmap(bitmap);
-            List<Detection> detections = objectDetector.detect(tensorImage);
-            
-            for (Detection detection : detections) {
-                if (detection.getCategories().size() > 0) {
-                    String label = detection.getCategories().get(0).getLabel();
-                    float score = detection.getCategories().get(0).getScore();
-                    
-                    String labelZh = LABEL_MAP_ZH.get(label);
-                    if (labelZh == null) {
-                        labelZh = label;
-                    }
-                    
-                    results.add(new DetectionResult(
-                            label,
-                            labelZh,
-                            score,
-                            detection.getBoundingBox()
-                    ));
+        rgbFrame.rewind();
+        TensorImage tensorImage = new TensorImage(DataType.UINT8);
+        tensorImage.load(rgbFrame, ssdInputProperties);
+        
+        detectWithSSD(tensorImage, out);
+    }
+    
+    /**
+     * 執行SSD檢測，邊界框按輸入圖像尺寸轉換為正規化座標
+     */
+    private void detectWithSSD(TensorImage tensorImage, DetectionBatch out) {
+        out.clear();
+        ObjectDetector detector = objectDetector;
+        if (detector == null) {
+            return;
+        }
+        List<Detection> detections;
+        // 共享檢測器非線程安全
+        synchronized (detector) {
+            detections = detector.detect(tensorImage);
+        }
+        
+        float scaleX = 1f / tensorImage.getWidth();
+        float scaleY = 1f / tensorImage.getHeight();
+        for (int i = 0; i < detections.size(); i++) {
+            Detection detection = detections.get(i);
+            if (detection.getCategories().size() > 0) {
+                String label = detection.getCategories().get(0).getLabel();
+                float score = detection.getCategories().get(0).getScore();
+                
+                String labelZh = LABEL_MAP_ZH.get(label);
+                if (labelZh == null) {
+                    labelZh = label;
                 }
+                
+                // 類別編號供 NMS 區分類別，未知標籤統一為 -1
+                RectF box = detection.getBoundingBox();
+                out.add(YoloDetector.getClassIndex(label), label, labelZh, score,
+                        clampUnit(box.left * scaleX), clampUnit(box.top * scaleY),
+                        clampUnit(box.right * scaleX), clampUnit(box.bottom * scaleY));
             }
-        } finally {
-            tensorImage = null;
         }
-        
-        return results;
     }
     
     /**
      * 使用YOLO檢測器檢測
      */
-    private List<DetectionResult> detectWithYolo(Bitmap bitmap) {
-        List<DetectionResult> results = new ArrayList<>();
-        
+    private void detectWithYolo(Bitmap bitmap, DetectionBatch out) {
         try {
-            List<YoloDetector.DetectionResult> yoloResults = yoloDetector.detect(bitmap);
-            
-            for (YoloDetector.DetectionResult yoloResult : yoloResults) {
-                if (yoloResult.getConfidence() >= AppConstants.SCORE_THRESHOLD) {
-                    String labelZh = LABEL_MAP_ZH.get(yoloResult.getLabel());
-                    if (labelZh == null) {
-                        labelZh = yoloResult.getLabel();
-                    }
-                    
-                    // 檢查邊界框是否為null
-                    android.graphics.Rect rect = yoloResult.getBoundingBox();
-                    if (rect != null) {
-                        // 轉換Rect為RectF
-                        android.graphics.RectF rectF = new android.graphics.RectF(
-                                rect.left, rect.top, rect.right, rect.bottom
-                        );
-                        
-                        results.add(new DetectionResult(
-                                yoloResult.getLabel(),
-                                labelZh,
-                                yoloResult.getConfidence(),
-                                rectF
-                        ));
-                    } else {
-                        // 如果邊界框為null，創建一個默認邊界框
-                        Log.w(TAG, "YOLO檢測結果邊界框為null，使用默認邊界框");
-                        android.graphics.RectF defaultRect = new android.graphics.RectF(0.1f, 0.1f, 0.9f, 0.9f);
-                        results.add(new DetectionResult(
-                                yoloResult.getLabel(),
-                                labelZh,
-                                yoloResult.getConfidence(),
-                                defaultRect
-                        ));
-                    }
-                }
-            }
+            yoloDetector.detect(bitmap, out);
+            applyChineseLabels(out);
         } catch (Exception e) {
             Log.e(TAG, "YOLO檢測失敗: " + e.getMessage());
+            out.clear();
             // YOLO失敗時，嘗試使用SSD檢測器
             Log.d(TAG, "YOLO檢測失敗，嘗試使用SSD檢測器");
             if (objectDetector != null) {
-                results = detectWithSSD(bitmap);
+                detectWithSSD(bitmap, out);
             }
         }
-        
-        return results;
     }
     
     /**
-     * 應用非極大值抑制 (NMS) 去除重複檢測
+     * 使用YOLO檢測器檢測相機幀
      */
-    private List<DetectionResult> applyNMS(List<DetectionResult> detections) {
-        if (detections.size() <= 1) {
-            return detections;
+    private void detectWithYolo(ImageProxy image, DetectionBatch out) {
+        try {
+            yoloDetector.detect(image, out);
+            applyChineseLabels(out);
+        } catch (Exception e) {
+            Log.e(TAG, "YOLO檢測失敗: " + e.getMessage());
+            out.clear();
+            Log.d(TAG, "YOLO檢測失敗，嘗試使用SSD檢測器");
+            if (objectDetector != null) {
+                detectWithSSD(image, out);
+            }
         }
-        
-        List<DetectionResult> filtered = new ArrayList<>();
-        boolean[] suppressed = new boolean[detections.size()];
-        
-        for (int i = 0; i < detections.size(); i++) {
-            if (suppressed[i]) continue;
-            
-            DetectionResult current = detections.get(i);
-            filtered.add(current);
-            
-            // 抑制與當前檢測重疊度高的其他檢測
-            for (int j = i + 1; j < detections.size(); j++) {
-                if (suppressed[j]) continue;
-                
-                DetectionResult other = detections.get(j);
-                
-                // 計算IoU (Intersection over Union)
-                float iou = calculateIoU(current.getBoundingBox(), other.getBoundingBox());
-                
-                // 如果IoU超過閾值且是同類物體，抑制置信度較低的檢測
-                if (iou > AppConstants.NMS_THRESHOLD && current.getLabel().equals(other.getLabel())) {
-                    if (other.getConfidence() < current.getConfidence()) {
-                        suppressed[j] = true;
-                    }
-                }
+    }
+    
+    /**
+     * 使用YOLO檢測器檢測已轉換的 uint8 RGB 幀
+     */
+    private void detectWithYolo(ByteBuffer rgbFrame, DetectionBatch out) {
+        try {
+            int inputSize = AppConstants.INPUT_SIZE;
+            yoloDetector.detect(rgbFrame, inputSize, inputSize, out);
+            applyChineseLabels(out);
+        } catch (Exception e) {
+            Log.e(TAG, "YOLO檢測失敗: " + e.getMessage());
+            out.clear();
+            Log.d(TAG, "YOLO檢測失敗，嘗試使用SSD檢測器");
+            if (objectDetector != null) {
+                detectWithSSD(rgbFrame, out);
             }
         }
-        
-        return filtered;
     }
     
     /**
-     * 計算兩個邊界框的IoU
+     * YOLO 結果的中文標籤統一使用本類的映射
      */
-    private float calculateIoU(android.graphics.RectF box1, android.graphics.RectF box2) {
-        float x1 = Math.max(box1.left, box2.left);
-        float y1 = Math.max(box1.top, box2.top);
-        float x2 = Math.min(box1.right, box2.right);
-        float y2 = Math.min(box1.bottom, box2.bottom);
-        
-        if (x2 <= x1 || y2 <= y1) {
-            return 0.0f;
+    private void applyChineseLabels(DetectionBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            String labelZh = LABEL_MAP_ZH.get(batch.getLabel(i));
+            if (labelZh != null) {
+                batch.setLabelZh(i, labelZh);
+            }
         }
-        
-        float intersection = (x2 - x1) * (y2 - y1);
-        float area1 = (box1.right - box1.left) * (box1.bottom - box1.top);
-        float area2 = (box2.right - box2.left) * (box2.bottom - box2.top);
-        float union = area1 + area2 - intersection;
-        
-        return intersection / union;
+    }
+    
+    /**
+     * 將批次轉換為結果對象列表（舊接口的視圖，邊界框為正規化座標）
+     */
+    public static List<DetectionResult> toResults(DetectionBatch batch) {
+        List<DetectionResult> results = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            RectF box = new RectF();
+            batch.getBox(i, box);
+            results.add(new DetectionResult(batch.getLabel(i), batch.getLabelZh(i),
+                    batch.getScore(i), box));
+        }
+        return results;
+    }
+    
+    private static float clampUnit(float value) {
+        return value < 0f ? 0f : (value > 1f ? 1f : value);
     }
     
     /**
@@ -627,28 +752,90 @@ public class ObjectDetectorHelper {
         
         for (int i = 0; i < maxObjects; i++) {
             DetectionResult result = results.get(i);
-            
-            // 物體名稱 - 根據當前語言選擇對應的標籤
-            String objectLabel = getObjectLabelForCurrentLanguage(result);
-            sb.append(objectLabel);
-            
-            // 簡潔的置信度描述
-            if (result.getConfidence() > 0.7f) {
-                sb.append("（高置信度）");
+            appendObjectForSpeech(sb, result.getLabel(), result.getLabelZh(), result.getConfidence(),
+                    i < maxObjects - 1);
+        }
+        
+        appendObjectCount(sb, results.size());
+        return sb.toString();
+    }
+    
+    /**
+     * 格式化檢測批次為語音文本（與列表版本輸出相同）
+     */
+    public String formatResultsForSpeech(DetectionBatch results) {
+        if (results.isEmpty()) {
+            return getNoObjectsDetectedText();
+        }
+        
+        StringBuilder sb = new StringBuilder();
+        int maxObjects = Math.min(results.size(), 2);
+        for (int i = 0; i < maxObjects; i++) {
+            appendObjectForSpeech(sb, results.getLabel(i), results.getLabelZh(i), results.getScore(i),
+                    i < maxObjects - 1);
+        }
+        
+        appendObjectCount(sb, results.size());
+        return sb.toString();
+    }
+    
+    /**
+     * 格式化新出現的物體為語音文本，例如「左側有新的人」
+     * @param newTracks ObjectTracker 新確認的軌跡
+     */
+    public String formatNewObjectsForSpeech(DetectionBatch newTracks) {
+        String currentLang = LocaleManager.getInstance(context).getCurrentLanguage();
+        boolean english = currentLang.equals("english");
+        StringBuilder sb = new StringBuilder();
+        int maxObjects = Math.min(newTracks.size(), 2);
+        for (int i = 0; i < maxObjects; i++) {
+            if (i > 0) {
+                sb.append(english ? ", " : "，");
             }
-            
-            // 分隔符
-            if (i < maxObjects - 1) {
-                sb.append("、");
+            String label = getObjectLabelForCurrentLanguage(newTracks.getLabel(i), newTracks.getLabelZh(i));
+            String side = getHorizontalSide((newTracks.getLeft(i) + newTracks.getRight(i)) / 2, english);
+            if (english) {
+                sb.append("New ").append(label).append(' ').append(side);
+            } else {
+                sb.append(side).append("有新的").append(label);
+            }
+            if (newTracks.isInShadow(i)) {
+                sb.append(english ? " in shadow" : "，在陰影中");
             }
         }
+        return sb.toString();
+    }
+    
+    private static String getHorizontalSide(float centerX, boolean english) {
+        if (centerX < 0.33f) {
+            return english ? "on the left" : "左側";
+        } else if (centerX < 0.67f) {
+            return english ? "ahead" : "前方";
+        }
+        return english ? "on the right" : "右側";
+    }
+    
+    private void appendObjectForSpeech(StringBuilder sb, String label, String labelZh,
+                                       float confidence, boolean hasNext) {
+        // 物體名稱 - 根據當前語言選擇對應的標籤
+        sb.append(getObjectLabelForCurrentLanguage(label, labelZh));
         
-        // 如果物體超過2個，添加總數
-        if (results.size() > 2) {
-            sb.append("等").append(results.size()).append("個物體");
+        // 簡潔的置信度描述
+        if (confidence > 0.7f) {
+            sb.append("（高置信度）");
         }
         
-        return sb.toString();
+        // 分隔符
+        if (hasNext) {
+            sb.append("、");
+        }
+    }
+    
+    private static void appendObjectCount(StringBuilder sb, int count) {
+        // 如果物體超過2個，添加總數
+        if (count > 2) {
+            sb.append("等").append(count).append("個物體");
+        }
     }
     
     /**
@@ -721,17 +908,17 @@ public class ObjectDetectorHelper {
     /**
      * 根據當前語言獲取物體標籤
      */
-    private String getObjectLabelForCurrentLanguage(DetectionResult result) {
+    private String getObjectLabelForCurrentLanguage(String label, String labelZh) {
         String currentLang = LocaleManager.getInstance(context).getCurrentLanguage();
         
         switch (currentLang) {
             case "english":
-                return result.getLabel() != null ? result.getLabel() : result.getLabelZh();
+                return label != null ? label : labelZh;
             case "mandarin":
-                return result.getLabelZh() != null ? result.getLabelZh() : result.getLabel();
+                return labelZh != null ? labelZh : label;
             case "cantonese":
             default:
-                return result.getLabelZh() != null ? result.getLabelZh() : result.getLabel();
+                return labelZh != null ? labelZh : label;
         }
     }
     
@@ -783,6 +970,14 @@ public class ObjectDetectorHelper {
             totalDetections, successfulDetections, successRate, consecutiveFailures, timeSinceLastSuccess / 1000);
     }
     
+    /**
+     * 設置兩次檢測的最短間隔（默認 DETECTION_FREQUENCY_LIMIT_MS）
+     * 間隔內的調用直接返回上次結果；由 FrameScheduler 控制頻率時設為 0
+     */
+    public void setMinDetectionInterval(long intervalMs) {
+        minDetectionIntervalMs = Math.max(0, intervalMs);
+    }
+
     /**
      * 檢查檢測器健康狀態
      */
@@ -791,6 +986,20 @@ public class ObjectDetectorHelper {
                (System.currentTimeMillis() - lastSuccessfulDetection) < 30000; // 30秒內有成功檢測
     }
     
+    /**
+     * 最近一次單次推理嘗試的耗時（毫秒），不含重試和重試間的等待
+     */
+    public float getLastInferenceMs() {
+        return lastInferenceMs;
+    }
+    
+    /**
+     * 獲取 YOLO 檢測器（供基準測試使用，可能為 null）
+     */
+    YoloDetector getYoloDetector() {
+        return yoloDetector;
+    }
+    
     /**
      * 強制重置檢測器
      */
@@ -803,14 +1012,9 @@ public class ObjectDetectorHelper {
     }
     
     public void close() {
-        if (objectDetector != null) {
-            objectDetector.close();
-            Log.d(TAG, "SSD物體檢測器已關閉");
-        }
-        if (yoloDetector != null) {
-            yoloDetector.close();
-            Log.d(TAG, "YOLO檢測器已關閉");
-        }
+        // 檢測器由 ModelRegistry 共享持有，這裡只釋放引用
+        objectDetector = null;
+        yoloDetector = null;
         
         // 輸出最終統計
         Log.d(TAG, getStabilityStats());
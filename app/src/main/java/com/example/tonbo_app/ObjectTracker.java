@@ -0,0 +1,353 @@
+package com.example.tonbo_app;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多目標追蹤器（SORT 風格：IoU 關聯 + 卡爾曼濾波）
+ * 檢測幀調用 update 關聯檢測結果並修正軌跡，非檢測幀調用 predict 按勻速模型推算邊界框，
+ * 檢測器可以隔幾幀才運行一次，覆蓋層仍然連續移動
+ * update 和 predict 會推進濾波狀態，必須按時間戳順序調用；流水線中相機幀早於檢測結果到達時，
+ * 相機線程應使用 getPredictedTracks 只讀取推算位置，避免檢測結果被套用到已推算到未來的狀態上
+ * 每條軌跡有穩定的編號，新確認的軌跡可以單獨播報（例如「左側有新的人」），不必重複整個列表
+ * 非線程安全，多線程使用時由調用方加鎖
+ */
+public class ObjectTracker {
+    private static final String TAG = "ObjectTracker";
+
+    // 關聯所需的最小 IoU（與預測位置比較）
+    private static final float IOU_THRESHOLD = 0.3f;
+    // 連續命中次數達到此值才確認軌跡，過濾偶發誤檢
+    private static final int MIN_HITS = 2;
+    // 連續多少次檢測未命中後刪除軌跡
+    private static final int MAX_MISSES = 3;
+
+    // 卡爾曼濾波參數（正規化座標，時間單位為秒）
+    private static final float PROCESS_NOISE = 1.0f;
+    private static final float MEASUREMENT_NOISE = 0.0025f;
+    private static final float INITIAL_VELOCITY_VARIANCE = 0.25f;
+    // 單步推算的最大時間，避免暫停後邊界框飛出畫面
+    private static final float MAX_DT_SECONDS = 0.5f;
+    private static final float MIN_SIZE = 0.01f;
+
+    private final List<Track> tracks = new ArrayList<>();
+    // 已刪除的軌跡對象重用，穩態下不分配
+    private final List<Track> freeTracks = new ArrayList<>();
+    private int nextTrackId = 1;
+    private long lastTimestampMs = -1;
+
+    // 關聯用的重用標記數組
+    private boolean[] trackMatched = new boolean[0];
+    private boolean[] detectionMatched = new boolean[0];
+
+    /**
+     * 用一幀的檢測結果更新軌跡
+     * @param detections 檢測結果（正規化座標）
+     * @param timestampMs 幀時間戳
+     */
+    public void update(DetectionBatch detections, long timestampMs) {
+        predict(timestampMs);
+
+        int trackCount = tracks.size();
+        int detectionCount = detections.size();
+        if (trackMatched.length < trackCount) {
+            trackMatched = new boolean[Math.max(trackCount, trackMatched.length * 2)];
+        }
+        if (detectionMatched.length < detectionCount) {
+            detectionMatched = new boolean[Math.max(detectionCount, detectionMatched.length * 2)];
+        }
+        for (int t = 0; t < trackCount; t++) {
+            trackMatched[t] = false;
+        }
+        for (int d = 0; d < detectionCount; d++) {
+            detectionMatched[d] = false;
+        }
+
+        // 貪心關聯：每輪取 IoU 最高的同類別配對（目標數量很少，無需匈牙利算法）
+        while (true) {
+            float bestIou = IOU_THRESHOLD;
+            int bestTrack = -1;
+            int bestDetection = -1;
+            for (int t = 0; t < trackCount; t++) {
+                if (trackMatched[t]) {
+                    continue;
+                }
+                Track track = tracks.get(t);
+                for (int d = 0; d < detectionCount; d++) {
+                    if (detectionMatched[d] || detections.getClassId(d) != track.classId) {
+                        continue;
+                    }
+                    float iou = iou(track, detections, d);
+                    if (iou > bestIou) {
+                        bestIou = iou;
+                        bestTrack = t;
+                        bestDetection = d;
+                    }
+                }
+            }
+            if (bestTrack < 0) {
+                break;
+            }
+            trackMatched[bestTrack] = true;
+            detectionMatched[bestDetection] = true;
+            correct(tracks.get(bestTrack), detections, bestDetection);
+        }
+
+        // 未命中的軌跡：未確認的直接刪除，已確認的超過上限後刪除
+        for (int t = trackCount - 1; t >= 0; t--) {
+            if (trackMatched[t]) {
+                continue;
+            }
+            Track track = tracks.get(t);
+            track.misses++;
+            if (!track.confirmed || track.misses > MAX_MISSES) {
+                freeTracks.add(tracks.remove(t));
+            }
+        }
+
+        // 未關聯的檢測創建新軌跡
+        for (int d = 0; d < detectionCount; d++) {
+            if (!detectionMatched[d]) {
+                createTrack(detections, d);
+            }
+        }
+    }
+
+    /**
+     * 不運行檢測的幀：按勻速模型把所有軌跡推算到給定時間
+     */
+    public void predict(long timestampMs) {
+        if (lastTimestampMs < 0) {
+            lastTimestampMs = timestampMs;
+            return;
+        }
+        // 流水線中檢測幀的時間戳可能早於已推算到的時間，此時不回退
+        if (timestampMs <= lastTimestampMs) {
+            return;
+        }
+        float dt = Math.min(MAX_DT_SECONDS, (timestampMs - lastTimestampMs) / 1000f);
+        lastTimestampMs = timestampMs;
+        float q00 = PROCESS_NOISE * dt * dt * dt * dt / 4f;
+        float q01 = PROCESS_NOISE * dt * dt * dt / 2f;
+        float q11 = PROCESS_NOISE * dt * dt;
+        for (int t = 0; t < tracks.size(); t++) {
+            Track track = tracks.get(t);
+            for (int k = 0; k < 4; k++) {
+                track.state[k] += track.velocity[k] * dt;
+                float p00 = track.p00[k] + 2f * dt * track.p01[k] + dt * dt * track.p11[k] + q00;
+                float p01 = track.p01[k] + dt * track.p11[k] + q01;
+                track.p00[k] = p00;
+                track.p01[k] = p01;
+                track.p11[k] += q11;
+            }
+            // 寬高不能為負
+            track.state[2] = Math.max(MIN_SIZE, track.state[2]);
+            track.state[3] = Math.max(MIN_SIZE, track.state[3]);
+        }
+    }
+
+    /**
+     * 輸出已確認且最近一次檢測命中的軌跡（按置信度降序，帶追蹤編號）
+     */
+    public void getTracks(DetectionBatch out) {
+        sortTracksByScore();
+        out.clear();
+        for (int t = 0; t < tracks.size(); t++) {
+            Track track = tracks.get(t);
+            if (track.confirmed && track.misses == 0) {
+                addTrack(track, 0f, out);
+            }
+        }
+    }
+
+    /**
+     * 輸出 getTracks 的軌跡按勻速模型推算到給定時間的位置，不改變濾波狀態
+     * 時間早於最近一次更新時輸出最近一次更新的位置
+     */
+    public void getPredictedTracks(long timestampMs, DetectionBatch out) {
+        float dt = 0f;
+        if (lastTimestampMs >= 0 && timestampMs > lastTimestampMs) {
+            dt = Math.min(MAX_DT_SECONDS, (timestampMs - lastTimestampMs) / 1000f);
+        }
+        sortTracksByScore();
+        out.clear();
+        for (int t = 0; t < tracks.size(); t++) {
+            Track track = tracks.get(t);
+            if (track.confirmed && track.misses == 0) {
+                addTrack(track, dt, out);
+            }
+        }
+    }
+
+    /**
+     * 輸出新確認且尚未播報過的軌跡，輸出後標記為已播報
+     */
+    public void collectNewTracks(DetectionBatch out) {
+        out.clear();
+        for (int t = 0; t < tracks.size(); t++) {
+            Track track = tracks.get(t);
+            if (track.confirmed && !track.announced && track.misses == 0) {
+                track.announced = true;
+                addTrack(track, 0f, out);
+            }
+        }
+    }
+
+    public int getTrackCount() {
+        return tracks.size();
+    }
+
+    /**
+     * 清除所有軌跡（例如暫停檢測後重新開始）
+     */
+    public void reset() {
+        freeTracks.addAll(tracks);
+        tracks.clear();
+        lastTimestampMs = -1;
+        Log.d(TAG, "追蹤器已重置");
+    }
+
+    private void createTrack(DetectionBatch detections, int index) {
+        Track track = freeTracks.isEmpty() ? new Track() : freeTracks.remove(freeTracks.size() - 1);
+        track.id = nextTrackId++;
+        track.classId = detections.getClassId(index);
+        track.label = detections.getLabel(index);
+        track.labelZh = detections.getLabelZh(index);
+        track.score = detections.getScore(index);
+        track.hits = 1;
+        track.misses = 0;
+        track.confirmed = MIN_HITS <= 1;
+        track.announced = false;
+
+        float left = detections.getLeft(index);
+        float top = detections.getTop(index);
+        float right = detections.getRight(index);
+        float bottom = detections.getBottom(index);
+        track.state[0] = (left + right) / 2f;
+        track.state[1] = (top + bottom) / 2f;
+        track.state[2] = Math.max(MIN_SIZE, right - left);
+        track.state[3] = Math.max(MIN_SIZE, bottom - top);
+        for (int k = 0; k < 4; k++) {
+            track.velocity[k] = 0f;
+            track.p00[k] = MEASUREMENT_NOISE;
+            track.p01[k] = 0f;
+            track.p11[k] = INITIAL_VELOCITY_VARIANCE;
+        }
+        tracks.add(track);
+    }
+
+    /**
+     * 卡爾曼修正：每個分量（中心、寬高）獨立的位置-速度濾波
+     */
+    private void correct(Track track, DetectionBatch detections, int index) {
+        float left = detections.getLeft(index);
+        float top = detections.getTop(index);
+        float right = detections.getRight(index);
+        float bottom = detections.getBottom(index);
+        correctComponent(track, 0, (left + right) / 2f);
+        correctComponent(track, 1, (top + bottom) / 2f);
+        correctComponent(track, 2, right - left);
+        correctComponent(track, 3, bottom - top);
+        track.state[2] = Math.max(MIN_SIZE, track.state[2]);
+        track.state[3] = Math.max(MIN_SIZE, track.state[3]);
+
+        track.score = detections.getScore(index);
+        track.labelZh = detections.getLabelZh(index);
+        track.hits++;
+        track.misses = 0;
+        if (track.hits >= MIN_HITS) {
+            track.confirmed = true;
+        }
+    }
+
+    private static void correctComponent(Track track, int k, float measurement) {
+        float innovation = measurement - track.state[k];
+        float s = track.p00[k] + MEASUREMENT_NOISE;
+        float gain0 = track.p00[k] / s;
+        float gain1 = track.p01[k] / s;
+        track.state[k] += gain0 * innovation;
+        track.velocity[k] += gain1 * innovation;
+        float p00 = track.p00[k];
+        float p01 = track.p01[k];
+        track.p00[k] = (1f - gain0) * p00;
+        track.p01[k] = (1f - gain0) * p01;
+        track.p11[k] -= gain1 * p01;
+    }
+
+    /**
+     * 輸出軌跡的邊界框，dt 大於 0 時按速度推算（秒）
+     */
+    private static void addTrack(Track track, float dt, DetectionBatch out) {
+        float centerX = track.state[0] + track.velocity[0] * dt;
+        float centerY = track.state[1] + track.velocity[1] * dt;
+        float halfWidth = Math.max(MIN_SIZE, track.state[2] + track.velocity[2] * dt) / 2f;
+        float halfHeight = Math.max(MIN_SIZE, track.state[3] + track.velocity[3] * dt) / 2f;
+        out.add(track.classId, track.label, track.labelZh, track.score,
+                clampUnit(centerX - halfWidth), clampUnit(centerY - halfHeight),
+                clampUnit(centerX + halfWidth), clampUnit(centerY + halfHeight));
+        out.setTrackId(out.size() - 1, track.id);
+    }
+
+    private static float iou(Track track, DetectionBatch detections, int index) {
+        float halfWidth = track.state[2] / 2f;
+        float halfHeight = track.state[3] / 2f;
+        float left = track.state[0] - halfWidth;
+        float top = track.state[1] - halfHeight;
+        float right = track.state[0] + halfWidth;
+        float bottom = track.state[1] + halfHeight;
+
+        float intersectionLeft = Math.max(left, detections.getLeft(index));
+        float intersectionTop = Math.max(top, detections.getTop(index));
+        float intersectionRight = Math.min(right, detections.getRight(index));
+        float intersectionBottom = Math.min(bottom, detections.getBottom(index));
+        if (intersectionRight <= intersectionLeft || intersectionBottom <= intersectionTop) {
+            return 0f;
+        }
+        float intersection = (intersectionRight - intersectionLeft) * (intersectionBottom - intersectionTop);
+        float areaDetection = (detections.getRight(index) - detections.getLeft(index))
+                * (detections.getBottom(index) - detections.getTop(index));
+        float union = track.state[2] * track.state[3] + areaDetection - intersection;
+        return union > 0f ? intersection / union : 0f;
+    }
+
+    /**
+     * 軌跡數量很小，用插入排序按置信度降序排列（不分配）
+     */
+    private void sortTracksByScore() {
+        for (int i = 1; i < tracks.size(); i++) {
+            Track track = tracks.get(i);
+            int j = i - 1;
+            while (j >= 0 && tracks.get(j).score < track.score) {
+                tracks.set(j + 1, tracks.get(j));
+                j--;
+            }
+            tracks.set(j + 1, track);
+        }
+    }
+
+    private static float clampUnit(float value) {
+        return value < 0f ? 0f : (value > 1f ? 1f : value);
+    }
+
+    /**
+     * 單條軌跡：狀態為 [中心x, 中心y, 寬, 高] 及其速度，協方差按分量存放 2x2 矩陣
+     */
+    private static final class Track {
+        int id;
+        int classId;
+        String label;
+        String labelZh;
+        float score;
+        int hits;
+        int misses;
+        boolean confirmed;
+        boolean announced;
+        final float[] state = new float[4];
+        final float[] velocity = new float[4];
+        final float[] p00 = new float[4];
+        final float[] p01 = new float[4];
+        final float[] p11 = new float[4];
+    }
+}
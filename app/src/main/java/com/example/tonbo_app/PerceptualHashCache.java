@@ -0,0 +1,279 @@
+package com.example.tonbo_app;
+
+import android.graphics.Bitmap;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * 以感知哈希（dHash）為鍵的識別結果緩存
+ * 同一頁面或同一張紙幣反覆對準時，幾乎相同的幀直接返回上次的結果，不再重新識別
+ * 哈希：把圖片均分為 (HASH_SIZE + 1) x HASH_SIZE 個區域取平均亮度，比較水平相鄰區域的明暗，
+ * 得到 HASH_SIZE * HASH_SIZE 位（左邊亮出 EQUAL_MARGIN 以上才為 1，空白頁邊等平坦區域的位不隨噪聲翻轉）；兩個哈希的漢明距離不超過閾值且圖片尺寸相同時視為同一畫面
+ * 用 16x16 而不是常見的 8x8，是因為版面相同的兩頁文字在 8x8 下幾乎無法區分；更細的網格
+ * 則對手持晃動過於敏感。版面幾乎相同的相鄰兩頁仍可能落在閾值內，所以條目只保存很短的時間，
+ * 需要保證每次重新識別的調用方應關閉緩存
+ * 容量很小，查找直接線性比較；按訪問順序淘汰最久未使用的條目
+ * 方法已同步，可以在多個線程使用
+ */
+public class PerceptualHashCache<V> {
+
+    static final int HASH_SIZE = 16;
+    private static final int HASH_WORDS = HASH_SIZE * HASH_SIZE / 64;
+    // 每個區域最多讀取的像素行數（均勻分佈），區域內每一列都計入；
+    // 4 行時文字行上下移動 1 像素就會改變讀到的行，8 行以上才穩定
+    private static final int ROWS_PER_CELL = 8;
+    // 相鄰區域平均亮度相差不超過此值時視為相同（該位為 0）
+    private static final int EQUAL_MARGIN = 1;
+
+    /**
+     * 一張圖片的感知哈希和尺寸
+     */
+    public static final class Key {
+        private final long[] bits;
+        private final int width;
+        private final int height;
+
+        private Key(long[] bits, int width, int height) {
+            this.bits = bits;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * 與另一個鍵不同的位數；尺寸不同時返回 Integer.MAX_VALUE
+         */
+        public int distance(Key other) {
+            if (width != other.width || height != other.height) {
+                return Integer.MAX_VALUE;
+            }
+            int distance = 0;
+            for (int i = 0; i < HASH_WORDS; i++) {
+                distance += Long.bitCount(bits[i] ^ other.bits[i]);
+            }
+            return distance;
+        }
+    }
+
+    private static final class Entry<V> {
+        final Key key;
+        final V value;
+        // 產生這個結果所花的時間，命中時計入節省的時間
+        final float costMs;
+        final long createdAt;
+
+        Entry(Key key, V value, float costMs, long createdAt) {
+            this.key = key;
+            this.value = value;
+            this.costMs = costMs;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private final int capacity;
+    private final int maxDistance;
+    private final long maxAgeMs;
+    // 按訪問順序排列，最久未使用的在前
+    private final LinkedHashMap<Key, Entry<V>> entries;
+
+    private long hits;
+    private long misses;
+    private double savedMs;
+    private double hashMs;
+    private long hashCount;
+
+    // 區域亮度和行緩衝區，重用（在同步方法中使用）
+    private final long[] cellSums = new long[(HASH_SIZE + 1) * HASH_SIZE];
+    private final int[] cellCounts = new int[(HASH_SIZE + 1) * HASH_SIZE];
+    private int[] rowPixels = new int[0];
+
+    /**
+     * @param capacity 最多保存的結果數
+     * @param maxDistance 視為同一畫面的最大漢明距離（共 HASH_SIZE * HASH_SIZE 位）
+     * @param maxAgeMs 結果的存活時間
+     */
+    public PerceptualHashCache(int capacity, int maxDistance, long maxAgeMs) {
+        this.capacity = Math.max(1, capacity);
+        this.maxDistance = maxDistance;
+        this.maxAgeMs = maxAgeMs;
+        this.entries = new LinkedHashMap<>(this.capacity + 1, 0.75f, true);
+    }
+
+    /**
+     * 計算圖片的感知哈希（逐行讀取少量像素行，不複製整張圖片）
+     */
+    public synchronized Key hash(Bitmap bitmap) {
+        return hash(bitmap, null, bitmap.getWidth(), bitmap.getHeight());
+    }
+
+    /**
+     * 計算像素數組（ARGB，按行存放）的感知哈希
+     */
+    synchronized Key hash(int[] pixels, int width, int height) {
+        return hash(null, pixels, width, height);
+    }
+
+    /**
+     * bitmap 不為 null 時逐行讀取到行緩衝區，否則直接讀取 pixels
+     */
+    private Key hash(Bitmap bitmap, int[] pixels, int width, int height) {
+        long start = System.nanoTime();
+        int columns = HASH_SIZE + 1;
+        Arrays.fill(cellSums, 0L);
+        Arrays.fill(cellCounts, 0);
+        if (bitmap != null && rowPixels.length < width) {
+            rowPixels = new int[width];
+        }
+
+        for (int gy = 0; gy < HASH_SIZE; gy++) {
+            int top = gy * height / HASH_SIZE;
+            int bottom = Math.max(top + 1, (gy + 1) * height / HASH_SIZE);
+            int rows = Math.min(ROWS_PER_CELL, bottom - top);
+            for (int r = 0; r < rows; r++) {
+                int y = top + (2 * r + 1) * (bottom - top) / (2 * rows);
+                int[] row = pixels;
+                int offset = y * width;
+                if (bitmap != null) {
+                    bitmap.getPixels(rowPixels, 0, width, 0, y, width, 1);
+                    row = rowPixels;
+                    offset = 0;
+                }
+                for (int gx = 0; gx < columns; gx++) {
+                    int left = gx * width / columns;
+                    int right = Math.max(left + 1, (gx + 1) * width / columns);
+                    long sum = 0;
+                    for (int x = left; x < right && x < width; x++) {
+                        int pixel = row[offset + x];
+                        sum += (((pixel >> 16) & 0xFF) * 77 + ((pixel >> 8) & 0xFF) * 150 + (pixel & 0xFF) * 29) >> 8;
+                    }
+                    int cell = gy * columns + gx;
+                    cellSums[cell] += sum;
+                    cellCounts[cell] += Math.min(right, width) - left;
+                }
+            }
+        }
+
+        long[] bits = new long[HASH_WORDS];
+        for (int gy = 0; gy < HASH_SIZE; gy++) {
+            for (int gx = 0; gx < HASH_SIZE; gx++) {
+                int cell = gy * columns + gx;
+                // 交叉相乘比較平均值，避免除法
+                long leftCount = Math.max(1, cellCounts[cell]);
+                long rightCount = Math.max(1, cellCounts[cell + 1]);
+                long leftMean = cellSums[cell] * rightCount;
+                long rightMean = cellSums[cell + 1] * leftCount;
+                if (leftMean > rightMean + EQUAL_MARGIN * leftCount * rightCount) {
+                    int bit = gy * HASH_SIZE + gx;
+                    bits[bit >> 6] |= 1L << (bit & 63);
+                }
+            }
+        }
+        hashMs += (System.nanoTime() - start) / 1e6;
+        hashCount++;
+        return new Key(bits, width, height);
+    }
+
+    /**
+     * 查找與鍵最接近且在閾值內的結果，沒有時返回 null（命中和未命中都計入統計）
+     */
+    public synchronized V get(Key key) {
+        long now = System.currentTimeMillis();
+        Entry<V> best = null;
+        int bestDistance = maxDistance + 1;
+        for (Iterator<Entry<V>> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+            Entry<V> entry = iterator.next();
+            if (now - entry.createdAt > maxAgeMs) {
+                iterator.remove();
+                continue;
+            }
+            int distance = entry.key.distance(key);
+            if (distance < bestDistance) {
+                best = entry;
+                bestDistance = distance;
+            }
+        }
+        if (best == null) {
+            misses++;
+            return null;
+        }
+        // 更新訪問順序
+        entries.get(best.key);
+        hits++;
+        savedMs += best.costMs;
+        return best.value;
+    }
+
+    /**
+     * 保存結果
+     * @param costMs 產生這個結果所花的時間
+     */
+    public synchronized void put(Key key, V value, float costMs) {
+        entries.put(key, new Entry<>(key, value, costMs, System.currentTimeMillis()));
+        if (entries.size() > capacity) {
+            Iterator<Key> eldest = entries.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * 清除所有結果（統計保留）
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 清除統計
+     */
+    public synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+        savedMs = 0;
+        hashMs = 0;
+        hashCount = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * 命中率（0-1），還沒有查找時為 0
+     */
+    public synchronized float getHitRate() {
+        long lookups = hits + misses;
+        return lookups > 0 ? (float) hits / lookups : 0f;
+    }
+
+    /**
+     * 命中節省的識別時間（毫秒），已扣除計算哈希的時間
+     */
+    public synchronized float getSavedMs() {
+        return (float) Math.max(0.0, savedMs - hashMs);
+    }
+
+    /**
+     * 平均每次計算哈希的時間（毫秒）
+     */
+    public synchronized float getAverageHashMs() {
+        return hashCount > 0 ? (float) (hashMs / hashCount) : 0f;
+    }
+
+    /**
+     * 統計摘要（寫入日誌用）
+     */
+    public synchronized String formatStats() {
+        return String.format("命中 %d / %d (%.0f%%), 節省 %.0fms, 哈希平均 %.2fms, 緩存 %d 項",
+                hits, hits + misses, getHitRate() * 100, getSavedMs(), getAverageHashMs(), entries.size());
+    }
+}
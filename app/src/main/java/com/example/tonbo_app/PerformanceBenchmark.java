@@ -0,0 +1,760 @@
+package com.example.tonbo_app;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
+import android.media.Image;
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.camera.core.ExperimentalGetImage;
+import androidx.camera.core.ImageInfo;
+import androidx.camera.core.ImageProxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 性能基準測試工具
+ * 僅在可調試版本中由開發者手動觸發，結果輸出到日誌並返回報告文字
+ */
+public final class PerformanceBenchmark {
+    private static final String TAG = "PerformanceBenchmark";
+
+    private PerformanceBenchmark() {}
+
+    /**
+     * 比較相機幀轉換：舊的 JPEG 往返路徑 vs YUV 直接轉換
+     * @param image 當前相機幀（調用期間不能關閉）
+     * @param targetSize 模型輸入邊長
+     * @param iterations 每種方法的重複次數
+     */
+    public static String benchmarkFrameConversion(ImageProxy image, int targetSize, int iterations) {
+        YuvToTensorConverter converter = new YuvToTensorConverter();
+        ByteBuffer floatInput = ByteBuffer.allocateDirect(4 * targetSize * targetSize * 3);
+        floatInput.order(ByteOrder.nativeOrder());
+        ByteBuffer uint8Input = ByteBuffer.allocateDirect(targetSize * targetSize * 3);
+        uint8Input.order(ByteOrder.nativeOrder());
+        int[] pixels = new int[targetSize * targetSize];
+
+        // 預熱，避免首次 JIT 編譯影響結果
+        legacyJpegToScaledBitmap(image, targetSize).recycle();
+        floatInput.rewind();
+        converter.convertToTensor(image, floatInput, targetSize, targetSize, true);
+
+        long jpegTotal = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            Bitmap scaled = legacyJpegToScaledBitmap(image, targetSize);
+            scaled.getPixels(pixels, 0, targetSize, 0, 0, targetSize, targetSize);
+            floatInput.rewind();
+            for (int pixel : pixels) {
+                floatInput.putFloat(((pixel >> 16) & 0xFF) / 255.0f);
+                floatInput.putFloat(((pixel >> 8) & 0xFF) / 255.0f);
+                floatInput.putFloat((pixel & 0xFF) / 255.0f);
+            }
+            jpegTotal += System.nanoTime() - start;
+            scaled.recycle();
+        }
+
+        long directFloatTotal = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            floatInput.rewind();
+            converter.convertToTensor(image, floatInput, targetSize, targetSize, true);
+            directFloatTotal += System.nanoTime() - start;
+        }
+
+        long directUint8Total = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            uint8Input.rewind();
+            converter.convertToTensor(image, uint8Input, targetSize, targetSize, false);
+            directUint8Total += System.nanoTime() - start;
+        }
+
+        float jpegMs = jpegTotal / 1e6f / iterations;
+        float floatMs = directFloatTotal / 1e6f / iterations;
+        float uint8Ms = directUint8Total / 1e6f / iterations;
+
+        String report = String.format(
+            "幀轉換基準測試 (%dx%d → %dx%d, %d次):\n" +
+            "- JPEG往返 (YOLO浮點輸入): %.2fms\n" +
+            "- YUV直接轉換 (YOLO浮點輸入): %.2fms\n" +
+            "- YUV直接轉換 (SSD uint8輸入): %.2fms\n" +
+            "- 加速比: %.1fx",
+            image.getWidth(), image.getHeight(), targetSize, targetSize, iterations,
+            jpegMs, floatMs, uint8Ms,
+            floatMs > 0 ? jpegMs / floatMs : 0f);
+        Log.d(TAG, report);
+        return report;
+    }
+
+    /**
+     * 檢查 YoloDetector 穩態檢測的分配情況
+     * 使用線程分配計數器統計預熱後每次 detect 的對象數和字節數，
+     * 空場景下應為 0（有檢測結果時只分配結果對象本身）
+     * @param detector 已初始化的檢測器
+     * @param image 當前相機幀（調用期間不能關閉）
+     * @param iterations 統計的檢測次數
+     */
+    @SuppressWarnings("deprecation")
+    public static String measureDetectAllocations(YoloDetector detector, ImageProxy image, int iterations) {
+        // 預熱：首次推理會分配解釋器內部狀態
+        detector.detect(image);
+        detector.detect(image);
+
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        int detections = 0;
+        for (int i = 0; i < iterations; i++) {
+            detections += detector.detect(image).size();
+        }
+        Debug.stopAllocCounting();
+        int allocCount = Debug.getThreadAllocCount();
+        int allocSize = Debug.getThreadAllocSize();
+
+        String report = String.format(
+            "檢測分配檢查 (%d次):\n" +
+            "- 每次檢測分配對象: %.1f\n" +
+            "- 每次檢測分配字節: %.0f\n" +
+            "- 每次檢測結果數: %.1f",
+            iterations,
+            (float) allocCount / iterations,
+            (float) allocSize / iterations,
+            (float) detections / iterations);
+        Log.d(TAG, report);
+        return report;
+    }
+
+    /**
+     * 在同一幀上比較 SSD MobileNet 和 YOLOv8 引擎的延遲和檢出情況
+     * 沒有標註數據時以另一引擎的結果為參照：同類別且 IoU >= 0.5 視為命中
+     * @param image 當前相機幀（調用期間不能關閉）
+     * @param iterations 每個引擎的檢測次數
+     */
+    public static String compareEngines(Context context, ImageProxy image, int iterations) {
+        if (!YoloDetector.isEngineAvailable(context, YoloDetector.Engine.YOLOV8)) {
+            String report = "檢測引擎比較: YOLOv8 模型不可用，已跳過";
+            Log.w(TAG, report);
+            return report;
+        }
+        YoloDetector ssd = new YoloDetector(context, YoloDetector.Engine.SSD_MOBILENET);
+        YoloDetector yolo = new YoloDetector(context, YoloDetector.Engine.YOLOV8);
+        try {
+            // 預熱
+            List<YoloDetector.DetectionResult> ssdResults = ssd.detect(image);
+            List<YoloDetector.DetectionResult> yoloResults = yolo.detect(image);
+
+            long ssdTotal = 0;
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                ssdResults = ssd.detect(image);
+                ssdTotal += System.nanoTime() - start;
+            }
+
+            long yoloTotal = 0;
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                yoloResults = yolo.detect(image);
+                yoloTotal += System.nanoTime() - start;
+            }
+
+            String report = String.format(
+                "檢測引擎比較 (%dx%d, %d次):\n" +
+                "- SSD MobileNet: %.1fms, %d個物體\n" +
+                "- YOLOv8: %.1fms, %d個物體\n" +
+                "- YOLOv8 命中SSD結果: %d/%d\n" +
+                "- SSD 命中YOLOv8結果: %d/%d",
+                image.getWidth(), image.getHeight(), iterations,
+                ssdTotal / 1e6f / iterations, ssdResults.size(),
+                yoloTotal / 1e6f / iterations, yoloResults.size(),
+                countMatches(ssdResults, yoloResults), ssdResults.size(),
+                countMatches(yoloResults, ssdResults), yoloResults.size());
+            Log.d(TAG, report);
+            return report;
+        } finally {
+            ssd.close();
+            yolo.close();
+        }
+    }
+
+    /**
+     * 掃描推理線程數，報告每幀延遲和吞吐量
+     * @param engine 要測試的檢測引擎
+     * @param image 當前相機幀（調用期間不能關閉）
+     * @param iterations 每個線程數的檢測次數
+     */
+    public static String sweepThreadCounts(Context context, YoloDetector.Engine engine,
+                                           ImageProxy image, int iterations) {
+        int maxThreads = Math.min(8, Runtime.getRuntime().availableProcessors());
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("推理線程數掃描 (%s, 推薦%d線程, %d次):\n",
+                engine, InferenceOptions.getRecommendedThreadCount(), iterations));
+
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            YoloDetector detector = new YoloDetector(context, engine, threads);
+            try {
+                // 預熱
+                detector.detect(image);
+
+                long total = 0;
+                for (int i = 0; i < iterations; i++) {
+                    long start = System.nanoTime();
+                    detector.detect(image);
+                    total += System.nanoTime() - start;
+                }
+                float latencyMs = total / 1e6f / iterations;
+                report.append(String.format("- %d線程: %.1fms/幀, %.1f幀/秒\n",
+                        threads, latencyMs, latencyMs > 0 ? 1000f / latencyMs : 0f));
+            } finally {
+                detector.close();
+            }
+        }
+
+        String result = report.toString().trim();
+        Log.d(TAG, result);
+        return result;
+    }
+
+    /**
+     * 運動門控耗時測試：同一幀重複計算亮度簽名並比較，目標遠低於1毫秒
+     * @param iterations 重複次數
+     */
+    public static String benchmarkMotionGate(ImageProxy image, int iterations) {
+        MotionGate gate = new MotionGate();
+        long timestamp = System.currentTimeMillis();
+
+        // 預熱，同時建立參考簽名
+        gate.shouldRunInference(image, timestamp);
+
+        long total = 0;
+        long worst = 0;
+        int skipped = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            if (!gate.shouldRunInference(image, timestamp)) {
+                skipped++;
+            }
+            long elapsed = System.nanoTime() - start;
+            total += elapsed;
+            worst = Math.max(worst, elapsed);
+        }
+
+        String report = String.format(
+            "運動門控基準測試 (%dx%d, %d次):\n" +
+            "- 平均耗時: %.3fms\n" +
+            "- 最長耗時: %.3fms\n" +
+            "- 同一幀跳過率: %.1f%%",
+            image.getWidth(), image.getHeight(), iterations,
+            total / 1e6f / iterations, worst / 1e6f, skipped * 100f / iterations);
+        Log.d(TAG, report);
+        return report;
+    }
+
+    /**
+     * 顏色和光線分析：Bitmap 方法 analyzeColors + analyzeLighting（光線部分逐點 getPixel）vs 單次遍歷 analyze（像素數組）
+     * vs 直接讀取 YUV 平面的 analyze（不需要Bitmap）
+     * 像素數組路徑另外統計讀取像素（getPixels）的耗時
+     * @param image 當前相機幀（調用期間不能關閉）
+     * @param iterations 每種方法的重複次數
+     */
+    public static String benchmarkColorLighting(ImageProxy image, int iterations) {
+        ColorLightingAnalyzer analyzer = new ColorLightingAnalyzer();
+        Bitmap bitmap = new YuvToTensorConverter().convertToBitmap(image, 320);
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = new int[width * height];
+
+        // 預熱
+        analyzer.analyzeColors(bitmap);
+        analyzer.analyzeLighting(bitmap);
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        analyzer.analyze(pixels, width, height);
+        analyzer.analyze(image);
+
+        long legacyStart = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            analyzer.analyzeColors(bitmap);
+            analyzer.analyzeLighting(bitmap);
+        }
+        long legacyNs = System.nanoTime() - legacyStart;
+
+        long readNs = 0;
+        long fusedNs = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            long read = System.nanoTime();
+            analyzer.analyze(pixels, width, height);
+            readNs += read - start;
+            fusedNs += System.nanoTime() - read;
+        }
+
+        long yuvStart = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            analyzer.analyze(image);
+        }
+        long yuvNs = System.nanoTime() - yuvStart;
+        bitmap.recycle();
+
+        float legacyMs = legacyNs / 1e6f / iterations;
+        float readMs = readNs / 1e6f / iterations;
+        float fusedMs = fusedNs / 1e6f / iterations;
+        float yuvMs = yuvNs / 1e6f / iterations;
+        String report = String.format(
+            "顏色光線分析基準測試 (%dx%d 像素 / %dx%d YUV, %d次):\n" +
+            "- Bitmap 方法 (analyzeColors + analyzeLighting): %.3fms\n" +
+            "- 單次遍歷 analyze: %.3fms (+ 讀取像素 %.3fms)\n" +
+            "- YUV 平面 analyze: %.3fms（不含Bitmap轉換）\n" +
+            "- 加速: 單次遍歷 %.1fx (含讀取像素 %.1fx), YUV %.1fx",
+            width, height, image.getWidth(), image.getHeight(), iterations,
+            legacyMs, fusedMs, readMs, yuvMs,
+            legacyMs / Math.max(fusedMs, 1e-6f), legacyMs / Math.max(fusedMs + readMs, 1e-6f),
+            legacyMs / Math.max(yuvMs, 1e-6f));
+        Log.d(TAG, report);
+        return report;
+    }
+
+    /**
+     * OCR 延遲：舊的順序流程（中文完成後視結果再做英文）vs 兩個識別器同時提交並合併
+     * 每張圖片兩種流程交替執行，避免預熱和緩存偏向其中一種；需要在後台線程調用
+     * @param images 測試圖片（例如 loadBenchmarkImages 讀取的本地圖片集）
+     * @param iterations 每張圖片每種流程的重複次數
+     */
+    public static String benchmarkOcr(OCRHelper ocrHelper, List<Bitmap> images, int iterations) {
+        if (images.isEmpty()) {
+            return "OCR基準測試: 沒有測試圖片";
+        }
+
+        // 兩種流程都識別整幀且不使用結果緩存，只比較識別器的提交方式
+        boolean regionProposal = ocrHelper.isRegionProposalEnabled();
+        boolean resultCache = ocrHelper.isResultCacheEnabled();
+        ocrHelper.setRegionProposalEnabled(false);
+        ocrHelper.setResultCacheEnabled(false);
+
+        // 預熱（首次調用會加載模型）
+        ocrHelper.recognizeText(images.get(0));
+        ocrHelper.recognizeTextSequential(images.get(0));
+
+        long sequentialNs = 0;
+        long concurrentNs = 0;
+        long sequentialWorstNs = 0;
+        long concurrentWorstNs = 0;
+        int sequentialCount = 0;
+        int concurrentCount = 0;
+        for (Bitmap image : images) {
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                sequentialCount += ocrHelper.recognizeTextSequential(image).getLineCount();
+                long sequential = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                concurrentCount += ocrHelper.recognizeText(image).getLineCount();
+                long concurrent = System.nanoTime() - start;
+
+                sequentialNs += sequential;
+                concurrentNs += concurrent;
+                sequentialWorstNs = Math.max(sequentialWorstNs, sequential);
+                concurrentWorstNs = Math.max(concurrentWorstNs, concurrent);
+            }
+        }
+
+        ocrHelper.setRegionProposalEnabled(regionProposal);
+        ocrHelper.setResultCacheEnabled(resultCache);
+
+        int runs = images.size() * iterations;
+        float sequentialMs = sequentialNs / 1e6f / runs;
+        float concurrentMs = concurrentNs / 1e6f / runs;
+        String report = String.format(
+            "OCR基準測試 (%d張圖片, 每張%d次):\n" +
+            "- 順序識別: 平均 %.1fms, 最慢 %.1fms, 平均文字行數 %.1f\n" +
+            "- 同時識別並合併: 平均 %.1fms, 最慢 %.1fms, 平均文字行數 %.1f\n" +
+            "- 加速: %.2fx",
+            images.size(), iterations,
+            sequentialMs, sequentialWorstNs / 1e6f, (float) sequentialCount / runs,
+            concurrentMs, concurrentWorstNs / 1e6f, (float) concurrentCount / runs,
+            sequentialMs / Math.max(concurrentMs, 1e-6f));
+        Log.d(TAG, report);
+        return report;
+    }
+
+    /**
+     * 文字區域候選：識別整幀 vs 只識別裁剪縮放後的文字區域
+     * 每張圖片兩種方式交替執行；報告平均延遲和送入識別器的像素節省比例，需要在後台線程調用
+     */
+    public static String benchmarkRegionProposal(OCRHelper ocrHelper, List<Bitmap> images, int iterations) {
+        if (images.isEmpty()) {
+            return "文字區域候選基準測試: 沒有測試圖片";
+        }
+        boolean enabled = ocrHelper.isRegionProposalEnabled();
+        boolean resultCache = ocrHelper.isResultCacheEnabled();
+        ocrHelper.setResultCacheEnabled(false);
+
+        long fullNs = 0;
+        long regionNs = 0;
+        int fullLines = 0;
+        int regionLines = 0;
+        float savedSum = 0f;
+        try {
+            // 預熱
+            ocrHelper.setRegionProposalEnabled(false);
+            ocrHelper.recognizeText(images.get(0));
+
+            for (Bitmap image : images) {
+                for (int i = 0; i < iterations; i++) {
+                    ocrHelper.setRegionProposalEnabled(false);
+                    long start = System.nanoTime();
+                    fullLines += ocrHelper.recognizeText(image).getLineCount();
+                    fullNs += System.nanoTime() - start;
+
+                    ocrHelper.setRegionProposalEnabled(true);
+                    start = System.nanoTime();
+                    regionLines += ocrHelper.recognizeText(image).getLineCount();
+                    regionNs += System.nanoTime() - start;
+                    savedSum += ocrHelper.getLastSavedAreaFraction();
+                }
+            }
+        } finally {
+            ocrHelper.setRegionProposalEnabled(enabled);
+            ocrHelper.setResultCacheEnabled(resultCache);
+        }
+
+        int runs = images.size() * iterations;
+        float fullMs = fullNs / 1e6f / runs;
+        float regionMs = regionNs / 1e6f / runs;
+        String report = String.format(
+            "文字區域候選基準測試 (%d張圖片, 每張%d次):\n" +
+            "- 整幀識別: 平均 %.1fms, 平均文字行數 %.1f\n" +
+            "- 只識別文字區域: 平均 %.1fms, 平均文字行數 %.1f, 送入識別器的像素平均節省 %.0f%%\n" +
+            "- 加速: %.2fx",
+            images.size(), iterations,
+            fullMs, (float) fullLines / runs,
+            regionMs, (float) regionLines / runs, savedSum / runs * 100,
+            fullMs / Math.max(regionMs, 1e-6f));
+        Log.d(TAG, report);
+        return report;
+    }
+
+    /**
+     * 結果緩存：每張圖片清空緩存後識別一次（未命中），再重複識別 iterations 次（應全部命中）
+     * 報告兩者的平均延遲和緩存的累計統計，需要在後台線程調用
+     */
+    public static String benchmarkResultCache(OCRHelper ocrHelper, List<Bitmap> images, int iterations) {
+        if (images.isEmpty()) {
+            return "OCR結果緩存基準測試: 沒有測試圖片";
+        }
+        boolean enabled = ocrHelper.isResultCacheEnabled();
+
+        long missNs = 0;
+        long hitNs = 0;
+        int mismatches = 0;
+        try {
+            ocrHelper.setResultCacheEnabled(true);
+            for (Bitmap image : images) {
+                ocrHelper.clearResultCache();
+                long start = System.nanoTime();
+                OCRDocument reference = ocrHelper.recognizeText(image);
+                missNs += System.nanoTime() - start;
+
+                for (int i = 0; i < iterations; i++) {
+                    start = System.nanoTime();
+                    OCRDocument cached = ocrHelper.recognizeText(image);
+                    hitNs += System.nanoTime() - start;
+                    if (cached != reference) {
+                        mismatches++;
+                    }
+                }
+            }
+        } finally {
+            ocrHelper.clearResultCache();
+            ocrHelper.setResultCacheEnabled(enabled);
+        }
+
+        float missMs = missNs / 1e6f / images.size();
+        float hitMs = hitNs / 1e6f / (images.size() * iterations);
+        String report = String.format(
+            "OCR結果緩存基準測試 (%d張圖片, 每張重複%d次):\n" +
+            "- 未命中（識別）: 平均 %.1fms\n" +
+            "- 重複同一幀: 平均 %.2fms, 未命中 %d 次\n" +
+            "- 累計: %s",
+            images.size(), iterations, missMs, hitMs, mismatches, ocrHelper.formatCacheStats());
+        Log.d(TAG, report);
+        return report;
+    }
+
+    /**
+     * 讀取 assets 目錄下的測試圖片（可調試版本中放入本地圖片集，目錄不存在時返回空列表）
+     * @param maxWidth 寬度超過此值的圖片按比例縮小，與拍照分析的輸入尺寸相近
+     */
+    public static List<Bitmap> loadBenchmarkImages(Context context, String assetDirectory, int maxWidth) {
+        List<Bitmap> images = new ArrayList<>();
+        try {
+            String[] names = context.getAssets().list(assetDirectory);
+            if (names == null) {
+                return images;
+            }
+            for (String name : names) {
+                try (InputStream input = context.getAssets().open(assetDirectory + "/" + name)) {
+                    Bitmap bitmap = BitmapFactory.decodeStream(input);
+                    if (bitmap == null) {
+                        continue;
+                    }
+                    if (bitmap.getWidth() > maxWidth) {
+                        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, maxWidth,
+                                bitmap.getHeight() * maxWidth / bitmap.getWidth(), true);
+                        if (scaled != bitmap) {
+                            bitmap.recycle();
+                        }
+                        bitmap = scaled;
+                    }
+                    images.add(bitmap);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "讀取測試圖片失敗: " + e.getMessage());
+        }
+        return images;
+    }
+
+    /**
+     * NMS 微基準測試：隨機生成聚集的候選框（模擬 YOLOv8 的 8400 個錨點），
+     * 比較三種模式的耗時並統計穩態分配
+     * @param candidates 候選框數量
+     * @param iterations 每種模式的重複次數
+     */
+    @SuppressWarnings("deprecation")
+    public static String benchmarkNms(int candidates, int iterations) {
+        Random random = new Random(42);
+        float[] boxes = new float[candidates * 4];
+        float[] scores = new float[candidates];
+        int[] classes = new int[candidates];
+        for (int i = 0; i < candidates; i++) {
+            // 圍繞少量物體中心聚集，接近真實輸出的重疊分佈
+            int cluster = random.nextInt(20);
+            float cx = (cluster % 5) * 0.2f + 0.1f + (float) random.nextGaussian() * 0.02f;
+            float cy = (cluster / 5) * 0.25f + 0.12f + (float) random.nextGaussian() * 0.02f;
+            float half = 0.05f + random.nextFloat() * 0.05f;
+            boxes[i * 4] = cx - half;
+            boxes[i * 4 + 1] = cy - half;
+            boxes[i * 4 + 2] = cx + half;
+            boxes[i * 4 + 3] = cy + half;
+            scores[i] = random.nextFloat();
+            classes[i] = cluster % 4;
+        }
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("NMS基準測試 (%d個候選, %d次):\n", candidates, iterations));
+        for (NonMaxSuppression.Mode mode : NonMaxSuppression.Mode.values()) {
+            NonMaxSuppression nms = new NonMaxSuppression(mode, AppConstants.NMS_THRESHOLD);
+            // 預熱並分配內部緩衝區
+            int kept = nms.run(boxes, scores, classes, candidates,
+                    AppConstants.CONFIDENCE_THRESHOLD, AppConstants.MAX_RESULTS);
+
+            Debug.resetThreadAllocCount();
+            Debug.startAllocCounting();
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                kept = nms.run(boxes, scores, classes, candidates,
+                        AppConstants.CONFIDENCE_THRESHOLD, AppConstants.MAX_RESULTS);
+            }
+            long total = System.nanoTime() - start;
+            Debug.stopAllocCounting();
+
+            report.append(String.format("- %s: %.3fms, 保留%d個, 分配對象%d\n",
+                    mode, total / 1e6f / iterations, kept, Debug.getThreadAllocCount()));
+        }
+
+        String result = report.toString().trim();
+        Log.d(TAG, result);
+        return result;
+    }
+
+    /**
+     * 複製相機幀的 YUV 平面，使基準測試可以在相機幀關閉後於後台線程使用
+     * 平面保留原來的行跨度和像素跨度；副本不持有相機緩衝區，close 為空操作
+     */
+    public static ImageProxy copyFrame(ImageProxy image) {
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        CopiedPlane[] copies = new CopiedPlane[planes.length];
+        for (int i = 0; i < planes.length; i++) {
+            ByteBuffer source = planes[i].getBuffer().duplicate();
+            source.rewind();
+            ByteBuffer copy = ByteBuffer.allocateDirect(source.remaining());
+            copy.put(source);
+            copy.rewind();
+            copies[i] = new CopiedPlane(copy, planes[i].getRowStride(), planes[i].getPixelStride());
+        }
+        return new CopiedFrame(copies, image.getWidth(), image.getHeight(), image.getFormat(),
+                image.getImageInfo(), new Rect(image.getCropRect()));
+    }
+
+    private static final class CopiedPlane implements ImageProxy.PlaneProxy {
+        private final ByteBuffer buffer;
+        private final int rowStride;
+        private final int pixelStride;
+
+        CopiedPlane(ByteBuffer buffer, int rowStride, int pixelStride) {
+            this.buffer = buffer;
+            this.rowStride = rowStride;
+            this.pixelStride = pixelStride;
+        }
+
+        @Override
+        public int getRowStride() {
+            return rowStride;
+        }
+
+        @Override
+        public int getPixelStride() {
+            return pixelStride;
+        }
+
+        @Override
+        public ByteBuffer getBuffer() {
+            return buffer;
+        }
+    }
+
+    private static final class CopiedFrame implements ImageProxy {
+        private final CopiedPlane[] planes;
+        private final int width;
+        private final int height;
+        private final int format;
+        private final ImageInfo imageInfo;
+        private Rect cropRect;
+
+        CopiedFrame(CopiedPlane[] planes, int width, int height, int format, ImageInfo imageInfo, Rect cropRect) {
+            this.planes = planes;
+            this.width = width;
+            this.height = height;
+            this.format = format;
+            this.imageInfo = imageInfo;
+            this.cropRect = cropRect;
+        }
+
+        @Override
+        public void close() {
+            // 平面是普通的直接緩衝區，由垃圾回收釋放
+        }
+
+        @Override
+        public Rect getCropRect() {
+            return cropRect;
+        }
+
+        @Override
+        public void setCropRect(Rect rect) {
+            cropRect = rect != null ? new Rect(rect) : new Rect(0, 0, width, height);
+        }
+
+        @Override
+        public int getFormat() {
+            return format;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public PlaneProxy[] getPlanes() {
+            return planes;
+        }
+
+        @Override
+        public ImageInfo getImageInfo() {
+            return imageInfo;
+        }
+
+        @Override
+        @ExperimentalGetImage
+        public Image getImage() {
+            // 副本沒有對應的 android.media.Image
+            return null;
+        }
+    }
+
+    /**
+     * 統計參照結果中被另一組結果命中的數量
+     */
+    private static int countMatches(List<YoloDetector.DetectionResult> reference,
+                                    List<YoloDetector.DetectionResult> candidates) {
+        int matches = 0;
+        for (YoloDetector.DetectionResult ref : reference) {
+            for (YoloDetector.DetectionResult candidate : candidates) {
+                if (ref.getLabel().equals(candidate.getLabel())
+                        && rectIoU(ref.getBoundingBox(), candidate.getBoundingBox()) >= 0.5f) {
+                    matches++;
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static float rectIoU(Rect a, Rect b) {
+        if (a == null || b == null) {
+            return 0f;
+        }
+        int left = Math.max(a.left, b.left);
+        int top = Math.max(a.top, b.top);
+        int right = Math.min(a.right, b.right);
+        int bottom = Math.min(a.bottom, b.bottom);
+        if (right <= left || bottom <= top) {
+            return 0f;
+        }
+        float intersection = (float) (right - left) * (bottom - top);
+        float union = (float) a.width() * a.height() + (float) b.width() * b.height() - intersection;
+        return union > 0 ? intersection / union : 0f;
+    }
+
+    /**
+     * 舊的轉換路徑：NV21 → JPEG → Bitmap → createScaledBitmap（僅作基準對照）
+     */
+    private static Bitmap legacyJpegToScaledBitmap(ImageProxy image, int targetSize) {
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        ByteBuffer yBuffer = planes[0].getBuffer().duplicate();
+        ByteBuffer uBuffer = planes[1].getBuffer().duplicate();
+        ByteBuffer vBuffer = planes[2].getBuffer().duplicate();
+        yBuffer.rewind();
+        uBuffer.rewind();
+        vBuffer.rewind();
+
+        int ySize = yBuffer.remaining();
+        int uSize = uBuffer.remaining();
+        int vSize = vBuffer.remaining();
+
+        byte[] nv21 = new byte[ySize + uSize + vSize];
+        yBuffer.get(nv21, 0, ySize);
+        vBuffer.get(nv21, ySize, vSize);
+        uBuffer.get(nv21, ySize + vSize, uSize);
+
+        YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, image.getWidth(), image.getHeight(), null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        yuvImage.compressToJpeg(new Rect(0, 0, image.getWidth(), image.getHeight()), 85, out);
+        byte[] imageBytes = out.toByteArray();
+        Bitmap bitmap = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, targetSize, targetSize, true);
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+        return scaled;
+    }
+}
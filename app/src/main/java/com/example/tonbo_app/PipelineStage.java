@@ -0,0 +1,162 @@
+package com.example.tonbo_app;
+
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 流水線階段
+ * 每個階段有自己的線程和容量為1的交接槽：新項目到達時如果上一個還沒開始處理，
+ * 舊項目被丟棄（最新優先），丟棄的項目交給 DropListener 歸還資源
+ * 階段之間因此可以重疊執行（例如轉換第 N+1 幀時推理第 N 幀），且積壓永遠不超過一項
+ * 同時統計排隊等待時間、處理時間、丟棄數和隊列深度
+ */
+public class PipelineStage<T> {
+    private static final String TAG = "PipelineStage";
+
+    // 延遲統計的指數平滑係數
+    private static final float SMOOTHING = 0.1f;
+
+    /**
+     * 階段處理邏輯，在階段線程中調用
+     * 處理完成後應把項目交給下一階段或歸還，拋出異常時項目交給 DropListener
+     */
+    public interface Worker<T> {
+        void process(T item) throws Exception;
+    }
+
+    /**
+     * 項目被丟棄（被更新的項目取代、出錯或階段關閉）時調用
+     */
+    public interface DropListener<T> {
+        void onDropped(T item);
+    }
+
+    private final String name;
+    private final Worker<T> worker;
+    private final DropListener<T> dropListener;
+    private final ExecutorService executor;
+    private final AtomicReference<T> pending = new AtomicReference<>();
+    private volatile boolean busy = false;
+    private volatile boolean shutdown = false;
+
+    // 統計數據（近似值，跨線程讀取）
+    private volatile long offeredAtNs = 0;
+    private volatile int offeredCount = 0;
+    private volatile int processedCount = 0;
+    private volatile int droppedCount = 0;
+    private volatile long depthTotal = 0;
+    private volatile float averageWaitMs = 0f;
+    private volatile float averageProcessMs = 0f;
+
+    public PipelineStage(String name, Worker<T> worker, DropListener<T> dropListener) {
+        this.name = name;
+        this.worker = worker;
+        this.dropListener = dropListener;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "Pipeline-" + name));
+    }
+
+    /**
+     * 提交項目（不阻塞），每個階段應只有一個上游線程調用
+     * @return false 表示取代了尚未處理的舊項目（舊項目已交給 DropListener），或階段已關閉
+     */
+    public boolean offer(T item) {
+        if (shutdown) {
+            dropListener.onDropped(item);
+            return false;
+        }
+        depthTotal += getQueueDepth();
+        offeredCount++;
+        offeredAtNs = System.nanoTime();
+
+        T previous = pending.getAndSet(item);
+        if (previous != null) {
+            // 最新優先：舊項目還沒開始處理，直接丟棄；已排隊的處理任務會取走新項目
+            droppedCount++;
+            dropListener.onDropped(previous);
+            return false;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // 並發關閉時取回項目
+            T rejected = pending.getAndSet(null);
+            if (rejected != null) {
+                dropListener.onDropped(rejected);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private void drain() {
+        T item = pending.getAndSet(null);
+        if (item == null) {
+            return;
+        }
+        busy = true;
+        long start = System.nanoTime();
+        averageWaitMs = smooth(averageWaitMs, (start - offeredAtNs) / 1e6f);
+        try {
+            worker.process(item);
+        } catch (Exception e) {
+            Log.e(TAG, name + " 階段處理失敗: " + e.getMessage());
+            dropListener.onDropped(item);
+        } finally {
+            averageProcessMs = smooth(averageProcessMs, (System.nanoTime() - start) / 1e6f);
+            processedCount++;
+            busy = false;
+        }
+    }
+
+    /**
+     * 指數平滑，第一個樣本直接作為初始值（調度器據此決定頻率，不能從 0 慢慢爬升）
+     */
+    private float smooth(float average, float sample) {
+        return processedCount == 0 ? sample : average + SMOOTHING * (sample - average);
+    }
+
+    /**
+     * 當前隊列深度：等待中的項目（0 或 1）加上正在處理的項目（0 或 1）
+     */
+    public int getQueueDepth() {
+        return (pending.get() != null ? 1 : 0) + (busy ? 1 : 0);
+    }
+
+    public float getAverageProcessMs() {
+        return averageProcessMs;
+    }
+
+    public float getAverageWaitMs() {
+        return averageWaitMs;
+    }
+
+    public int getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * 階段統計摘要
+     */
+    public String getReport() {
+        return String.format("%s: 處理 %.1fms, 等待 %.1fms, 深度 %d (平均 %.2f), 已處理 %d, 丟棄 %d",
+                name, averageProcessMs, averageWaitMs, getQueueDepth(),
+                offeredCount == 0 ? 0f : (float) depthTotal / offeredCount,
+                processedCount, droppedCount);
+    }
+
+    /**
+     * 關閉階段，未處理的項目交給 DropListener
+     */
+    public void shutdown() {
+        shutdown = true;
+        executor.shutdown();
+        T item = pending.getAndSet(null);
+        if (item != null) {
+            dropListener.onDropped(item);
+        }
+    }
+}
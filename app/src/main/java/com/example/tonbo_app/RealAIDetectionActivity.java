@@ -47,7 +47,7 @@ public class RealAIDetectionActivity extends BaseAccessibleActivity {
     
     private ProcessCameraProvider cameraProvider;
     private ImageAnalysis imageAnalysis;
-    private YoloDetector yoloDetector;
+    private volatile YoloDetector yoloDetector;
     private OptimizedDetectionOverlayView detectionOverlay;
     private ExecutorService cameraExecutor;
     private boolean isDetecting = false;
@@ -94,6 +94,14 @@ public class RealAIDetectionActivity extends BaseAccessibleActivity {
         });
         
         startButton.setOnClickListener(v -> startDetection());
+        
+        // 長按標題切換檢測引擎（SSD MobileNet / YOLOv8），只在 YOLOv8 模型隨應用提供時啟用
+        if (pageTitle != null && YoloDetector.isEngineAvailable(this, YoloDetector.Engine.YOLOV8)) {
+            pageTitle.setOnLongClickListener(v -> {
+                switchDetectionEngine();
+                return true;
+            });
+        }
         stopButton.setOnClickListener(v -> stopDetection());
         
         // 根據當前語言更新界面文字
@@ -156,15 +164,45 @@ public class RealAIDetectionActivity extends BaseAccessibleActivity {
     }
     
     private void initDetector() {
-        try {
-            yoloDetector = new YoloDetector(this);
-            Log.d(TAG, "環境識別器初始化完成");
-            updateStatusIndicator("ready");
-        } catch (Exception e) {
-            Log.e(TAG, "環境識別器初始化失敗: " + e.getMessage());
-            updateStatusIndicator("error");
-            Toast.makeText(this, "環境識別器初始化失敗", Toast.LENGTH_LONG).show();
-        }
+        // 檢測器在後台創建（通常已由啟動頁預熱），就緒後回到主線程
+        ModelRegistry.getInstance(this).getDetector(YoloDetector.getPreferredEngine(this), detector -> {
+            if (isFinishing() || isDestroyed()) {
+                return;
+            }
+            if (detector != null) {
+                yoloDetector = detector;
+                Log.d(TAG, "環境識別器初始化完成: " + detector.getEngine());
+                updateStatusIndicator("ready");
+            } else {
+                Log.e(TAG, "環境識別器初始化失敗");
+                updateStatusIndicator("error");
+                Toast.makeText(this, "環境識別器初始化失敗", Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+    
+    /**
+     * 切換檢測引擎並保存選擇
+     * 新引擎的檢測器由 ModelRegistry 在後台創建，就緒後替換
+     */
+    private void switchDetectionEngine() {
+        YoloDetector.Engine current = yoloDetector != null
+                ? yoloDetector.getEngine() : YoloDetector.getPreferredEngine(this);
+        YoloDetector.Engine next = current == YoloDetector.Engine.YOLOV8
+                ? YoloDetector.Engine.SSD_MOBILENET : YoloDetector.Engine.YOLOV8;
+        YoloDetector.setPreferredEngine(this, next);
+        
+        ModelRegistry.getInstance(this).getDetector(next, detector -> {
+            if (detector == null || isFinishing() || isDestroyed()) {
+                return;
+            }
+            yoloDetector = detector;
+            Log.d(TAG, "檢測引擎已切換: " + next);
+            
+            String engineName = next == YoloDetector.Engine.YOLOV8 ? "YOLOv8" : "SSD MobileNet";
+            ttsManager.speak("已切換到" + engineName + "檢測", "Switched to " + engineName + " detection", true);
+            Toast.makeText(this, "檢測引擎: " + engineName, Toast.LENGTH_SHORT).show();
+        });
     }
     
     private void checkCameraPermission() {
@@ -524,9 +562,8 @@ public class RealAIDetectionActivity extends BaseAccessibleActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (yoloDetector != null) {
-            yoloDetector.close();
-        }
+        // 檢測器由 ModelRegistry 共享持有，不在這裡關閉
+        yoloDetector = null;
         if (cameraProvider != null) {
             cameraProvider.unbindAll();
         }
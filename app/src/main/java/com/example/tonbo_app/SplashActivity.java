@@ -27,6 +27,9 @@ public class SplashActivity extends AppCompatActivity {
         // 啟動動畫
         startEntranceAnimation();
 
+        // 在後台映射模型並預熱檢測器，進入識別頁面時無需等待
+        ModelRegistry.getInstance(this).warmUp();
+
         // 3秒後檢查登入狀態並跳轉
         new Handler().postDelayed(() -> {
             checkLoginStatusAndNavigate();
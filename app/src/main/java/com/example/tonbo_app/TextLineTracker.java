@@ -0,0 +1,295 @@
+package com.example.tonbo_app;
+
+import android.graphics.Rect;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 跨幀文字行追蹤（連續朗讀模式）
+ * 每次 OCR 結果的文字行按位置（正規化邊界框 IoU）和內容相似度（編輯距離）與已有軌跡配對，
+ * 文字連續 N 次識別結果一致才算穩定，穩定後只播報一次；播報過的文字在一段時間內即使軌跡
+ * 丟失後重新出現（例如鏡頭移開又移回）也不再重複播報
+ * 同時給出下次識別的建議間隔：有尚未穩定的文字行時用最短間隔，畫面文字都已播報時逐步放慢
+ * 方法已同步，可以在 OCR 回調線程更新、在其他線程重置
+ */
+public class TextLineTracker {
+    private static final String TAG = "TextLineTracker";
+
+    // 同一位置的判斷：正規化邊界框 IoU 下限
+    private static final float MIN_POSITION_IOU = 0.2f;
+    // 位置對得上時，內容相似度低於此值視為換了一段文字
+    private static final float MIN_SAME_LINE_SIMILARITY = 0.5f;
+    // 內容相似度達到此值時，即使位置移動較多（手持晃動）也視為同一行
+    private static final float MOVED_LINE_SIMILARITY = 0.8f;
+    // 與上次識別結果的相似度達到此值才計入穩定次數（容許個別字符的識別抖動）
+    private static final float STABLE_SIMILARITY = 0.85f;
+    // 連續多少次沒有識別到就丟棄軌跡
+    private static final int MAX_MISSED = 2;
+    // 少於此數的有效字符不追蹤（噪聲、單個符號）
+    private static final int MIN_SIGNIFICANT_CHARS = 2;
+    // 播報過的文字在此時間內不再重複播報
+    private static final long SPOKEN_MEMORY_MS = 60000;
+    private static final int SPOKEN_MEMORY_SIZE = 64;
+    // 建議識別間隔
+    private static final long MIN_INTERVAL_MS = 400;
+    private static final long MAX_INTERVAL_MS = 3000;
+    private static final float INTERVAL_GROWTH = 1.5f;
+
+    private final int stableObservations;
+    private final List<Track> tracks = new ArrayList<>();
+    // 正規化文字 -> 播報時間，按插入順序淘汰
+    private final LinkedHashMap<String, Long> spokenTexts = new LinkedHashMap<>();
+    private long suggestedIntervalMs = MIN_INTERVAL_MS;
+
+    // 編輯距離的兩行緩衝區，重用
+    private int[] previousRow = new int[64];
+    private int[] currentRow = new int[64];
+
+    private static final class Track {
+        float left;
+        float top;
+        float right;
+        float bottom;
+        String text;
+        String normalized;
+        int stableCount;
+        int missed;
+        boolean spoken;
+        boolean matched;
+    }
+
+    /**
+     * @param stableObservations 文字需要連續一致的識別次數
+     */
+    public TextLineTracker(int stableObservations) {
+        this.stableObservations = Math.max(1, stableObservations);
+    }
+
+    /**
+     * 用一次 OCR 結果更新
+     * @param frameWidth 識別圖片的寬度，用於把邊界框正規化
+     * @return 本次新穩定且尚未播報過的文字行（閱讀順序），沒有時為空列表
+     */
+    public synchronized List<String> update(OCRDocument document, int frameWidth, int frameHeight, long timestampMs) {
+        List<String> announcements = new ArrayList<>();
+        for (Track track : tracks) {
+            track.matched = false;
+        }
+        forgetOldSpokenTexts(timestampMs);
+
+        boolean changed = false;
+        for (OCRDocument.Block block : document.getBlocks()) {
+            for (OCRDocument.Line line : block.getLines()) {
+                String normalized = normalize(line.getText());
+                if (normalized.length() < MIN_SIGNIFICANT_CHARS) {
+                    continue;
+                }
+                Rect box = line.getBoundingBox();
+                float left = box != null ? (float) box.left / frameWidth : 0f;
+                float top = box != null ? (float) box.top / frameHeight : 0f;
+                float right = box != null ? (float) box.right / frameWidth : 1f;
+                float bottom = box != null ? (float) box.bottom / frameHeight : 1f;
+
+                Track track = findTrack(left, top, right, bottom, normalized);
+                if (track == null) {
+                    track = new Track();
+                    track.stableCount = 1;
+                    tracks.add(track);
+                    changed = true;
+                } else if (similarity(track.normalized, normalized) >= STABLE_SIMILARITY) {
+                    track.stableCount++;
+                } else {
+                    // 同一位置換了內容（例如翻頁、屏幕刷新）：重新計算穩定次數，穩定後可以再次播報；
+                    // 相同的文字仍由 spokenTexts 避免重複
+                    track.stableCount = 1;
+                    track.spoken = false;
+                    changed = true;
+                }
+                track.left = left;
+                track.top = top;
+                track.right = right;
+                track.bottom = bottom;
+                track.text = line.getText();
+                track.normalized = normalized;
+                track.missed = 0;
+                track.matched = true;
+
+                if (!track.spoken && track.stableCount >= stableObservations) {
+                    track.spoken = true;
+                    if (!spokenTexts.containsKey(normalized)) {
+                        announcements.add(track.text);
+                        Log.d(TAG, "文字行已穩定: " + track.text);
+                    }
+                    rememberSpoken(normalized, timestampMs);
+                }
+            }
+        }
+
+        for (Iterator<Track> iterator = tracks.iterator(); iterator.hasNext(); ) {
+            Track track = iterator.next();
+            if (!track.matched && ++track.missed > MAX_MISSED) {
+                iterator.remove();
+            }
+        }
+
+        // 有新出現或仍在變化的文字行時保持最短間隔，否則逐步放慢
+        if (changed || hasPendingTracks()) {
+            suggestedIntervalMs = MIN_INTERVAL_MS;
+        } else {
+            suggestedIntervalMs = Math.min(MAX_INTERVAL_MS, (long) (suggestedIntervalMs * INTERVAL_GROWTH));
+        }
+        return announcements;
+    }
+
+    /**
+     * 下次識別的建議間隔（毫秒）
+     */
+    public synchronized long getSuggestedIntervalMs() {
+        return suggestedIntervalMs;
+    }
+
+    /**
+     * 當前追蹤的文字行數
+     */
+    public synchronized int getTrackCount() {
+        return tracks.size();
+    }
+
+    /**
+     * 清除所有軌跡和播報記錄（重新開始連續朗讀時）
+     */
+    public synchronized void reset() {
+        tracks.clear();
+        spokenTexts.clear();
+        suggestedIntervalMs = MIN_INTERVAL_MS;
+    }
+
+    private boolean hasPendingTracks() {
+        for (Track track : tracks) {
+            if (!track.spoken) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 位置和內容得分最高的未配對軌跡：位置重疊且內容相近，或內容幾乎相同（位置移動）
+     */
+    private Track findTrack(float left, float top, float right, float bottom, String normalized) {
+        Track best = null;
+        float bestScore = 0f;
+        for (Track track : tracks) {
+            if (track.matched) {
+                continue;
+            }
+            float iou = iou(track, left, top, right, bottom);
+            float similarity = similarity(track.normalized, normalized);
+            boolean samePlace = iou >= MIN_POSITION_IOU && similarity >= MIN_SAME_LINE_SIMILARITY;
+            if (!samePlace && similarity < MOVED_LINE_SIMILARITY) {
+                continue;
+            }
+            float score = iou + similarity;
+            if (score > bestScore) {
+                best = track;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private static float iou(Track track, float left, float top, float right, float bottom) {
+        float width = Math.min(track.right, right) - Math.max(track.left, left);
+        float height = Math.min(track.bottom, bottom) - Math.max(track.top, top);
+        if (width <= 0f || height <= 0f) {
+            return 0f;
+        }
+        float intersection = width * height;
+        float union = (track.right - track.left) * (track.bottom - track.top)
+                + (right - left) * (bottom - top) - intersection;
+        return union > 0f ? intersection / union : 0f;
+    }
+
+    /**
+     * 1 - 編輯距離 / 較長文字長度
+     */
+    float similarity(String a, String b) {
+        if (a.equals(b)) {
+            return 1f;
+        }
+        int lengthA = a.length();
+        int lengthB = b.length();
+        int longer = Math.max(lengthA, lengthB);
+        if (longer == 0) {
+            return 1f;
+        }
+        if (Math.abs(lengthA - lengthB) > longer / 2) {
+            // 長度差一半以上時相似度必然低於 0.5，不必計算
+            return 1f - (float) Math.abs(lengthA - lengthB) / longer;
+        }
+        if (previousRow.length <= lengthB) {
+            previousRow = new int[lengthB + 1];
+            currentRow = new int[lengthB + 1];
+        }
+        int[] previous = previousRow;
+        int[] current = currentRow;
+        for (int j = 0; j <= lengthB; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= lengthA; i++) {
+            current[0] = i;
+            char ch = a.charAt(i - 1);
+            for (int j = 1; j <= lengthB; j++) {
+                int cost = ch == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return 1f - (float) previous[lengthB] / longer;
+    }
+
+    /**
+     * 比較用的文字：去掉空白和標點，英文轉小寫
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (Character.isLetterOrDigit(ch)) {
+                sb.append(Character.toLowerCase(ch));
+            }
+        }
+        return sb.toString();
+    }
+
+    private void rememberSpoken(String normalized, long timestampMs) {
+        spokenTexts.remove(normalized);
+        spokenTexts.put(normalized, timestampMs);
+        if (spokenTexts.size() > SPOKEN_MEMORY_SIZE) {
+            Iterator<String> oldest = spokenTexts.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    private void forgetOldSpokenTexts(long timestampMs) {
+        for (Iterator<Map.Entry<String, Long>> iterator = spokenTexts.entrySet().iterator(); iterator.hasNext(); ) {
+            if (timestampMs - iterator.next().getValue() > SPOKEN_MEMORY_MS) {
+                iterator.remove();
+            } else {
+                // 按插入（播報）順序排列，後面的都更新
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,606 @@
+package com.example.tonbo_app;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 文字區域候選
+ * 在下採樣的亮度網格上找出邊緣密集、呈橫向排列的連通區域（文字行），
+ * 相鄰的文字行合併為區塊，擴展邊距後重疊的區塊再合併（同一段文字不會被裁剪兩次），
+ * 只把這些區塊裁剪並按字符高度縮放後送入 OCR；字符高度取自連通區域範圍內原圖像素行的水平投影，
+ * 不取連通區域的高度（行距小於網格單元時，整段文字會連成一個連通區域）；
+ * 候選區域覆蓋大半個畫面、沒有找到候選，或畫面邊緣很多而候選只包含其中一小部分時識別整幀
+ * 邊緣不明顯的文字（低對比度、失焦、字符比網格單元還小）可能不在任何候選中，這些文字會被漏掉
+ * 網格和連通區域的緩衝區在尺寸不變時重用；非線程安全
+ */
+public class TextRegionProposer {
+
+    // 下採樣網格的最大寬度（單元數）
+    private static final int GRID_WIDTH = 240;
+    // 邊緣：相鄰單元亮度差超過此值
+    private static final int EDGE_THRESHOLD = 28;
+    // 同一行內相距不超過此單元數的邊緣連在一起
+    private static final int HORIZONTAL_GAP = 3;
+    // 文字行的最少單元數、最小高度（單元）和邊緣密度下限
+    private static final int MIN_LINE_CELLS = 8;
+    private static final int MIN_LINE_HEIGHT = 2;
+    private static final float MIN_EDGE_DENSITY = 0.2f;
+    // 連通區域多於此數時多半是整頁文字或紋理，直接識別整幀
+    private static final int MAX_LINES = 96;
+    // 區塊向外擴展的單元數，避免切到筆畫
+    private static final int REGION_PADDING = 2;
+    // 候選區域總面積超過畫面此比例時識別整幀
+    private static final float MAX_COVERAGE = 0.6f;
+    // 邊緣單元超過網格此比例（畫面有較多細節）而候選區域內的邊緣不到總數此比例時，
+    // 多半有文字行沒被認出（例如連成大片而被排除），識別整幀
+    private static final float MIN_EDGE_FRACTION_FOR_RECALL = 0.02f;
+    private static final float MIN_EDGE_RECALL = 0.35f;
+    // 縮放目標：字符高度（像素），ML Kit 對漢字建議至少 16-24 像素；只縮小不放大，
+    // 縮放比例只由估計的字符高度決定，不設固定的最小比例
+    private static final int TARGET_CHARACTER_HEIGHT = 32;
+    // 水平投影中亮度跳變數低於峰值此比例的像素行視為行間空隙
+    private static final float PROFILE_GAP_RATIO = 0.25f;
+    // 短於此像素數的投影峰是噪聲，不算文字行
+    private static final int MIN_PROFILE_RUN = 3;
+
+    /**
+     * 一個候選區域
+     */
+    public static final class Region {
+        private final Rect bounds;
+        private final int characterHeight;
+        private final float scale;
+
+        Region(Rect bounds, int characterHeight, float scale) {
+            this.bounds = bounds;
+            this.characterHeight = characterHeight;
+            this.scale = scale;
+        }
+
+        /**
+         * 在原圖中的範圍（像素）
+         */
+        public Rect getBounds() {
+            return bounds;
+        }
+
+        /**
+         * 區域內最小文字行的估計高度（像素），整幀時為 0
+         */
+        public int getCharacterHeight() {
+            return characterHeight;
+        }
+
+        /**
+         * 送入 OCR 前的縮放比例（<= 1）
+         */
+        public float getScale() {
+            return scale;
+        }
+    }
+
+    /**
+     * 一次候選的結果和節省的像素面積
+     */
+    public static final class Proposal {
+        private final List<Region> regions;
+        private final boolean fullFrame;
+        private final long frameArea;
+        private final long ocrArea;
+        private final float elapsedMs;
+
+        Proposal(List<Region> regions, boolean fullFrame, long frameArea, float elapsedMs) {
+            this.regions = Collections.unmodifiableList(regions);
+            this.fullFrame = fullFrame;
+            this.frameArea = frameArea;
+            long area = 0;
+            for (Region region : regions) {
+                area += (long) Math.round(region.bounds.width() * region.scale)
+                        * Math.round(region.bounds.height() * region.scale);
+            }
+            this.ocrArea = area;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public List<Region> getRegions() {
+            return regions;
+        }
+
+        /**
+         * 是否直接識別整幀（沒有裁剪）
+         */
+        public boolean isFullFrame() {
+            return fullFrame;
+        }
+
+        public long getFrameArea() {
+            return frameArea;
+        }
+
+        /**
+         * 實際送入 OCR 的像素數（裁剪並縮放後）
+         */
+        public long getOcrArea() {
+            return ocrArea;
+        }
+
+        /**
+         * 相對整幀節省的像素比例（0-1）
+         */
+        public float getSavedFraction() {
+            return frameArea > 0 ? Math.max(0f, 1f - (float) ocrArea / frameArea) : 0f;
+        }
+
+        public float getElapsedMs() {
+            return elapsedMs;
+        }
+    }
+
+    private int gridWidth;
+    private int gridHeight;
+    private int[] luma = new int[0];
+    private boolean[] edges = new boolean[0];
+    private boolean[] mask = new boolean[0];
+    private int[] labels = new int[0];
+    private int[] stack = new int[0];
+    private int[] rowPixels = new int[0];
+    private int[] rowSums = new int[0];
+    // 字符高度估計用的像素行投影和投影峰寬
+    private int[] profile = new int[0];
+    private int[] runLengths = new int[0];
+    // 本次候選的像素來源（bitmap 或 pixels 二選一），只在 propose 期間持有
+    private Bitmap sourceBitmap;
+    private int[] sourcePixels;
+    private int sourceWidth;
+    private int sourceHeight;
+    private int cellSize;
+
+    // 文字行：網格座標的邊界框（含）
+    private final int[] lineLeft = new int[MAX_LINES];
+    private final int[] lineTop = new int[MAX_LINES];
+    private final int[] lineRight = new int[MAX_LINES];
+    private final int[] lineBottom = new int[MAX_LINES];
+    // 估計的字符高度（像素）
+    private final int[] lineGlyph = new int[MAX_LINES];
+    private int lineCount;
+    // 網格中的邊緣單元總數，以及最近一次合併後落在候選區域內的邊緣單元數
+    private int edgeCount;
+    private int coveredEdgeCount;
+
+    /**
+     * 找出圖片中的候選文字區域
+     */
+    public Proposal propose(Bitmap bitmap) {
+        long start = System.nanoTime();
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int cell = Math.max(1, (width + GRID_WIDTH - 1) / GRID_WIDTH);
+        gridWidth = width / cell;
+        gridHeight = height / cell;
+        if (gridWidth < 3 || gridHeight < 3) {
+            return fullFrame(width, height, start);
+        }
+
+        setSource(bitmap, null, width, height, cell);
+        try {
+            fillLuma();
+            return proposeFromLuma(width, height, cell, start);
+        } finally {
+            setSource(null, null, 0, 0, 0);
+        }
+    }
+
+    /**
+     * 找出像素數組（ARGB，按行存放）中的候選文字區域
+     */
+    Proposal propose(int[] pixels, int width, int height) {
+        long start = System.nanoTime();
+        int cell = Math.max(1, (width + GRID_WIDTH - 1) / GRID_WIDTH);
+        gridWidth = width / cell;
+        gridHeight = height / cell;
+        if (gridWidth < 3 || gridHeight < 3) {
+            return fullFrame(width, height, start);
+        }
+        setSource(null, pixels, width, height, cell);
+        try {
+            fillLuma();
+            return proposeFromLuma(width, height, cell, start);
+        } finally {
+            setSource(null, null, 0, 0, 0);
+        }
+    }
+
+    /**
+     * 估計每個文字行連通區域的字符高度（像素），按連通區域標記順序；用於檢查字符高度估計
+     */
+    int[] estimateCharacterHeights(int[] pixels, int width, int height) {
+        int cell = Math.max(1, (width + GRID_WIDTH - 1) / GRID_WIDTH);
+        gridWidth = width / cell;
+        gridHeight = height / cell;
+        if (gridWidth < 3 || gridHeight < 3) {
+            return new int[0];
+        }
+        setSource(null, pixels, width, height, cell);
+        try {
+            fillLuma();
+            markEdges();
+            findLines();
+        } finally {
+            setSource(null, null, 0, 0, 0);
+        }
+        return Arrays.copyOf(lineGlyph, lineCount);
+    }
+
+    private Proposal proposeFromLuma(int width, int height, int cell, long start) {
+        long frameArea = (long) width * height;
+        markEdges();
+        if (!findLines()) {
+            return fullFrame(width, height, start);
+        }
+
+        List<Region> regions = mergeLines(width, height, cell);
+        long covered = 0;
+        for (Region region : regions) {
+            covered += (long) region.bounds.width() * region.bounds.height();
+        }
+        if (regions.isEmpty() || covered > MAX_COVERAGE * frameArea) {
+            return fullFrame(width, height, start);
+        }
+        if (edgeCount > MIN_EDGE_FRACTION_FOR_RECALL * gridWidth * gridHeight
+                && coveredEdgeCount < MIN_EDGE_RECALL * edgeCount) {
+            return fullFrame(width, height, start);
+        }
+        return new Proposal(regions, false, frameArea, (System.nanoTime() - start) / 1e6f);
+    }
+
+    private Proposal fullFrame(int width, int height, long start) {
+        List<Region> regions = new ArrayList<>(1);
+        regions.add(new Region(new Rect(0, 0, width, height), 0, 1f));
+        return new Proposal(regions, true, (long) width * height, (System.nanoTime() - start) / 1e6f);
+    }
+
+    private void setSource(Bitmap bitmap, int[] pixels, int width, int height, int cell) {
+        sourceBitmap = bitmap;
+        sourcePixels = pixels;
+        sourceWidth = width;
+        sourceHeight = height;
+        cellSize = cell;
+    }
+
+    /**
+     * 讀取第 y 行像素中 [x, x + count) 的部分，返回 x 在 sourceRow() 中的下標
+     * bitmap 逐行讀取到重用的行緩衝區，不複製整張圖片
+     */
+    private int readRow(int y, int x, int count) {
+        if (sourceBitmap != null) {
+            sourceBitmap.getPixels(rowPixels, 0, count, x, y, count, 1);
+            return 0;
+        }
+        return y * sourceWidth + x;
+    }
+
+    private int[] sourceRow() {
+        return sourceBitmap != null ? rowPixels : sourcePixels;
+    }
+
+    private static int lumaOf(int pixel) {
+        return (((pixel >> 16) & 0xFF) * 77 + ((pixel >> 8) & 0xFF) * 150 + (pixel & 0xFF) * 29) >> 8;
+    }
+
+    /**
+     * 每個網格單元的平均亮度
+     */
+    private void fillLuma() {
+        int width = sourceWidth;
+        int cell = cellSize;
+        int cells = gridWidth * gridHeight;
+        if (luma.length < cells) {
+            luma = new int[cells];
+            edges = new boolean[cells];
+            mask = new boolean[cells];
+            labels = new int[cells];
+            stack = new int[cells];
+        }
+        if (rowPixels.length < width) {
+            rowPixels = new int[width];
+        }
+        if (rowSums.length < gridWidth) {
+            rowSums = new int[gridWidth];
+        }
+        int cellArea = cell * cell;
+        for (int gy = 0; gy < gridHeight; gy++) {
+            Arrays.fill(rowSums, 0, gridWidth, 0);
+            for (int y = gy * cell; y < (gy + 1) * cell; y++) {
+                int x = readRow(y, 0, width);
+                int[] row = sourceRow();
+                for (int gx = 0; gx < gridWidth; gx++) {
+                    int sum = 0;
+                    for (int end = x + cell; x < end; x++) {
+                        sum += lumaOf(row[x]);
+                    }
+                    rowSums[gx] += sum;
+                }
+            }
+            int offset = gy * gridWidth;
+            for (int gx = 0; gx < gridWidth; gx++) {
+                luma[offset + gx] = rowSums[gx] / cellArea;
+            }
+        }
+    }
+
+    /**
+     * 中心差分梯度超過閾值的單元為邊緣；同一行內相距不超過 HORIZONTAL_GAP 的邊緣之間填滿，
+     * 使一行文字連成一個連通區域，而上下相鄰的文字行保持分開
+     */
+    private void markEdges() {
+        int cells = gridWidth * gridHeight;
+        Arrays.fill(edges, 0, cells, false);
+        Arrays.fill(mask, 0, cells, false);
+        edgeCount = 0;
+        for (int gy = 1; gy < gridHeight - 1; gy++) {
+            int offset = gy * gridWidth;
+            int lastEdge = -1;
+            for (int gx = 1; gx < gridWidth - 1; gx++) {
+                int index = offset + gx;
+                int dx = Math.abs(luma[index + 1] - luma[index - 1]);
+                int dy = Math.abs(luma[index + gridWidth] - luma[index - gridWidth]);
+                if (Math.max(dx, dy) <= EDGE_THRESHOLD) {
+                    continue;
+                }
+                edges[index] = true;
+                mask[index] = true;
+                edgeCount++;
+                if (lastEdge >= 0 && gx - lastEdge <= HORIZONTAL_GAP + 1) {
+                    for (int fill = lastEdge + 1; fill < gx; fill++) {
+                        mask[offset + fill] = true;
+                    }
+                }
+                lastEdge = gx;
+            }
+        }
+    }
+
+    /**
+     * 4 連通區域標記，保留像文字行的區域
+     * @return false 表示區域過多，應識別整幀
+     */
+    private boolean findLines() {
+        int cells = gridWidth * gridHeight;
+        Arrays.fill(labels, 0, cells, 0);
+        lineCount = 0;
+        int label = 0;
+        for (int seed = 0; seed < cells; seed++) {
+            if (!mask[seed] || labels[seed] != 0) {
+                continue;
+            }
+            label++;
+            int left = gridWidth;
+            int top = gridHeight;
+            int right = -1;
+            int bottom = -1;
+            int size = 0;
+            int edgeCount = 0;
+            int stackSize = 0;
+            stack[stackSize++] = seed;
+            labels[seed] = label;
+            while (stackSize > 0) {
+                int index = stack[--stackSize];
+                int x = index % gridWidth;
+                int y = index / gridWidth;
+                left = Math.min(left, x);
+                right = Math.max(right, x);
+                top = Math.min(top, y);
+                bottom = Math.max(bottom, y);
+                size++;
+                if (edges[index]) {
+                    edgeCount++;
+                }
+                if (x > 0 && mask[index - 1] && labels[index - 1] == 0) {
+                    labels[index - 1] = label;
+                    stack[stackSize++] = index - 1;
+                }
+                if (x < gridWidth - 1 && mask[index + 1] && labels[index + 1] == 0) {
+                    labels[index + 1] = label;
+                    stack[stackSize++] = index + 1;
+                }
+                if (y > 0 && mask[index - gridWidth] && labels[index - gridWidth] == 0) {
+                    labels[index - gridWidth] = label;
+                    stack[stackSize++] = index - gridWidth;
+                }
+                if (y < gridHeight - 1 && mask[index + gridWidth] && labels[index + gridWidth] == 0) {
+                    labels[index + gridWidth] = label;
+                    stack[stackSize++] = index + gridWidth;
+                }
+            }
+
+            int boxWidth = right - left + 1;
+            int boxHeight = bottom - top + 1;
+            // 文字行：足夠大、不是細長豎線、邊緣密集
+            if (size < MIN_LINE_CELLS || boxHeight < MIN_LINE_HEIGHT || boxWidth * 2 < boxHeight
+                    || edgeCount < MIN_EDGE_DENSITY * boxWidth * boxHeight) {
+                continue;
+            }
+            if (lineCount == MAX_LINES) {
+                return false;
+            }
+            lineLeft[lineCount] = left;
+            lineTop[lineCount] = top;
+            lineRight[lineCount] = right;
+            lineBottom[lineCount] = bottom;
+            lineGlyph[lineCount] = estimateCharacterHeight(left, top, right, bottom);
+            lineCount++;
+        }
+        return true;
+    }
+
+    /**
+     * 估計連通區域內的字符高度（像素）
+     * 行距小於一個網格單元時相鄰文字行連在一起，連通區域的高度是整段文字的高度；
+     * 因此回到原圖，逐像素行統計區域內的亮度跳變數（水平投影），行間空隙的跳變很少，
+     * 投影的每個峰是一行文字，取峰寬的中位數；沒有峰時退回連通區域的高度
+     */
+    private int estimateCharacterHeight(int left, int top, int right, int bottom) {
+        int cell = cellSize;
+        int x0 = left * cell;
+        int x1 = Math.min(sourceWidth, (right + 1) * cell);
+        int y0 = top * cell;
+        int y1 = Math.min(sourceHeight, (bottom + 1) * cell);
+        int rows = y1 - y0;
+        if (profile.length < rows) {
+            profile = new int[rows];
+            runLengths = new int[rows];
+        }
+        int peak = 0;
+        for (int y = y0; y < y1; y++) {
+            int base = readRow(y, x0, x1 - x0);
+            int[] row = sourceRow();
+            int transitions = 0;
+            int previous = lumaOf(row[base]);
+            for (int i = base + 1, end = base + x1 - x0; i < end; i++) {
+                int current = lumaOf(row[i]);
+                if (Math.abs(current - previous) > EDGE_THRESHOLD) {
+                    transitions++;
+                }
+                previous = current;
+            }
+            profile[y - y0] = transitions;
+            peak = Math.max(peak, transitions);
+        }
+
+        float gapLevel = peak * PROFILE_GAP_RATIO;
+        int runs = 0;
+        int run = 0;
+        for (int i = 0; i <= rows; i++) {
+            if (i < rows && profile[i] > gapLevel) {
+                run++;
+            } else {
+                if (run >= MIN_PROFILE_RUN) {
+                    runLengths[runs++] = run;
+                }
+                run = 0;
+            }
+        }
+        if (runs == 0) {
+            // 中心差分使連通區域上下各多出一個單元
+            return Math.max(1, bottom - top - 1) * cell;
+        }
+        Arrays.sort(runLengths, 0, runs);
+        return runLengths[runs / 2];
+    }
+
+    /**
+     * 按估計的字符高度（像素）計算縮放比例：縮放到 TARGET_CHARACTER_HEIGHT，只縮小不放大
+     */
+    static float scaleFor(int characterHeight) {
+        if (characterHeight <= TARGET_CHARACTER_HEIGHT) {
+            return 1f;
+        }
+        return (float) TARGET_CHARACTER_HEIGHT / characterHeight;
+    }
+
+    /**
+     * 把上下間距不超過行高、水平方向重疊的文字行合併為區塊；擴展邊距後重疊的區塊再合併，
+     * 然後轉換為像素座標並計算縮放比例，同時統計區塊內的邊緣單元數
+     */
+    private List<Region> mergeLines(int width, int height, int cell) {
+        int[] left = Arrays.copyOf(lineLeft, lineCount);
+        int[] top = Arrays.copyOf(lineTop, lineCount);
+        int[] right = Arrays.copyOf(lineRight, lineCount);
+        int[] bottom = Arrays.copyOf(lineBottom, lineCount);
+        // 區塊內最矮文字行的高度決定合併間距，最小的估計字符高度決定縮放比例
+        int[] lineHeight = new int[lineCount];
+        int[] glyph = Arrays.copyOf(lineGlyph, lineCount);
+        boolean[] merged = new boolean[lineCount];
+        for (int i = 0; i < lineCount; i++) {
+            lineHeight[i] = bottom[i] - top[i] + 1;
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < lineCount; i++) {
+                if (merged[i]) {
+                    continue;
+                }
+                for (int j = i + 1; j < lineCount; j++) {
+                    if (merged[j]) {
+                        continue;
+                    }
+                    int gap = Math.min(lineHeight[i], lineHeight[j]);
+                    boolean horizontal = left[i] <= right[j] + HORIZONTAL_GAP && left[j] <= right[i] + HORIZONTAL_GAP;
+                    boolean vertical = top[i] <= bottom[j] + gap && top[j] <= bottom[i] + gap;
+                    if (horizontal && vertical) {
+                        left[i] = Math.min(left[i], left[j]);
+                        top[i] = Math.min(top[i], top[j]);
+                        right[i] = Math.max(right[i], right[j]);
+                        bottom[i] = Math.max(bottom[i], bottom[j]);
+                        lineHeight[i] = Math.min(lineHeight[i], lineHeight[j]);
+                        glyph[i] = Math.min(glyph[i], glyph[j]);
+                        merged[j] = true;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        // 擴展邊距（網格座標）；擴展後重疊的區塊合併，避免同一段文字被裁剪和識別兩次
+        for (int i = 0; i < lineCount; i++) {
+            left[i] = Math.max(0, left[i] - REGION_PADDING);
+            top[i] = Math.max(0, top[i] - REGION_PADDING);
+            right[i] = Math.min(gridWidth - 1, right[i] + REGION_PADDING);
+            bottom[i] = Math.min(gridHeight - 1, bottom[i] + REGION_PADDING);
+        }
+        changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < lineCount; i++) {
+                if (merged[i]) {
+                    continue;
+                }
+                for (int j = i + 1; j < lineCount; j++) {
+                    if (merged[j] || left[i] > right[j] || left[j] > right[i]
+                            || top[i] > bottom[j] || top[j] > bottom[i]) {
+                        continue;
+                    }
+                    left[i] = Math.min(left[i], left[j]);
+                    top[i] = Math.min(top[i], top[j]);
+                    right[i] = Math.max(right[i], right[j]);
+                    bottom[i] = Math.max(bottom[i], bottom[j]);
+                    lineHeight[i] = Math.min(lineHeight[i], lineHeight[j]);
+                    glyph[i] = Math.min(glyph[i], glyph[j]);
+                    merged[j] = true;
+                    changed = true;
+                }
+            }
+        }
+
+        List<Region> regions = new ArrayList<>();
+        coveredEdgeCount = 0;
+        for (int i = 0; i < lineCount; i++) {
+            if (merged[i]) {
+                continue;
+            }
+            for (int gy = top[i]; gy <= bottom[i]; gy++) {
+                for (int gx = left[i], index = gy * gridWidth + gx; gx <= right[i]; gx++, index++) {
+                    if (edges[index]) {
+                        coveredEdgeCount++;
+                    }
+                }
+            }
+            // 網格只覆蓋到 cell 的整數倍，貼近右邊和下邊的區塊延伸到圖片邊緣
+            Rect bounds = new Rect(
+                    left[i] * cell,
+                    top[i] * cell,
+                    right[i] == gridWidth - 1 ? width : Math.min(width, (right[i] + 1) * cell),
+                    bottom[i] == gridHeight - 1 ? height : Math.min(height, (bottom[i] + 1) * cell));
+            int characterHeight = glyph[i];
+            regions.add(new Region(bounds, characterHeight, scaleFor(characterHeight)));
+        }
+        return regions;
+    }
+}
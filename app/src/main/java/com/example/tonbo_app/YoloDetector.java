@@ -1,47 +1,141 @@
 package com.example.tonbo_app;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.ImageFormat;
 import android.graphics.Rect;
 import android.graphics.RectF;
-import android.graphics.YuvImage;
 import android.util.Log;
 
 import androidx.camera.core.ImageProxy;
 
+import org.tensorflow.lite.DataType;
 import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
 
-import java.io.ByteArrayOutputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * 真實AI物體檢測器
- * 基於 TensorFlow Lite 的 SSD MobileNet 模型實現
- * 提供真實的AI檢測能力，支持90個COCO類別
+ * 基於 TensorFlow Lite 實現，支持 SSD MobileNet 和 YOLOv8 兩種引擎
+ * 提供真實的AI檢測能力，支持COCO類別
+ * 檢測方法已同步，可由 ModelRegistry 在多個頁面間共享
  */
 public class YoloDetector {
     private static final String TAG = "YoloDetector";
     
     // 模型參數 - 使用AppConstants
     
+    /**
+     * 檢測引擎
+     */
+    public enum Engine {
+        SSD_MOBILENET(AppConstants.MODEL_FILE),
+        YOLOV8(AppConstants.YOLO_MODEL_FILE);
+        
+        private final String modelFile;
+        
+        Engine(String modelFile) {
+            this.modelFile = modelFile;
+        }
+        
+        public String getModelFile() {
+            return modelFile;
+        }
+        
+        /**
+         * 從設置值解析引擎，無法識別時使用 SSD
+         */
+        public static Engine fromPreference(String value) {
+            for (Engine engine : values()) {
+                if (engine.name().equals(value)) {
+                    return engine;
+                }
+            }
+            return SSD_MOBILENET;
+        }
+    }
+    
+    /**
+     * 讀取設置中選擇的檢測引擎，所選引擎的模型不可用時使用 SSD
+     */
+    public static Engine getPreferredEngine(Context context) {
+        SharedPreferences preferences = context.getSharedPreferences(
+                AppConstants.PREFS_NAME, Context.MODE_PRIVATE);
+        Engine engine = Engine.fromPreference(preferences.getString(AppConstants.PREF_DETECTION_ENGINE, null));
+        return isEngineAvailable(context, engine) ? engine : Engine.SSD_MOBILENET;
+    }
+    
+    /**
+     * 引擎的模型是否隨應用提供
+     * 目前 assets 中的 yolov8n.tflite 只是佔位文件，YOLOv8 引擎不可用
+     */
+    public static boolean isEngineAvailable(Context context, Engine engine) {
+        return ModelRegistry.getInstance(context).isModelAvailable(engine.getModelFile());
+    }
+    
+    /**
+     * 保存檢測引擎選擇
+     */
+    public static void setPreferredEngine(Context context, Engine engine) {
+        context.getSharedPreferences(AppConstants.PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putString(AppConstants.PREF_DETECTION_ENGINE, engine.name())
+                .apply();
+    }
+    
     private Context context;
+    private final Engine engine;
+    private final int numThreads;
     private Interpreter tflite;
     private boolean isInitialized = false;
     private DetectionPerformanceMonitor performanceMonitor;
     
+    // 相機幀直接轉換（跳過JPEG往返）
+    private final YuvToTensorConverter yuvConverter = new YuvToTensorConverter();
+    private int inputWidth = AppConstants.INPUT_SIZE;
+    private int inputHeight = AppConstants.INPUT_SIZE;
+    private boolean inputIsFloat = true;
+    
+    // 預先分配的張量緩衝區（按模型形狀分配一次，每幀重用）
+    private ByteBuffer inputBuffer;
+    private final Object[] inputs = new Object[1];
+    private final Map<Integer, Object> outputs = new HashMap<>();
+    private ByteBuffer[] outputBuffers;
+    private FloatBuffer[] outputFloats;
+    private int[] bitmapPixels = new int[0];
+    private int maxBoxes;
+    private int numClassScores;
+    private boolean hasPostProcessedOutput;
+    
+    // YOLOv8 解碼緩衝區（輸出 [1, 84, 8400]，全部為基本類型數組，每幀重用）
+    private float[] yoloOutput;
+    private int yoloChannels;
+    private int yoloAnchors;
+    private boolean yoloChannelsFirst;
+    private float[] bestScores;
+    private int[] bestClasses;
+    
+    // 候選框緩衝區（按最大候選數分配一次）和共享的 NMS 引擎
+    private float[] candidateBoxes;
+    private float[] candidateScores;
+    private int[] candidateClasses;
+    private final NonMaxSuppression nms =
+            new NonMaxSuppression(NonMaxSuppression.Mode.CLASS_AWARE, AppConstants.NMS_THRESHOLD);
+    
+    // 舊列表接口使用的內部批次
+    private final DetectionBatch batch = new DetectionBatch();
+    
     // COCO 數據集類別名稱（繁體中文）
     private static final Map<String, String> CLASS_NAMES_ZH = new HashMap<>();
     
@@ -166,8 +260,53 @@ public class YoloDetector {
         "diningtable", "dog", "horse", "motorbike", "pottedplant", "sheep", "sofa", "train", "tvmonitor"
     };
     
+    // 類別名稱到 COCO_CLASSES 索引（重複名稱取第一個）
+    private static final Map<String, Integer> CLASS_INDEX = new HashMap<>();
+    
+    // SSD MobileNet 模型內嵌的 labelmap.txt（原始 COCO 90 類編號，"???" 為數據集中未使用的編號）
+    // 模型輸出的類別編號即此表的行號，與 80 類的 COCO_CLASSES 順序不同，必須經此表轉換
+    private static final String[] SSD_LABELMAP = {
+        "person", "bicycle", "car", "motorcycle", "airplane", "bus", "train", "truck", "boat",
+        "traffic light", "fire hydrant", "???", "stop sign", "parking meter", "bench", "bird",
+        "cat", "dog", "horse", "sheep", "cow", "elephant", "bear", "zebra", "giraffe", "???",
+        "backpack", "umbrella", "???", "???", "handbag", "tie", "suitcase", "frisbee", "skis",
+        "snowboard", "sports ball", "kite", "baseball bat", "baseball glove", "skateboard",
+        "surfboard", "tennis racket", "bottle", "???", "wine glass", "cup", "fork", "knife",
+        "spoon", "bowl", "banana", "apple", "sandwich", "orange", "broccoli", "carrot", "hot dog",
+        "pizza", "donut", "cake", "chair", "couch", "potted plant", "bed", "???", "dining table",
+        "???", "???", "toilet", "???", "tv", "laptop", "mouse", "remote", "keyboard", "cell phone",
+        "microwave", "oven", "toaster", "sink", "refrigerator", "???", "book", "clock", "vase",
+        "scissors", "teddy bear", "hair drier", "toothbrush"
+    };
+    
+    // SSD 類別編號到 COCO_CLASSES 索引，空缺編號為 -1
+    private static final int[] SSD_CLASS_INDEX = new int[SSD_LABELMAP.length];
+    
+    static {
+        for (int i = COCO_CLASSES.length - 1; i >= 0; i--) {
+            CLASS_INDEX.put(COCO_CLASSES[i], i);
+        }
+        for (int i = 0; i < SSD_LABELMAP.length; i++) {
+            Integer index = CLASS_INDEX.get(SSD_LABELMAP[i]);
+            SSD_CLASS_INDEX[i] = index != null ? index : -1;
+        }
+    }
+    
     public YoloDetector(Context context) {
+        this(context, Engine.SSD_MOBILENET);
+    }
+    
+    public YoloDetector(Context context, Engine engine) {
+        this(context, engine, InferenceOptions.getRecommendedThreadCount());
+    }
+    
+    /**
+     * @param numThreads 推理線程數（基準測試掃描線程數時使用）
+     */
+    public YoloDetector(Context context, Engine engine, int numThreads) {
         this.context = context;
+        this.engine = engine;
+        this.numThreads = numThreads;
         this.performanceMonitor = new DetectionPerformanceMonitor();
         initialize();
     }
@@ -177,11 +316,13 @@ public class YoloDetector {
             Log.d(TAG, "開始初始化真實AI檢測器...");
             
             // 載入 TensorFlow Lite 模型
-            tflite = new Interpreter(loadModelFile());
+            tflite = new Interpreter(loadModelFile(),
+                    InferenceOptions.createInterpreterOptions(numThreads));
             
             if (tflite != null) {
+                allocateTensorBuffers();
                 isInitialized = true;
-                Log.d(TAG, "真實AI檢測器初始化成功 - 使用SSD MobileNet模型");
+                Log.d(TAG, "真實AI檢測器初始化成功 - 使用" + engine + "模型, " + numThreads + "線程");
             } else {
                 Log.e(TAG, "無法載入 TensorFlow Lite 模型");
                 isInitialized = false;
@@ -193,13 +334,83 @@ public class YoloDetector {
         }
     }
     
+    /**
+     * 按模型張量形狀分配輸入和輸出緩衝區（初始化時一次）
+     * 之後每次檢測只重置 position，穩態下不再分配任何緩衝區
+     */
+    private void allocateTensorBuffers() {
+        Tensor inputTensor = tflite.getInputTensor(0);
+        int[] shape = inputTensor.shape(); // [1, height, width, 3]
+        if (shape.length == 4) {
+            inputHeight = shape[1];
+            inputWidth = shape[2];
+        }
+        inputIsFloat = inputTensor.dataType() == DataType.FLOAT32;
+        inputBuffer = ByteBuffer.allocateDirect(inputTensor.numBytes());
+        inputBuffer.order(ByteOrder.nativeOrder());
+        inputs[0] = inputBuffer;
+        Log.d(TAG, String.format("模型輸入: %dx%d, %s", inputWidth, inputHeight, inputTensor.dataType()));
+        
+        int outputCount = tflite.getOutputTensorCount();
+        outputBuffers = new ByteBuffer[outputCount];
+        outputFloats = new FloatBuffer[outputCount];
+        outputs.clear();
+        for (int i = 0; i < outputCount; i++) {
+            Tensor outputTensor = tflite.getOutputTensor(i);
+            if (outputTensor.dataType() != DataType.FLOAT32) {
+                throw new IllegalStateException("不支持的輸出類型: " + outputTensor.dataType());
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect(outputTensor.numBytes());
+            buffer.order(ByteOrder.nativeOrder());
+            outputBuffers[i] = buffer;
+            outputFloats[i] = buffer.asFloatBuffer();
+            outputs.put(i, buffer);
+            Log.d(TAG, "模型輸出" + i + ": " + Arrays.toString(outputTensor.shape()));
+        }
+        
+        if (engine == Engine.YOLOV8) {
+            allocateYoloBuffers(tflite.getOutputTensor(0).shape());
+            return;
+        }
+        
+        // 輸出0: 邊界框 [1, N, 4]
+        // 帶後處理的模型輸出1為類別索引 [1, N]，原始模型為類別概率 [1, N, 類別數]
+        int[] boxShape = tflite.getOutputTensor(0).shape();
+        int[] classShape = tflite.getOutputTensor(1).shape();
+        maxBoxes = boxShape[1];
+        hasPostProcessedOutput = classShape.length == 2;
+        numClassScores = hasPostProcessedOutput ? 1 : classShape[2];
+        allocateCandidateBuffers(maxBoxes);
+    }
+    
+    /**
+     * 分配 YOLOv8 解碼用的基本類型數組
+     * 官方導出為 [1, 84, 8400]（通道優先），部分導出工具為 [1, 8400, 84]
+     */
+    private void allocateYoloBuffers(int[] shape) {
+        yoloChannelsFirst = shape[1] < shape[2];
+        yoloChannels = yoloChannelsFirst ? shape[1] : shape[2];
+        yoloAnchors = yoloChannelsFirst ? shape[2] : shape[1];
+        
+        yoloOutput = new float[yoloChannels * yoloAnchors];
+        bestScores = new float[yoloAnchors];
+        bestClasses = new int[yoloAnchors];
+        allocateCandidateBuffers(yoloAnchors);
+    }
+    
+    private void allocateCandidateBuffers(int capacity) {
+        candidateBoxes = new float[capacity * 4];
+        candidateScores = new float[capacity];
+        candidateClasses = new int[capacity];
+    }
+    
     /**
      * 載入模型文件
      */
     private MappedByteBuffer loadModelFile() throws IOException {
         try {
-            // 嘗試從 assets 載入模型文件
-            return loadModelFromAssets();
+            // 從模型註冊表獲取共享的模型映射
+            return ModelRegistry.getInstance(context).getModelBuffer(engine.getModelFile());
         } catch (IOException e) {
             Log.w(TAG, "無法從 assets 載入模型，使用備用檢測方法");
             return null;
@@ -207,46 +418,42 @@ public class YoloDetector {
     }
     
     /**
-     * 從 assets 載入模型文件
+     * 檢測圖像中的物體
+     * 直接從 YUV 平面寫入模型輸入緩衝區，不經過 Bitmap
      */
-    private MappedByteBuffer loadModelFromAssets() throws IOException {
-        android.content.res.AssetFileDescriptor fileDescriptor = 
-            context.getAssets().openFd(AppConstants.MODEL_FILE);
-        FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor());
-        FileChannel fileChannel = inputStream.getChannel();
-        long startOffset = fileDescriptor.getStartOffset();
-        long declaredLength = fileDescriptor.getDeclaredLength();
-        return fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength);
+    public synchronized List<DetectionResult> detect(ImageProxy image) {
+        detect(image, batch);
+        return toResults(batch, image.getWidth(), image.getHeight());
     }
     
     /**
-     * 檢測圖像中的物體
+     * 檢測圖像中的物體，結果（正規化座標）寫入 out，不為每個框分配對象
      */
-    public List<DetectionResult> detect(ImageProxy image) {
-        if (!isInitialized) {
+    public synchronized void detect(ImageProxy image, DetectionBatch out) {
+        out.clear();
+        if (!isInitialized || tflite == null) {
             Log.w(TAG, "檢測器尚未初始化");
-            return new ArrayList<>();
+            return;
         }
         
         try {
-            // 將 ImageProxy 轉換為 Bitmap
-            Bitmap bitmap = imageProxyToBitmap(image);
-            if (bitmap == null) {
-                return new ArrayList<>();
-            }
+            long startTime = System.currentTimeMillis();
             
-            return detect(bitmap);
+            inputBuffer.rewind();
+            yuvConverter.convertToTensor(image, inputBuffer, inputWidth, inputHeight, inputIsFloat);
+            
+            runInference(image.getWidth(), image.getHeight(), startTime, out);
             
         } catch (Exception e) {
             Log.e(TAG, "檢測失敗: " + e.getMessage());
-            return new ArrayList<>();
+            out.clear();
         }
     }
     
     /**
      * 檢測 Bitmap 圖像
      */
-    public List<DetectionResult> detect(Bitmap bitmap) {
+    public synchronized List<DetectionResult> detect(Bitmap bitmap) {
         if (bitmap == null) {
             return new ArrayList<>();
         }
@@ -256,338 +463,359 @@ public class YoloDetector {
             return getFallbackDetections(bitmap);
         }
         
+        detect(bitmap, batch);
+        return toResults(batch, bitmap.getWidth(), bitmap.getHeight());
+    }
+    
+    /**
+     * 檢測 Bitmap 圖像，結果（正規化座標）寫入 out
+     */
+    public synchronized void detect(Bitmap bitmap, DetectionBatch out) {
+        out.clear();
+        if (bitmap == null || !isInitialized || tflite == null) {
+            return;
+        }
+        
         try {
             long startTime = System.currentTimeMillis();
             
-            // 預處理圖像
-            Bitmap resizedBitmap = Bitmap.createScaledBitmap(bitmap, AppConstants.INPUT_SIZE, AppConstants.INPUT_SIZE, true);
-            ByteBuffer inputBuffer = bitmapToByteBuffer(resizedBitmap);
-            
-            // 準備輸出緩衝區 - SSD MobileNet 輸出格式
-            float[][][] detectionBoxes = new float[1][1917][4]; // 邊界框
-            float[][][] detectionClasses = new float[1][1917][91]; // 類別概率
-            float[][] detectionScores = new float[1][1917]; // 置信度分數
-            float[] numDetections = new float[1]; // 檢測數量
-            
-            // 執行推理
-            Object[] inputs = {inputBuffer};
-            Map<Integer, Object> outputs = new HashMap<>();
-            outputs.put(0, detectionBoxes);
-            outputs.put(1, detectionClasses);
-            outputs.put(2, detectionScores);
-            outputs.put(3, numDetections);
+            // 預處理圖像：直接採樣到輸入緩衝區，不再創建縮放後的臨時 Bitmap
+            inputBuffer.rewind();
+            bitmapToByteBuffer(bitmap);
             
-            tflite.runForMultipleInputsOutputs(inputs, outputs);
+            runInference(bitmap.getWidth(), bitmap.getHeight(), startTime, out);
             
-            // 後處理結果
-            List<DetectionResult> results = postProcessSSDOutput(
-                detectionBoxes[0], detectionClasses[0], detectionScores[0], 
-                (int)numDetections[0], bitmap.getWidth(), bitmap.getHeight());
-            
-            // 記錄性能數據
-            long detectionTime = System.currentTimeMillis() - startTime;
-            performanceMonitor.recordDetectionTime(detectionTime);
-            performanceMonitor.recordDetectionResult(results);
+        } catch (Exception e) {
+            Log.e(TAG, "真實AI檢測失敗: " + e.getMessage());
+            out.clear();
+        }
+    }
+    
+    /**
+     * 檢測已轉換好的 uint8 RGB 幀（行優先、無填充），結果（正規化座標）寫入 out
+     * 供分階段流水線使用：轉換在其他線程完成，這裡只做重採樣和推理
+     */
+    public synchronized void detect(ByteBuffer rgb, int width, int height, DetectionBatch out) {
+        out.clear();
+        if (!isInitialized || tflite == null) {
+            return;
+        }
+        
+        try {
+            long startTime = System.currentTimeMillis();
             
-            // 回收臨時 bitmap
-            if (resizedBitmap != bitmap) {
-                resizedBitmap.recycle();
-            }
+            inputBuffer.rewind();
+            rgbToByteBuffer(rgb, width, height);
             
-            return results;
+            runInference(width, height, startTime, out);
             
         } catch (Exception e) {
-            Log.e(TAG, "真實AI檢測失敗，使用備用方法: " + e.getMessage());
-            return getFallbackDetections(bitmap);
+            Log.e(TAG, "RGB幀檢測失敗: " + e.getMessage());
+            out.clear();
         }
     }
     
     /**
-     * 將 Bitmap 轉換為 ByteBuffer
+     * 執行推理並按引擎後處理
+     * 輸入已寫入 inputBuffer，輸出寫入預先分配的 outputBuffers
      */
-    private ByteBuffer bitmapToByteBuffer(Bitmap bitmap) {
-        ByteBuffer byteBuffer = ByteBuffer.allocateDirect(4 * AppConstants.INPUT_SIZE * AppConstants.INPUT_SIZE * 3);
-        byteBuffer.order(ByteOrder.nativeOrder());
+    private void runInference(int originalWidth, int originalHeight, long startTime, DetectionBatch out) {
+        inputBuffer.rewind();
+        for (ByteBuffer buffer : outputBuffers) {
+            buffer.rewind();
+        }
         
-        int[] pixels = new int[AppConstants.INPUT_SIZE * AppConstants.INPUT_SIZE];
-        bitmap.getPixels(pixels, 0, AppConstants.INPUT_SIZE, 0, 0, AppConstants.INPUT_SIZE, AppConstants.INPUT_SIZE);
+        // 執行推理
+        tflite.runForMultipleInputsOutputs(inputs, outputs);
         
-        for (int pixel : pixels) {
-            // 提取 RGB 值並正規化到 [0, 1]
-            int r = (pixel >> 16) & 0xFF;
-            int g = (pixel >> 8) & 0xFF;
-            int b = pixel & 0xFF;
-            
-            byteBuffer.putFloat(r / 255.0f);
-            byteBuffer.putFloat(g / 255.0f);
-            byteBuffer.putFloat(b / 255.0f);
+        // 後處理結果
+        if (engine == Engine.YOLOV8) {
+            postProcessYoloOutput(originalWidth, originalHeight, out);
+        } else {
+            postProcessSSDOutput(originalWidth, originalHeight, out);
         }
         
-        return byteBuffer;
+        // 記錄性能數據
+        long detectionTime = System.currentTimeMillis() - startTime;
+        performanceMonitor.recordDetectionTime(detectionTime);
+        performanceMonitor.recordDetectionResult(out);
     }
     
     /**
-     * 後處理 SSD MobileNet 輸出
+     * 將批次結果轉換為像素座標的結果對象（舊接口的視圖）
      */
-    private List<DetectionResult> postProcessSSDOutput(float[][] boxes, float[][] classes, 
-                                                     float[] scores, int numDetections, 
-                                                     int originalWidth, int originalHeight) {
-        List<DetectionResult> results = new ArrayList<>();
+    private static List<DetectionResult> toResults(DetectionBatch batch, int width, int height) {
+        // 沒有檢測結果時返回共享的空列表，不分配
+        if (batch.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<DetectionResult> results = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Rect boundingBox = new Rect(
+                (int) (batch.getLeft(i) * width), (int) (batch.getTop(i) * height),
+                (int) (batch.getRight(i) * width), (int) (batch.getBottom(i) * height));
+            results.add(new DetectionResult(batch.getLabel(i), batch.getLabelZh(i),
+                    batch.getScore(i), boundingBox));
+        }
+        return results;
+    }
+    
+    /**
+     * 將 Bitmap 最近鄰縮放後寫入 inputBuffer
+     * 像素數組按 Bitmap 尺寸重用，尺寸不變時不分配
+     */
+    private void bitmapToByteBuffer(Bitmap bitmap) {
+        int srcWidth = bitmap.getWidth();
+        int srcHeight = bitmap.getHeight();
+        if (bitmapPixels.length != srcWidth * srcHeight) {
+            bitmapPixels = new int[srcWidth * srcHeight];
+        }
+        bitmap.getPixels(bitmapPixels, 0, srcWidth, 0, 0, srcWidth, srcHeight);
         
-        for (int i = 0; i < Math.min(numDetections, scores.length); i++) {
-            float confidence = scores[i];
-            
-            // 過濾低置信度檢測
-            if (confidence < AppConstants.CONFIDENCE_THRESHOLD) {
-                continue;
-            }
-            
-            // 找到最高概率的類別
-            int maxClassIndex = 0;
-            float maxClassScore = classes[i][0];
-            
-            for (int j = 1; j < classes[i].length; j++) {
-                if (classes[i][j] > maxClassScore) {
-                    maxClassScore = classes[i][j];
-                    maxClassIndex = j;
-                }
-            }
-            
-            // 跳過背景類別 (索引0)
-            if (maxClassIndex == 0) {
-                continue;
-            }
-            
-            // 獲取邊界框座標 (y1, x1, y2, x2)
-            float y1 = boxes[i][0];
-            float x1 = boxes[i][1];
-            float y2 = boxes[i][2];
-            float x2 = boxes[i][3];
-            
-            // 轉換為像素座標
-            int left = (int)(x1 * originalWidth);
-            int top = (int)(y1 * originalHeight);
-            int right = (int)(x2 * originalWidth);
-            int bottom = (int)(y2 * originalHeight);
-            
-            // 確保座標在有效範圍內
-            left = Math.max(0, Math.min(originalWidth - 1, left));
-            top = Math.max(0, Math.min(originalHeight - 1, top));
-            right = Math.max(0, Math.min(originalWidth - 1, right));
-            bottom = Math.max(0, Math.min(originalHeight - 1, bottom));
-            
-            // 獲取類別名稱
-            if (maxClassIndex - 1 < COCO_CLASSES.length) {
-                String className = COCO_CLASSES[maxClassIndex - 1];
-                String chineseName = CLASS_NAMES_ZH.get(className);
+        for (int dy = 0; dy < inputHeight; dy++) {
+            int rowOffset = (int) ((long) dy * srcHeight / inputHeight) * srcWidth;
+            for (int dx = 0; dx < inputWidth; dx++) {
+                int pixel = bitmapPixels[rowOffset + (int) ((long) dx * srcWidth / inputWidth)];
+                int r = (pixel >> 16) & 0xFF;
+                int g = (pixel >> 8) & 0xFF;
+                int b = pixel & 0xFF;
                 
-                if (chineseName != null) {
-                    Rect boundingBox = new Rect(left, top, right, bottom);
-                    
-                    // 驗證邊界框合理性：寬度和高度必須大於20像素
-                    int width = right - left;
-                    int height = bottom - top;
-                    if (width >= 20 && height >= 20 && width > 0 && height > 0) {
-                        results.add(new DetectionResult(className, chineseName, confidence, boundingBox));
-                    } else {
-                        Log.d(TAG, "濾除不合理邊界框: " + chineseName + " (" + width + "x" + height + ")");
-                    }
+                if (inputIsFloat) {
+                    // 正規化到 [0, 1]
+                    inputBuffer.putFloat(r / 255.0f);
+                    inputBuffer.putFloat(g / 255.0f);
+                    inputBuffer.putFloat(b / 255.0f);
+                } else {
+                    inputBuffer.put((byte) r);
+                    inputBuffer.put((byte) g);
+                    inputBuffer.put((byte) b);
                 }
             }
         }
-        
-        // 應用 NMS
-        results = applyNMS(results);
-        
-        // 按置信度排序
-        Collections.sort(results, new Comparator<DetectionResult>() {
-            @Override
-            public int compare(DetectionResult a, DetectionResult b) {
-                return Float.compare(b.getConfidence(), a.getConfidence());
+    }
+    
+    /**
+     * 將 uint8 RGB 緩衝區最近鄰縮放後寫入 inputBuffer（尺寸相同時直接逐像素複製）
+     */
+    private void rgbToByteBuffer(ByteBuffer rgb, int srcWidth, int srcHeight) {
+        for (int dy = 0; dy < inputHeight; dy++) {
+            int rowOffset = (int) ((long) dy * srcHeight / inputHeight) * srcWidth;
+            for (int dx = 0; dx < inputWidth; dx++) {
+                int index = (rowOffset + (int) ((long) dx * srcWidth / inputWidth)) * 3;
+                if (inputIsFloat) {
+                    // 正規化到 [0, 1]
+                    inputBuffer.putFloat((rgb.get(index) & 0xFF) / 255.0f);
+                    inputBuffer.putFloat((rgb.get(index + 1) & 0xFF) / 255.0f);
+                    inputBuffer.putFloat((rgb.get(index + 2) & 0xFF) / 255.0f);
+                } else {
+                    inputBuffer.put(rgb.get(index));
+                    inputBuffer.put(rgb.get(index + 1));
+                    inputBuffer.put(rgb.get(index + 2));
+                }
             }
-        });
-        
-        // 只返回置信度最高的3個物體
-        if (results.size() > 3) {
-            results = results.subList(0, 3);
-            Log.d(TAG, "SSD檢測限制為3個物體");
         }
-        
-        return results;
     }
     
     /**
-     * 後處理 YOLO 輸出（保留作為備用）
+     * 後處理 SSD MobileNet 輸出
+     * 直接讀取輸出緩衝區，候選框寫入基本類型數組，NMS 保留的檢測以正規化座標寫入 out
      */
-    private List<DetectionResult> postProcessOutput(float[][] output, int originalWidth, int originalHeight) {
-        List<DetectionResult> results = new ArrayList<>();
+    private void postProcessSSDOutput(int originalWidth, int originalHeight, DetectionBatch out) {
+        FloatBuffer boxes = outputFloats[0];
+        FloatBuffer classes = outputFloats[1];
+        FloatBuffer scores = outputFloats[2];
+        int numDetections = maxBoxes;
+        if (outputFloats.length > 3) {
+            numDetections = Math.min(maxBoxes, (int) outputFloats[3].get(0));
+        }
         
-        for (int i = 0; i < output.length; i++) {
-            float[] detection = output[i];
-            
-            // 提取邊界框座標 (x_center, y_center, width, height)
-            float x_center = detection[0];
-            float y_center = detection[1];
-            float width = detection[2];
-            float height = detection[3];
+        int count = 0;
+        float minWidth = 20f / originalWidth;
+        float minHeight = 20f / originalHeight;
+        
+        for (int i = 0; i < numDetections; i++) {
+            float confidence = scores.get(i);
             
-            // 找到最高置信度的類別
-            int maxClassIndex = 4;
-            float maxConfidence = detection[4];
+            // 過濾低置信度檢測
+            if (confidence < AppConstants.CONFIDENCE_THRESHOLD) {
+                continue;
+            }
             
-            for (int j = 5; j < detection.length; j++) {
-                if (detection[j] > maxConfidence) {
-                    maxConfidence = detection[j];
-                    maxClassIndex = j;
+            // 找到模型的類別編號（labelmap 行號，不含背景）
+            int modelClass;
+            if (hasPostProcessedOutput) {
+                modelClass = (int) classes.get(i);
+            } else {
+                // 原始輸出的第0個分數為背景
+                int base = i * numClassScores;
+                int best = 0;
+                float maxClassScore = classes.get(base);
+                for (int j = 1; j < numClassScores; j++) {
+                    float classScore = classes.get(base + j);
+                    if (classScore > maxClassScore) {
+                        maxClassScore = classScore;
+                        best = j;
+                    }
                 }
+                modelClass = best - 1;
             }
+            int classIndex = ssdClassIndex(modelClass);
             
-            // 計算總置信度
-            float confidence = maxConfidence;
-            
-            // 過濾低置信度檢測
-            if (confidence < AppConstants.CONFIDENCE_THRESHOLD) {
+            // 跳過背景、labelmap 空缺編號和沒有中文名稱的類別
+            if (classIndex <= 0 || classIndex >= COCO_CLASSES.length
+                    || !CLASS_NAMES_ZH.containsKey(COCO_CLASSES[classIndex])) {
                 continue;
             }
             
-            // 轉換為邊界框座標
-            float left = (x_center - width / 2) / AppConstants.INPUT_SIZE;
-            float top = (y_center - height / 2) / AppConstants.INPUT_SIZE;
-            float right = (x_center + width / 2) / AppConstants.INPUT_SIZE;
-            float bottom = (y_center + height / 2) / AppConstants.INPUT_SIZE;
-            
-            // 確保座標在有效範圍內
-            left = Math.max(0, Math.min(1, left));
-            top = Math.max(0, Math.min(1, top));
-            right = Math.max(0, Math.min(1, right));
-            bottom = Math.max(0, Math.min(1, bottom));
+            // 獲取邊界框座標 (y1, x1, y2, x2)，限制在正規化範圍內
+            int boxBase = i * 4;
+            float left = clampUnit(boxes.get(boxBase + 1));
+            float top = clampUnit(boxes.get(boxBase));
+            float right = clampUnit(boxes.get(boxBase + 3));
+            float bottom = clampUnit(boxes.get(boxBase + 2));
             
-            // 獲取類別名稱
-            int classIndex = maxClassIndex - 4;
-            if (classIndex >= 0 && classIndex < COCO_CLASSES.length) {
-                String className = COCO_CLASSES[classIndex];
-                String chineseName = CLASS_NAMES_ZH.get(className);
-                
-                // 創建邊界框 - 使用相對座標 (0-1)，保持浮點數精度
-                Rect boundingBox = new Rect(
-                    (int)(left * 1000), (int)(top * 1000), 
-                    (int)(right * 1000), (int)(bottom * 1000)
-                );
-                
-                results.add(new DetectionResult(className, chineseName, confidence, boundingBox));
+            // 驗證邊界框合理性：寬度和高度必須大於20像素
+            if (right - left < minWidth || bottom - top < minHeight) {
+                continue;
             }
+            
+            int candidateBase = count * 4;
+            candidateBoxes[candidateBase] = left;
+            candidateBoxes[candidateBase + 1] = top;
+            candidateBoxes[candidateBase + 2] = right;
+            candidateBoxes[candidateBase + 3] = bottom;
+            candidateScores[count] = confidence;
+            candidateClasses[count] = classIndex;
+            count++;
         }
         
-        // 應用 NMS (Non-Maximum Suppression)
-        results = applyNMS(results);
+        // 應用 NMS，按置信度降序只保留最高的3個物體
+        int kept = nms.run(candidateBoxes, candidateScores, candidateClasses, count,
+                AppConstants.CONFIDENCE_THRESHOLD, AppConstants.MAX_DETECTION_RESULTS);
         
-        // 按置信度排序
-        Collections.sort(results, new Comparator<DetectionResult>() {
-            @Override
-            public int compare(DetectionResult a, DetectionResult b) {
-                return Float.compare(b.getConfidence(), a.getConfidence());
-            }
-        });
-        
-        // 只返回置信度最高的2個物體
-        if (results.size() > 2) {
-            results = results.subList(0, 2);
-            Log.d(TAG, "YOLO檢測限制為2個物體");
+        for (int k = 0; k < kept; k++) {
+            int i = nms.getKeptIndex(k);
+            String className = COCO_CLASSES[candidateClasses[i]];
+            int boxBase = i * 4;
+            out.add(candidateClasses[i], className, CLASS_NAMES_ZH.get(className), candidateScores[i],
+                    candidateBoxes[boxBase], candidateBoxes[boxBase + 1],
+                    candidateBoxes[boxBase + 2], candidateBoxes[boxBase + 3]);
         }
-        
-        return results;
     }
     
     /**
-     * 應用非極大值抑制 (NMS)
+     * 後處理 YOLOv8 輸出
+     * 每行為 [cx, cy, w, h, 80個類別分數]，沒有單獨的物體置信度
      */
-    private List<DetectionResult> applyNMS(List<DetectionResult> detections) {
-        List<DetectionResult> filtered = new ArrayList<>();
+    private void postProcessYoloOutput(int originalWidth, int originalHeight, DetectionBatch out) {
+        FloatBuffer output = outputFloats[0];
+        output.rewind();
+        output.get(yoloOutput);
         
-        for (DetectionResult detection : detections) {
-            boolean shouldKeep = true;
-            
-            for (DetectionResult existing : filtered) {
-                if (detection.getLabel().equals(existing.getLabel())) {
-                    float iou = calculateIoU(detection.getBoundingBox(), existing.getBoundingBox());
-                    if (iou > AppConstants.IOU_THRESHOLD) {
-                        shouldKeep = false;
-                        break;
+        int numClasses = Math.min(yoloChannels - 4, COCO_CLASSES.length - 1);
+        
+        // 融合 argmax 和閾值過濾：最佳分數從閾值開始，只有超過閾值的類別才會被記錄
+        // 通道優先布局按行遍歷，保持順序訪存
+        Arrays.fill(bestScores, AppConstants.CONFIDENCE_THRESHOLD);
+        Arrays.fill(bestClasses, -1);
+        if (yoloChannelsFirst) {
+            for (int c = 0; c < numClasses; c++) {
+                int row = (4 + c) * yoloAnchors;
+                for (int a = 0; a < yoloAnchors; a++) {
+                    float score = yoloOutput[row + a];
+                    if (score > bestScores[a]) {
+                        bestScores[a] = score;
+                        bestClasses[a] = c;
                     }
                 }
             }
-            
-            if (shouldKeep) {
-                filtered.add(detection);
+        } else {
+            for (int a = 0; a < yoloAnchors; a++) {
+                int base = a * yoloChannels + 4;
+                for (int c = 0; c < numClasses; c++) {
+                    float score = yoloOutput[base + c];
+                    if (score > bestScores[a]) {
+                        bestScores[a] = score;
+                        bestClasses[a] = c;
+                    }
+                }
             }
         }
         
-        return filtered;
-    }
-    
-    /**
-     * 計算 IoU (Intersection over Union)
-     */
-    private float calculateIoU(Rect box1, Rect box2) {
-        // 轉換為浮點數座標
-        float left1 = box1.left / 1000.0f;
-        float top1 = box1.top / 1000.0f;
-        float right1 = box1.right / 1000.0f;
-        float bottom1 = box1.bottom / 1000.0f;
-        
-        float left2 = box2.left / 1000.0f;
-        float top2 = box2.top / 1000.0f;
-        float right2 = box2.right / 1000.0f;
-        float bottom2 = box2.bottom / 1000.0f;
-        
-        // 計算交集
-        float intersectionLeft = Math.max(left1, left2);
-        float intersectionTop = Math.max(top1, top2);
-        float intersectionRight = Math.min(right1, right2);
-        float intersectionBottom = Math.min(bottom1, bottom2);
-        
-        if (intersectionRight <= intersectionLeft || intersectionBottom <= intersectionTop) {
-            return 0.0f;
+        // 收集候選框，同時確認座標是否已正規化（舊版導出為輸入像素座標）
+        int count = 0;
+        float maxCoordinate = 0f;
+        int channelStride = yoloChannelsFirst ? yoloAnchors : 1;
+        for (int a = 0; a < yoloAnchors; a++) {
+            if (bestClasses[a] < 0) {
+                continue;
+            }
+            int base = yoloChannelsFirst ? a : a * yoloChannels;
+            float cx = yoloOutput[base];
+            float cy = yoloOutput[base + channelStride];
+            float w = yoloOutput[base + 2 * channelStride];
+            float h = yoloOutput[base + 3 * channelStride];
+            maxCoordinate = Math.max(maxCoordinate, Math.max(cx + w / 2, cy + h / 2));
+            
+            int boxBase = count * 4;
+            candidateBoxes[boxBase] = cx - w / 2;
+            candidateBoxes[boxBase + 1] = cy - h / 2;
+            candidateBoxes[boxBase + 2] = cx + w / 2;
+            candidateBoxes[boxBase + 3] = cy + h / 2;
+            candidateScores[count] = bestScores[a];
+            candidateClasses[count] = bestClasses[a];
+            count++;
         }
         
-        float intersection = (intersectionRight - intersectionLeft) * (intersectionBottom - intersectionTop);
+        if (count == 0) {
+            return;
+        }
         
-        // 計算並集
-        float area1 = (right1 - left1) * (bottom1 - top1);
-        float area2 = (right2 - left2) * (bottom2 - top2);
-        float union = area1 + area2 - intersection;
+        // 轉換為正規化座標 [0, 1]，並濾除小於20像素的邊界框
+        float scaleX = maxCoordinate > 2f ? 1f / inputWidth : 1f;
+        float scaleY = maxCoordinate > 2f ? 1f / inputHeight : 1f;
+        float minWidth = 20f / originalWidth;
+        float minHeight = 20f / originalHeight;
+        int valid = 0;
+        for (int i = 0; i < count; i++) {
+            int boxBase = i * 4;
+            float left = clampUnit(candidateBoxes[boxBase] * scaleX);
+            float top = clampUnit(candidateBoxes[boxBase + 1] * scaleY);
+            float right = clampUnit(candidateBoxes[boxBase + 2] * scaleX);
+            float bottom = clampUnit(candidateBoxes[boxBase + 3] * scaleY);
+            if (right - left < minWidth || bottom - top < minHeight) {
+                continue;
+            }
+            int validBase = valid * 4;
+            candidateBoxes[validBase] = left;
+            candidateBoxes[validBase + 1] = top;
+            candidateBoxes[validBase + 2] = right;
+            candidateBoxes[validBase + 3] = bottom;
+            candidateScores[valid] = candidateScores[i];
+            candidateClasses[valid] = candidateClasses[i];
+            valid++;
+        }
         
-        return intersection / union;
+        int kept = nms.run(candidateBoxes, candidateScores, candidateClasses, valid,
+                AppConstants.CONFIDENCE_THRESHOLD, AppConstants.MAX_DETECTION_RESULTS);
+        for (int k = 0; k < kept; k++) {
+            int i = nms.getKeptIndex(k);
+            // 批次中的類別編號統一使用 COCO_CLASSES 索引（0 為背景）
+            int classIndex = candidateClasses[i] + 1;
+            String className = COCO_CLASSES[classIndex];
+            String chineseName = CLASS_NAMES_ZH.get(className);
+            if (chineseName == null) {
+                continue;
+            }
+            int boxBase = i * 4;
+            out.add(classIndex, className, chineseName, candidateScores[i],
+                    candidateBoxes[boxBase], candidateBoxes[boxBase + 1],
+                    candidateBoxes[boxBase + 2], candidateBoxes[boxBase + 3]);
+        }
     }
     
-    /**
-     * 將 ImageProxy 轉換為 Bitmap
-     */
-    private Bitmap imageProxyToBitmap(ImageProxy image) {
-        try {
-            ImageProxy.PlaneProxy[] planes = image.getPlanes();
-            ByteBuffer yBuffer = planes[0].getBuffer();
-            ByteBuffer uBuffer = planes[1].getBuffer();
-            ByteBuffer vBuffer = planes[2].getBuffer();
-
-            int ySize = yBuffer.remaining();
-            int uSize = uBuffer.remaining();
-            int vSize = vBuffer.remaining();
-
-            byte[] nv21 = new byte[ySize + uSize + vSize];
-            yBuffer.get(nv21, 0, ySize);
-            vBuffer.get(nv21, ySize, vSize);
-            uBuffer.get(nv21, ySize + vSize, uSize);
-
-            YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, image.getWidth(), image.getHeight(), null);
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            yuvImage.compressToJpeg(new Rect(0, 0, image.getWidth(), image.getHeight()), 85, out);
-            byte[] imageBytes = out.toByteArray();
-            return BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-        } catch (Exception e) {
-            Log.e(TAG, "圖像轉換失敗: " + e.getMessage());
-            return null;
-        }
+    private static float clampUnit(float value) {
+        return value < 0f ? 0f : (value > 1f ? 1f : value);
     }
     
     /**
@@ -703,6 +931,31 @@ public class YoloDetector {
         return chineseLabel != null ? chineseLabel : englishLabel;
     }
     
+    /**
+     * 獲取類別名稱在 COCO_CLASSES 中的索引，未知類別返回 -1
+     */
+    public static int getClassIndex(String englishLabel) {
+        Integer index = CLASS_INDEX.get(englishLabel);
+        return index != null ? index : -1;
+    }
+    
+    /**
+     * 把 SSD 模型輸出的類別編號（labelmap 行號）轉為 COCO_CLASSES 索引，背景、空缺或越界返回 -1
+     */
+    static int ssdClassIndex(int modelClass) {
+        if (modelClass < 0 || modelClass >= SSD_CLASS_INDEX.length) {
+            return -1;
+        }
+        return SSD_CLASS_INDEX[modelClass];
+    }
+    
+    /**
+     * 獲取 COCO_CLASSES 索引對應的類別名稱，越界返回 null
+     */
+    static String getClassName(int classIndex) {
+        return classIndex >= 0 && classIndex < COCO_CLASSES.length ? COCO_CLASSES[classIndex] : null;
+    }
+    
     /**
      * 獲取檢測性能報告
      */
@@ -732,7 +985,37 @@ public class YoloDetector {
         }
     }
     
-    public void close() {
+    /**
+     * 模型是否已載入
+     */
+    public synchronized boolean isInitialized() {
+        return isInitialized && tflite != null;
+    }
+    
+    /**
+     * 獲取當前使用的檢測引擎
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+    
+    /**
+     * 用空白輸入執行一次推理，完成解釋器首次運行時的內存分配和內核準備
+     */
+    public synchronized void warmUp() {
+        if (!isInitialized || tflite == null) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        inputBuffer.rewind();
+        for (ByteBuffer buffer : outputBuffers) {
+            buffer.rewind();
+        }
+        tflite.runForMultipleInputsOutputs(inputs, outputs);
+        Log.d(TAG, engine + " 預熱完成: " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+    
+    public synchronized void close() {
         if (tflite != null) {
             tflite.close();
             tflite = null;
@@ -0,0 +1,184 @@
+package com.example.tonbo_app;
+
+import android.graphics.Bitmap;
+
+import androidx.camera.core.ImageProxy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * YUV_420_888 直接轉換器
+ * 直接讀取 ImageProxy 的 Y/U/V 平面（遵循 rowStride 和 pixelStride），
+ * 一次完成縮放和色彩轉換，寫入模型輸入緩衝區或 ARGB 像素數組，
+ * 省去 NV21 → JPEG → Bitmap → createScaledBitmap 的往返
+ * 內部緩存索引表，非線程安全，每個使用者應持有自己的實例
+ */
+public class YuvToTensorConverter {
+
+    // BT.601 全範圍轉換係數（10位定點數，與相機JPEG編碼一致）
+    private static final int COEFF_RV = 1436;  // 1.402
+    private static final int COEFF_GU = 352;   // 0.344136
+    private static final int COEFF_GV = 731;   // 0.714136
+    private static final int COEFF_BU = 1815;  // 1.772
+
+    private static final float INV_255 = 1.0f / 255.0f;
+
+    // 最近鄰採樣的列索引表，按尺寸緩存以避免每幀重新計算
+    private int[] xLumaIndex = new int[0];
+    private int[] xChromaIndex = new int[0];
+    private int cachedSrcWidth = -1;
+    private int cachedDstWidth = -1;
+    private int cachedUvPixelStride = -1;
+
+    /**
+     * 將 ImageProxy 縮放並寫入模型輸入緩衝區（RGB，HWC 排列）
+     * @param image 相機幀（YUV_420_888）
+     * @param out 目標緩衝區，從當前 position 開始寫入，完成後 position 位於末尾
+     * @param dstWidth 模型輸入寬度
+     * @param dstHeight 模型輸入高度
+     * @param normalizedFloat true 時寫入 [0,1] 浮點數，false 時寫入 uint8
+     */
+    public void convertToTensor(ImageProxy image, ByteBuffer out, int dstWidth, int dstHeight,
+                                boolean normalizedFloat) {
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        convertToTensor(
+                planes[0].getBuffer(), planes[0].getRowStride(),
+                planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[1].getRowStride(), planes[1].getPixelStride(),
+                image.getWidth(), image.getHeight(),
+                out, dstWidth, dstHeight, normalizedFloat);
+    }
+
+    /**
+     * 平面級別的轉換入口，方便在沒有 ImageProxy 時直接使用原始緩衝區
+     */
+    public void convertToTensor(ByteBuffer yBuffer, int yRowStride,
+                                ByteBuffer uBuffer, ByteBuffer vBuffer,
+                                int uvRowStride, int uvPixelStride,
+                                int srcWidth, int srcHeight,
+                                ByteBuffer out, int dstWidth, int dstHeight,
+                                boolean normalizedFloat) {
+        prepareColumnIndex(srcWidth, dstWidth, uvPixelStride);
+
+        for (int dy = 0; dy < dstHeight; dy++) {
+            int sy = (int) ((long) dy * srcHeight / dstHeight);
+            int yRow = sy * yRowStride;
+            int uvRow = (sy >> 1) * uvRowStride;
+
+            for (int dx = 0; dx < dstWidth; dx++) {
+                int y = yBuffer.get(yRow + xLumaIndex[dx]) & 0xFF;
+                int uvIndex = uvRow + xChromaIndex[dx];
+                int u = (uBuffer.get(uvIndex) & 0xFF) - 128;
+                int v = (vBuffer.get(uvIndex) & 0xFF) - 128;
+
+                int r = clamp(y + ((COEFF_RV * v) >> 10));
+                int g = clamp(y - ((COEFF_GU * u + COEFF_GV * v) >> 10));
+                int b = clamp(y + ((COEFF_BU * u) >> 10));
+
+                if (normalizedFloat) {
+                    out.putFloat(r * INV_255);
+                    out.putFloat(g * INV_255);
+                    out.putFloat(b * INV_255);
+                } else {
+                    out.put((byte) r);
+                    out.put((byte) g);
+                    out.put((byte) b);
+                }
+            }
+        }
+    }
+
+    /**
+     * 將 ImageProxy 縮放並轉換為 ARGB_8888 像素
+     * @param pixels 目標數組，長度至少為 dstWidth * dstHeight
+     */
+    public void convertToArgb(ImageProxy image, int[] pixels, int dstWidth, int dstHeight) {
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        ByteBuffer yBuffer = planes[0].getBuffer();
+        ByteBuffer uBuffer = planes[1].getBuffer();
+        ByteBuffer vBuffer = planes[2].getBuffer();
+        int yRowStride = planes[0].getRowStride();
+        int uvRowStride = planes[1].getRowStride();
+        int srcWidth = image.getWidth();
+        int srcHeight = image.getHeight();
+
+        prepareColumnIndex(srcWidth, dstWidth, planes[1].getPixelStride());
+
+        int index = 0;
+        for (int dy = 0; dy < dstHeight; dy++) {
+            int sy = (int) ((long) dy * srcHeight / dstHeight);
+            int yRow = sy * yRowStride;
+            int uvRow = (sy >> 1) * uvRowStride;
+
+            for (int dx = 0; dx < dstWidth; dx++) {
+                int y = yBuffer.get(yRow + xLumaIndex[dx]) & 0xFF;
+                int uvIndex = uvRow + xChromaIndex[dx];
+                int u = (uBuffer.get(uvIndex) & 0xFF) - 128;
+                int v = (vBuffer.get(uvIndex) & 0xFF) - 128;
+
+                int r = clamp(y + ((COEFF_RV * v) >> 10));
+                int g = clamp(y - ((COEFF_GU * u + COEFF_GV * v) >> 10));
+                int b = clamp(y + ((COEFF_BU * u) >> 10));
+
+                pixels[index++] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    /**
+     * 將 ImageProxy 轉換為 Bitmap（無JPEG往返）
+     * @param maxWidth 輸出最大寬度，<= 0 時保持原始尺寸
+     */
+    public Bitmap convertToBitmap(ImageProxy image, int maxWidth) {
+        int dstWidth = image.getWidth();
+        int dstHeight = image.getHeight();
+        if (maxWidth > 0 && dstWidth > maxWidth) {
+            dstHeight = Math.max(1, dstHeight * maxWidth / dstWidth);
+            dstWidth = maxWidth;
+        }
+
+        int[] pixels = new int[dstWidth * dstHeight];
+        convertToArgb(image, pixels, dstWidth, dstHeight);
+        return Bitmap.createBitmap(pixels, dstWidth, dstHeight, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 準備列索引表（源寬度、目標寬度或色度像素間距變化時重建）
+     */
+    private void prepareColumnIndex(int srcWidth, int dstWidth, int uvPixelStride) {
+        if (srcWidth == cachedSrcWidth && dstWidth == cachedDstWidth
+                && uvPixelStride == cachedUvPixelStride) {
+            return;
+        }
+
+        if (xLumaIndex.length != dstWidth) {
+            xLumaIndex = new int[dstWidth];
+            xChromaIndex = new int[dstWidth];
+        }
+        for (int dx = 0; dx < dstWidth; dx++) {
+            int sx = (int) ((long) dx * srcWidth / dstWidth);
+            xLumaIndex[dx] = sx;
+            xChromaIndex[dx] = (sx >> 1) * uvPixelStride;
+        }
+
+        cachedSrcWidth = srcWidth;
+        cachedDstWidth = dstWidth;
+        cachedUvPixelStride = uvPixelStride;
+    }
+
+    /**
+     * 單個像素的 YUV 轉 ARGB（與批量轉換使用相同的定點係數）
+     * @param u U 分量減 128
+     * @param v V 分量減 128
+     */
+    static int yuvToArgb(int y, int u, int v) {
+        int r = clamp(y + ((COEFF_RV * v) >> 10));
+        int g = clamp(y - ((COEFF_GU * u + COEFF_GV * v) >> 10));
+        int b = clamp(y + ((COEFF_BU * u) >> 10));
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
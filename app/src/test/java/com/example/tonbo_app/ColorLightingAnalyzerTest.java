@@ -0,0 +1,289 @@
+package com.example.tonbo_app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * ColorLightingAnalyzer 的顏色查找表（COLOR_LUT）和單次遍歷 analyze(int[])
+ * 查找表按 5 位量化格子的中心分類，與逐點 HSV 分類只在類別邊界附近不同；
+ * analyze 與替換前的分開採樣實現（analyzeColors + analyzeLighting，在像素數組上重現）比較結果和耗時
+ */
+public class ColorLightingAnalyzerTest {
+    private static final int SWEEP_STEP = 3;
+    private static final int CELL = 1 << (8 - MedianCutPalette.BITS);
+    private static final int FRAME_WIDTH = 640;
+    private static final int FRAME_HEIGHT = 480;
+    private static final int LEGACY_SAMPLE_SIZE = 4096;
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int BENCHMARK_ITERATIONS = 300;
+
+    @Test
+    public void colorLut_agreesWithHsvClassificationOnRgbSweep() {
+        int total = 0;
+        int agreed = 0;
+        for (int r = 0; r < 256; r += SWEEP_STEP) {
+            for (int g = 0; g < 256; g += SWEEP_STEP) {
+                for (int b = 0; b < 256; b += SWEEP_STEP) {
+                    total++;
+                    int expected = ColorLightingAnalyzer.categorizeColorIndex(r, g, b);
+                    int actual = ColorLightingAnalyzer.colorCategoryOf(r, g, b);
+                    if (expected == actual) {
+                        agreed++;
+                    } else {
+                        assertTrue(String.format("(%d,%d,%d) 不在類別邊界上", r, g, b), straddlesBoundary(r, g, b));
+                    }
+                }
+            }
+        }
+        float agreement = (float) agreed / total;
+        assertTrue("一致率 " + agreement, agreement >= 0.965f);
+    }
+
+    @Test
+    public void colorLut_namesPrimaryColors() {
+        assertColor("紅色", 255, 0, 0);
+        assertColor("橙色", 255, 128, 0);
+        assertColor("黃色", 255, 255, 0);
+        assertColor("綠色", 0, 200, 0);
+        assertColor("青色", 0, 200, 200);
+        assertColor("藍色", 0, 0, 255);
+        assertColor("紫色", 128, 0, 255);
+        assertColor("黑色", 10, 10, 10);
+        assertColor("白色", 250, 250, 250);
+        assertColor("灰色", 128, 128, 128);
+    }
+
+    @Test
+    public void analyze_agreesWithLegacyMethodsOnSyntheticFrame() {
+        int[] pixels = syntheticFrame();
+        ColorLightingAnalyzer.AnalysisResult result =
+                new ColorLightingAnalyzer().analyze(pixels, FRAME_WIDTH, FRAME_HEIGHT);
+        LegacyResult legacy = legacyAnalyze(pixels, FRAME_WIDTH, FRAME_HEIGHT, new Random(13));
+
+        ColorLightingAnalyzer.ColorAnalysisResult colors = result.getColorResult();
+        ColorLightingAnalyzer.LightingAnalysisResult lighting = result.getLightingResult();
+        assertEquals(legacy.primaryColor, colors.getPrimaryColor());
+        assertEquals(legacy.secondaryColor, colors.getSecondaryColor());
+        assertEquals(legacy.lightDirection, lighting.getLightDirection());
+        assertEquals(legacy.averageBrightness, lighting.getAverageBrightness(), 8f);
+        // 調色板顏色值是該類別採樣的平均顏色，不是 0
+        assertEquals(0xFF000000, colors.getColorPalette().get(0).getColorValue() & 0xFF000000);
+    }
+
+    @Test
+    public void analyze_isFasterThanLegacyMethods() {
+        int[] pixels = syntheticFrame();
+        ColorLightingAnalyzer analyzer = new ColorLightingAnalyzer();
+        Random random = new Random(13);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            analyzer.analyze(pixels, FRAME_WIDTH, FRAME_HEIGHT);
+            legacyAnalyze(pixels, FRAME_WIDTH, FRAME_HEIGHT, random);
+        }
+
+        long legacyStart = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            legacyAnalyze(pixels, FRAME_WIDTH, FRAME_HEIGHT, random);
+        }
+        long legacyNs = System.nanoTime() - legacyStart;
+
+        long fusedStart = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            analyzer.analyze(pixels, FRAME_WIDTH, FRAME_HEIGHT);
+        }
+        long fusedNs = System.nanoTime() - fusedStart;
+
+        float legacyMs = legacyNs / 1e6f / BENCHMARK_ITERATIONS;
+        float fusedMs = fusedNs / 1e6f / BENCHMARK_ITERATIONS;
+        System.out.println(String.format(
+                "顏色光線分析 (%dx%d, %d次): 分開採樣 %.3fms, 單次遍歷 %.3fms, 加速 %.1fx",
+                FRAME_WIDTH, FRAME_HEIGHT, BENCHMARK_ITERATIONS, legacyMs, fusedMs,
+                legacyMs / Math.max(fusedMs, 1e-6f)));
+        // 單次遍歷的採樣數是舊實現的三倍以上，只檢查沒有變慢；加速比見輸出
+        assertTrue("單次遍歷 " + fusedMs + "ms，分開採樣 " + legacyMs + "ms", fusedMs < legacyMs);
+    }
+
+    /**
+     * 合成畫面：上方 20% 為紅色條，其餘為藍色，亮度從左到右由亮變暗（光線來自左側）
+     */
+    private static int[] syntheticFrame() {
+        int[] pixels = new int[FRAME_WIDTH * FRAME_HEIGHT];
+        for (int y = 0; y < FRAME_HEIGHT; y++) {
+            for (int x = 0; x < FRAME_WIDTH; x++) {
+                int v = 250 - 190 * x / FRAME_WIDTH;
+                int pixel;
+                if (y < FRAME_HEIGHT / 5) {
+                    pixel = 0xFF000000 | (v * 9 / 10) << 16 | (v / 8) << 8 | (v / 8);
+                } else {
+                    pixel = 0xFF000000 | (v * 3 / 10) << 16 | (v * 45 / 100) << 8 | v;
+                }
+                pixels[y * FRAME_WIDTH + x] = pixel;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * 替換前的實現在像素數組上的重現：隨機採樣裝箱為 List<Integer>，按顏色名稱計數到 Map，
+     * 每個採樣分配 float[] 計算 HSV；亮度、對比度和光線方向各自再採樣一次
+     */
+    private static LegacyResult legacyAnalyze(int[] pixels, int width, int height, Random random) {
+        List<Integer> samples = new ArrayList<>();
+        for (int i = 0; i < LEGACY_SAMPLE_SIZE; i++) {
+            samples.add(pixels[random.nextInt(height) * width + random.nextInt(width)]);
+        }
+        Map<String, Integer> colorCount = new HashMap<>();
+        for (int pixel : samples) {
+            String category = legacyCategorize(pixel);
+            Integer current = colorCount.get(category);
+            colorCount.put(category, (current != null ? current : 0) + 1);
+        }
+        List<Map.Entry<String, Integer>> palette = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : colorCount.entrySet()) {
+            if ((float) entry.getValue() / LEGACY_SAMPLE_SIZE * 100 >= 5.0f) {
+                palette.add(entry);
+            }
+        }
+        Collections.sort(palette, new Comparator<Map.Entry<String, Integer>>() {
+            @Override
+            public int compare(Map.Entry<String, Integer> a, Map.Entry<String, Integer> b) {
+                return Integer.compare(b.getValue(), a.getValue());
+            }
+        });
+
+        LegacyResult result = new LegacyResult();
+        result.primaryColor = palette.size() > 0 ? palette.get(0).getKey() : null;
+        result.secondaryColor = palette.size() > 1 ? palette.get(1).getKey() : null;
+
+        float total = 0;
+        int count = 0;
+        for (int i = 0; i < width; i += width / 20) {
+            for (int j = 0; j < height; j += height / 20) {
+                total += legacyBrightness(pixels[j * width + i]);
+                count++;
+            }
+        }
+        result.averageBrightness = total / count;
+
+        int min = 255;
+        int max = 0;
+        for (int i = 0; i < width; i += width / 15) {
+            for (int j = 0; j < height; j += height / 15) {
+                float brightness = legacyBrightness(pixels[j * width + i]);
+                min = Math.min(min, (int) brightness);
+                max = Math.max(max, (int) brightness);
+            }
+        }
+        result.contrast = max - min;
+
+        float left = 0, right = 0, top = 0, bottom = 0;
+        for (int j = 0; j < height; j += height / 10) {
+            left += legacyBrightness(pixels[j * width + width / 8]);
+            right += legacyBrightness(pixels[j * width + width * 7 / 8]);
+        }
+        for (int i = 0; i < width; i += width / 10) {
+            top += legacyBrightness(pixels[height / 8 * width + i]);
+            bottom += legacyBrightness(pixels[height * 7 / 8 * width + i]);
+        }
+        if (left > right + 20) {
+            result.lightDirection = "左側光線";
+        } else if (right > left + 20) {
+            result.lightDirection = "右側光線";
+        } else if (top > bottom + 20) {
+            result.lightDirection = "頂部光線";
+        } else if (bottom > top + 20) {
+            result.lightDirection = "底部光線";
+        } else {
+            result.lightDirection = "均勻光線";
+        }
+        return result;
+    }
+
+    private static String legacyCategorize(int pixel) {
+        float[] hsv = new float[3];
+        rgbToHsv((pixel >> 16) & 0xFF, (pixel >> 8) & 0xFF, pixel & 0xFF, hsv);
+        float hue = hsv[0];
+        if (hsv[1] < 0.2f) {
+            if (hsv[2] < 0.3f) return "黑色";
+            if (hsv[2] > 0.7f) return "白色";
+            return "灰色";
+        }
+        if (hue < 15 || hue > 345) return "紅色";
+        if (hue < 45) return "橙色";
+        if (hue < 75) return "黃色";
+        if (hue < 165) return "綠色";
+        if (hue < 210) return "青色";
+        if (hue < 270) return "藍色";
+        if (hue < 315) return "紫色";
+        return "紅色";
+    }
+
+    /**
+     * 與 android.graphics.Color.RGBToHSV 相同的轉換
+     */
+    private static void rgbToHsv(int r, int g, int b, float[] hsv) {
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        float delta = max - min;
+        float hue = 0f;
+        if (delta > 0) {
+            if (max == r) {
+                hue = 60f * ((g - b) / delta);
+            } else if (max == g) {
+                hue = 60f * ((b - r) / delta + 2);
+            } else {
+                hue = 60f * ((r - g) / delta + 4);
+            }
+            if (hue < 0) {
+                hue += 360f;
+            }
+        }
+        hsv[0] = hue;
+        hsv[1] = max == 0 ? 0f : delta / max;
+        hsv[2] = max / 255f;
+    }
+
+    private static float legacyBrightness(int pixel) {
+        return 0.299f * ((pixel >> 16) & 0xFF) + 0.587f * ((pixel >> 8) & 0xFF) + 0.114f * (pixel & 0xFF);
+    }
+
+    private static final class LegacyResult {
+        String primaryColor;
+        String secondaryColor;
+        String lightDirection;
+        float averageBrightness;
+        int contrast;
+    }
+
+    /**
+     * 採樣點所在的量化格子內，逐點分類是否不止一個類別
+     */
+    private static boolean straddlesBoundary(int r, int g, int b) {
+        int r0 = r / CELL * CELL;
+        int g0 = g / CELL * CELL;
+        int b0 = b / CELL * CELL;
+        int first = ColorLightingAnalyzer.categorizeColorIndex(r0, g0, b0);
+        for (int dr = 0; dr < CELL; dr++) {
+            for (int dg = 0; dg < CELL; dg++) {
+                for (int db = 0; db < CELL; db++) {
+                    if (ColorLightingAnalyzer.categorizeColorIndex(r0 + dr, g0 + dg, b0 + db) != first) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void assertColor(String expected, int r, int g, int b) {
+        assertEquals(expected, ColorLightingAnalyzer.colorNameOf(ColorLightingAnalyzer.colorCategoryOf(r, g, b)));
+    }
+}
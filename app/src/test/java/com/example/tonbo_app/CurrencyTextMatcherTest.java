@@ -0,0 +1,155 @@
+package com.example.tonbo_app;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * CurrencyTextMatcher 的關鍵詞和數字掃描
+ * 與替換前 CurrencyDetector.analyzeTextForCurrency 的正則表達式實現逐條比較面額和置信度
+ */
+public class CurrencyTextMatcherTest {
+    private static final Set<String> DENOMINATIONS = new HashSet<>(Arrays.asList(
+            "10", "20", "50", "100", "500", "1000", "1", "2", "5"));
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final Pattern SYMBOL_NUMBER = Pattern.compile(
+            "(?:hk\\$|\\$|港幣)?\\s*(\\d+)\\s*(?:港幣|hkd)?", Pattern.CASE_INSENSITIVE);
+    private static final int FUZZ_CASES = 200000;
+    private static final String FUZZ_ALPHABET = "hkdongHKD$港幣 \t0125x";
+
+    private CurrencyTextMatcher matcher;
+
+    @Before
+    public void setUp() {
+        Map<String, String> keywords = new HashMap<>();
+        keywords.put("港幣", "HKD");
+        keywords.put("hk$", "HKD");
+        keywords.put("hkd", "HKD");
+        keywords.put("hongkong", "HKD");
+        matcher = new CurrencyTextMatcher(keywords);
+    }
+
+    @Test
+    public void keywords_matchAcrossWhitespaceAndCase() {
+        assertEquals("1000/0.8", denomination("Hong Kong 1000"));
+        assertEquals("100/0.8", denomination("HK $ 100"));
+        assertEquals("5/0.8", denomination("hongkonG5"));
+        assertEquals("10/0.8", denomination("港 幣10"));
+        assertEquals("HKD", matcher.scan("hhkd 20").getCurrency());
+    }
+
+    @Test
+    public void whitespace_endsDigitRunsButDigitsBreakKeywords() {
+        CurrencyTextMatcher.Match match = matcher.scan("12 34 5");
+        assertEquals(Arrays.asList("12", "34", "5"), match.getNumbers());
+        assertEquals("5/0.9", denomination("12 34 5"));
+
+        // 去掉空白後為 "hk100d"，數字把 hk 和 d 隔開，不算關鍵詞
+        match = matcher.scan("hk 1 00 d");
+        assertEquals(Arrays.asList("1", "00"), match.getNumbers());
+        assertFalse(match.hasKeyword());
+        assertEquals("1/0.9", denomination("hk 1 00 d"));
+    }
+
+    @Test
+    public void fullWidthDigits_areNormalized() {
+        CurrencyTextMatcher.Match match = matcher.scan("２０港幣");
+        assertEquals(Arrays.asList("20"), match.getNumbers());
+        assertEquals("20/0.8", denomination("２０港幣"));
+    }
+
+    @Test
+    public void numbersWithoutKeyword_useSymbolConfidence() {
+        assertEquals("500/0.9", denomination("pay $500 now"));
+        assertEquals("100/0.9", denomination("100"));
+        assertNull(denomination("0100"));
+        assertNull(denomination("abc"));
+        assertFalse(matcher.scan("hong-kong").hasKeyword());
+    }
+
+    @Test
+    public void emptyText_hasNoMatch() {
+        assertFalse(matcher.scan("").hasKeyword());
+        assertTrue(matcher.scan(null).getNumbers().isEmpty());
+    }
+
+    @Test
+    public void fuzz_matchesRegexImplementation() {
+        Random random = new Random(7);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < FUZZ_CASES; i++) {
+            sb.setLength(0);
+            int length = random.nextInt(14);
+            for (int j = 0; j < length; j++) {
+                sb.append(FUZZ_ALPHABET.charAt(random.nextInt(FUZZ_ALPHABET.length())));
+            }
+            String text = sb.toString();
+            assertEquals("[" + text + "]", regexDenomination(text), denomination(text));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void keywordWithWhitespace_isRejected() {
+        Map<String, String> keywords = new HashMap<>();
+        keywords.put("hong kong", "HKD");
+        new CurrencyTextMatcher(keywords);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void keywordWithDigit_isRejected() {
+        Map<String, String> keywords = new HashMap<>();
+        keywords.put("hk1", "HKD");
+        new CurrencyTextMatcher(keywords);
+    }
+
+    /**
+     * 與 CurrencyDetector.analyzeTextForCurrency 相同的判斷：第一個已知面額，有關鍵詞時置信度 0.8，否則 0.9
+     */
+    private String denomination(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
+        CurrencyTextMatcher.Match match = matcher.scan(text);
+        for (String number : match.getNumbers()) {
+            if (DENOMINATIONS.contains(number)) {
+                return number + (match.hasKeyword() ? "/0.8" : "/0.9");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 替換前的正則表達式實現
+     */
+    private static String regexDenomination(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
+        String clean = text.replaceAll("\\s+", "").toLowerCase();
+        if (clean.contains("港幣") || clean.contains("hk$") || clean.contains("hongkong") || clean.contains("hkd")) {
+            Matcher matcher = NUMBER.matcher(text);
+            while (matcher.find()) {
+                if (DENOMINATIONS.contains(matcher.group())) {
+                    return matcher.group() + "/0.8";
+                }
+            }
+        }
+        Matcher matcher = SYMBOL_NUMBER.matcher(text);
+        while (matcher.find()) {
+            if (DENOMINATIONS.contains(matcher.group(1))) {
+                return matcher.group(1) + "/0.9";
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.tonbo_app;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * MotionGate 的噪聲估計、局部變化檢測和單次耗時
+ * 合成 320x240 亮度平面：灰色背景加高斯噪聲，每幀 33ms
+ */
+public class MotionGateTest {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final long FRAME_MS = 33;
+    private static final int BACKGROUND = 120;
+    private static final double NOISE_SIGMA = 4.0;
+    private static final int WARMUP_CALLS = 500;
+    private static final int TIMED_CALLS = 2000;
+    // 手機上約慢數倍，JVM 上要求遠低於 1ms
+    private static final float MAX_GATE_MS = 0.25f;
+
+    private MotionGate gate;
+    private ByteBuffer luma;
+    private Random random;
+    private long timestamp;
+
+    @Before
+    public void setUp() {
+        gate = new MotionGate();
+        luma = ByteBuffer.allocate(WIDTH * HEIGHT);
+        random = new Random(42);
+        timestamp = 0;
+    }
+
+    @Test
+    public void gateCost_isWellUnderOneMillisecond() {
+        // 相機分析幀 640x480，兩幀交替（一靜一動），只計 shouldRunInference 本身的耗時
+        int width = 640;
+        int height = 480;
+        ByteBuffer[] frames = new ByteBuffer[2];
+        for (int f = 0; f < frames.length; f++) {
+            frames[f] = ByteBuffer.allocate(width * height);
+            for (int i = 0; i < width * height; i++) {
+                int value = (int) Math.round(BACKGROUND + f * 30 * ((i % width) < width / 4 ? 1 : 0)
+                        + random.nextGaussian() * NOISE_SIGMA);
+                frames[f].put(i, (byte) Math.max(0, Math.min(255, value)));
+            }
+        }
+        MotionGate costGate = new MotionGate();
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            costGate.shouldRunInference(frames[i % 2], width, height, width, 1, i * FRAME_MS);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < TIMED_CALLS; i++) {
+            costGate.shouldRunInference(frames[i % 2], width, height, width, 1, (WARMUP_CALLS + i) * FRAME_MS);
+        }
+        float averageMs = (System.nanoTime() - start) / 1e6f / TIMED_CALLS;
+        System.out.println(String.format("運動門控 (%dx%d, %d次): 平均 %.4fms", width, height, TIMED_CALLS, averageMs));
+        assertTrue("平均耗時 " + averageMs + "ms", averageMs < MAX_GATE_MS);
+    }
+
+    @Test
+    public void staticScene_isSkippedExceptForcedInference() {
+        int runs = 0;
+        int frames = 300;
+        for (int i = 0; i < frames; i++) {
+            if (nextFrame(0f, 0)) {
+                runs++;
+            }
+        }
+        // 約 10 秒：第一幀加每 2 秒一次強制推理
+        assertTrue("靜止場景推理次數過多: " + runs, runs <= 8);
+        assertEquals(frames, gate.getEvaluatedFrames());
+        assertEquals((frames - runs) * 100f / frames, gate.getSkipRatio(), 1e-3f);
+    }
+
+    @Test
+    public void noiseEstimate_doesNotRatchetUpOnStaticScene() {
+        for (int i = 0; i < 1000; i++) {
+            nextFrame(0f, 0);
+        }
+        // 信號為 4 個像素的平均，相鄰幀差的中位數約為 σ * 0.67，遠低於上限
+        assertTrue("噪聲估計: " + gate.getNoiseLevel(), gate.getNoiseLevel() < 4f);
+        assertTrue(gate.getThreshold() < 12f);
+    }
+
+    @Test
+    public void personEnteringTenPercentOfFrame_triggersInference() {
+        for (int i = 0; i < 300; i++) {
+            nextFrame(0f, 0);
+        }
+        assertTrue(nextFrame(0f, WIDTH / 10));
+        assertTrue("變化網格比例: " + gate.getLastChangedRatio(), gate.getLastChangedRatio() >= 0.05f);
+    }
+
+    @Test
+    public void slowLightingDrift_doesNotBlindTheGate() {
+        // 亮度每幀上升 0.05 級：不會連續觸發，但也不會把閾值抬到上限
+        float offset = 0f;
+        for (int i = 0; i < 600; i++) {
+            nextFrame(offset, 0);
+            offset += 0.05f;
+        }
+        assertTrue("噪聲估計: " + gate.getNoiseLevel(), gate.getNoiseLevel() < 4f);
+        assertTrue(nextFrame(offset, WIDTH / 8));
+    }
+
+    @Test
+    public void changedObjectStaysDetectedUntilReferenceUpdates() {
+        for (int i = 0; i < 100; i++) {
+            nextFrame(0f, 0);
+        }
+        assertTrue(nextFrame(0f, WIDTH / 5));
+        // 新的參考已包含該物體，之後靜止即跳過
+        assertFalse(nextFrame(0f, WIDTH / 5));
+    }
+
+    /**
+     * 生成下一幀並交給門控
+     * @param offset 整體亮度偏移
+     * @param objectWidth 畫面左側深色物體的寬度（像素），0 表示沒有
+     */
+    private boolean nextFrame(float offset, int objectWidth) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                double base = x < objectWidth ? 40 : BACKGROUND + offset;
+                int value = (int) Math.round(base + random.nextGaussian() * NOISE_SIGMA);
+                luma.put(y * WIDTH + x, (byte) Math.max(0, Math.min(255, value)));
+            }
+        }
+        timestamp += FRAME_MS;
+        return gate.shouldRunInference(luma, WIDTH, HEIGHT, WIDTH, 1, timestamp);
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.tonbo_app;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * NonMaxSuppression 的三種模式和保留上限
+ * 候選框：A 和 B 同類別且高度重疊（IoU ≈ 0.82），C 與 B 位置相同但類別不同，D 單獨在遠處
+ */
+public class NonMaxSuppressionTest {
+    private static final float IOU_THRESHOLD = 0.5f;
+    private static final float DELTA = 1e-5f;
+
+    private static final int A = 0;
+    private static final int B = 1;
+    private static final int C = 2;
+    private static final int D = 3;
+
+    private static final float[] BOXES = {
+            0f, 0f, 10f, 10f,
+            1f, 0f, 11f, 10f,
+            1f, 0f, 11f, 10f,
+            50f, 50f, 60f, 60f
+    };
+    private static final float[] SCORES = {0.9f, 0.8f, 0.7f, 0.6f};
+    private static final int[] CLASSES = {0, 0, 1, 0};
+
+    @Test
+    public void iou_matchesOverlapArea() {
+        // 交集 9x10 = 90，並集 100 + 100 - 90 = 110
+        assertEquals(90f / 110f, NonMaxSuppression.iou(BOXES, A * 4, B * 4), DELTA);
+        assertEquals(0f, NonMaxSuppression.iou(BOXES, A * 4, D * 4), DELTA);
+        assertEquals(1f, NonMaxSuppression.iou(BOXES, B * 4, C * 4), DELTA);
+    }
+
+    @Test
+    public void classAware_suppressesOnlySameClass() {
+        NonMaxSuppression nms = new NonMaxSuppression(NonMaxSuppression.Mode.CLASS_AWARE, IOU_THRESHOLD);
+        int kept = nms.run(BOXES, SCORES, CLASSES, 4, 0.1f, 10);
+
+        assertKept(nms, kept, A, C, D);
+        assertEquals(0.7f, nms.getKeptScore(1), DELTA);
+    }
+
+    @Test
+    public void classAgnostic_suppressesAcrossClasses() {
+        NonMaxSuppression nms = new NonMaxSuppression(NonMaxSuppression.Mode.CLASS_AGNOSTIC, IOU_THRESHOLD);
+        int kept = nms.run(BOXES, SCORES, null, 4, 0.1f, 10);
+
+        assertKept(nms, kept, A, D);
+    }
+
+    @Test
+    public void soft_decaysOverlappingScoreAndKeepsDescendingOrder() {
+        NonMaxSuppression nms = new NonMaxSuppression(NonMaxSuppression.Mode.SOFT, IOU_THRESHOLD);
+        int kept = nms.run(BOXES, SCORES, CLASSES, 4, 0.1f, 10);
+
+        // B 被 A 衰減到 0.8 * exp(-iou² / 0.5) ≈ 0.21，排到最後
+        assertKept(nms, kept, A, C, D, B);
+        float iou = 90f / 110f;
+        float decayed = 0.8f * (float) Math.exp(-(iou * iou) / 0.5f);
+        assertEquals(decayed, nms.getKeptScore(3), DELTA);
+        assertEquals(0.7f, nms.getKeptScore(1), DELTA);
+        for (int k = 1; k < kept; k++) {
+            assertTrue(nms.getKeptScore(k - 1) >= nms.getKeptScore(k));
+        }
+    }
+
+    @Test
+    public void soft_dropsCandidateDecayedBelowThreshold() {
+        NonMaxSuppression nms = new NonMaxSuppression(NonMaxSuppression.Mode.SOFT, IOU_THRESHOLD);
+        int kept = nms.run(BOXES, SCORES, CLASSES, 4, 0.3f, 10);
+
+        assertKept(nms, kept, A, C, D);
+    }
+
+    @Test
+    public void soft_maxKeepUsesDecayedScores() {
+        // 四個高度重疊的高分框和一個遠處的低分框，只保留兩個：
+        // 重疊框被第一個框衰減後低於 0.5，第二個應是遠處的框，而不是按原始分數彈出的重疊框
+        float[] boxes = {
+                0f, 0f, 10f, 10f,
+                0.5f, 0f, 10.5f, 10f,
+                0f, 0.5f, 10f, 10.5f,
+                0.5f, 0.5f, 10.5f, 10.5f,
+                50f, 50f, 60f, 60f
+        };
+        float[] scores = {0.95f, 0.94f, 0.93f, 0.92f, 0.5f};
+        int[] classes = {0, 0, 0, 0, 0};
+        NonMaxSuppression nms = new NonMaxSuppression(NonMaxSuppression.Mode.SOFT, IOU_THRESHOLD);
+        int kept = nms.run(boxes, scores, classes, 5, 0.1f, 2);
+
+        assertKept(nms, kept, 0, 4);
+        assertEquals(0.5f, nms.getKeptScore(1), DELTA);
+    }
+
+    @Test
+    public void soft_matchesFullSoftNmsOnRandomBoxes() {
+        Random random = new Random(6);
+        NonMaxSuppression nms = new NonMaxSuppression(NonMaxSuppression.Mode.SOFT, IOU_THRESHOLD);
+        for (int round = 0; round < 200; round++) {
+            int count = 1 + random.nextInt(60);
+            float[] boxes = new float[count * 4];
+            float[] scores = new float[count];
+            int[] classes = new int[count];
+            for (int i = 0; i < count; i++) {
+                float left = random.nextFloat() * 100f;
+                float top = random.nextFloat() * 100f;
+                boxes[i * 4] = left;
+                boxes[i * 4 + 1] = top;
+                boxes[i * 4 + 2] = left + 5f + random.nextFloat() * 40f;
+                boxes[i * 4 + 3] = top + 5f + random.nextFloat() * 40f;
+                scores[i] = random.nextFloat();
+                classes[i] = random.nextInt(3);
+            }
+            int maxKeep = 1 + random.nextInt(count);
+            int[] expected = fullSoftNms(boxes, scores, classes, count, 0.2f, maxKeep);
+            int kept = nms.run(boxes, scores, classes, count, 0.2f, maxKeep);
+
+            assertEquals("第 " + round + " 輪", expected.length, kept);
+            for (int k = 0; k < kept; k++) {
+                assertEquals("第 " + round + " 輪第 " + k + " 個", expected[k], nms.getKeptIndex(k));
+            }
+        }
+    }
+
+    @Test
+    public void maxKeep_returnsTopKByScore() {
+        NonMaxSuppression nms = new NonMaxSuppression(NonMaxSuppression.Mode.CLASS_AWARE, IOU_THRESHOLD);
+        int kept = nms.run(BOXES, SCORES, CLASSES, 4, 0.1f, 2);
+
+        assertKept(nms, kept, A, C);
+    }
+
+    @Test
+    public void scoreThreshold_skipsLowAndZeroScores() {
+        float[] scores = {0.9f, 0f, 0.2f, 0.6f};
+        NonMaxSuppression nms = new NonMaxSuppression(NonMaxSuppression.Mode.CLASS_AWARE, IOU_THRESHOLD);
+        int kept = nms.run(BOXES, scores, CLASSES, 4, 0.5f, 10);
+
+        assertKept(nms, kept, A, D);
+    }
+
+    @Test
+    public void run_ordersUnsortedInputAndReusesBuffersAcrossCalls() {
+        NonMaxSuppression nms = new NonMaxSuppression(NonMaxSuppression.Mode.CLASS_AGNOSTIC, IOU_THRESHOLD);
+        assertKept(nms, nms.run(BOXES, SCORES, null, 2, 0.1f, 1), A);
+
+        // 更多候選、更大上限時緩衝區擴容，分數亂序輸入按降序輸出
+        int count = 40;
+        float[] boxes = new float[count * 4];
+        float[] scores = new float[count];
+        for (int i = 0; i < count; i++) {
+            boxes[i * 4] = i * 20f;
+            boxes[i * 4 + 1] = 0f;
+            boxes[i * 4 + 2] = i * 20f + 10f;
+            boxes[i * 4 + 3] = 10f;
+            scores[i] = ((i * 7) % count + 1) / (float) count;
+        }
+        int kept = nms.run(boxes, scores, null, count, 0f, count);
+
+        assertEquals(count, kept);
+        for (int k = 0; k < kept; k++) {
+            assertEquals((count - k) / (float) count, nms.getKeptScore(k), DELTA);
+            assertEquals(scores[nms.getKeptIndex(k)], nms.getKeptScore(k), DELTA);
+        }
+    }
+
+    /**
+     * 完整的 Soft-NMS：每保留一個框就衰減所有剩餘同類別候選，再從中選最高分
+     */
+    private static int[] fullSoftNms(float[] boxes, float[] scores, int[] classes, int count,
+                                     float scoreThreshold, int maxKeep) {
+        float[] current = scores.clone();
+        boolean[] done = new boolean[count];
+        int[] kept = new int[maxKeep];
+        int keptCount = 0;
+        while (keptCount < maxKeep) {
+            int best = -1;
+            for (int i = 0; i < count; i++) {
+                if (!done[i] && current[i] >= scoreThreshold && current[i] > 0f
+                        && (best < 0 || current[i] > current[best])) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            done[best] = true;
+            kept[keptCount++] = best;
+            for (int i = 0; i < count; i++) {
+                if (!done[i] && classes[i] == classes[best]) {
+                    float iou = NonMaxSuppression.iou(boxes, i * 4, best * 4);
+                    current[i] *= (float) Math.exp(-(iou * iou) / 0.5f);
+                }
+            }
+        }
+        return Arrays.copyOf(kept, keptCount);
+    }
+
+    private static void assertKept(NonMaxSuppression nms, int kept, int... expected) {
+        assertEquals(expected.length, kept);
+        for (int k = 0; k < kept; k++) {
+            assertEquals("第 " + k + " 個保留結果", expected[k], nms.getKeptIndex(k));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.tonbo_app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * OCRDocument 的閱讀順序：先分行，行內從左到右
+ * 排序結果必須與輸入順序無關，否則不是全序（TimSort 在 32 個以上的元素時會拋出異常）
+ */
+public class OCRDocumentTest {
+
+    @Test
+    public void sameRow_isOrderedLeftToRight() {
+        // 右邊的框略高一點，仍與左邊的框屬於同一行
+        int[][] boxes = {
+                {300, 12, 400, 40},
+                {10, 10, 100, 40},
+                {10, 60, 100, 90},
+        };
+        assertArrayEquals(new int[] {1, 0, 2}, order(boxes));
+    }
+
+    @Test
+    public void overlapCycle_isResolvedByRows() {
+        // 兩兩比較時 A < B（同一行，A 在左）、B < C（同一行，B 在左）、C < A（不同行，C 在上），互相成環
+        int[][] boxes = {
+                {0, 10, 100, 30},
+                {100, 5, 200, 25},
+                {200, 0, 300, 20},
+        };
+        // C 開始第一行，B 與 C 重疊歸入第一行，A 與行首 C 重疊不足一半另起一行
+        assertArrayEquals(new int[] {1, 2, 0}, order(boxes));
+        int[] first = order(boxes);
+        int[][] reversed = {boxes[2], boxes[1], boxes[0]};
+        int[] second = order(reversed);
+        for (int k = 0; k < first.length; k++) {
+            assertSame(boxes[first[k]], reversed[second[k]]);
+        }
+    }
+
+    @Test
+    public void densePage_orderIsIndependentOfInputOrder() {
+        Random random = new Random(21);
+        List<int[]> boxes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            int left = random.nextInt(1000);
+            int top = random.nextInt(1500);
+            boxes.add(new int[] {left, top, left + 20 + random.nextInt(200), top + 10 + random.nextInt(40)});
+        }
+        List<int[]> expected = sorted(boxes);
+        for (int round = 0; round < 5; round++) {
+            List<int[]> shuffled = new ArrayList<>(boxes);
+            Collections.shuffle(shuffled, random);
+            List<int[]> actual = sorted(shuffled);
+            for (int k = 0; k < expected.size(); k++) {
+                assertSame("位置 " + k, expected.get(k), actual.get(k));
+            }
+        }
+    }
+
+    @Test
+    public void rows_followTopToBottom() {
+        Random random = new Random(5);
+        List<int[]> boxes = new ArrayList<>();
+        // 10 行文字，每行 5 個單詞，行高 30，行距 40，上邊界有少量抖動
+        for (int row = 0; row < 10; row++) {
+            for (int word = 0; word < 5; word++) {
+                int top = row * 40 + random.nextInt(5);
+                int left = word * 120 + random.nextInt(10);
+                boxes.add(new int[] {left, top, left + 100, top + 30});
+            }
+        }
+        Collections.shuffle(boxes, random);
+        List<int[]> result = sorted(boxes);
+        for (int k = 0; k < result.size(); k++) {
+            int row = k / 5;
+            int word = k % 5;
+            assertTrue(result.get(k)[1] >= row * 40 && result.get(k)[1] < row * 40 + 5);
+            assertTrue(result.get(k)[0] >= word * 120 && result.get(k)[0] < word * 120 + 10);
+        }
+    }
+
+    private static List<int[]> sorted(List<int[]> boxes) {
+        int[] order = order(boxes.toArray(new int[0][]));
+        List<int[]> result = new ArrayList<>(order.length);
+        for (int index : order) {
+            result.add(boxes.get(index));
+        }
+        return result;
+    }
+
+    private static int[] order(int[][] boxes) {
+        int count = boxes.length;
+        int[] lefts = new int[count];
+        int[] tops = new int[count];
+        int[] bottoms = new int[count];
+        for (int i = 0; i < count; i++) {
+            lefts[i] = boxes[i][0];
+            tops[i] = boxes[i][1];
+            bottoms[i] = boxes[i][3];
+        }
+        int[] order = OCRDocument.readingOrder(lefts, tops, bottoms, count);
+        assertEquals(count, order.length);
+        return order;
+    }
+}
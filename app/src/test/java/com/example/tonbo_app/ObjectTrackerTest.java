@@ -0,0 +1,253 @@
+package com.example.tonbo_app;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * ObjectTracker 的關聯、確認/刪除生命週期和勻速推算
+ * 檢測幀間隔 100ms，座標為正規化座標
+ */
+public class ObjectTrackerTest {
+    private static final int PERSON = 0;
+    private static final int CHAIR = 56;
+    private static final long FRAME_MS = 100;
+    private static final float DELTA = 1e-4f;
+
+    private ObjectTracker tracker;
+    private DetectionBatch detections;
+    private DetectionBatch out;
+    private long timestamp;
+
+    @Before
+    public void setUp() {
+        tracker = new ObjectTracker();
+        detections = new DetectionBatch();
+        out = new DetectionBatch();
+        timestamp = 1000;
+    }
+
+    @Test
+    public void newTrack_isConfirmedOnSecondHit() {
+        addPerson(0.2f, 0.2f);
+        update();
+        tracker.getTracks(out);
+        assertEquals(1, tracker.getTrackCount());
+        assertTrue("單次檢測不應輸出", out.isEmpty());
+
+        addPerson(0.21f, 0.2f);
+        update();
+        tracker.getTracks(out);
+        assertEquals(1, out.size());
+        assertEquals(PERSON, out.getClassId(0));
+        assertTrue(out.getTrackId(0) > 0);
+    }
+
+    @Test
+    public void association_keepsIdsForMovingObjects() {
+        for (int frame = 0; frame < 5; frame++) {
+            addPerson(0.1f + frame * 0.01f, 0.1f);
+            addPerson(0.6f - frame * 0.01f, 0.5f);
+            update();
+        }
+        tracker.getTracks(out);
+        assertEquals(2, out.size());
+        int firstId = idNear(0.14f);
+        int secondId = idNear(0.56f);
+        assertNotEquals(firstId, secondId);
+
+        // 輸入順序交換也不影響關聯
+        addPerson(0.55f, 0.5f);
+        addPerson(0.15f, 0.1f);
+        update();
+        tracker.getTracks(out);
+        assertEquals(2, tracker.getTrackCount());
+        assertEquals(firstId, idNear(0.15f));
+        assertEquals(secondId, idNear(0.55f));
+    }
+
+    @Test
+    public void association_requiresSameClass() {
+        addPerson(0.3f, 0.3f);
+        update();
+        detections.add(CHAIR, "chair", "椅子", 0.8f, 0.3f, 0.3f, 0.5f, 0.7f);
+        update();
+
+        // 位置相同但類別不同：人的未確認軌跡被刪除，椅子建立新軌跡
+        assertEquals(1, tracker.getTrackCount());
+        tracker.getTracks(out);
+        assertTrue(out.isEmpty());
+    }
+
+    @Test
+    public void unconfirmedTrack_isDroppedOnFirstMiss() {
+        addPerson(0.3f, 0.3f);
+        update();
+        update();
+        assertEquals(0, tracker.getTrackCount());
+    }
+
+    @Test
+    public void confirmedTrack_survivesShortOcclusion() {
+        addPerson(0.3f, 0.3f);
+        update();
+        addPerson(0.3f, 0.3f);
+        update();
+        tracker.getTracks(out);
+        int id = out.getTrackId(0);
+
+        // 最多容忍 3 次未命中，期間不輸出
+        for (int miss = 0; miss < 3; miss++) {
+            update();
+            assertEquals(1, tracker.getTrackCount());
+            tracker.getTracks(out);
+            assertTrue(out.isEmpty());
+        }
+
+        addPerson(0.3f, 0.3f);
+        update();
+        tracker.getTracks(out);
+        assertEquals(1, out.size());
+        assertEquals(id, out.getTrackId(0));
+    }
+
+    @Test
+    public void confirmedTrack_isDroppedAfterMaxMisses() {
+        addPerson(0.3f, 0.3f);
+        update();
+        addPerson(0.3f, 0.3f);
+        update();
+        for (int miss = 0; miss < 4; miss++) {
+            update();
+        }
+        assertEquals(0, tracker.getTrackCount());
+    }
+
+    @Test
+    public void collectNewTracks_reportsEachTrackOnce() {
+        addPerson(0.3f, 0.3f);
+        update();
+        tracker.collectNewTracks(out);
+        assertTrue(out.isEmpty());
+
+        addPerson(0.3f, 0.3f);
+        update();
+        tracker.collectNewTracks(out);
+        assertEquals(1, out.size());
+
+        addPerson(0.3f, 0.3f);
+        update();
+        tracker.collectNewTracks(out);
+        assertTrue(out.isEmpty());
+    }
+
+    @Test
+    public void predict_extrapolatesConstantVelocity() {
+        // 每 100ms 向右移動 0.02
+        float step = 0.02f;
+        float left = 0.1f;
+        for (int frame = 0; frame < 10; frame++) {
+            addPerson(left, 0.3f);
+            update();
+            left += step;
+        }
+        tracker.getTracks(out);
+        float lastCenter = centerX(0);
+
+        timestamp += FRAME_MS;
+        tracker.predict(timestamp);
+        tracker.getTracks(out);
+        float predicted = centerX(0);
+        assertEquals(lastCenter + step, predicted, step * 0.25f);
+
+        // 時間戳回退時不推算
+        tracker.predict(timestamp - FRAME_MS);
+        tracker.getTracks(out);
+        assertEquals(predicted, centerX(0), DELTA);
+    }
+
+    @Test
+    public void predict_clampsLongGaps() {
+        float left = 0.1f;
+        for (int frame = 0; frame < 10; frame++) {
+            addPerson(left, 0.3f);
+            update();
+            left += 0.02f;
+        }
+        tracker.getTracks(out);
+        float lastCenter = centerX(0);
+
+        // 暫停 10 秒後最多推算 0.5 秒（約 0.1）
+        timestamp += 10000;
+        tracker.predict(timestamp);
+        tracker.getTracks(out);
+        assertTrue(centerX(0) - lastCenter < 0.15f);
+    }
+
+    @Test
+    public void predictedTracks_doNotAdvanceFilterState() {
+        float step = 0.02f;
+        float left = 0.1f;
+        for (int frame = 0; frame < 10; frame++) {
+            addPerson(left, 0.3f);
+            update();
+            left += step;
+        }
+        tracker.getTracks(out);
+        float lastCenter = centerX(0);
+
+        tracker.getPredictedTracks(timestamp + FRAME_MS, out);
+        assertEquals(lastCenter + step, centerX(0), step * 0.25f);
+        tracker.getPredictedTracks(timestamp - FRAME_MS, out);
+        assertEquals(lastCenter, centerX(0), DELTA);
+        tracker.getTracks(out);
+        assertEquals(lastCenter, centerX(0), DELTA);
+    }
+
+    @Test
+    public void cameraThreadPredictions_doNotBiasVelocity() {
+        // 流水線中相機線程先看到較新的幀：在每次更新之間查詢比下一次檢測更晚的時間
+        ObjectTracker queried = new ObjectTracker();
+        DetectionBatch queriedOut = new DetectionBatch();
+        float step = 0.02f;
+        float left = 0.1f;
+        for (int frame = 0; frame < 10; frame++) {
+            addPerson(left, 0.3f);
+            timestamp += FRAME_MS;
+            tracker.update(detections, timestamp);
+            queried.update(detections, timestamp);
+            queried.getPredictedTracks(timestamp + FRAME_MS + FRAME_MS / 2, queriedOut);
+            detections.clear();
+            left += step;
+        }
+        tracker.getPredictedTracks(timestamp + FRAME_MS, out);
+        queried.getPredictedTracks(timestamp + FRAME_MS, queriedOut);
+        assertEquals(centerX(0), (queriedOut.getLeft(0) + queriedOut.getRight(0)) / 2f, DELTA);
+        assertEquals(out.getLeft(0), queriedOut.getLeft(0), DELTA);
+    }
+
+    private void addPerson(float left, float top) {
+        detections.add(PERSON, "person", "人", 0.9f, left, top, left + 0.2f, top + 0.4f);
+    }
+
+    private void update() {
+        timestamp += FRAME_MS;
+        tracker.update(detections, timestamp);
+        detections.clear();
+    }
+
+    private float centerX(int index) {
+        return (out.getLeft(index) + out.getRight(index)) / 2f;
+    }
+
+    private int idNear(float left) {
+        for (int i = 0; i < out.size(); i++) {
+            if (Math.abs(out.getLeft(i) - left) < 0.02f) {
+                return out.getTrackId(i);
+            }
+        }
+        fail("沒有左邊界接近 " + left + " 的軌跡");
+        return -1;
+    }
+}
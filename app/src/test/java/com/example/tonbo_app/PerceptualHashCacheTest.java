@@ -0,0 +1,147 @@
+package com.example.tonbo_app;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * PerceptualHashCache 的感知哈希、漢明距離查找、最久未使用淘汰和命中統計
+ * 合成 640x480 的白底文字頁面：每行為隨機長度的黑色單詞塊
+ * 參數與 OCRHelper 的結果緩存相同（8 項，距離 8 以內，30 秒）
+ */
+public class PerceptualHashCacheTest {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int MAX_DISTANCE = 8;
+    private static final long MAX_AGE_MS = 30000;
+    private static final float COST_MS = 500f;
+
+    private PerceptualHashCache<String> cache;
+
+    @Before
+    public void setUp() {
+        cache = new PerceptualHashCache<>(8, MAX_DISTANCE, MAX_AGE_MS);
+    }
+
+    @Test
+    public void sameFrame_hitsAndCountsSavedTime() {
+        int[] page = page(1);
+        PerceptualHashCache.Key key = cache.hash(page, WIDTH, HEIGHT);
+        assertNull(cache.get(key));
+        cache.put(key, "page1", COST_MS);
+
+        assertEquals("page1", cache.get(cache.hash(page, WIDTH, HEIGHT)));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5f, cache.getHitRate(), 1e-6f);
+        // 節省的時間已扣除兩次計算哈希的時間
+        assertTrue(cache.getSavedMs() > 0f && cache.getSavedMs() <= COST_MS);
+    }
+
+    @Test
+    public void nearIdenticalFrame_isWithinDistance() {
+        int[] page = page(1);
+        PerceptualHashCache.Key key = cache.hash(page, WIDTH, HEIGHT);
+
+        // 感光噪聲和手持晃動（平移 2 像素）
+        Random random = new Random(24);
+        int[] noisy = shift(page, 2, 1);
+        for (int i = 0; i < noisy.length; i++) {
+            int delta = random.nextInt(13) - 6;
+            int v = Math.max(0, Math.min(255, (noisy[i] & 0xFF) + delta));
+            noisy[i] = 0xFF000000 | v << 16 | v << 8 | v;
+        }
+        int distance = key.distance(cache.hash(noisy, WIDTH, HEIGHT));
+        assertTrue("距離 " + distance, distance <= MAX_DISTANCE);
+
+        cache.put(key, "page1", COST_MS);
+        assertEquals("page1", cache.get(cache.hash(noisy, WIDTH, HEIGHT)));
+    }
+
+    @Test
+    public void differentPage_misses() {
+        PerceptualHashCache.Key first = cache.hash(page(1), WIDTH, HEIGHT);
+        PerceptualHashCache.Key second = cache.hash(page(2), WIDTH, HEIGHT);
+        int distance = first.distance(second);
+        assertTrue("距離 " + distance, distance > MAX_DISTANCE);
+
+        cache.put(first, "page1", COST_MS);
+        assertNull(cache.get(second));
+    }
+
+    @Test
+    public void differentSize_neverMatches() {
+        int[] page = page(1);
+        PerceptualHashCache.Key key = cache.hash(page, WIDTH, HEIGHT);
+        PerceptualHashCache.Key cropped = cache.hash(page, WIDTH, HEIGHT - 16);
+        assertEquals(Integer.MAX_VALUE, key.distance(cropped));
+    }
+
+    @Test
+    public void leastRecentlyUsed_isEvicted() {
+        PerceptualHashCache<String> small = new PerceptualHashCache<>(2, MAX_DISTANCE, MAX_AGE_MS);
+        PerceptualHashCache.Key first = small.hash(page(1), WIDTH, HEIGHT);
+        PerceptualHashCache.Key second = small.hash(page(2), WIDTH, HEIGHT);
+        PerceptualHashCache.Key third = small.hash(page(3), WIDTH, HEIGHT);
+        small.put(first, "page1", COST_MS);
+        small.put(second, "page2", COST_MS);
+        // 訪問第一頁後，最久未使用的是第二頁
+        assertEquals("page1", small.get(first));
+        small.put(third, "page3", COST_MS);
+
+        assertEquals(2, small.size());
+        assertEquals("page1", small.get(first));
+        assertNull(small.get(second));
+        assertEquals("page3", small.get(third));
+    }
+
+    @Test
+    public void expiredEntries_areDropped() {
+        PerceptualHashCache<String> expired = new PerceptualHashCache<>(8, MAX_DISTANCE, -1);
+        PerceptualHashCache.Key key = expired.hash(page(1), WIDTH, HEIGHT);
+        expired.put(key, "page1", COST_MS);
+
+        assertNull(expired.get(key));
+        assertEquals(0, expired.size());
+        assertEquals(0f, expired.getSavedMs(), 0f);
+    }
+
+    /**
+     * 白底文字頁面：20 行，每行為隨機長度的單詞塊
+     */
+    private static int[] page(int seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Arrays.fill(pixels, 0xFFFFFFFF);
+        for (int line = 0; line < 20; line++) {
+            int top = 20 + line * 22;
+            int x = 30 + random.nextInt(20);
+            while (true) {
+                int word = 20 + random.nextInt(80);
+                if (x + word > WIDTH - 30) {
+                    break;
+                }
+                for (int y = top; y < top + 12; y++) {
+                    Arrays.fill(pixels, y * WIDTH + x, y * WIDTH + x + word, 0xFF202020);
+                }
+                x += word + 10 + random.nextInt(10);
+            }
+        }
+        return pixels;
+    }
+
+    private static int[] shift(int[] pixels, int dx, int dy) {
+        int[] shifted = new int[pixels.length];
+        Arrays.fill(shifted, 0xFFFFFFFF);
+        for (int y = Math.max(0, dy); y < HEIGHT && y - dy < HEIGHT; y++) {
+            for (int x = Math.max(0, dx); x < WIDTH && x - dx < WIDTH; x++) {
+                shifted[y * WIDTH + x] = pixels[(y - dy) * WIDTH + (x - dx)];
+            }
+        }
+        return shifted;
+    }
+}
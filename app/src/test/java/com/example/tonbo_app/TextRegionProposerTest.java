@@ -0,0 +1,111 @@
+package com.example.tonbo_app;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * TextRegionProposer 的字符高度估計
+ * 合成 1920x1080 的白底黑字圖片（網格單元 8 像素），字形為隨機的筆畫組合
+ */
+public class TextRegionProposerTest {
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int BLACK = 0xFF000000;
+    private static final int MIN_GLYPH_PIXELS = 16;
+
+    private TextRegionProposer proposer;
+    private int[] pixels;
+    private Random random;
+
+    @Before
+    public void setUp() {
+        proposer = new TextRegionProposer();
+        pixels = new int[WIDTH * HEIGHT];
+        Arrays.fill(pixels, WHITE);
+        random = new Random(22);
+    }
+
+    @Test
+    public void denseParagraph_isNotScaledByParagraphHeight() {
+        // 16 像素字符、4 像素行距：行距小於網格單元，相鄰行連成一個連通區域
+        drawParagraph(200, 200, 12, 40, 16, 4);
+        int[] heights = proposer.estimateCharacterHeights(pixels, WIDTH, HEIGHT);
+        assertTrue("沒有找到文字區域", heights.length > 0);
+        for (int height : heights) {
+            float glyph = 16 * TextRegionProposer.scaleFor(height);
+            assertTrue("估計字符高度 " + height + "px，縮放後 " + glyph + "px", glyph >= MIN_GLYPH_PIXELS);
+        }
+    }
+
+    @Test
+    public void looseParagraph_keepsBodyTextReadable() {
+        drawParagraph(200, 200, 8, 40, 20, 12);
+        int[] heights = proposer.estimateCharacterHeights(pixels, WIDTH, HEIGHT);
+        assertTrue(heights.length > 0);
+        for (int height : heights) {
+            assertTrue("估計字符高度 " + height + "px", 20 * TextRegionProposer.scaleFor(height) >= MIN_GLYPH_PIXELS);
+        }
+    }
+
+    @Test
+    public void largeHeadline_isStillDownscaled() {
+        drawParagraph(100, 300, 1, 12, 120, 0);
+        int[] heights = proposer.estimateCharacterHeights(pixels, WIDTH, HEIGHT);
+        assertTrue(heights.length > 0);
+        int largest = 0;
+        for (int height : heights) {
+            largest = Math.max(largest, height);
+        }
+        float scale = TextRegionProposer.scaleFor(largest);
+        assertTrue("標題估計字符高度 " + largest + "px", scale < 1f);
+        assertTrue(120 * scale >= MIN_GLYPH_PIXELS);
+    }
+
+    @Test
+    public void scaleFor_onlyDownscales() {
+        assertEquals(1f, TextRegionProposer.scaleFor(8), 0f);
+        assertEquals(1f, TextRegionProposer.scaleFor(32), 0f);
+        assertEquals(0.5f, TextRegionProposer.scaleFor(64), 1e-6f);
+    }
+
+    /**
+     * 畫一段文字：每行 glyphs 個字，字寬約為字高
+     */
+    private void drawParagraph(int left, int top, int lines, int glyphs, int glyphHeight, int leading) {
+        int glyphWidth = glyphHeight;
+        int spacing = Math.max(2, glyphHeight / 4);
+        for (int line = 0; line < lines; line++) {
+            int y = top + line * (glyphHeight + leading);
+            for (int g = 0; g < glyphs; g++) {
+                drawGlyph(left + g * (glyphWidth + spacing), y, glyphWidth, glyphHeight);
+            }
+        }
+    }
+
+    /**
+     * 隨機筆畫的方塊字：一至兩條橫畫和一至兩條豎畫，總有一條豎畫貫穿整個字高
+     */
+    private void drawGlyph(int x, int y, int width, int height) {
+        int stroke = Math.max(2, height / 8);
+        fill(x + random.nextInt(width - stroke), y, stroke, height);
+        if (random.nextBoolean()) {
+            fill(x + random.nextInt(width - stroke), y + random.nextInt(height / 2), stroke, height / 2);
+        }
+        fill(x, y + random.nextInt(height - stroke), width, stroke);
+        if (random.nextBoolean()) {
+            fill(x, y + random.nextInt(height - stroke), width, stroke);
+        }
+    }
+
+    private void fill(int x, int y, int width, int height) {
+        for (int row = y; row < y + height; row++) {
+            Arrays.fill(pixels, row * WIDTH + x, row * WIDTH + x + width, BLACK);
+        }
+    }
+}
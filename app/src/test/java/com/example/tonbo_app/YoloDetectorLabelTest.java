@@ -0,0 +1,81 @@
+package com.example.tonbo_app;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * SSD MobileNet 類別編號到 COCO_CLASSES 的轉換
+ * 模型輸出的是內嵌 labelmap.txt 的行號（90 類，帶 "???" 空缺），不是 80 類的順序
+ */
+public class YoloDetectorLabelTest {
+    private static final String MODEL_PATH = "src/main/assets/ssd_mobilenet_v1.tflite";
+
+    @Test
+    public void knownIndices_mapToLabelmapNames() {
+        assertLabel("person", 0);
+        assertLabel("fire hydrant", 10);
+        assertLabel("stop sign", 12);
+        assertLabel("parking meter", 13);
+        assertLabel("backpack", 26);
+        assertLabel("chair", 61);
+        assertLabel("dining table", 66);
+        assertLabel("toilet", 69);
+        assertLabel("tv", 71);
+        assertLabel("toothbrush", 89);
+    }
+
+    @Test
+    public void labelmapGaps_areRejected() {
+        for (int gap : new int[] {11, 25, 28, 29, 44, 65, 67, 68, 70, 82}) {
+            assertEquals("編號 " + gap, -1, YoloDetector.ssdClassIndex(gap));
+        }
+        assertEquals(-1, YoloDetector.ssdClassIndex(-1));
+        assertEquals(-1, YoloDetector.ssdClassIndex(90));
+    }
+
+    @Test
+    public void table_matchesLabelmapEmbeddedInModel() throws Exception {
+        File model = new File(MODEL_PATH);
+        if (!model.exists()) {
+            model = new File("app", MODEL_PATH);
+        }
+        List<String> labels = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(model)) {
+            ZipEntry entry = zip.getEntry("labelmap.txt");
+            assertNotNull("模型中沒有 labelmap.txt", entry);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(zip.getInputStream(entry), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        labels.add(line.trim());
+                    }
+                }
+            }
+        }
+        assertEquals(90, labels.size());
+        for (int i = 0; i < labels.size(); i++) {
+            String expected = labels.get(i);
+            int classIndex = YoloDetector.ssdClassIndex(i);
+            if ("???".equals(expected)) {
+                assertEquals("編號 " + i, -1, classIndex);
+            } else {
+                assertEquals("編號 " + i, expected, YoloDetector.getClassName(classIndex));
+            }
+        }
+    }
+
+    private static void assertLabel(String expected, int modelClass) {
+        assertEquals(expected, YoloDetector.getClassName(YoloDetector.ssdClassIndex(modelClass)));
+    }
+}